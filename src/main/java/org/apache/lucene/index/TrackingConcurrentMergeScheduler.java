@@ -29,11 +29,13 @@ import org.elasticsearch.index.merge.OnGoingMerge;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * An extension to the {@link ConcurrentMergeScheduler} that provides tracking on merge times, total
- * and current merges.
+ * and current merges, and the time merges were paused because more merges than merge threads were running.
  */
 public class TrackingConcurrentMergeScheduler extends ConcurrentMergeScheduler {
 
@@ -49,6 +51,10 @@ public class TrackingConcurrentMergeScheduler extends ConcurrentMergeScheduler {
     private final Set<OnGoingMerge> onGoingMerges = ConcurrentCollections.newConcurrentSet();
     private final Set<OnGoingMerge> readOnlyOnGoingMerges = Collections.unmodifiableSet(onGoingMerges);
 
+    // the paused merges and the time they were paused at, guarded by this
+    private final Map<MergePolicy.OneMerge, Long> pausedMerges = new IdentityHashMap<MergePolicy.OneMerge, Long>();
+    private long totalMergesPausedTime;
+
     public TrackingConcurrentMergeScheduler(ESLogger logger) {
         super();
         this.logger = logger;
@@ -86,6 +92,46 @@ public class TrackingConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         return readOnlyOnGoingMerges;
     }
 
+    /**
+     * The total time merges were paused (in milliseconds), including the merges that are currently paused.
+     */
+    public synchronized long totalMergePausedTime() {
+        long now = System.currentTimeMillis();
+        long pausedTime = totalMergesPausedTime;
+        for (long pausedSince : pausedMerges.values()) {
+            pausedTime += now - pausedSince;
+        }
+        return pausedTime;
+    }
+
+    /**
+     * Is the merge forced, see {@link IndexWriter#forceMerge(int)}.
+     */
+    public static boolean isForcedMerge(MergePolicy.OneMerge merge) {
+        return merge.maxNumSegments != -1;
+    }
+
+    @Override
+    protected synchronized void updateMergeThreads() {
+        super.updateMergeThreads();
+        // the merges are only paused and resumed here, track when it happens
+        long now = System.currentTimeMillis();
+        Map<MergePolicy.OneMerge, Long> stillPaused = new IdentityHashMap<MergePolicy.OneMerge, Long>();
+        for (MergeThread mergeThread : mergeThreads) {
+            MergePolicy.OneMerge merge = mergeThread.getCurrentMerge();
+            if (merge != null && merge.getPause()) {
+                Long pausedSince = pausedMerges.remove(merge);
+                stillPaused.put(merge, pausedSince == null ? now : pausedSince);
+            }
+        }
+        // the merges left were resumed, or are done
+        for (long pausedSince : pausedMerges.values()) {
+            totalMergesPausedTime += now - pausedSince;
+        }
+        pausedMerges.clear();
+        pausedMerges.putAll(stillPaused);
+    }
+
     @Override
     protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
         int totalNumDocs = merge.totalNumDocs();
@@ -174,6 +174,9 @@ public class XAnalyzingSuggester extends Lookup {
   /** Number of entries the lookup was built with */
   private long count = 0;
 
+  /** Optional byte automaton every lookup must start with, e.g. the context values of a suggestion. */
+  private Automaton queryPrefix;
+
     /**
    * Calls {@link #XAnalyzingSuggester(Analyzer,Analyzer,int,int,int,boolean,FST,boolean,int,int,int,int,int)
    * AnalyzingSuggester(analyzer, analyzer, EXACT_FIRST |
@@ -243,6 +246,24 @@ public class XAnalyzingSuggester extends Lookup {
     this.holeCharacter = holeCharacter;
   }
 
+  /**
+   * Restricts the lookups to the analyzed forms that start with a path of the provided automaton. The labels of the
+   * automaton are bytes, it is prepended to the lookup automaton once that has been converted to bytes.
+   */
+  public void setQueryPrefix(Automaton queryPrefix) {
+    this.queryPrefix = queryPrefix;
+  }
+
+  /** Prepends the query prefix, if any, to a byte lookup automaton. */
+  protected Automaton prependQueryPrefix(Automaton a) {
+    if (queryPrefix == null) {
+      return a;
+    }
+    Automaton prefixed = BasicOperations.concatenate(Arrays.asList(queryPrefix.clone(), a));
+    BasicOperations.determinize(prefixed);
+    return prefixed;
+  }
+
   /** Returns byte size of the underlying FST. */
   public long sizeInBytes() {
     return fst == null ? 0 : fst.sizeInBytes();
@@ -722,7 +743,7 @@ public class XAnalyzingSuggester extends Lookup {
 
       final List<LookupResult> results = new ArrayList<LookupResult>();
 
-      List<FSTUtil.Path<Pair<Long,BytesRef>>> prefixPaths = FSTUtil.intersectPrefixPaths(convertAutomaton(lookupAutomaton), fst);
+      List<FSTUtil.Path<Pair<Long,BytesRef>>> prefixPaths = FSTUtil.intersectPrefixPaths(prependQueryPrefix(convertAutomaton(lookupAutomaton)), fst);
 
       if (exactFirst) {
 
@@ -189,7 +189,7 @@ public final class XFuzzySuggester extends XAnalyzingSuggester {
         // "compete") ... in which case I think the wFST needs
         // to be log weights or something ...
 
-        Automaton levA = convertAutomaton(toLevenshteinAutomata(lookupAutomaton));
+        Automaton levA = prependQueryPrefix(convertAutomaton(toLevenshteinAutomata(lookupAutomaton)));
     /*
       Writer w = new OutputStreamWriter(new FileOutputStream("out.dot"), "UTF-8");
       w.write(levA.toDot());
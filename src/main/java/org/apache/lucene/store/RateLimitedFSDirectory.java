@@ -24,6 +24,12 @@ import java.io.IOException;
 
 public final class RateLimitedFSDirectory extends FilterDirectory{
 
+    private static final StoreRateLimiting.Listener NO_OP_LISTENER = new StoreRateLimiting.Listener() {
+        @Override
+        public void onPause(long nanos) {
+        }
+    };
+
     private final StoreRateLimiting.Provider rateLimitingProvider;
 
     private final StoreRateLimiting.Listener rateListener;
@@ -39,6 +45,13 @@ public final class RateLimitedFSDirectory extends FilterDirectory{
     public IndexOutput createOutput(String name, IOContext context) throws IOException {
         final IndexOutput output = in.createOutput(name, context);
 
+        if (context.context == Context.MERGE) {
+            RateLimiter mergeLimiter = StoreRateLimiting.mergeRateLimiter();
+            if (mergeLimiter != null) {
+                // the merge is throttled by its merge scheduler, which reports the time it waited in the merge stats
+                return new RateLimitedIndexOutput(mergeLimiter, NO_OP_LISTENER, output);
+            }
+        }
         StoreRateLimiting rateLimiting = rateLimitingProvider.rateLimiting();
         StoreRateLimiting.Type type = rateLimiting.getType();
         RateLimiter limiter = rateLimiting.getRateLimiter();
@@ -54,6 +54,28 @@ public class StoreRateLimiting {
         }
     }
 
+    private static final ThreadLocal<RateLimiter> MERGE_RATE_LIMITER = new ThreadLocal<RateLimiter>();
+
+    /**
+     * Sets the rate limiter the merges executed by the current thread use instead of the store rate limiting,
+     * <tt>null</tt> to go back to the store rate limiting.
+     */
+    public static void setMergeRateLimiter(@Nullable RateLimiter rateLimiter) {
+        if (rateLimiter == null) {
+            MERGE_RATE_LIMITER.remove();
+        } else {
+            MERGE_RATE_LIMITER.set(rateLimiter);
+        }
+    }
+
+    /**
+     * @return the rate limiter of the merges executed by the current thread, if any
+     */
+    @Nullable
+    public static RateLimiter mergeRateLimiter() {
+        return MERGE_RATE_LIMITER.get();
+    }
+
     private final SimpleRateLimiter rateLimiter = new SimpleRateLimiter(0);
     private volatile SimpleRateLimiter actualRateLimiter;
 
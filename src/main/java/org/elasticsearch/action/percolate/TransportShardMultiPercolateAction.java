@@ -95,23 +95,28 @@ public class TransportShardMultiPercolateAction extends TransportShardSingleOper
 
     @Override
     protected Response shardOperation(Request request, int shardId) throws ElasticsearchException {
-        // TODO: Look into combining the shard req's docs into one in memory index.
+        // the documents of the items are percolated as a batch, so each registered query is executed once for all of them
+        List<PercolateShardRequest> shardRequests = new ArrayList<PercolateShardRequest>(request.items.size());
+        for (Request.Item item : request.items) {
+            shardRequests.add(item.request);
+        }
+        PercolateShardResponse[] shardResponses = new PercolateShardResponse[shardRequests.size()];
+        Throwable[] failures = new Throwable[shardRequests.size()];
+        percolatorService.percolate(shardRequests, shardResponses, failures);
+
         Response response = new Response();
         response.items = new ArrayList<Response.Item>(request.items.size());
-        for (Request.Item item : request.items) {
-            Response.Item responseItem;
-            int slot = item.slot;
-            try {
-                responseItem = new Response.Item(slot, percolatorService.percolate(item.request));
-            } catch (Throwable t) {
-                if (TransportActions.isShardNotAvailableException(t)) {
-                    throw (ElasticsearchException) t;
-                } else {
-                    logger.debug("[{}][{}] failed to multi percolate", t, request.index(), request.shardId());
-                    responseItem = new Response.Item(slot, new StringText(ExceptionsHelper.detailedMessage(t)));
-                }
+        for (int i = 0; i < request.items.size(); i++) {
+            int slot = request.items.get(i).slot;
+            Throwable t = failures[i];
+            if (t == null) {
+                response.items.add(new Response.Item(slot, shardResponses[i]));
+            } else if (TransportActions.isShardNotAvailableException(t)) {
+                throw (ElasticsearchException) t;
+            } else {
+                logger.debug("[{}][{}] failed to multi percolate", t, request.index(), request.shardId());
+                response.items.add(new Response.Item(slot, new StringText(ExceptionsHelper.detailedMessage(t))));
             }
-            response.items.add(responseItem);
         }
         return response;
     }
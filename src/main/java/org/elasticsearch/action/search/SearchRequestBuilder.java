@@ -303,6 +303,22 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Sets the sort values of the last hit of the previous page, so the hits sorted after it are returned.
+     */
+    public SearchRequestBuilder setSearchAfter(Object... values) {
+        sourceBuilder().searchAfter(values);
+        return this;
+    }
+
+    /**
+     * Restricts the search to the slice <tt>id</tt> out of <tt>max</tt> slices of the documents of each shard.
+     */
+    public SearchRequestBuilder setSlice(int id, int max) {
+        sourceBuilder().slice(id, max);
+        return this;
+    }
+
     /**
      * Sets the minimum score below which docs will be filtered out.
      */
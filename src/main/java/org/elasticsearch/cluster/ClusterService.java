@@ -106,6 +106,13 @@ public interface ClusterService extends LifecycleComponent<ClusterService> {
      */
     void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask);
 
+    /**
+     * Submits a task that will update the cluster state together with all the other tasks of the same executor that
+     * are pending when it gets processed, see {@link ClusterStateTaskExecutor}.
+     */
+    <T> void submitStateUpdateTask(final String source, Priority priority, final T task, final ClusterStateTaskExecutor<T> executor,
+                                   final ClusterStateTaskListener listener);
+
     /**
      * Returns the tasks that are pending.
      */
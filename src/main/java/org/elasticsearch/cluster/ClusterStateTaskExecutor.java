@@ -0,0 +1,39 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+import java.util.List;
+
+/**
+ * Executes a batch of tasks of the same kind in a single cluster state update, see
+ * {@link ClusterService#submitStateUpdateTask(String, org.elasticsearch.common.Priority, Object, ClusterStateTaskExecutor, ClusterStateTaskListener)}.
+ * <p/>
+ * All the tasks that were submitted with the same executor instance and are still queued when one of them gets
+ * processed are handed to the executor together, so they result in one new cluster state, one reroute and one
+ * publish instead of one per task.
+ */
+public interface ClusterStateTaskExecutor<T> {
+
+    /**
+     * Update the cluster state based on the current state and all the provided tasks, in the order they were
+     * submitted. Return the *same instance* if no state should be changed. Throwing fails all the tasks.
+     */
+    ClusterState execute(ClusterState currentState, List<T> tasks) throws Exception;
+}
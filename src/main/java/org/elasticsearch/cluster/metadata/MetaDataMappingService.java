@@ -27,7 +27,8 @@ import org.elasticsearch.action.admin.indices.mapping.put.PutMappingClusterState
 import org.elasticsearch.cluster.AckedClusterStateUpdateTask;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterState;
-import org.elasticsearch.cluster.ClusterStateUpdateTask;
+import org.elasticsearch.cluster.ClusterStateTaskExecutor;
+import org.elasticsearch.cluster.ClusterStateTaskListener;
 import org.elasticsearch.cluster.ack.ClusterStateUpdateListener;
 import org.elasticsearch.cluster.ack.ClusterStateUpdateResponse;
 import org.elasticsearch.cluster.node.DiscoveryNode;
@@ -64,11 +65,7 @@ public class MetaDataMappingService extends AbstractComponent {
     private final ClusterService clusterService;
     private final IndicesService indicesService;
 
-    // the mutex protect all the refreshOrUpdate variables!
-    private final Object refreshOrUpdateMutex = new Object();
-    private final List<MappingTask> refreshOrUpdateQueue = new ArrayList<MappingTask>();
-    private long refreshOrUpdateInsertOrder;
-    private long refreshOrUpdateProcessedInsertOrder;
+    private final RefreshOrUpdateExecutor refreshOrUpdateExecutor = new RefreshOrUpdateExecutor();
 
     @Inject
     public MetaDataMappingService(Settings settings, ThreadPool threadPool, ClusterService clusterService, IndicesService indicesService) {
@@ -115,31 +112,19 @@ public class MetaDataMappingService extends AbstractComponent {
     }
 
     /**
-     * Batch method to apply all the queued refresh or update operations. The idea is to try and batch as much
+     * Batch executor for all the pending refresh or update operations. The idea is to try and batch as much
      * as possible so we won't create the same index all the time for example for the updates on the same mapping
      * and generate a single cluster change event out of all of those.
      */
-    ClusterState executeRefreshOrUpdate(final ClusterState currentState, final long insertionOrder) throws Exception {
-        final List<MappingTask> allTasks = new ArrayList<MappingTask>();
+    class RefreshOrUpdateExecutor implements ClusterStateTaskExecutor<MappingTask> {
 
-        synchronized (refreshOrUpdateMutex) {
-            if (refreshOrUpdateQueue.isEmpty()) {
-                return currentState;
-            }
-
-            // we already processed this task in a bulk manner in a previous cluster event, simply ignore
-            // it so we will let other tasks get in and processed ones, we will handle the queued ones
-            // later on in a subsequent cluster state event
-            if (insertionOrder < refreshOrUpdateProcessedInsertOrder) {
-                return currentState;
-            }
-
-            allTasks.addAll(refreshOrUpdateQueue);
-            refreshOrUpdateQueue.clear();
-
-            refreshOrUpdateProcessedInsertOrder = refreshOrUpdateInsertOrder;
+        @Override
+        public ClusterState execute(ClusterState currentState, List<MappingTask> tasks) throws Exception {
+            return executeRefreshOrUpdate(currentState, tasks);
         }
+    }
 
+    ClusterState executeRefreshOrUpdate(final ClusterState currentState, final List<MappingTask> allTasks) throws Exception {
         if (allTasks.isEmpty()) {
             return currentState;
         }
@@ -347,39 +332,30 @@ public class MetaDataMappingService extends AbstractComponent {
      * Refreshes mappings if they are not the same between original and parsed version
      */
     public void refreshMapping(final String index, final String indexUUID, final String... types) {
-        final long insertOrder;
-        synchronized (refreshOrUpdateMutex) {
-            insertOrder = ++refreshOrUpdateInsertOrder;
-            refreshOrUpdateQueue.add(new RefreshTask(index, indexUUID, types));
-        }
-        clusterService.submitStateUpdateTask("refresh-mapping [" + index + "][" + Arrays.toString(types) + "]", Priority.HIGH, new ClusterStateUpdateTask() {
+        clusterService.submitStateUpdateTask("refresh-mapping [" + index + "][" + Arrays.toString(types) + "]", Priority.HIGH,
+                new RefreshTask(index, indexUUID, types), refreshOrUpdateExecutor, new ClusterStateTaskListener() {
             @Override
             public void onFailure(String source, Throwable t) {
                 logger.warn("failure during [{}]", t, source);
             }
 
             @Override
-            public ClusterState execute(ClusterState currentState) throws Exception {
-                return executeRefreshOrUpdate(currentState, insertOrder);
+            public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
             }
         });
     }
 
     public void updateMapping(final String index, final String indexUUID, final String type, final CompressedString mappingSource, final long order, final String nodeId, final ClusterStateUpdateListener listener) {
-        final long insertOrder;
-        synchronized (refreshOrUpdateMutex) {
-            insertOrder = ++refreshOrUpdateInsertOrder;
-            refreshOrUpdateQueue.add(new UpdateTask(index, indexUUID, type, mappingSource, order, nodeId, listener));
-        }
-        clusterService.submitStateUpdateTask("update-mapping [" + index + "][" + type + "] / node [" + nodeId + "], order [" + order + "]", Priority.HIGH, new ClusterStateUpdateTask() {
+        clusterService.submitStateUpdateTask("update-mapping [" + index + "][" + type + "] / node [" + nodeId + "], order [" + order + "]", Priority.HIGH,
+                new UpdateTask(index, indexUUID, type, mappingSource, order, nodeId, listener), refreshOrUpdateExecutor, new ClusterStateTaskListener() {
             @Override
             public void onFailure(String source, Throwable t) {
                 listener.onFailure(t);
             }
 
             @Override
-            public ClusterState execute(final ClusterState currentState) throws Exception {
-                return executeRefreshOrUpdate(currentState, insertOrder);
+            public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                // the listener was notified once the update was applied, see executeRefreshOrUpdate
             }
         });
     }
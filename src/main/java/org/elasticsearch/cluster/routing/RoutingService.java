@@ -130,6 +130,27 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
         }
     }
 
+    /**
+     * Initiates a reroute, for example once information needed to allocate shards became available.
+     */
+    public void reroute(String reason) {
+        if (!clusterService.state().nodes().localNodeMaster()) {
+            return;
+        }
+        logger.trace("rerouting [{}]", reason);
+        routingTableDirty = true;
+        reroute();
+    }
+
+    /**
+     * Marks the routing table as dirty so that it is rerouted the next time the routing table updater runs, for
+     * example to retry fetching information from nodes that failed to respond.
+     */
+    public void scheduleReroute(String reason) {
+        logger.trace("scheduling reroute [{}]", reason);
+        routingTableDirty = true;
+    }
+
     private void reroute() {
         try {
             if (!routingTableDirty) {
@@ -138,6 +159,8 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
             if (lifecycle.stopped()) {
                 return;
             }
+            // reset before submitting, the reroute might mark the routing table as dirty again
+            routingTableDirty = false;
             clusterService.submitStateUpdateTask(CLUSTER_UPDATE_TASK_SOURCE, Priority.HIGH, new ClusterStateUpdateTask() {
                 @Override
                 public ClusterState execute(ClusterState currentState) {
@@ -154,7 +177,6 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
                     logger.error("unexpected failure during [{}]", t, source);
                 }
             });
-            routingTableDirty = false;
         } catch (Exception e) {
             logger.warn("Failed to reroute routing table", e);
         }
@@ -35,6 +35,7 @@ import org.elasticsearch.cluster.routing.allocation.decider.Decision;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -224,6 +225,10 @@ public class AllocationService extends AbstractComponent {
         // rebalance
         changed |= shardsAllocators.rebalance(allocation);
         assert RoutingNodes.assertShardStats(allocation.routingNodes());
+        if (logger.isDebugEnabled()) {
+            logger.debug("reroute spent [{}] in allocation deciders, [{}] decisions served from the cache",
+                    TimeValue.timeValueNanos(allocation.deciderTimeInNanos()), allocation.cachedDecisionHits());
+        }
         return changed;
     }
 
@@ -102,6 +102,12 @@ public class RoutingAllocation {
 
     private boolean debugDecision = false;
 
+    private Map<Object, Decision> cachedDecisions = null;
+
+    private int cachedDecisionHits = 0;
+
+    private long deciderTimeInNanos = 0;
+
     /**
      * Creates a new {@link RoutingAllocation}
      * 
@@ -195,6 +201,53 @@ public class RoutingAllocation {
         return ignoredShardToNodes != null && nodeId.equals(ignoredShardToNodes.get(shardId));
     }
 
+    /**
+     * Returns the decision cached under the given key for the duration of this allocation, or <tt>null</tt> if there
+     * is none, see {@link org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider.DecisionScope}.
+     */
+    public Decision cachedDecision(Object key) {
+        if (cachedDecisions == null) {
+            return null;
+        }
+        Decision decision = cachedDecisions.get(key);
+        if (decision != null) {
+            cachedDecisionHits++;
+        }
+        return decision;
+    }
+
+    public void cacheDecision(Object key, Decision decision) {
+        if (cachedDecisions == null) {
+            cachedDecisions = new HashMap<Object, Decision>();
+        }
+        cachedDecisions.put(key, decision);
+    }
+
+    /**
+     * The number of cached decisions held by this allocation.
+     */
+    public int cachedDecisionCount() {
+        return cachedDecisions == null ? 0 : cachedDecisions.size();
+    }
+
+    /**
+     * The number of decisions that were served from the cache instead of being computed by the deciders.
+     */
+    public int cachedDecisionHits() {
+        return cachedDecisionHits;
+    }
+
+    public void addDeciderTime(long nanos) {
+        deciderTimeInNanos += nanos;
+    }
+
+    /**
+     * The time spent in the {@link AllocationDeciders} by this allocation.
+     */
+    public long deciderTimeInNanos() {
+        return deciderTimeInNanos;
+    }
+
     /**
      * Create a routing decision, including the reason if the debug flag is
      * turned on
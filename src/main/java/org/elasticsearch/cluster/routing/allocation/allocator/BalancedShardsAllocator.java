@@ -224,9 +224,23 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public float weight(Operation operation, Balancer balancer, ModelNode node, String index) {
-            final float weightShard = (node.numShards() - balancer.avgShardsPerNode());
-            final float weightIndex = (node.numShards(index) - balancer.avgShardsPerNode(index));
-            final float weightPrimary = (node.numPrimaries() - balancer.avgPrimariesPerNode());
+            return weight(operation, balancer, node.numShards(), node.numShards(index), node.numPrimaries(), index);
+        }
+
+        /**
+         * Returns the weight the given node would have if the given shard was added to it, without having to add it
+         * to the model and remove it again.
+         */
+        public float weightWithShard(Operation operation, Balancer balancer, ModelNode node, MutableShardRouting shard) {
+            final String index = shard.index();
+            return weight(operation, balancer, node.numShards() + 1, node.numShards(index) + 1,
+                    node.numPrimaries() + (shard.primary() ? 1 : 0), index);
+        }
+
+        private float weight(Operation operation, Balancer balancer, int numShards, int numIndexShards, int numPrimaries, String index) {
+            final float weightShard = (numShards - balancer.avgShardsPerNode());
+            final float weightIndex = (numIndexShards - balancer.avgShardsPerNode(index));
+            final float weightPrimary = (numPrimaries - balancer.avgPrimariesPerNode());
             final float[] theta = thetaMap.get(operation);
             assert theta != null;
             return theta[0] * weightShard + theta[1] * weightIndex + theta[2] * weightPrimary;
@@ -425,13 +439,12 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
                                  * a relocation must bring us closer to the balance if we only achieve the same delta the relocation is useless */
                                 if (tryRelocateShard(Operation.BALANCE, minNode, maxNode, index, delta)) {
                                     /*
-                                     * TODO we could be a bit smarter here, we don't need to fully sort necessarily
-                                     * we could just find the place to insert linearly but the win might be minor
-                                     * compared to the added complexity
+                                     * only the weights of the two nodes changed, the other nodes are still sorted
+                                     * so we just need to find their new place rather than to sort all nodes again
                                      */
                                     weights[lowIdx] = sorter.weight(Operation.BALANCE, modelNodes[lowIdx]);
                                     weights[highIdx] = sorter.weight(Operation.BALANCE, modelNodes[highIdx]);
-                                    sorter.sort(0, weights.length);
+                                    sorter.reinsert(lowIdx, highIdx);
                                     lowIdx = 0;
                                     highIdx = weights.length - 1;
                                     changed = true;
@@ -675,20 +688,12 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
                             if (throttledNodes.contains(node)) {
                                 continue;
                             }
-                            /*
-                             * The shard we add is removed below to simulate the
-                             * addition for weight calculation we use Decision.ALWAYS to
-                             * not violate the not null condition.
-                             */
                             if (!node.containsShard(shard)) {
-                                node.addShard(shard, Decision.ALWAYS);
-                                float currentWeight = weight.weight(Operation.ALLOCATE, this, node, shard.index());
                                 /*
-                                 * Remove the shard from the node again this is only a
-                                 * simulation
+                                 * The weight the node would have with the shard added, the model
+                                 * is only updated once we picked a node.
                                  */
-                                Decision removed = node.removeShard(shard);
-                                assert removed != null;
+                                float currentWeight = weight.weightWithShard(Operation.ALLOCATE, this, node, shard);
                                 /*
                                  * Unless the operation is not providing any gains we
                                  * don't check deciders
@@ -857,9 +862,9 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
     static class ModelNode implements Iterable<ModelIndex> {
         private final String id;
         private final Map<String, ModelIndex> indices = new HashMap<String, ModelIndex>();
-        /* cached stats - invalidated on add/remove and lazily calculated */
-        private int numShards = -1;
-        private int numPrimaries = -1;
+        /* stats maintained on add/remove, they are read for every weight calculation */
+        private int numShards = 0;
+        private int numPrimaries = 0;
 
         public ModelNode(String id) {
             this.id = id;
@@ -874,13 +879,6 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public int numShards() {
-            if (numShards == -1) {
-                int sum = 0;
-                for (ModelIndex index : indices.values()) {
-                    sum += index.numShards();
-                }
-                numShards = sum;
-            }
             return numShards;
         }
 
@@ -895,13 +893,6 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public int numPrimaries() {
-            if (numPrimaries == -1) {
-                int sum = 0;
-                for (ModelIndex index : indices.values()) {
-                    sum += index.numPrimaries();
-                }
-                numPrimaries = sum;
-            }
             return numPrimaries;
         }
 
@@ -922,23 +913,31 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public void addShard(MutableShardRouting shard, Decision decision) {
-            numPrimaries = numShards = -1;
             ModelIndex index = indices.get(shard.index());
             if (index == null) {
                 index = new ModelIndex(shard.index());
                 indices.put(index.getIndexId(), index);
             }
             index.addShard(shard, decision);
+            numShards++;
+            if (shard.primary()) {
+                numPrimaries++;
+            }
         }
 
         public Decision removeShard(MutableShardRouting shard) {
-            numPrimaries = numShards = -1;
             ModelIndex index = indices.get(shard.index());
             Decision removed = null;
             if (index != null) {
                 removed = index.removeShard(shard);
-                if (removed != null && index.numShards() == 0) {
-                    indices.remove(shard.index());
+                if (removed != null) {
+                    numShards--;
+                    if (shard.primary()) {
+                        numPrimaries--;
+                    }
+                    if (index.numShards() == 0) {
+                        indices.remove(shard.index());
+                    }
                 }
             }
             return removed;
@@ -965,7 +964,8 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
     static final class ModelIndex {
         private final String id;
         private final Map<MutableShardRouting, Decision> shards = new HashMap<MutableShardRouting, Decision>();
-        private int numPrimaries = -1;
+        private int numPrimaries = 0;
+        /* -1 if unknown, recalculated lazily only if the highest primary is removed */
         private int highestPrimary = -1;
 
         public ModelIndex(String id) {
@@ -1002,28 +1002,30 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public int numPrimaries() {
-            if (numPrimaries == -1) {
-                int num = 0;
-                for (MutableShardRouting shard : shards.keySet()) {
-                    if (shard.primary()) {
-                        num++;
-                    }
-                }
-                return numPrimaries = num;
-            }
             return numPrimaries;
         }
 
         public Decision removeShard(MutableShardRouting shard) {
-            highestPrimary = numPrimaries = -1;
-            return shards.remove(shard);
+            Decision removed = shards.remove(shard);
+            if (removed != null && shard.primary()) {
+                numPrimaries--;
+                if (shard.id() == highestPrimary) {
+                    highestPrimary = -1;
+                }
+            }
+            return removed;
         }
 
         public void addShard(MutableShardRouting shard, Decision decision) {
-            highestPrimary = numPrimaries = -1;
             assert decision != null;
             assert !shards.containsKey(shard) : "Shard already allocated on current node: " + shards.get(shard) + " " + shard;
             shards.put(shard, decision);
+            if (shard.primary()) {
+                numPrimaries++;
+                if (highestPrimary != -1) {
+                    highestPrimary = Math.max(highestPrimary, shard.id());
+                }
+            }
         }
 
         public boolean containsShard(MutableShardRouting shard) {
@@ -1040,6 +1042,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         private String index;
         private final Balancer balancer;
         private float pivotWeight;
+        private String pivotNodeId;
 
         public NodeSorter(ModelNode[] modelNodes, WeightFunction function, Balancer balancer) {
             this.function = function;
@@ -1050,7 +1053,9 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         /**
          * Resets the sorter, recalculates the weights per node and sorts the
-         * nodes by weight, with minimal weight first.
+         * nodes by weight, with minimal weight first. Nodes with the same weight
+         * are ordered by node id so that {@link #reinsert(int, int)} yields the
+         * same order as a full sort.
          */
         public void reset(Operation operation, String index) {
             this.index = index;
@@ -1064,6 +1069,43 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             return function.weight(operation, balancer, node, index);
         }
 
+        /**
+         * Moves the nodes at the given positions, whose weights have been updated, to their sorted position. All other
+         * nodes must still be sorted by weight, which allows to find the new positions with a binary search instead of
+         * sorting all nodes again.
+         */
+        public void reinsert(int first, int second) {
+            assert first < second;
+            final ModelNode firstNode = modelNodes[first];
+            final float firstWeight = weights[first];
+            final ModelNode secondNode = modelNodes[second];
+            final float secondWeight = weights[second];
+            // close the gaps left by the two nodes
+            System.arraycopy(modelNodes, first + 1, modelNodes, first, second - first - 1);
+            System.arraycopy(weights, first + 1, weights, first, second - first - 1);
+            System.arraycopy(modelNodes, second + 1, modelNodes, second - 1, modelNodes.length - second - 1);
+            System.arraycopy(weights, second + 1, weights, second - 1, weights.length - second - 1);
+            insert(firstNode, firstWeight, modelNodes.length - 2);
+            insert(secondNode, secondWeight, modelNodes.length - 1);
+        }
+
+        private void insert(ModelNode node, float weight, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(weights[mid], modelNodes[mid].getNodeId(), weight, node.getNodeId()) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            System.arraycopy(modelNodes, low, modelNodes, low + 1, size - low);
+            System.arraycopy(weights, low, weights, low + 1, size - low);
+            modelNodes[low] = node;
+            weights[low] = weight;
+        }
+
         @Override
         protected void swap(int i, int j) {
             final ModelNode tmpNode = modelNodes[i];
@@ -1076,17 +1118,23 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         @Override
         protected int compare(int i, int j) {
-            return Float.compare(weights[i], weights[j]);
+            return compare(weights[i], modelNodes[i].getNodeId(), weights[j], modelNodes[j].getNodeId());
         }
 
         @Override
         protected void setPivot(int i) {
             pivotWeight = weights[i];
+            pivotNodeId = modelNodes[i].getNodeId();
         }
 
         @Override
         protected int comparePivot(int j) {
-            return Float.compare(pivotWeight, weights[j]);
+            return compare(pivotWeight, pivotNodeId, weights[j], modelNodes[j].getNodeId());
+        }
+
+        private static int compare(float weight1, String nodeId1, float weight2, String nodeId2) {
+            final int cmp = Float.compare(weight1, weight2);
+            return cmp == 0 ? nodeId1.compareTo(nodeId2) : cmp;
         }
 
         public float delta() {
@@ -32,6 +32,32 @@ import org.elasticsearch.common.settings.Settings;
  */
 public abstract class AllocationDecider extends AbstractComponent {
 
+    /**
+     * What the decisions of {@link #canAllocate(ShardRouting, RoutingNode, RoutingAllocation)} and
+     * {@link #canRemain(ShardRouting, RoutingNode, RoutingAllocation)} of a decider depend on, besides the cluster
+     * state, cluster info and settings the {@link RoutingAllocation} started from. Decisions that don't depend on the
+     * routing of the other shards are cached by {@link AllocationDeciders} for the duration of a
+     * {@link RoutingAllocation}.
+     */
+    public static enum DecisionScope {
+        /**
+         * The decision only depends on the node.
+         */
+        NODE,
+        /**
+         * The decision depends on the node and the index of the shard.
+         */
+        INDEX,
+        /**
+         * The decision depends on the node and the shard, ie. its index, id and whether it is a primary.
+         */
+        SHARD,
+        /**
+         * The decision depends on where shards are currently allocated, it is never cached.
+         */
+        ROUTING
+    }
+
     /**
      * Initializes a new {@link AllocationDecider}
      * @param settings {@link Settings} used by this {@link AllocationDecider}
@@ -40,6 +66,14 @@ public abstract class AllocationDecider extends AbstractComponent {
         super(settings);
     }
 
+    /**
+     * Returns what the decisions of this decider depend on. The default is {@link DecisionScope#ROUTING}, which is
+     * never cached.
+     */
+    public DecisionScope decisionScope() {
+        return DecisionScope.ROUTING;
+    }
+
     /**
      * Returns a {@link Decision} whether the given shard routing can be
      * re-balanced to the given allocation. The default is
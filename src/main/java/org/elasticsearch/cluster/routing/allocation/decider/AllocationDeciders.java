@@ -30,14 +30,30 @@ import java.util.Set;
 /**
  * A composite {@link AllocationDecider} combining the "decision" of multiple
  * {@link AllocationDecider} implementations into a single allocation decision.
+ * <p/>
+ * The node level decisions of deciders that don't depend on the routing of the other shards, see
+ * {@link AllocationDecider.DecisionScope}, are cached on the {@link RoutingAllocation}, since the same shard and node
+ * pairs are checked over and over while shards are allocated and balanced. The time spent in the deciders is
+ * accounted on the {@link RoutingAllocation} as well.
  */
 public class AllocationDeciders extends AllocationDecider {
 
+    /**
+     * The maximum number of decisions cached by a single allocation, to bound its memory usage on large clusters.
+     */
+    static final int MAX_CACHED_DECISIONS = 100000;
+
     private final AllocationDecider[] allocations;
 
+    private final DecisionScope[] scopes;
+
     public AllocationDeciders(Settings settings, AllocationDecider[] allocations) {
         super(settings);
         this.allocations = allocations;
+        this.scopes = new DecisionScope[allocations.length];
+        for (int i = 0; i < allocations.length; i++) {
+            scopes[i] = allocations[i].decisionScope();
+        }
     }
 
     @Inject
@@ -47,6 +63,15 @@ public class AllocationDeciders extends AllocationDecider {
 
     @Override
     public Decision canRebalance(ShardRouting shardRouting, RoutingAllocation allocation) {
+        final long start = System.nanoTime();
+        try {
+            return innerCanRebalance(shardRouting, allocation);
+        } finally {
+            allocation.addDeciderTime(System.nanoTime() - start);
+        }
+    }
+
+    private Decision innerCanRebalance(ShardRouting shardRouting, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
             Decision decision = allocationDecider.canRebalance(shardRouting, allocation);
@@ -66,12 +91,22 @@ public class AllocationDeciders extends AllocationDecider {
 
     @Override
     public Decision canAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        final long start = System.nanoTime();
+        try {
+            return innerCanAllocate(shardRouting, node, allocation);
+        } finally {
+            allocation.addDeciderTime(System.nanoTime() - start);
+        }
+    }
+
+    private Decision innerCanAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
         if (allocation.shouldIgnoreShardForNode(shardRouting.shardId(), node.nodeId())) {
             return Decision.NO;
         }
         Decision.Multi ret = new Decision.Multi();
-        for (AllocationDecider allocationDecider : allocations) {
-            Decision decision = allocationDecider.canAllocate(shardRouting, node, allocation);
+        for (int i = 0; i < allocations.length; i++) {
+            final AllocationDecider allocationDecider = allocations[i];
+            Decision decision = decide(i, false, shardRouting, node, allocation);
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (logger.isTraceEnabled()) {
@@ -94,6 +129,15 @@ public class AllocationDeciders extends AllocationDecider {
 
     @Override
     public Decision canRemain(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        final long start = System.nanoTime();
+        try {
+            return innerCanRemain(shardRouting, node, allocation);
+        } finally {
+            allocation.addDeciderTime(System.nanoTime() - start);
+        }
+    }
+
+    private Decision innerCanRemain(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
         if (allocation.shouldIgnoreShardForNode(shardRouting.shardId(), node.nodeId())) {
             if (logger.isTraceEnabled()) {
                 logger.trace("Shard [{}] should be ignored for node [{}]", shardRouting, node.nodeId());
@@ -101,8 +145,9 @@ public class AllocationDeciders extends AllocationDecider {
             return Decision.NO;
         }
         Decision.Multi ret = new Decision.Multi();
-        for (AllocationDecider allocationDecider : allocations) {
-            Decision decision = allocationDecider.canRemain(shardRouting, node, allocation);
+        for (int i = 0; i < allocations.length; i++) {
+            final AllocationDecider allocationDecider = allocations[i];
+            Decision decision = decide(i, true, shardRouting, node, allocation);
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (logger.isTraceEnabled()) {
@@ -121,6 +166,15 @@ public class AllocationDeciders extends AllocationDecider {
     }
 
     public Decision canAllocate(ShardRouting shardRouting, RoutingAllocation allocation) {
+        final long start = System.nanoTime();
+        try {
+            return innerCanAllocate(shardRouting, allocation);
+        } finally {
+            allocation.addDeciderTime(System.nanoTime() - start);
+        }
+    }
+
+    private Decision innerCanAllocate(ShardRouting shardRouting, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
             Decision decision = allocationDecider.canAllocate(shardRouting, allocation);
@@ -139,6 +193,15 @@ public class AllocationDeciders extends AllocationDecider {
     }
 
     public Decision canAllocate(RoutingNode node, RoutingAllocation allocation) {
+        final long start = System.nanoTime();
+        try {
+            return innerCanAllocate(node, allocation);
+        } finally {
+            allocation.addDeciderTime(System.nanoTime() - start);
+        }
+    }
+
+    private Decision innerCanAllocate(RoutingNode node, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
             Decision decision = allocationDecider.canAllocate(node, allocation);
@@ -155,4 +218,62 @@ public class AllocationDeciders extends AllocationDecider {
         }
         return ret;
     }
+
+    private Decision decide(int decider, boolean remain, ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        final AllocationDecider allocationDecider = allocations[decider];
+        final DecisionScope scope = scopes[decider];
+        if (scope == DecisionScope.ROUTING) {
+            return remain ? allocationDecider.canRemain(shardRouting, node, allocation) : allocationDecider.canAllocate(shardRouting, node, allocation);
+        }
+        final DecisionKey key = new DecisionKey(decider, remain, scope, shardRouting, node.nodeId());
+        Decision decision = allocation.cachedDecision(key);
+        if (decision == null) {
+            decision = remain ? allocationDecider.canRemain(shardRouting, node, allocation) : allocationDecider.canAllocate(shardRouting, node, allocation);
+            if (allocation.cachedDecisionCount() < MAX_CACHED_DECISIONS) {
+                allocation.cacheDecision(key, decision);
+            }
+        }
+        return decision;
+    }
+
+    static final class DecisionKey {
+
+        private final int decider;
+        private final boolean remain;
+        private final String nodeId;
+        // null for node scoped decisions
+        private final String index;
+        // -1 unless the decision is shard scoped
+        private final int shardId;
+        private final boolean primary;
+
+        DecisionKey(int decider, boolean remain, DecisionScope scope, ShardRouting shardRouting, String nodeId) {
+            this.decider = decider;
+            this.remain = remain;
+            this.nodeId = nodeId;
+            this.index = scope == DecisionScope.NODE ? null : shardRouting.index();
+            this.shardId = scope == DecisionScope.SHARD ? shardRouting.id() : -1;
+            this.primary = scope == DecisionScope.SHARD && shardRouting.primary();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DecisionKey that = (DecisionKey) o;
+            return decider == that.decider && remain == that.remain && shardId == that.shardId && primary == that.primary
+                    && nodeId.equals(that.nodeId) && (index == null ? that.index == null : index.equals(that.index));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = decider;
+            result = 31 * result + (remain ? 1 : 0);
+            result = 31 * result + nodeId.hashCode();
+            result = 31 * result + (index != null ? index.hashCode() : 0);
+            result = 31 * result + shardId;
+            result = 31 * result + (primary ? 1 : 0);
+            return result;
+        }
+    }
 }
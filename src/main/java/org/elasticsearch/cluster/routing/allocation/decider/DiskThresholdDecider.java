@@ -127,6 +127,12 @@ public class DiskThresholdDecider extends AllocationDecider {
         nodeSettingsService.addListener(new ApplySettings());
     }
 
+    @Override
+    public DecisionScope decisionScope() {
+        // the disk usages and shard sizes are fixed for the duration of an allocation
+        return DecisionScope.SHARD;
+    }
+
     public Decision canAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
         if (!enabled) {
             return allocation.decision(Decision.YES, "disk threshold decider disabled");
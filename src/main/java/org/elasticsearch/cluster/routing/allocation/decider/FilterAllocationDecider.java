@@ -96,6 +96,12 @@ public class FilterAllocationDecider extends AllocationDecider {
         nodeSettingsService.addListener(new ApplySettings());
     }
 
+    @Override
+    public DecisionScope decisionScope() {
+        // the filters only depend on the node and the settings of the index
+        return DecisionScope.INDEX;
+    }
+
     @Override
     public Decision canAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
         return shouldFilter(shardRouting, node, allocation);
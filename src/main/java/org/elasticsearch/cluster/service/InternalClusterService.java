@@ -48,8 +48,10 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.*;
 
@@ -81,6 +83,9 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
     private final Queue<NotifyTimeout> onGoingTimeouts = ConcurrentCollections.newQueue();
 
+    // the batched tasks that are not processed yet, per executor, guarded by itself
+    private final Map<ClusterStateTaskExecutor<?>, List<BatchedUpdateTask<?>>> pendingBatchedTasks = new HashMap<ClusterStateTaskExecutor<?>, List<BatchedUpdateTask<?>>>();
+
     private volatile ClusterState clusterState = ClusterState.builder().build();
 
     private final ClusterBlocks.Builder initialBlocks = ClusterBlocks.builder().addGlobalBlock(Discovery.NO_MASTER_BLOCK);
@@ -261,6 +266,38 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         }
     }
 
+    @Override
+    public <T> void submitStateUpdateTask(final String source, Priority priority, final T task, final ClusterStateTaskExecutor<T> executor,
+                                          final ClusterStateTaskListener listener) {
+        if (!lifecycle.started()) {
+            return;
+        }
+        final BatchedUpdateTask<T> updateTask = new BatchedUpdateTask<T>(source, priority, task, executor, listener);
+        synchronized (pendingBatchedTasks) {
+            List<BatchedUpdateTask<?>> tasks = pendingBatchedTasks.get(executor);
+            if (tasks == null) {
+                tasks = new ArrayList<BatchedUpdateTask<?>>();
+                pendingBatchedTasks.put(executor, tasks);
+            }
+            tasks.add(updateTask);
+        }
+        try {
+            updateTasksExecutor.execute(updateTask);
+        } catch (EsRejectedExecutionException e) {
+            synchronized (pendingBatchedTasks) {
+                List<BatchedUpdateTask<?>> tasks = pendingBatchedTasks.get(executor);
+                if (tasks != null) {
+                    tasks.remove(updateTask);
+                }
+            }
+            // ignore cases where we are shutting down..., there is really nothing interesting
+            // to be done here...
+            if (!lifecycle.stoppedOrClosed()) {
+                throw e;
+            }
+        }
+    }
+
     @Override
     public List<PendingClusterTask> pendingTasks() {
         long now = System.currentTimeMillis();
@@ -269,8 +306,12 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         for (PrioritizedEsThreadPoolExecutor.Pending pending : pendings) {
             final String source;
             final long timeInQueue;
-            if (pending.task instanceof UpdateTask) {
-                UpdateTask updateTask = (UpdateTask) pending.task;
+            if (pending.task instanceof BatchedUpdateTask && ((BatchedUpdateTask<?>) pending.task).processed) {
+                // already processed together with a previous task of the same executor
+                continue;
+            }
+            if (pending.task instanceof SourcePrioritizedRunnable) {
+                SourcePrioritizedRunnable updateTask = (SourcePrioritizedRunnable) pending.task;
                 source = updateTask.source;
                 timeInQueue = now - updateTask.addedAt;
             } else {
@@ -283,186 +324,277 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         return pendingClusterTasks;
     }
 
-    class UpdateTask extends PrioritizedRunnable {
+    abstract static class SourcePrioritizedRunnable extends PrioritizedRunnable {
 
         public final String source;
-        public final ClusterStateUpdateTask updateTask;
         public final long addedAt = System.currentTimeMillis();
 
-        UpdateTask(String source, Priority priority, ClusterStateUpdateTask updateTask) {
+        SourcePrioritizedRunnable(String source, Priority priority) {
             super(priority);
             this.source = source;
+        }
+    }
+
+    class UpdateTask extends SourcePrioritizedRunnable {
+
+        public final ClusterStateUpdateTask updateTask;
+
+        UpdateTask(String source, Priority priority, ClusterStateUpdateTask updateTask) {
+            super(source, priority);
             this.updateTask = updateTask;
         }
 
         @Override
         public void run() {
-            if (!lifecycle.started()) {
-                logger.debug("processing [{}]: ignoring, cluster_service not started", source);
-                return;
-            }
-            logger.debug("processing [{}]: execute", source);
-            ClusterState previousClusterState = clusterState;
-            ClusterState newClusterState;
-            try {
-                newClusterState = updateTask.execute(previousClusterState);
-            } catch (Throwable e) {
-                if (logger.isTraceEnabled()) {
-                    StringBuilder sb = new StringBuilder("failed to execute cluster state update, state:\nversion [").append(previousClusterState.version()).append("], source [").append(source).append("]\n");
-                    sb.append(previousClusterState.nodes().prettyPrint());
-                    sb.append(previousClusterState.routingTable().prettyPrint());
-                    sb.append(previousClusterState.readOnlyRoutingNodes().prettyPrint());
-                    logger.trace(sb.toString(), e);
-                }
-                updateTask.onFailure(source, e);
-                return;
-            }
+            runUpdateTask(source, updateTask);
+        }
+    }
 
-            if (previousClusterState == newClusterState) {
-                logger.debug("processing [{}]: no change in cluster_state", source);
-                if (updateTask instanceof AckedClusterStateUpdateTask) {
-                    //no need to wait for ack if nothing changed, the update can be counted as acknowledged
-                    ((AckedClusterStateUpdateTask) updateTask).onAllNodesAcked(null);
-                }
-                if (updateTask instanceof ProcessedClusterStateUpdateTask) {
-                    ((ProcessedClusterStateUpdateTask) updateTask).clusterStateProcessed(source, previousClusterState, newClusterState);
+    /**
+     * A task submitted with a {@link ClusterStateTaskExecutor}. The first of the pending tasks of an executor that gets
+     * processed executes all of them, the others then find nothing left to do.
+     */
+    class BatchedUpdateTask<T> extends SourcePrioritizedRunnable {
+
+        final T task;
+        final ClusterStateTaskExecutor<T> executor;
+        final ClusterStateTaskListener listener;
+        // set once the task got picked up in the batch of another task, guarded by pendingBatchedTasks
+        volatile boolean processed;
+
+        BatchedUpdateTask(String source, Priority priority, T task, ClusterStateTaskExecutor<T> executor, ClusterStateTaskListener listener) {
+            super(source, priority);
+            this.task = task;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            final List<BatchedUpdateTask<?>> pending;
+            synchronized (pendingBatchedTasks) {
+                pending = pendingBatchedTasks.remove(executor);
+                if (pending != null) {
+                    for (BatchedUpdateTask<?> updateTask : pending) {
+                        updateTask.processed = true;
+                    }
                 }
+            }
+            if (pending == null || pending.isEmpty()) {
+                // already processed together with a previous task of the same executor
                 return;
             }
+            final List<BatchedUpdateTask<T>> batch = new ArrayList<BatchedUpdateTask<T>>(pending.size());
+            for (BatchedUpdateTask<?> updateTask : pending) {
+                // the pending tasks are keyed by their executor, so they all have the same task type
+                batch.add((BatchedUpdateTask<T>) updateTask);
+            }
+            final List<T> tasks = new ArrayList<T>(batch.size());
+            for (BatchedUpdateTask<T> updateTask : batch) {
+                tasks.add(updateTask.task);
+            }
+            String batchSource = batch.get(0).source;
+            if (batch.size() > 1) {
+                batchSource = batchSource + " and [" + (batch.size() - 1) + "] more";
+            }
+            runUpdateTask(batchSource, new ProcessedClusterStateUpdateTask() {
+                @Override
+                public ClusterState execute(ClusterState currentState) throws Exception {
+                    return executor.execute(currentState, tasks);
+                }
 
-            try {
-                Discovery.AckListener ackListener = new NoOpAckListener();
-                if (newClusterState.nodes().localNodeMaster()) {
-                    // only the master controls the version numbers
-                    Builder builder = ClusterState.builder(newClusterState).version(newClusterState.version() + 1);
-                    if (previousClusterState.routingTable() != newClusterState.routingTable()) {
-                        builder.routingTable(RoutingTable.builder(newClusterState.routingTable()).version(newClusterState.routingTable().version() + 1));
-                    }
-                    if (previousClusterState.metaData() != newClusterState.metaData()) {
-                        builder.metaData(MetaData.builder(newClusterState.metaData()).version(newClusterState.metaData().version() + 1));
+                @Override
+                public void onFailure(String source, Throwable t) {
+                    for (BatchedUpdateTask<T> updateTask : batch) {
+                        try {
+                            updateTask.listener.onFailure(updateTask.source, t);
+                        } catch (Throwable e) {
+                            logger.warn("failed to notify the failure of [{}]", e, updateTask.source);
+                        }
                     }
-                    newClusterState = builder.build();
+                }
 
-                    if (updateTask instanceof AckedClusterStateUpdateTask) {
-                        final AckedClusterStateUpdateTask ackedUpdateTask = (AckedClusterStateUpdateTask) updateTask;
-                        if (ackedUpdateTask.ackTimeout() == null || ackedUpdateTask.ackTimeout().millis() == 0) {
-                            ackedUpdateTask.onAckTimeout();
-                        } else {
-                            try {
-                                ackListener = new AckCountDownListener(ackedUpdateTask, newClusterState.version(), newClusterState.nodes(), threadPool);
-                            } catch (EsRejectedExecutionException ex) {
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug("Couldn't schedule timeout thread - node might be shutting down", ex);
-                                }
-                                //timeout straightaway, otherwise we could wait forever as the timeout thread has not started
-                                ackedUpdateTask.onAckTimeout();
-                            }
+                @Override
+                public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                    for (BatchedUpdateTask<T> updateTask : batch) {
+                        try {
+                            updateTask.listener.clusterStateProcessed(updateTask.source, oldState, newState);
+                        } catch (Throwable e) {
+                            logger.warn("failed to notify [{}] that its cluster state was processed", e, updateTask.source);
                         }
                     }
-                } else {
-                    if (previousClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK) && !newClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK)) {
-                        // force an update, its a fresh update from the master as we transition from a start of not having a master to having one
-                        // have a fresh instances of routing and metadata to remove the chance that version might be the same
-                        Builder builder = ClusterState.builder(newClusterState);
-                        builder.routingTable(RoutingTable.builder(newClusterState.routingTable()));
-                        builder.metaData(MetaData.builder(newClusterState.metaData()));
-                        newClusterState = builder.build();
-                        logger.debug("got first state from fresh master [{}]", newClusterState.nodes().masterNodeId());
-                    } else if (newClusterState.version() < previousClusterState.version()) {
-                        // we got a cluster state with older version, when we are *not* the master, let it in since it might be valid
-                        // we check on version where applicable, like at ZenDiscovery#handleNewClusterStateFromMaster
-                        logger.debug("got smaller cluster state when not master [" + newClusterState.version() + "<" + previousClusterState.version() + "] from source [" + source + "]");
-                    }
                 }
+            });
+        }
+    }
 
-                if (logger.isTraceEnabled()) {
-                    StringBuilder sb = new StringBuilder("cluster state updated:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
-                    sb.append(newClusterState.nodes().prettyPrint());
-                    sb.append(newClusterState.routingTable().prettyPrint());
-                    sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
-                    logger.trace(sb.toString());
-                } else if (logger.isDebugEnabled()) {
-                    logger.debug("cluster state updated, version [{}], source [{}]", newClusterState.version(), source);
-                }
+    private void runUpdateTask(String source, ClusterStateUpdateTask updateTask) {
+        if (!lifecycle.started()) {
+            logger.debug("processing [{}]: ignoring, cluster_service not started", source);
+            return;
+        }
+        logger.debug("processing [{}]: execute", source);
+        ClusterState previousClusterState = clusterState;
+        ClusterState newClusterState;
+        try {
+            newClusterState = updateTask.execute(previousClusterState);
+        } catch (Throwable e) {
+            if (logger.isTraceEnabled()) {
+                StringBuilder sb = new StringBuilder("failed to execute cluster state update, state:\nversion [").append(previousClusterState.version()).append("], source [").append(source).append("]\n");
+                sb.append(previousClusterState.nodes().prettyPrint());
+                sb.append(previousClusterState.routingTable().prettyPrint());
+                sb.append(previousClusterState.readOnlyRoutingNodes().prettyPrint());
+                logger.trace(sb.toString(), e);
+            }
+            updateTask.onFailure(source, e);
+            return;
+        }
 
-                ClusterChangedEvent clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
-                // new cluster state, notify all listeners
-                final DiscoveryNodes.Delta nodesDelta = clusterChangedEvent.nodesDelta();
-                if (nodesDelta.hasChanges() && logger.isInfoEnabled()) {
-                    String summary = nodesDelta.shortSummary();
-                    if (summary.length() > 0) {
-                        logger.info("{}, reason: {}", summary, source);
-                    }
+        if (previousClusterState == newClusterState) {
+            logger.debug("processing [{}]: no change in cluster_state", source);
+            if (updateTask instanceof AckedClusterStateUpdateTask) {
+                //no need to wait for ack if nothing changed, the update can be counted as acknowledged
+                ((AckedClusterStateUpdateTask) updateTask).onAllNodesAcked(null);
+            }
+            if (updateTask instanceof ProcessedClusterStateUpdateTask) {
+                ((ProcessedClusterStateUpdateTask) updateTask).clusterStateProcessed(source, previousClusterState, newClusterState);
+            }
+            return;
+        }
+
+        try {
+            Discovery.AckListener ackListener = new NoOpAckListener();
+            if (newClusterState.nodes().localNodeMaster()) {
+                // only the master controls the version numbers
+                Builder builder = ClusterState.builder(newClusterState).version(newClusterState.version() + 1);
+                if (previousClusterState.routingTable() != newClusterState.routingTable()) {
+                    builder.routingTable(RoutingTable.builder(newClusterState.routingTable()).version(newClusterState.routingTable().version() + 1));
+                }
+                if (previousClusterState.metaData() != newClusterState.metaData()) {
+                    builder.metaData(MetaData.builder(newClusterState.metaData()).version(newClusterState.metaData().version() + 1));
                 }
+                newClusterState = builder.build();
 
-                // TODO, do this in parallel (and wait)
-                for (DiscoveryNode node : nodesDelta.addedNodes()) {
-                    if (!nodeRequiresConnection(node)) {
-                        continue;
-                    }
-                    try {
-                        transportService.connectToNode(node);
-                    } catch (Throwable e) {
-                        // the fault detection will detect it as failed as well
-                        logger.warn("failed to connect to node [" + node + "]", e);
+                if (updateTask instanceof AckedClusterStateUpdateTask) {
+                    final AckedClusterStateUpdateTask ackedUpdateTask = (AckedClusterStateUpdateTask) updateTask;
+                    if (ackedUpdateTask.ackTimeout() == null || ackedUpdateTask.ackTimeout().millis() == 0) {
+                        ackedUpdateTask.onAckTimeout();
+                    } else {
+                        try {
+                            ackListener = new AckCountDownListener(ackedUpdateTask, newClusterState.version(), newClusterState.nodes(), threadPool);
+                        } catch (EsRejectedExecutionException ex) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Couldn't schedule timeout thread - node might be shutting down", ex);
+                            }
+                            //timeout straightaway, otherwise we could wait forever as the timeout thread has not started
+                            ackedUpdateTask.onAckTimeout();
+                        }
                     }
                 }
-
-                // if we are the master, publish the new state to all nodes
-                // we publish here before we send a notification to all the listeners, since if it fails
-                // we don't want to notify
-                if (newClusterState.nodes().localNodeMaster()) {
-                    logger.debug("publishing cluster state version {}", newClusterState.version());
-                    discoveryService.publish(newClusterState, ackListener);
+            } else {
+                if (previousClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK) && !newClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK)) {
+                    // force an update, its a fresh update from the master as we transition from a start of not having a master to having one
+                    // have a fresh instances of routing and metadata to remove the chance that version might be the same
+                    Builder builder = ClusterState.builder(newClusterState);
+                    builder.routingTable(RoutingTable.builder(newClusterState.routingTable()));
+                    builder.metaData(MetaData.builder(newClusterState.metaData()));
+                    newClusterState = builder.build();
+                    logger.debug("got first state from fresh master [{}]", newClusterState.nodes().masterNodeId());
+                } else if (newClusterState.version() < previousClusterState.version()) {
+                    // we got a cluster state with older version, when we are *not* the master, let it in since it might be valid
+                    // we check on version where applicable, like at ZenDiscovery#handleNewClusterStateFromMaster
+                    logger.debug("got smaller cluster state when not master [" + newClusterState.version() + "<" + previousClusterState.version() + "] from source [" + source + "]");
                 }
+            }
 
-                // update the current cluster state
-                clusterState = newClusterState;
-                logger.debug("set local cluster state to version {}", newClusterState.version());
+            if (logger.isTraceEnabled()) {
+                StringBuilder sb = new StringBuilder("cluster state updated:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
+                sb.append(newClusterState.nodes().prettyPrint());
+                sb.append(newClusterState.routingTable().prettyPrint());
+                sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
+                logger.trace(sb.toString());
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("cluster state updated, version [{}], source [{}]", newClusterState.version(), source);
+            }
 
-                for (ClusterStateListener listener : priorityClusterStateListeners) {
-                    listener.clusterChanged(clusterChangedEvent);
+            ClusterChangedEvent clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
+            // new cluster state, notify all listeners
+            final DiscoveryNodes.Delta nodesDelta = clusterChangedEvent.nodesDelta();
+            if (nodesDelta.hasChanges() && logger.isInfoEnabled()) {
+                String summary = nodesDelta.shortSummary();
+                if (summary.length() > 0) {
+                    logger.info("{}, reason: {}", summary, source);
                 }
-                for (ClusterStateListener listener : clusterStateListeners) {
-                    listener.clusterChanged(clusterChangedEvent);
+            }
+
+            // TODO, do this in parallel (and wait)
+            for (DiscoveryNode node : nodesDelta.addedNodes()) {
+                if (!nodeRequiresConnection(node)) {
+                    continue;
                 }
-                for (ClusterStateListener listener : lastClusterStateListeners) {
-                    listener.clusterChanged(clusterChangedEvent);
+                try {
+                    transportService.connectToNode(node);
+                } catch (Throwable e) {
+                    // the fault detection will detect it as failed as well
+                    logger.warn("failed to connect to node [" + node + "]", e);
                 }
+            }
 
-                if (!nodesDelta.removedNodes().isEmpty()) {
-                    threadPool.generic().execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            for (DiscoveryNode node : nodesDelta.removedNodes()) {
-                                transportService.disconnectFromNode(node);
-                            }
-                        }
-                    });
-                }
+            // if we are the master, publish the new state to all nodes
+            // we publish here before we send a notification to all the listeners, since if it fails
+            // we don't want to notify
+            if (newClusterState.nodes().localNodeMaster()) {
+                logger.debug("publishing cluster state version {}", newClusterState.version());
+                discoveryService.publish(newClusterState, ackListener);
+            }
+
+            // update the current cluster state
+            clusterState = newClusterState;
+            logger.debug("set local cluster state to version {}", newClusterState.version());
 
-                //manual ack only from the master at the end of the publish
-                if (newClusterState.nodes().localNodeMaster()) {
-                    try {
-                        ackListener.onNodeAck(localNode(), null);
-                    } catch (Throwable t) {
-                        logger.debug("error while processing ack for master node [{}]", t, newClusterState.nodes().localNode());
+            for (ClusterStateListener listener : priorityClusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+            for (ClusterStateListener listener : clusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+            for (ClusterStateListener listener : lastClusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+
+            if (!nodesDelta.removedNodes().isEmpty()) {
+                threadPool.generic().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (DiscoveryNode node : nodesDelta.removedNodes()) {
+                            transportService.disconnectFromNode(node);
+                        }
                     }
-                }
+                });
+            }
 
-                if (updateTask instanceof ProcessedClusterStateUpdateTask) {
-                    ((ProcessedClusterStateUpdateTask) updateTask).clusterStateProcessed(source, previousClusterState, newClusterState);
+            //manual ack only from the master at the end of the publish
+            if (newClusterState.nodes().localNodeMaster()) {
+                try {
+                    ackListener.onNodeAck(localNode(), null);
+                } catch (Throwable t) {
+                    logger.debug("error while processing ack for master node [{}]", t, newClusterState.nodes().localNode());
                 }
+            }
 
-                logger.debug("processing [{}]: done applying updated cluster_state (version: {})", source, newClusterState.version());
-            } catch (Throwable t) {
-                StringBuilder sb = new StringBuilder("failed to apply updated cluster state:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
-                sb.append(newClusterState.nodes().prettyPrint());
-                sb.append(newClusterState.routingTable().prettyPrint());
-                sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
-                logger.warn(sb.toString(), t);
-                // TODO: do we want to call updateTask.onFailure here?
+            if (updateTask instanceof ProcessedClusterStateUpdateTask) {
+                ((ProcessedClusterStateUpdateTask) updateTask).clusterStateProcessed(source, previousClusterState, newClusterState);
             }
+
+            logger.debug("processing [{}]: done applying updated cluster_state (version: {})", source, newClusterState.version());
+        } catch (Throwable t) {
+            StringBuilder sb = new StringBuilder("failed to apply updated cluster state:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
+            sb.append(newClusterState.nodes().prettyPrint());
+            sb.append(newClusterState.routingTable().prettyPrint());
+            sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
+            logger.warn(sb.toString(), t);
+            // TODO: do we want to call updateTask.onFailure here?
         }
     }
 
@@ -0,0 +1,225 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+
+/**
+ * Stats about the fault detection of a node: how suspicious the nodes it monitors are, and how long the pings
+ * to them took.
+ */
+public class DiscoveryStats implements Streamable, ToXContent {
+
+    /**
+     * The upper bounds of the ping latency histogram buckets, the last bucket counts the pings that took longer.
+     */
+    public static final long[] PING_LATENCY_BUCKETS_MILLIS = new long[]{1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    public static final DiscoveryStats EMPTY = new DiscoveryStats(new NodeSuspicion[0], new long[PING_LATENCY_BUCKETS_MILLIS.length + 1], 0);
+
+    private NodeSuspicion[] suspicions;
+    private long[] pingLatencyCounts;
+    private long pingFailures;
+
+    DiscoveryStats() {
+    }
+
+    public DiscoveryStats(NodeSuspicion[] suspicions, long[] pingLatencyCounts, long pingFailures) {
+        this.suspicions = suspicions;
+        this.pingLatencyCounts = pingLatencyCounts;
+        this.pingFailures = pingFailures;
+    }
+
+    /**
+     * @return The suspicion levels of the nodes this node monitors, all the other nodes on the master and the
+     *         master on the other nodes
+     */
+    public NodeSuspicion[] getSuspicions() {
+        return this.suspicions;
+    }
+
+    /**
+     * @return The number of pings per bucket of {@link #PING_LATENCY_BUCKETS_MILLIS}
+     */
+    public long[] getPingLatencyCounts() {
+        return this.pingLatencyCounts;
+    }
+
+    public long getPingCount() {
+        long count = 0;
+        for (long bucketCount : pingLatencyCounts) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    public long getPingFailures() {
+        return this.pingFailures;
+    }
+
+    /**
+     * @return The index of the ping latency histogram bucket a ping of the provided duration is counted in
+     */
+    public static int pingLatencyBucket(long millis) {
+        for (int i = 0; i < PING_LATENCY_BUCKETS_MILLIS.length; i++) {
+            if (millis <= PING_LATENCY_BUCKETS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return PING_LATENCY_BUCKETS_MILLIS.length;
+    }
+
+    public static DiscoveryStats readOptionalDiscoveryStats(StreamInput in) throws IOException {
+        return in.readOptionalStreamable(new DiscoveryStats());
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        suspicions = new NodeSuspicion[in.readVInt()];
+        for (int i = 0; i < suspicions.length; i++) {
+            suspicions[i] = new NodeSuspicion();
+            suspicions[i].readFrom(in);
+        }
+        pingLatencyCounts = new long[in.readVInt()];
+        for (int i = 0; i < pingLatencyCounts.length; i++) {
+            pingLatencyCounts[i] = in.readVLong();
+        }
+        pingFailures = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(suspicions.length);
+        for (NodeSuspicion suspicion : suspicions) {
+            suspicion.writeTo(out);
+        }
+        out.writeVInt(pingLatencyCounts.length);
+        for (long count : pingLatencyCounts) {
+            out.writeVLong(count);
+        }
+        out.writeVLong(pingFailures);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.DISCOVERY);
+        builder.startObject(Fields.FAULT_DETECTION);
+        builder.startObject(Fields.NODES);
+        for (NodeSuspicion suspicion : suspicions) {
+            builder.startObject(suspicion.getNodeId(), XContentBuilder.FieldCaseConversion.NONE);
+            builder.field(Fields.NAME, suspicion.getNodeName(), XContentBuilder.FieldCaseConversion.NONE);
+            builder.field(Fields.PHI, suspicion.getPhi());
+            builder.timeValueField(Fields.LAST_HEARTBEAT_IN_MILLIS, Fields.LAST_HEARTBEAT, suspicion.getMillisSinceLastHeartbeat());
+            builder.endObject();
+        }
+        builder.endObject();
+        builder.startObject(Fields.PING_LATENCY);
+        builder.field(Fields.COUNT, getPingCount());
+        builder.field(Fields.FAILURES, pingFailures);
+        builder.startObject(Fields.HISTOGRAM);
+        for (int i = 0; i < pingLatencyCounts.length; i++) {
+            if (i < PING_LATENCY_BUCKETS_MILLIS.length) {
+                builder.field("<=" + TimeValue.timeValueMillis(PING_LATENCY_BUCKETS_MILLIS[i]), pingLatencyCounts[i]);
+            } else {
+                builder.field(">" + TimeValue.timeValueMillis(PING_LATENCY_BUCKETS_MILLIS[i - 1]), pingLatencyCounts[i]);
+            }
+        }
+        builder.endObject();
+        builder.endObject();
+        builder.endObject();
+        builder.endObject();
+        return builder;
+    }
+
+    /**
+     * The suspicion level of a monitored node, see {@link org.elasticsearch.discovery.zen.fd.PhiAccrualFailureDetector}.
+     */
+    public static class NodeSuspicion implements Streamable {
+
+        private String nodeId;
+        private String nodeName;
+        private double phi;
+        private long millisSinceLastHeartbeat;
+
+        NodeSuspicion() {
+        }
+
+        public NodeSuspicion(String nodeId, String nodeName, double phi, long millisSinceLastHeartbeat) {
+            this.nodeId = nodeId;
+            this.nodeName = nodeName;
+            this.phi = phi;
+            this.millisSinceLastHeartbeat = millisSinceLastHeartbeat;
+        }
+
+        public String getNodeId() {
+            return this.nodeId;
+        }
+
+        public String getNodeName() {
+            return this.nodeName;
+        }
+
+        public double getPhi() {
+            return this.phi;
+        }
+
+        public long getMillisSinceLastHeartbeat() {
+            return this.millisSinceLastHeartbeat;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            nodeId = in.readString();
+            nodeName = in.readString();
+            phi = in.readDouble();
+            millisSinceLastHeartbeat = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(nodeId);
+            out.writeString(nodeName);
+            out.writeDouble(phi);
+            out.writeVLong(millisSinceLastHeartbeat);
+        }
+    }
+
+    static final class Fields {
+        static final XContentBuilderString DISCOVERY = new XContentBuilderString("discovery");
+        static final XContentBuilderString FAULT_DETECTION = new XContentBuilderString("fault_detection");
+        static final XContentBuilderString NODES = new XContentBuilderString("nodes");
+        static final XContentBuilderString NAME = new XContentBuilderString("name");
+        static final XContentBuilderString PHI = new XContentBuilderString("phi");
+        static final XContentBuilderString LAST_HEARTBEAT = new XContentBuilderString("last_heartbeat");
+        static final XContentBuilderString LAST_HEARTBEAT_IN_MILLIS = new XContentBuilderString("last_heartbeat_in_millis");
+        static final XContentBuilderString PING_LATENCY = new XContentBuilderString("ping_latency");
+        static final XContentBuilderString COUNT = new XContentBuilderString("count");
+        static final XContentBuilderString FAILURES = new XContentBuilderString("failures");
+        static final XContentBuilderString HISTOGRAM = new XContentBuilderString("histogram");
+    }
+}
@@ -272,6 +272,12 @@ public class LocalDiscovery extends AbstractLifecycleComponent<Discovery> implem
         return clusterName.value() + "/" + localNode.id();
     }
 
+    @Override
+    public DiscoveryStats stats() {
+        // local nodes are not monitored
+        return DiscoveryStats.EMPTY;
+    }
+
     public void publish(ClusterState clusterState, final Discovery.AckListener ackListener) {
         if (!master) {
             throw new ElasticsearchIllegalStateException("Shouldn't publish state when not master");
@@ -48,10 +48,12 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.discovery.Discovery;
 import org.elasticsearch.discovery.DiscoveryService;
 import org.elasticsearch.discovery.DiscoverySettings;
+import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.discovery.InitialStateDiscoveryListener;
 import org.elasticsearch.discovery.zen.elect.ElectMasterService;
 import org.elasticsearch.discovery.zen.fd.MasterFaultDetection;
 import org.elasticsearch.discovery.zen.fd.NodesFaultDetection;
+import org.elasticsearch.discovery.zen.fd.PingLatencyHistogram;
 import org.elasticsearch.discovery.zen.membership.MembershipAction;
 import org.elasticsearch.discovery.zen.ping.ZenPing;
 import org.elasticsearch.discovery.zen.ping.ZenPingService;
@@ -87,6 +89,7 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
     private final ZenPingService pingService;
     private final MasterFaultDetection masterFD;
     private final NodesFaultDetection nodesFD;
+    private final PingLatencyHistogram pingLatency = new PingLatencyHistogram();
     private final PublishClusterStateAction publishClusterState;
     private final MembershipAction membership;
     private final Version version;
@@ -144,10 +147,10 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
         this.electMaster = new ElectMasterService(settings);
         nodeSettingsService.addListener(new ApplySettings());
 
-        this.masterFD = new MasterFaultDetection(settings, threadPool, transportService, this);
+        this.masterFD = new MasterFaultDetection(settings, threadPool, transportService, this, pingLatency);
         this.masterFD.addListener(new MasterNodeFailureListener());
 
-        this.nodesFD = new NodesFaultDetection(settings, threadPool, transportService);
+        this.nodesFD = new NodesFaultDetection(settings, threadPool, transportService, pingLatency);
         this.nodesFD.addListener(new NodeFailureListener());
 
         this.publishClusterState = new PublishClusterStateAction(settings, transportService, this, new NewClusterStateListener(), discoverySettings);
@@ -209,6 +212,7 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
             }
         }
         master = false;
+        publishClusterState.clearPublishQueues("stopping");
         if (currentJoinThread != null) {
             try {
                 currentJoinThread.interrupt();
@@ -269,7 +273,13 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
         }
         latestDiscoNodes = clusterState.nodes();
         nodesFD.updateNodes(clusterState.nodes());
-        publishClusterState.publish(clusterState, ackListener);
+        publishClusterState.publish(clusterState, new HeartbeatAckListener(ackListener));
+    }
+
+    @Override
+    public DiscoveryStats stats() {
+        DiscoveryStats.NodeSuspicion[] suspicions = master ? nodesFD.suspicions() : masterFD.suspicions();
+        return new DiscoveryStats(suspicions, pingLatency.counts(), pingLatency.failures());
     }
 
     private void asyncJoinCluster() {
@@ -333,6 +343,7 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
                 });
             } else {
                 this.master = false;
+                publishClusterState.clearPublishQueues("joining master [" + masterNode + "]");
                 try {
                     // first, make sure we can connect to the master
                     transportService.connectToNode(masterNode);
@@ -585,6 +596,9 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
                     logger.debug("got a new state from master node, though we are already trying to rejoin the cluster");
                 }
 
+                // the master is alive, no need to ping it right now
+                masterFD.onHeartbeat(newClusterState.nodes().masterNode());
+
                 final ProcessClusterState processClusterState = new ProcessClusterState(newClusterState, newStateProcessed);
                 processNewClusterStates.add(processClusterState);
 
@@ -817,6 +831,7 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
         nodesFD.stop();
         masterFD.stop(reason);
         master = false;
+        publishClusterState.clearPublishQueues(reason);
 
         ClusterBlocks clusterBlocks = ClusterBlocks.builder().blocks(clusterState.blocks())
                 .addGlobalBlock(NO_MASTER_BLOCK)
@@ -869,6 +884,31 @@ public class ZenDiscovery extends AbstractLifecycleComponent<Discovery> implemen
         }
     }
 
+    /**
+     * Counts the acknowledgements of a published cluster state as heartbeats of the nodes.
+     */
+    private class HeartbeatAckListener implements AckListener {
+
+        private final AckListener delegate;
+
+        HeartbeatAckListener(AckListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onNodeAck(DiscoveryNode node, @Nullable Throwable t) {
+            if (t == null) {
+                nodesFD.onHeartbeat(node);
+            }
+            delegate.onNodeAck(node, t);
+        }
+
+        @Override
+        public void onTimeout() {
+            delegate.onTimeout();
+        }
+    }
+
     private class NodeFailureListener implements NodesFaultDetection.Listener {
 
         @Override
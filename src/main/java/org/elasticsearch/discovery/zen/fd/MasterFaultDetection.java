@@ -27,6 +27,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.discovery.zen.DiscoveryNodesProvider;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
@@ -35,11 +36,14 @@ import java.io.IOException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.elasticsearch.common.unit.TimeValue.timeValueMillis;
 import static org.elasticsearch.common.unit.TimeValue.timeValueSeconds;
 import static org.elasticsearch.transport.TransportRequestOptions.options;
 
 /**
- * A fault detection that pings the master periodically to see if its alive.
+ * A fault detection that pings the master periodically to see if its alive. Like {@link NodesFaultDetection}, it
+ * either fails the master after <tt>ping_retries</tt> failed pings or, if <tt>phi_threshold</tt> is set, once its
+ * suspicion level reaches the threshold. Cluster states received from the master count as heartbeats.
  */
 public class MasterFaultDetection extends AbstractComponent {
 
@@ -67,9 +71,18 @@ public class MasterFaultDetection extends AbstractComponent {
 
     private final int pingRetryCount;
 
+    private final double phiThreshold;
+
+    private final int phiWindowSize;
+
+    private final TimeValue phiMinStdDeviation;
+
+    private final TimeValue phiAcceptablePause;
+
     // used mainly for testing, should always be true
     private final boolean registerConnectionListener;
 
+    private final PingLatencyHistogram pingLatency;
 
     private final FDConnectionListener connectionListener;
 
@@ -81,21 +94,40 @@ public class MasterFaultDetection extends AbstractComponent {
 
     private volatile int retryCount;
 
+    private volatile PhiAccrualFailureDetector failureDetector;
+
+    // whether a ping to the master is in flight
+    private volatile boolean pinging;
+
+    // whether the master gave a sign of life since the last ping
+    private volatile boolean heartbeatSincePing;
+
     private final AtomicBoolean notifiedMasterFailure = new AtomicBoolean();
 
-    public MasterFaultDetection(Settings settings, ThreadPool threadPool, TransportService transportService, DiscoveryNodesProvider nodesProvider) {
+    public MasterFaultDetection(Settings settings, ThreadPool threadPool, TransportService transportService, DiscoveryNodesProvider nodesProvider,
+                                PingLatencyHistogram pingLatency) {
         super(settings);
         this.threadPool = threadPool;
         this.transportService = transportService;
         this.nodesProvider = nodesProvider;
+        this.pingLatency = pingLatency;
 
         this.connectOnNetworkDisconnect = componentSettings.getAsBoolean("connect_on_network_disconnect", true);
         this.pingInterval = componentSettings.getAsTime("ping_interval", timeValueSeconds(1));
         this.pingRetryTimeout = componentSettings.getAsTime("ping_timeout", timeValueSeconds(30));
         this.pingRetryCount = componentSettings.getAsInt("ping_retries", 3);
+        this.phiThreshold = componentSettings.getAsDouble("phi_threshold", 0d);
+        this.phiWindowSize = componentSettings.getAsInt("phi_window_size", 100);
+        this.phiMinStdDeviation = componentSettings.getAsTime("phi_min_std_deviation", timeValueMillis(500));
+        this.phiAcceptablePause = componentSettings.getAsTime("phi_acceptable_pause", timeValueSeconds(3));
         this.registerConnectionListener = componentSettings.getAsBoolean("register_connection_listener", true);
 
-        logger.debug("[master] uses ping_interval [{}], ping_timeout [{}], ping_retries [{}]", pingInterval, pingRetryTimeout, pingRetryCount);
+        if (phiThreshold > 0) {
+            logger.debug("[master] uses ping_interval [{}], ping_timeout [{}], phi_threshold [{}], phi_window_size [{}], phi_min_std_deviation [{}], phi_acceptable_pause [{}]",
+                    pingInterval, pingRetryTimeout, phiThreshold, phiWindowSize, phiMinStdDeviation, phiAcceptablePause);
+        } else {
+            logger.debug("[master] uses ping_interval [{}], ping_timeout [{}], ping_retries [{}]", pingInterval, pingRetryTimeout, pingRetryCount);
+        }
 
         this.connectionListener = new FDConnectionListener();
         if (registerConnectionListener) {
@@ -117,6 +149,32 @@ public class MasterFaultDetection extends AbstractComponent {
         listeners.remove(listener);
     }
 
+    /**
+     * Records a sign of life of the master other than a ping response, for example a cluster state it published.
+     * The next ping to the master is skipped.
+     */
+    public void onHeartbeat(DiscoveryNode node) {
+        PhiAccrualFailureDetector failureDetector = this.failureDetector;
+        if (failureDetector != null && node != null && node.equals(masterNode)) {
+            failureDetector.heartbeat(NodesFaultDetection.now());
+            heartbeatSincePing = true;
+        }
+    }
+
+    /**
+     * @return The suspicion level of the monitored master, if any.
+     */
+    public DiscoveryStats.NodeSuspicion[] suspicions() {
+        DiscoveryNode masterNode = this.masterNode;
+        PhiAccrualFailureDetector failureDetector = this.failureDetector;
+        if (masterNode == null || failureDetector == null) {
+            return new DiscoveryStats.NodeSuspicion[0];
+        }
+        long now = NodesFaultDetection.now();
+        return new DiscoveryStats.NodeSuspicion[]{new DiscoveryStats.NodeSuspicion(masterNode.id(), masterNode.name(),
+                failureDetector.phi(now), failureDetector.millisSinceLastHeartbeat(now))};
+    }
+
     public void restart(DiscoveryNode masterNode, String reason) {
         synchronized (masterNodeMutex) {
             if (logger.isDebugEnabled()) {
@@ -139,6 +197,10 @@ public class MasterFaultDetection extends AbstractComponent {
     private void innerStart(final DiscoveryNode masterNode) {
         this.masterNode = masterNode;
         this.retryCount = 0;
+        this.failureDetector = new PhiAccrualFailureDetector(phiWindowSize, pingInterval.millis(), phiMinStdDeviation.millis(),
+                phiAcceptablePause.millis(), NodesFaultDetection.now());
+        this.pinging = false;
+        this.heartbeatSincePing = false;
         this.notifiedMasterFailure.set(false);
 
         // try and connect to make sure we are connected
@@ -197,6 +259,7 @@ public class MasterFaultDetection extends AbstractComponent {
                     if (masterPinger != null) {
                         masterPinger.stop();
                     }
+                    this.pinging = false;
                     this.masterPinger = new MasterPinger();
                     threadPool.schedule(pingInterval, ThreadPool.Names.SAME, masterPinger);
                 } catch (Exception e) {
@@ -261,13 +324,44 @@ public class MasterFaultDetection extends AbstractComponent {
                 return;
             }
             final DiscoveryNode masterToPing = masterNode;
-            if (masterToPing == null) {
+            final PhiAccrualFailureDetector failureDetector = MasterFaultDetection.this.failureDetector;
+            if (masterToPing == null || failureDetector == null) {
                 // master is null, should not happen, but we are still running, so reschedule
                 threadPool.schedule(pingInterval, ThreadPool.Names.SAME, MasterPinger.this);
                 return;
             }
+            if (phiThreshold > 0) {
+                long now = NodesFaultDetection.now();
+                double phi = failureDetector.phi(now);
+                if (phi >= phiThreshold) {
+                    synchronized (masterNodeMutex) {
+                        if (running && masterToPing.equals(MasterFaultDetection.this.masterNode())) {
+                            logger.debug("[master] [{}] reached suspicion level [{}], last heard from [{}] ago", masterToPing, phi, timeValueMillis(failureDetector.millisSinceLastHeartbeat(now)));
+                            notifyMasterFailure(masterToPing, "suspicion level [" + phi + "] reached phi_threshold [" + phiThreshold + "]");
+                        }
+                    }
+                    return;
+                }
+                // the master is checked at every interval, a slow ping is no reason to wait
+                threadPool.schedule(pingInterval, ThreadPool.Names.SAME, MasterPinger.this);
+                if (pinging) {
+                    return;
+                }
+            }
+            if (heartbeatSincePing) {
+                // we received a cluster state from the master since the last ping, no need to ping it now
+                heartbeatSincePing = false;
+                if (phiThreshold <= 0) {
+                    threadPool.schedule(pingInterval, ThreadPool.Names.SAME, MasterPinger.this);
+                }
+                return;
+            }
+            pinging = true;
             transportService.sendRequest(masterToPing, MasterPingRequestHandler.ACTION, new MasterPingRequest(nodesProvider.nodes().localNode().id(), masterToPing.id()), options().withType(TransportRequestOptions.Type.PING).withTimeout(pingRetryTimeout),
                     new BaseTransportResponseHandler<MasterPingResponseResponse>() {
+
+                        private volatile long sentAt = NodesFaultDetection.now();
+
                         @Override
                         public MasterPingResponseResponse newInstance() {
                             return new MasterPingResponseResponse();
@@ -275,9 +369,13 @@ public class MasterFaultDetection extends AbstractComponent {
 
                         @Override
                         public void handleResponse(MasterPingResponseResponse response) {
+                            long now = NodesFaultDetection.now();
+                            pingLatency.onPing(now - sentAt);
+                            failureDetector.heartbeat(now);
                             if (!running) {
                                 return;
                             }
+                            pinging = false;
                             // reset the counter, we got a good result
                             MasterFaultDetection.this.retryCount = 0;
                             // check if the master node did not get switched on us..., if it did, we simply return with no reschedule
@@ -287,7 +385,9 @@ public class MasterFaultDetection extends AbstractComponent {
                                     notifyDisconnectedFromMaster();
                                 }
                                 // we don't stop on disconnection from master, we keep pinging it
-                                threadPool.schedule(pingInterval, ThreadPool.Names.SAME, MasterPinger.this);
+                                if (phiThreshold <= 0) {
+                                    threadPool.schedule(pingInterval, ThreadPool.Names.SAME, MasterPinger.this);
+                                }
                             }
                         }
 
@@ -296,10 +396,12 @@ public class MasterFaultDetection extends AbstractComponent {
                             if (!running) {
                                 return;
                             }
+                            pinging = false;
                             if (exp instanceof ConnectTransportException) {
                                 // ignore this one, we already handle it by registering a connection listener
                                 return;
                             }
+                            pingLatency.onPingFailure();
                             synchronized (masterNodeMutex) {
                                 // check if the master node did not get switched on us...
                                 if (masterToPing.equals(MasterFaultDetection.this.masterNode())) {
@@ -316,6 +418,11 @@ public class MasterFaultDetection extends AbstractComponent {
                                         notifyMasterFailure(masterToPing, "do not exists on master, act as master failure");
                                         return;
                                     }
+                                    if (phiThreshold > 0) {
+                                        // the suspicion level keeps growing until the master responds again
+                                        logger.trace("[master] failed to ping [{}]", exp, masterNode);
+                                        return;
+                                    }
                                     int retryCount = ++MasterFaultDetection.this.retryCount;
                                     logger.trace("[master] failed to ping [{}], retry [{}] out of [{}]", exp, masterNode, retryCount, pingRetryCount);
                                     if (retryCount >= pingRetryCount) {
@@ -324,6 +431,8 @@ public class MasterFaultDetection extends AbstractComponent {
                                         notifyMasterFailure(masterToPing, "failed to ping, tried [" + pingRetryCount + "] times, each with  maximum [" + pingRetryTimeout + "] timeout");
                                     } else {
                                         // resend the request, not reschedule, rely on send timeout
+                                        pinging = true;
+                                        sentAt = NodesFaultDetection.now();
                                         transportService.sendRequest(masterToPing, MasterPingRequestHandler.ACTION, new MasterPingRequest(nodesProvider.nodes().localNode().id(), masterToPing.id()), options().withType(TransportRequestOptions.Type.PING).withTimeout(pingRetryTimeout), this);
                                     }
                                 }
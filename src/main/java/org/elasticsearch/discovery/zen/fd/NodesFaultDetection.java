@@ -27,20 +27,31 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import static org.elasticsearch.cluster.node.DiscoveryNodes.EMPTY_NODES;
+import static org.elasticsearch.common.unit.TimeValue.timeValueMillis;
 import static org.elasticsearch.common.unit.TimeValue.timeValueSeconds;
 import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
 import static org.elasticsearch.transport.TransportRequestOptions.options;
 
 /**
  * A fault detection of multiple nodes.
+ * <p/>
+ * By default a node fails once <tt>ping_retries</tt> consecutive pings failed. If <tt>phi_threshold</tt> is set,
+ * the nodes are instead checked every <tt>ping_interval</tt> with a {@link PhiAccrualFailureDetector}, which fails
+ * a node once its suspicion level reaches the threshold and adapts to the latencies observed so far. Either way,
+ * the acknowledgements of published cluster states count as heartbeats and replace the next ping to the node.
  */
 public class NodesFaultDetection extends AbstractComponent {
 
@@ -62,9 +73,18 @@ public class NodesFaultDetection extends AbstractComponent {
 
     private final int pingRetryCount;
 
+    private final double phiThreshold;
+
+    private final int phiWindowSize;
+
+    private final TimeValue phiMinStdDeviation;
+
+    private final TimeValue phiAcceptablePause;
+
     // used mainly for testing, should always be true
     private final boolean registerConnectionListener;
 
+    private final PingLatencyHistogram pingLatency;
 
     private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
@@ -76,18 +96,28 @@ public class NodesFaultDetection extends AbstractComponent {
 
     private volatile boolean running = false;
 
-    public NodesFaultDetection(Settings settings, ThreadPool threadPool, TransportService transportService) {
+    public NodesFaultDetection(Settings settings, ThreadPool threadPool, TransportService transportService, PingLatencyHistogram pingLatency) {
         super(settings);
         this.threadPool = threadPool;
         this.transportService = transportService;
+        this.pingLatency = pingLatency;
 
         this.connectOnNetworkDisconnect = componentSettings.getAsBoolean("connect_on_network_disconnect", true);
         this.pingInterval = componentSettings.getAsTime("ping_interval", timeValueSeconds(1));
         this.pingRetryTimeout = componentSettings.getAsTime("ping_timeout", timeValueSeconds(30));
         this.pingRetryCount = componentSettings.getAsInt("ping_retries", 3);
+        this.phiThreshold = componentSettings.getAsDouble("phi_threshold", 0d);
+        this.phiWindowSize = componentSettings.getAsInt("phi_window_size", 100);
+        this.phiMinStdDeviation = componentSettings.getAsTime("phi_min_std_deviation", timeValueMillis(500));
+        this.phiAcceptablePause = componentSettings.getAsTime("phi_acceptable_pause", timeValueSeconds(3));
         this.registerConnectionListener = componentSettings.getAsBoolean("register_connection_listener", true);
 
-        logger.debug("[node  ] uses ping_interval [{}], ping_timeout [{}], ping_retries [{}]", pingInterval, pingRetryTimeout, pingRetryCount);
+        if (phiThreshold > 0) {
+            logger.debug("[node  ] uses ping_interval [{}], ping_timeout [{}], phi_threshold [{}], phi_window_size [{}], phi_min_std_deviation [{}], phi_acceptable_pause [{}]",
+                    pingInterval, pingRetryTimeout, phiThreshold, phiWindowSize, phiMinStdDeviation, phiAcceptablePause);
+        } else {
+            logger.debug("[node  ] uses ping_interval [{}], ping_timeout [{}], ping_retries [{}]", pingInterval, pingRetryTimeout, pingRetryCount);
+        }
 
         transportService.registerHandler(PingRequestHandler.ACTION, new PingRequestHandler());
 
@@ -118,7 +148,7 @@ public class NodesFaultDetection extends AbstractComponent {
                 continue;
             }
             if (!nodesFD.containsKey(newNode)) {
-                nodesFD.put(newNode, new NodeFD());
+                nodesFD.put(newNode, new NodeFD(newFailureDetector()));
                 threadPool.schedule(pingInterval, ThreadPool.Names.SAME, new SendPingRequest(newNode));
             }
         }
@@ -127,6 +157,32 @@ public class NodesFaultDetection extends AbstractComponent {
         }
     }
 
+    /**
+     * Records a sign of life of the node other than a ping response, for example the acknowledgement of a
+     * published cluster state. The next ping to the node is skipped.
+     */
+    public void onHeartbeat(DiscoveryNode node) {
+        NodeFD nodeFD = nodesFD.get(node);
+        if (nodeFD != null) {
+            nodeFD.failureDetector.heartbeat(now());
+            nodeFD.heartbeatSincePing = true;
+        }
+    }
+
+    /**
+     * @return The suspicion levels of the monitored nodes.
+     */
+    public DiscoveryStats.NodeSuspicion[] suspicions() {
+        long now = now();
+        List<DiscoveryStats.NodeSuspicion> suspicions = new ArrayList<DiscoveryStats.NodeSuspicion>(nodesFD.size());
+        for (Map.Entry<DiscoveryNode, NodeFD> entry : nodesFD.entrySet()) {
+            PhiAccrualFailureDetector failureDetector = entry.getValue().failureDetector;
+            suspicions.add(new DiscoveryStats.NodeSuspicion(entry.getKey().id(), entry.getKey().name(),
+                    failureDetector.phi(now), failureDetector.millisSinceLastHeartbeat(now)));
+        }
+        return suspicions.toArray(new DiscoveryStats.NodeSuspicion[suspicions.size()]);
+    }
+
     public NodesFaultDetection start() {
         if (running) {
             return this;
@@ -164,7 +220,7 @@ public class NodesFaultDetection extends AbstractComponent {
         if (connectOnNetworkDisconnect) {
             try {
                 transportService.connectToNode(node);
-                nodesFD.put(node, new NodeFD());
+                nodesFD.put(node, new NodeFD(newFailureDetector()));
                 threadPool.schedule(pingInterval, ThreadPool.Names.SAME, new SendPingRequest(node));
             } catch (Exception e) {
                 logger.trace("[node  ] [{}] transport disconnected (with verified connect)", node);
@@ -176,6 +232,14 @@ public class NodesFaultDetection extends AbstractComponent {
         }
     }
 
+    private PhiAccrualFailureDetector newFailureDetector() {
+        return new PhiAccrualFailureDetector(phiWindowSize, pingInterval.millis(), phiMinStdDeviation.millis(), phiAcceptablePause.millis(), now());
+    }
+
+    static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
     private void notifyNodeFailure(final DiscoveryNode node, final String reason) {
         threadPool.generic().execute(new Runnable() {
             @Override
@@ -200,8 +264,40 @@ public class NodesFaultDetection extends AbstractComponent {
             if (!running) {
                 return;
             }
+            final NodeFD nodeFD = nodesFD.get(node);
+            if (nodeFD == null || !nodeFD.running) {
+                return;
+            }
+            if (phiThreshold > 0) {
+                long now = now();
+                double phi = nodeFD.failureDetector.phi(now);
+                if (phi >= phiThreshold) {
+                    logger.debug("[node  ] [{}] reached suspicion level [{}], last heard from [{}] ago", node, phi, timeValueMillis(nodeFD.failureDetector.millisSinceLastHeartbeat(now)));
+                    if (nodesFD.remove(node) != null) {
+                        notifyNodeFailure(node, "suspicion level [" + phi + "] reached phi_threshold [" + phiThreshold + "]");
+                    }
+                    return;
+                }
+                // the node is checked at every interval, a slow ping is no reason to wait
+                threadPool.schedule(pingInterval, ThreadPool.Names.SAME, this);
+                if (nodeFD.pinging) {
+                    return;
+                }
+            }
+            if (nodeFD.heartbeatSincePing) {
+                // the node acknowledged a cluster state since the last ping, no need to ping it now
+                nodeFD.heartbeatSincePing = false;
+                if (phiThreshold <= 0) {
+                    threadPool.schedule(pingInterval, ThreadPool.Names.SAME, this);
+                }
+                return;
+            }
+            nodeFD.pinging = true;
             transportService.sendRequest(node, PingRequestHandler.ACTION, new PingRequest(node.id()), options().withType(TransportRequestOptions.Type.PING).withTimeout(pingRetryTimeout),
                     new BaseTransportResponseHandler<PingResponse>() {
+
+                        private volatile long sentAt = now();
+
                         @Override
                         public PingResponse newInstance() {
                             return new PingResponse();
@@ -209,21 +305,25 @@ public class NodesFaultDetection extends AbstractComponent {
 
                         @Override
                         public void handleResponse(PingResponse response) {
+                            long now = now();
+                            nodeFD.pinging = false;
+                            pingLatency.onPing(now - sentAt);
+                            nodeFD.failureDetector.heartbeat(now);
                             if (!running) {
                                 return;
                             }
-                            NodeFD nodeFD = nodesFD.get(node);
-                            if (nodeFD != null) {
-                                if (!nodeFD.running) {
-                                    return;
-                                }
-                                nodeFD.retryCount = 0;
+                            if (!nodeFD.running || nodesFD.get(node) != nodeFD) {
+                                return;
+                            }
+                            nodeFD.retryCount = 0;
+                            if (phiThreshold <= 0) {
                                 threadPool.schedule(pingInterval, ThreadPool.Names.SAME, SendPingRequest.this);
                             }
                         }
 
                         @Override
                         public void handleException(TransportException exp) {
+                            nodeFD.pinging = false;
                             // check if the master node did not get switched on us...
                             if (!running) {
                                 return;
@@ -232,24 +332,29 @@ public class NodesFaultDetection extends AbstractComponent {
                                 // ignore this one, we already handle it by registering a connection listener
                                 return;
                             }
-                            NodeFD nodeFD = nodesFD.get(node);
-                            if (nodeFD != null) {
-                                if (!nodeFD.running) {
-                                    return;
-                                }
-                                int retryCount = ++nodeFD.retryCount;
-                                logger.trace("[node  ] failed to ping [{}], retry [{}] out of [{}]", exp, node, retryCount, pingRetryCount);
-                                if (retryCount >= pingRetryCount) {
-                                    logger.debug("[node  ] failed to ping [{}], tried [{}] times, each with  maximum [{}] timeout", node, pingRetryCount, pingRetryTimeout);
-                                    // not good, failure
-                                    if (nodesFD.remove(node) != null) {
-                                        notifyNodeFailure(node, "failed to ping, tried [" + pingRetryCount + "] times, each with maximum [" + pingRetryTimeout + "] timeout");
-                                    }
-                                } else {
-                                    // resend the request, not reschedule, rely on send timeout
-                                    transportService.sendRequest(node, PingRequestHandler.ACTION, new PingRequest(node.id()),
-                                            options().withType(TransportRequestOptions.Type.PING).withTimeout(pingRetryTimeout), this);
+                            pingLatency.onPingFailure();
+                            if (!nodeFD.running || nodesFD.get(node) != nodeFD) {
+                                return;
+                            }
+                            if (phiThreshold > 0) {
+                                // the suspicion level keeps growing until the node responds again
+                                logger.trace("[node  ] failed to ping [{}]", exp, node);
+                                return;
+                            }
+                            int retryCount = ++nodeFD.retryCount;
+                            logger.trace("[node  ] failed to ping [{}], retry [{}] out of [{}]", exp, node, retryCount, pingRetryCount);
+                            if (retryCount >= pingRetryCount) {
+                                logger.debug("[node  ] failed to ping [{}], tried [{}] times, each with  maximum [{}] timeout", node, pingRetryCount, pingRetryTimeout);
+                                // not good, failure
+                                if (nodesFD.remove(node) != null) {
+                                    notifyNodeFailure(node, "failed to ping, tried [" + pingRetryCount + "] times, each with maximum [" + pingRetryTimeout + "] timeout");
                                 }
+                            } else {
+                                // resend the request, not reschedule, rely on send timeout
+                                nodeFD.pinging = true;
+                                sentAt = now();
+                                transportService.sendRequest(node, PingRequestHandler.ACTION, new PingRequest(node.id()),
+                                        options().withType(TransportRequestOptions.Type.PING).withTimeout(pingRetryTimeout), this);
                             }
                         }
 
@@ -262,8 +367,17 @@ public class NodesFaultDetection extends AbstractComponent {
     }
 
     static class NodeFD {
+        final PhiAccrualFailureDetector failureDetector;
         volatile int retryCount;
         volatile boolean running = true;
+        // whether a ping to the node is in flight
+        volatile boolean pinging;
+        // whether the node gave a sign of life since the last ping
+        volatile boolean heartbeatSincePing;
+
+        NodeFD(PhiAccrualFailureDetector failureDetector) {
+            this.failureDetector = failureDetector;
+        }
     }
 
     private class FDConnectionListener implements TransportConnectionListener {
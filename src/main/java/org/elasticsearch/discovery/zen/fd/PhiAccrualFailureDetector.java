@@ -0,0 +1,132 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery.zen.fd;
+
+/**
+ * A phi accrual failure detector. Rather than deciding whether a node failed after a fixed timeout, it keeps the
+ * intervals between the last heartbeats of the node and computes how likely it is, given their (normal)
+ * distribution, that the next heartbeat still arrives. <tt>phi</tt> is <tt>-log10</tt> of that probability: a
+ * <tt>phi</tt> of 1 means a 10% chance of a false suspicion, 2 a 1% chance, and so on. Nodes with a jittery
+ * history, for example because of garbage collections, are therefore given more time than nodes that always
+ * respond in time.
+ * <p/>
+ * The detector starts with two intervals around the expected heartbeat interval so that it is usable before the
+ * first heartbeats arrive.
+ */
+public class PhiAccrualFailureDetector {
+
+    private final long[] intervals;
+    private final double minStdDeviationMillis;
+    private final long acceptableHeartbeatPauseMillis;
+
+    private int size;
+    private int next;
+    private double sum;
+    private double sumOfSquares;
+
+    private long lastHeartbeatMillis;
+
+    /**
+     * @param windowSize                     The number of intervals to keep
+     * @param expectedIntervalMillis         The interval heartbeats are expected at, used until actual heartbeats arrive
+     * @param minStdDeviationMillis          A lower bound of the standard deviation, so that very regular heartbeats
+     *                                       don't make a small delay look like a failure
+     * @param acceptableHeartbeatPauseMillis A pause on top of the mean interval that is never considered suspicious
+     * @param nowMillis                      The current time, the detector behaves as if a heartbeat was just received
+     */
+    public PhiAccrualFailureDetector(int windowSize, long expectedIntervalMillis, double minStdDeviationMillis,
+                                     long acceptableHeartbeatPauseMillis, long nowMillis) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("window size must be at least 2 but was [" + windowSize + "]");
+        }
+        this.intervals = new long[windowSize];
+        this.minStdDeviationMillis = minStdDeviationMillis;
+        this.acceptableHeartbeatPauseMillis = acceptableHeartbeatPauseMillis;
+        long stdDeviation = expectedIntervalMillis / 4;
+        add(expectedIntervalMillis - stdDeviation);
+        add(expectedIntervalMillis + stdDeviation);
+        this.lastHeartbeatMillis = nowMillis;
+    }
+
+    /**
+     * Records a heartbeat of the node.
+     */
+    public synchronized void heartbeat(long nowMillis) {
+        long interval = nowMillis - lastHeartbeatMillis;
+        if (interval > 0) {
+            add(interval);
+        }
+        lastHeartbeatMillis = Math.max(lastHeartbeatMillis, nowMillis);
+    }
+
+    /**
+     * @return The suspicion level of the node, <tt>0</tt> right after a heartbeat and growing as time passes without one.
+     */
+    public synchronized double phi(long nowMillis) {
+        long elapsed = nowMillis - lastHeartbeatMillis;
+        double mean = sum / size + acceptableHeartbeatPauseMillis;
+        double variance = sumOfSquares / size - (sum / size) * (sum / size);
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDeviationMillis);
+        return phi(elapsed, mean, stdDeviation);
+    }
+
+    /**
+     * @return The time since the last heartbeat.
+     */
+    public synchronized long millisSinceLastHeartbeat(long nowMillis) {
+        return Math.max(0, nowMillis - lastHeartbeatMillis);
+    }
+
+    /**
+     * @return The mean interval between heartbeats.
+     */
+    public synchronized double meanIntervalMillis() {
+        return sum / size;
+    }
+
+    /**
+     * Computes <tt>-log10(1 - F(elapsed))</tt> where <tt>F</tt> is the cumulative distribution function of the normal
+     * distribution, using a logistic approximation of it which is accurate enough and doesn't overflow for large
+     * values.
+     */
+    static double phi(long elapsed, double mean, double stdDeviation) {
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        } else {
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+
+    private void add(long interval) {
+        if (size == intervals.length) {
+            long evicted = intervals[next];
+            sum -= evicted;
+            sumOfSquares -= (double) evicted * evicted;
+        } else {
+            size++;
+        }
+        intervals[next] = interval;
+        next = (next + 1) % intervals.length;
+        sum += interval;
+        sumOfSquares += (double) interval * interval;
+    }
+}
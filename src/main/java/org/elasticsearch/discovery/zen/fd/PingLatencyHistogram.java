@@ -0,0 +1,55 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery.zen.fd;
+
+import org.elasticsearch.discovery.DiscoveryStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the fault detection pings per latency bucket, see {@link DiscoveryStats#PING_LATENCY_BUCKETS_MILLIS}.
+ */
+public class PingLatencyHistogram {
+
+    private final AtomicLongArray counts = new AtomicLongArray(DiscoveryStats.PING_LATENCY_BUCKETS_MILLIS.length + 1);
+
+    private final AtomicLong failures = new AtomicLong();
+
+    public void onPing(long millis) {
+        counts.incrementAndGet(DiscoveryStats.pingLatencyBucket(millis));
+    }
+
+    public void onPingFailure() {
+        failures.incrementAndGet();
+    }
+
+    public long[] counts() {
+        long[] counts = new long[this.counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.counts.get(i);
+        }
+        return counts;
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+}
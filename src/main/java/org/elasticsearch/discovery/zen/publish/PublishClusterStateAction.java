@@ -19,6 +19,7 @@
 
 package org.elasticsearch.discovery.zen.publish;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.ClusterState;
@@ -30,6 +31,7 @@ import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.stream.*;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.discovery.AckClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.ClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.Discovery;
@@ -38,10 +40,16 @@ import org.elasticsearch.discovery.zen.DiscoveryNodesProvider;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- *
+ * Publishes the cluster states of the master to the other nodes. Publishing doesn't wait for the nodes to process
+ * the state, so the master can compute the next state while the nodes still apply the previous one. At most one
+ * state is sent to a node at a time: states published in the meantime are queued per node, and a newer state
+ * replaces a queued one, so a slow node only receives the latest state. Since a state contains everything that
+ * changed before, the acknowledgement of the newer state also acknowledges the replaced ones.
  */
 public class PublishClusterStateAction extends AbstractComponent {
 
@@ -62,6 +70,8 @@ public class PublishClusterStateAction extends AbstractComponent {
     private final NewClusterStateListener listener;
     private final DiscoverySettings discoverySettings;
 
+    private final ConcurrentMap<DiscoveryNode, NodePublishQueue> publishQueues = ConcurrentCollections.newConcurrentMap();
+
     public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
                                      NewClusterStateListener listener, DiscoverySettings discoverySettings) {
         super(settings);
@@ -74,6 +84,18 @@ public class PublishClusterStateAction extends AbstractComponent {
 
     public void close() {
         transportService.removeHandler(PublishClusterStateRequestHandler.ACTION);
+        clearPublishQueues("closing");
+    }
+
+    /**
+     * Drops the cluster states that are queued for the other nodes, to be called once this node is no longer the
+     * master so that none of the states it published get delivered after another master took over. The states
+     * that are being sent are not cancelled.
+     */
+    public void clearPublishQueues(String reason) {
+        for (DiscoveryNode node : publishQueues.keySet()) {
+            removePublishQueue(node, reason);
+        }
     }
 
     public void publish(ClusterState clusterState, final Discovery.AckListener ackListener) {
@@ -84,6 +106,13 @@ public class PublishClusterStateAction extends AbstractComponent {
 
         DiscoveryNode localNode = nodesProvider.nodes().localNode();
 
+        // nodes that left the cluster won't receive any state anymore
+        for (DiscoveryNode node : publishQueues.keySet()) {
+            if (!clusterState.nodes().nodeExists(node.id())) {
+                removePublishQueue(node, "node left the cluster");
+            }
+        }
+
         Map<Version, BytesReference> serializedStates = Maps.newHashMap();
 
         for (final DiscoveryNode node : clusterState.nodes()) {
@@ -108,44 +137,150 @@ public class PublishClusterStateAction extends AbstractComponent {
                     continue;
                 }
             }
+            NodePublishQueue publishQueue = publishQueues.get(node);
+            if (publishQueue == null) {
+                publishQueue = new NodePublishQueue(node);
+                NodePublishQueue existing = publishQueues.putIfAbsent(node, publishQueue);
+                if (existing != null) {
+                    publishQueue = existing;
+                }
+            }
+            publishQueue.publish(new PendingState(clusterState.version(), bytes, publishResponseHandler));
+        }
+    }
+
+    private void removePublishQueue(DiscoveryNode node, String reason) {
+        NodePublishQueue publishQueue = publishQueues.remove(node);
+        if (publishQueue != null) {
+            publishQueue.close(reason);
+        }
+    }
+
+    /**
+     * A cluster state waiting to be sent to a node, along with the handlers of the states it replaced.
+     */
+    private static class PendingState {
+
+        final long version;
+        final BytesReference bytes;
+        final List<ClusterStatePublishResponseHandler> handlers = Lists.newArrayList();
+
+        PendingState(long version, BytesReference bytes, ClusterStatePublishResponseHandler handler) {
+            this.version = version;
+            this.bytes = bytes;
+            this.handlers.add(handler);
+        }
+    }
+
+    /**
+     * Sends the cluster states to a node one at a time, only keeping the latest of the states published while a
+     * state is being sent.
+     */
+    private class NodePublishQueue {
+
+        private final DiscoveryNode node;
+
+        // the state being sent and the time it was sent at, null if none
+        private PendingState sending;
+        private long sendingSince;
+
+        // the next state to send, null if none
+        private PendingState pending;
+
+        private boolean closed;
+
+        NodePublishQueue(DiscoveryNode node) {
+            this.node = node;
+        }
+
+        void publish(PendingState state) {
+            synchronized (this) {
+                if (closed) {
+                    state.handlers.get(0).onFailure(node, new NodeNotConnectedException(node, "node left the cluster"));
+                    return;
+                }
+                if (pending != null) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("[{}] didn't process cluster state version {} yet, replacing queued version {} with {}", node, sending.version, pending.version, state.version);
+                    }
+                    state.handlers.addAll(0, pending.handlers);
+                }
+                if (sending != null) {
+                    pending = state;
+                    TimeValue publishTimeout = discoverySettings.getPublishTimeout();
+                    long lag = System.currentTimeMillis() - sendingSince;
+                    if (publishTimeout.millis() > 0 && lag > publishTimeout.millis()) {
+                        logger.debug("[{}] didn't process cluster state version {} after [{}], timeout {}", node, sending.version, TimeValue.timeValueMillis(lag), publishTimeout);
+                    }
+                    return;
+                }
+                sending = state;
+                sendingSince = System.currentTimeMillis();
+            }
+            send(state);
+        }
+
+        void close(String reason) {
+            PendingState dropped;
+            synchronized (this) {
+                closed = true;
+                dropped = pending;
+                pending = null;
+            }
+            if (dropped != null) {
+                onFailure(dropped, new NodeNotConnectedException(node, reason));
+            }
+        }
+
+        private void send(final PendingState state) {
             try {
                 TransportRequestOptions options = TransportRequestOptions.options().withType(TransportRequestOptions.Type.STATE).withCompress(false);
                 // no need to put a timeout on the options here, because we want the response to eventually be received
                 // and not log an error if it arrives after the timeout
                 transportService.sendRequest(node, PublishClusterStateRequestHandler.ACTION,
-                        new BytesTransportRequest(bytes, node.version()),
+                        new BytesTransportRequest(state.bytes, node.version()),
                         options, // no need to compress, we already compressed the bytes
 
                         new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
 
                             @Override
                             public void handleResponse(TransportResponse.Empty response) {
-                                publishResponseHandler.onResponse(node);
+                                for (ClusterStatePublishResponseHandler handler : state.handlers) {
+                                    handler.onResponse(node);
+                                }
+                                sendNext();
                             }
 
                             @Override
                             public void handleException(TransportException exp) {
                                 logger.debug("failed to send cluster state to [{}]", exp, node);
-                                publishResponseHandler.onFailure(node, exp);
+                                onFailure(state, exp);
+                                sendNext();
                             }
                         });
             } catch (Throwable t) {
                 logger.debug("error sending cluster state to [{}]", t, node);
-                publishResponseHandler.onFailure(node, t);
+                onFailure(state, t);
+                sendNext();
             }
         }
 
-        TimeValue publishTimeout = discoverySettings.getPublishTimeout();
-        if (publishTimeout.millis() > 0) {
-            // only wait if the publish timeout is configured...
-            try {
-                boolean awaited = publishResponseHandler.awaitAllNodes(publishTimeout);
-                if (!awaited) {
-                    logger.debug("awaiting all nodes to process published state {} timed out, timeout {}", clusterState.version(), publishTimeout);
-                }
-            } catch (InterruptedException e) {
-                // ignore & restore interrupt
-                Thread.currentThread().interrupt();
+        private void sendNext() {
+            PendingState next;
+            synchronized (this) {
+                next = pending;
+                pending = null;
+                sending = next;
+                sendingSince = System.currentTimeMillis();
+            }
+            if (next != null) {
+                send(next);
+            }
+        }
+
+        private void onFailure(PendingState state, Throwable t) {
+            for (ClusterStatePublishResponseHandler handler : state.handlers) {
+                handler.onFailure(node, t);
             }
         }
     }
@@ -30,6 +30,8 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.RoutingService;
+import org.elasticsearch.cluster.routing.allocation.allocator.GatewayAllocator;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Module;
@@ -62,7 +64,7 @@ public class LocalGateway extends AbstractLifecycleComponent<Gateway> implements
     @Inject
     public LocalGateway(Settings settings, ClusterService clusterService, NodeEnvironment nodeEnv,
                         LocalGatewayShardsState shardsState, LocalGatewayMetaState metaState,
-                        TransportNodesListGatewayMetaState listGatewayMetaState) {
+                        TransportNodesListGatewayMetaState listGatewayMetaState, GatewayAllocator gatewayAllocator, RoutingService routingService) {
         super(settings);
         this.clusterService = clusterService;
         this.nodeEnv = nodeEnv;
@@ -71,6 +73,10 @@ public class LocalGateway extends AbstractLifecycleComponent<Gateway> implements
 
         this.shardsState = shardsState;
 
+        if (gatewayAllocator instanceof LocalGatewayAllocator) {
+            ((LocalGatewayAllocator) gatewayAllocator).setReallocation(routingService);
+        }
+
         clusterService.addLast(this);
 
         // we define what is our minimum "master" nodes, use that to allow for recovery
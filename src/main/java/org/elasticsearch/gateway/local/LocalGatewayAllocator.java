@@ -23,21 +23,26 @@ import com.carrotsearch.hppc.ObjectLongOpenHashMap;
 import com.carrotsearch.hppc.ObjectOpenHashSet;
 import com.carrotsearch.hppc.cursors.ObjectCursor;
 import com.carrotsearch.hppc.predicates.ObjectPredicate;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.MutableShardRouting;
 import org.elasticsearch.cluster.routing.RoutingNode;
 import org.elasticsearch.cluster.routing.RoutingNodes;
+import org.elasticsearch.cluster.routing.RoutingService;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.FailedRerouteAllocation;
 import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
 import org.elasticsearch.cluster.routing.allocation.StartedRerouteAllocation;
 import org.elasticsearch.cluster.routing.allocation.allocator.GatewayAllocator;
 import org.elasticsearch.cluster.routing.allocation.decider.Decision;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -50,7 +55,9 @@ import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.indices.store.TransportNodesListShardStoreMetaData;
 import org.elasticsearch.transport.ConnectTransportException;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
@@ -68,7 +75,12 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
 
     private final ConcurrentMap<ShardId, Map<DiscoveryNode, TransportNodesListShardStoreMetaData.StoreFilesMetaData>> cachedStores = ConcurrentCollections.newConcurrentMap();
 
-    private final ConcurrentMap<ShardId, ObjectLongOpenHashMap<DiscoveryNode>> cachedShardsState = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<ShardId, ShardStates> cachedShardsState = ConcurrentCollections.newConcurrentMap();
+
+    // guards the shard states, which are updated as the nodes respond
+    private final Object fetchMutex = new Object();
+
+    private volatile RoutingService routingService;
 
     private final TimeValue listTimeout;
 
@@ -87,11 +99,21 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
         logger.debug("using initial_shards [{}], list_timeout [{}]", initialShards, listTimeout);
     }
 
+    /**
+     * Sets the routing service used to reroute once shard states were fetched. It can't be injected since the
+     * routing service depends on the allocators.
+     */
+    public void setReallocation(RoutingService routingService) {
+        this.routingService = routingService;
+    }
+
     @Override
     public void applyStartedShards(StartedRerouteAllocation allocation) {
         for (ShardRouting shardRouting : allocation.startedShards()) {
             cachedStores.remove(shardRouting.shardId());
-            cachedShardsState.remove(shardRouting.shardId());
+            synchronized (fetchMutex) {
+                cachedShardsState.remove(shardRouting.shardId());
+            }
         }
     }
 
@@ -99,7 +121,9 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
     public void applyFailedShards(FailedRerouteAllocation allocation) {
         for (ShardRouting failedShard : allocation.failedShards()) {
             cachedStores.remove(failedShard.shardId());
-            cachedShardsState.remove(failedShard.shardId());
+            synchronized (fetchMutex) {
+                cachedShardsState.remove(failedShard.shardId());
+            }
         }
     }
 
@@ -110,6 +134,7 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
         RoutingNodes routingNodes = allocation.routingNodes();
 
         // First, handle primaries, they must find a place to be allocated on here
+        fetchShardStates(nodes, routingNodes);
         Iterator<MutableShardRouting> unassignedIterator = routingNodes.unassigned().iterator();
         while (unassignedIterator.hasNext()) {
             MutableShardRouting shard = unassignedIterator.next();
@@ -123,7 +148,16 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
                 continue;
             }
 
-            ObjectLongOpenHashMap<DiscoveryNode> nodesState = buildShardStates(nodes, shard);
+            ObjectLongOpenHashMap<DiscoveryNode> nodesState = buildShardStates(shard);
+            if (nodesState == null) {
+                // we will reroute once the nodes reported the state of the shard
+                unassignedIterator.remove();
+                routingNodes.ignoredUnassigned().add(shard);
+                if (logger.isTraceEnabled()) {
+                    logger.trace("[{}][{}]: not allocating, still fetching the shard state from the nodes", shard.index(), shard.id());
+                }
+                continue;
+            }
 
             int numberOfAllocationsFound = 0;
             long highestVersion = -1;
@@ -360,55 +394,115 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
         return changed;
     }
 
-    private ObjectLongOpenHashMap<DiscoveryNode> buildShardStates(final DiscoveryNodes nodes, MutableShardRouting shard) {
-        ObjectLongOpenHashMap<DiscoveryNode> shardStates = cachedShardsState.get(shard.shardId());
-        ObjectOpenHashSet<String> nodeIds;
-        if (shardStates == null) {
-            shardStates = new ObjectLongOpenHashMap<DiscoveryNode>();
-            cachedShardsState.put(shard.shardId(), shardStates);
-            nodeIds = ObjectOpenHashSet.from(nodes.dataNodes().keys());
-        } else {
-            // clean nodes that have failed
-            shardStates.keys().removeAll(new ObjectPredicate<DiscoveryNode>() {
-                @Override
-                public boolean apply(DiscoveryNode node) {
-                    return !nodes.nodeExists(node.id());
+    /**
+     * Starts fetching the state of the unassigned primaries from the data nodes that didn't report it yet. The
+     * primaries that miss the same nodes are fetched together, with a single request per node, and a reroute is
+     * issued once the states arrive, so the cluster state update thread never waits on the nodes.
+     */
+    private void fetchShardStates(DiscoveryNodes nodes, RoutingNodes routingNodes) {
+        Map<Set<String>, List<ShardId>> shardsPerMissingNodes = Maps.newHashMap();
+        List<ShardStatesFetch> fetches = Lists.newArrayList();
+        synchronized (fetchMutex) {
+            for (MutableShardRouting shard : routingNodes.unassigned()) {
+                if (!shard.primary() || !routingNodes.routingTable().index(shard.index()).shard(shard.id()).primaryAllocatedPostApi()) {
+                    continue;
                 }
-            });
-            nodeIds = ObjectOpenHashSet.newInstance();
-            // we have stored cached from before, see if the nodes changed, if they have, go fetch again
-            for (ObjectCursor<DiscoveryNode> cursor : nodes.dataNodes().values()) {
-                DiscoveryNode node = cursor.value;
-                if (!shardStates.containsKey(node)) {
-                    nodeIds.add(node.id());
+                ShardStates shardStates = cachedShardsState.get(shard.shardId());
+                if (shardStates == null) {
+                    shardStates = new ShardStates();
+                    cachedShardsState.put(shard.shardId(), shardStates);
+                } else {
+                    shardStates.removeNodesThatLeft(nodes);
+                }
+                Set<String> missingNodes = Sets.newHashSet();
+                for (ObjectCursor<DiscoveryNode> cursor : nodes.dataNodes().values()) {
+                    DiscoveryNode node = cursor.value;
+                    if (!shardStates.versions.containsKey(node) && !shardStates.fetching.containsKey(node.id())) {
+                        missingNodes.add(node.id());
+                    }
+                }
+                if (missingNodes.isEmpty()) {
+                    continue;
+                }
+                List<ShardId> shardIds = shardsPerMissingNodes.get(missingNodes);
+                if (shardIds == null) {
+                    shardIds = Lists.newArrayList();
+                    shardsPerMissingNodes.put(missingNodes, shardIds);
+                }
+                shardIds.add(shard.shardId());
+            }
+
+            for (Map.Entry<Set<String>, List<ShardId>> entry : shardsPerMissingNodes.entrySet()) {
+                List<String> batchNodes = Lists.newArrayList();
+                List<String> singleShardNodes = Lists.newArrayList();
+                for (String nodeId : entry.getKey()) {
+                    if (nodes.get(nodeId).version().onOrAfter(Version.V_2_0_0)) {
+                        batchNodes.add(nodeId);
+                    } else {
+                        singleShardNodes.add(nodeId);
+                    }
+                }
+                ShardId[] shardIds = entry.getValue().toArray(new ShardId[entry.getValue().size()]);
+                if (!batchNodes.isEmpty()) {
+                    fetches.add(new ShardStatesFetch(shardIds, batchNodes.toArray(new String[batchNodes.size()])));
+                }
+                if (!singleShardNodes.isEmpty()) {
+                    // older nodes can only be asked for one shard at a time
+                    String[] nodeIds = singleShardNodes.toArray(new String[singleShardNodes.size()]);
+                    for (ShardId shardId : shardIds) {
+                        fetches.add(new ShardStatesFetch(new ShardId[]{shardId}, nodeIds));
+                    }
+                }
+            }
+            for (ShardStatesFetch fetch : fetches) {
+                for (ShardId shardId : fetch.shardIds) {
+                    ShardStates shardStates = cachedShardsState.get(shardId);
+                    for (String nodeId : fetch.nodeIds) {
+                        shardStates.fetching.put(nodeId, fetch);
+                    }
                 }
             }
         }
-        if (nodeIds.isEmpty()) {
-            return shardStates;
+
+        for (ShardStatesFetch fetch : fetches) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("fetching the state of [{}] shards from nodes {}", fetch.shardIds.length, Arrays.toString(fetch.nodeIds));
+            }
+            listGatewayStartedShards.list(fetch.shardIds, fetch.nodeIds, listTimeout, fetch);
         }
+    }
 
-        String[] nodesIdsArray = nodeIds.toArray(String.class);
-        TransportNodesListGatewayStartedShards.NodesLocalGatewayStartedShards response = listGatewayStartedShards.list(shard.shardId(), nodesIdsArray, listTimeout).actionGet();
-        if (logger.isDebugEnabled()) {
-            if (response.failures().length > 0) {
-                StringBuilder sb = new StringBuilder(shard + ": failures when trying to list shards on nodes:");
-                for (int i = 0; i < response.failures().length; i++) {
-                    Throwable cause = ExceptionsHelper.unwrapCause(response.failures()[i]);
-                    if (cause instanceof ConnectTransportException) {
-                        continue;
-                    }
-                    sb.append("\n    -> ").append(response.failures()[i].getDetailedMessage());
+    /**
+     * @return A copy of the shard versions reported by the nodes, or <tt>null</tt> if some nodes are asked for the
+     *         state of the shard for the first time and didn't respond yet
+     */
+    @Nullable
+    private ObjectLongOpenHashMap<DiscoveryNode> buildShardStates(MutableShardRouting shard) {
+        synchronized (fetchMutex) {
+            ShardStates shardStates = cachedShardsState.get(shard.shardId());
+            if (shardStates == null) {
+                return null;
+            }
+            for (String nodeId : shardStates.fetching.keySet()) {
+                // nodes that failed before are asked again, but we don't wait for them
+                if (!shardStates.failed.contains(nodeId)) {
+                    return null;
                 }
-                logger.debug(sb.toString());
             }
+            return shardStates.versions.clone();
         }
+    }
 
-        for (TransportNodesListGatewayStartedShards.NodeLocalGatewayStartedShards nodeShardState : response) {
-            // -1 version means it does not exists, which is what the API returns, and what we expect to
-            shardStates.put(nodeShardState.getNode(), nodeShardState.version());
+    private void reroute(String reason, boolean now) {
+        RoutingService routingService = this.routingService;
+        if (routingService == null) {
+            return;
+        }
+        if (now) {
+            routingService.reroute(reason);
+        } else {
+            routingService.scheduleReroute(reason);
         }
-        return shardStates;
     }
 
     private Map<DiscoveryNode, TransportNodesListShardStoreMetaData.StoreFilesMetaData> buildShardStores(DiscoveryNodes nodes, MutableShardRouting shard) {
@@ -462,4 +556,142 @@ public class LocalGatewayAllocator extends AbstractComponent implements GatewayA
 
         return shardStores;
     }
+
+    /**
+     * The state of a shard on the nodes, cached until the shard is started or fails, or the node leaves.
+     */
+    static class ShardStates {
+
+        // the version of the shard on each node that reported it, -1 if the node doesn't have the shard
+        final ObjectLongOpenHashMap<DiscoveryNode> versions = new ObjectLongOpenHashMap<DiscoveryNode>();
+
+        // the nodes that are being asked for the state of the shard
+        final Map<String, ShardStatesFetch> fetching = Maps.newHashMap();
+
+        // the nodes that failed to report the state of the shard the last time they were asked
+        final Set<String> failed = Sets.newHashSet();
+
+        void removeNodesThatLeft(final DiscoveryNodes nodes) {
+            versions.keys().removeAll(new ObjectPredicate<DiscoveryNode>() {
+                @Override
+                public boolean apply(DiscoveryNode node) {
+                    return !nodes.nodeExists(node.id());
+                }
+            });
+            for (Iterator<String> it = fetching.keySet().iterator(); it.hasNext(); ) {
+                if (!nodes.nodeExists(it.next())) {
+                    it.remove();
+                }
+            }
+            for (Iterator<String> it = failed.iterator(); it.hasNext(); ) {
+                if (!nodes.nodeExists(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * A request for the state of several shards on several nodes. The response is only applied to the shards that
+     * still wait for this request, shards that were started or failed in the meantime are fetched again.
+     */
+    class ShardStatesFetch implements ActionListener<TransportNodesListGatewayStartedShards.NodesLocalGatewayStartedShards> {
+
+        static final int FAILED_AGAIN = 1;
+        static final int FAILED_FIRST_TIME = 2;
+
+        final ShardId[] shardIds;
+        final String[] nodeIds;
+
+        ShardStatesFetch(ShardId[] shardIds, String[] nodeIds) {
+            this.shardIds = shardIds;
+            this.nodeIds = nodeIds;
+        }
+
+        @Override
+        public void onResponse(TransportNodesListGatewayStartedShards.NodesLocalGatewayStartedShards response) {
+            if (logger.isDebugEnabled()) {
+                if (response.failures().length > 0) {
+                    StringBuilder sb = new StringBuilder("failures when trying to list [" + shardIds.length + "] shards on nodes:");
+                    for (int i = 0; i < response.failures().length; i++) {
+                        Throwable cause = ExceptionsHelper.unwrapCause(response.failures()[i]);
+                        if (cause instanceof ConnectTransportException) {
+                            continue;
+                        }
+                        sb.append("\n    -> ").append(response.failures()[i].getDetailedMessage());
+                    }
+                    logger.debug(sb.toString());
+                }
+            }
+
+            boolean reroute = false;
+            int failures;
+            synchronized (fetchMutex) {
+                for (TransportNodesListGatewayStartedShards.NodeLocalGatewayStartedShards nodeShardStates : response) {
+                    DiscoveryNode node = nodeShardStates.getNode();
+                    for (int i = 0; i < shardIds.length; i++) {
+                        ShardStates shardStates = waitingShardStates(shardIds[i], node.id());
+                        if (shardStates != null) {
+                            shardStates.fetching.remove(node.id());
+                            shardStates.failed.remove(node.id());
+                            // -1 version means it does not exists, which is what the API returns, and what we expect to
+                            shardStates.versions.put(node, nodeShardStates.version(i));
+                            reroute = true;
+                        }
+                    }
+                }
+                // whatever is left failed
+                failures = failed();
+            }
+            onFetched(reroute, failures);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            logger.warn("failed to list the state of [{}] shards on nodes {}", e, shardIds.length, Arrays.toString(nodeIds));
+            int failures;
+            synchronized (fetchMutex) {
+                failures = failed();
+            }
+            onFetched(false, failures);
+        }
+
+        private void onFetched(boolean updated, int failures) {
+            if (updated || failures == FAILED_FIRST_TIME) {
+                reroute("async_shard_fetch", true);
+            } else if (failures == FAILED_AGAIN) {
+                // nodes that just joined might not be connected yet, retry with the next scheduled reroute
+                reroute("async_shard_fetch_retry", false);
+            }
+        }
+
+        /**
+         * Marks the nodes that are still waited for as failed.
+         *
+         * @return {@link #FAILED_FIRST_TIME} if a node failed for the first time, which unblocks the allocation of
+         *         the shard, {@link #FAILED_AGAIN} if only nodes that failed before failed, and <tt>0</tt> otherwise
+         */
+        private int failed() {
+            int failures = 0;
+            for (ShardId shardId : shardIds) {
+                for (String nodeId : nodeIds) {
+                    ShardStates shardStates = waitingShardStates(shardId, nodeId);
+                    if (shardStates != null) {
+                        shardStates.fetching.remove(nodeId);
+                        failures = Math.max(failures, shardStates.failed.add(nodeId) ? FAILED_FIRST_TIME : FAILED_AGAIN);
+                    }
+                }
+            }
+            return failures;
+        }
+
+        @Nullable
+        private ShardStates waitingShardStates(ShardId shardId, String nodeId) {
+            ShardStates shardStates = cachedShardsState.get(shardId);
+            if (shardStates == null || shardStates.fetching.get(nodeId) != this) {
+                return null;
+            }
+            return shardStates;
+        }
+    }
 }
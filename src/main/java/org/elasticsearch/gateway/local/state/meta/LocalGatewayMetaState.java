@@ -21,7 +21,6 @@ package org.elasticsearch.gateway.local.state.meta;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.ClusterChangedEvent;
@@ -31,7 +30,6 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.FileSystemUtils;
@@ -41,6 +39,7 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.Index;
@@ -48,18 +47,31 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledFuture;
 
 /**
- *
+ * Persists the metadata on master eligible nodes and handles dangling indices. The global state is stored under
+ * <tt>_state/global-{version}</tt> of the node data locations and the state of each index under
+ * <tt>_state/state-{version}</tt> of its index locations, see {@link MetaDataStateFormat} for the file format.
+ * <p/>
+ * Only the states that changed are written. A <tt>_state/manifest-{generation}</tt> file then commits the versions
+ * of the global and index states that make up the metadata, so that loading the state only reads the committed
+ * files. The previous versions are deleted once a manifest that no longer points to them has been written.
  */
 public class LocalGatewayMetaState extends AbstractComponent implements ClusterStateListener {
 
+    static final String GLOBAL_STATE_PREFIX = "global-";
+
+    static final String INDEX_STATE_PREFIX = "state-";
+
+    static final String MANIFEST_PREFIX = "manifest-";
+
     static enum AutoImportDangledState {
         NO() {
             @Override
@@ -104,6 +116,10 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
     @Nullable
     private volatile MetaData currentMetaData;
 
+    // the last manifest written or loaded on startup, only maintained on master eligible nodes
+    @Nullable
+    private volatile Manifest manifest;
+
     private final XContentType format;
     private final ToXContent.Params formatParams;
     private final ToXContent.Params globalOnlyFormatParams;
@@ -150,6 +166,7 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
             try {
                 pre019Upgrade();
                 long start = System.currentTimeMillis();
+                manifest = loadManifest();
                 loadState();
                 logger.debug("took {} to load state", TimeValue.timeValueMillis(System.currentTimeMillis() - start));
             } catch (Exception e) {
@@ -181,20 +198,33 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
         boolean success = true;
         // only applied to master node, writing the global and index level states
         if (event.state().nodes().localNode().masterNode()) {
+            final Manifest previousManifest = manifest;
+            long globalVersion = previousManifest == null ? -1 : previousManifest.globalVersion;
+            boolean globalWritten = false;
             // check if the global state changed?
             if (currentMetaData == null || !MetaData.isGlobalStateEquals(currentMetaData, newMetaData)) {
                 try {
-                    writeGlobalState("changed", newMetaData, currentMetaData);
+                    writeGlobalState("changed", newMetaData);
+                    globalVersion = newMetaData.version();
+                    globalWritten = true;
                 } catch (Throwable e) {
                     success = false;
                 }
             }
 
-            // check and write changes in indices
+            // check and write changes in indices, only the indices that changed are written
+            Map<String, Long> indexVersions = Maps.newHashMap();
+            List<IndexMetaData> replacedIndices = Lists.newArrayList();
             for (IndexMetaData indexMetaData : newMetaData) {
+                Long committedVersion = previousManifest == null ? null : previousManifest.indices.get(indexMetaData.index());
                 String writeReason = null;
                 IndexMetaData currentIndexMetaData;
                 if (currentMetaData == null) {
+                    if (committedVersion != null && committedVersion == indexMetaData.version()) {
+                        // the manifest already points to this version, no need to load it
+                        indexVersions.put(indexMetaData.index(), committedVersion);
+                        continue;
+                    }
                     // a new event..., check from the state stored
                     currentIndexMetaData = loadIndex(indexMetaData.index());
                 } else {
@@ -208,12 +238,38 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
 
                 // we update the writeReason only if we really need to write it
                 if (writeReason == null) {
+                    indexVersions.put(indexMetaData.index(), indexMetaData.version());
                     continue;
                 }
 
                 try {
-                    writeIndex(writeReason, indexMetaData, currentIndexMetaData);
+                    writeIndex(writeReason, indexMetaData);
+                    indexVersions.put(indexMetaData.index(), indexMetaData.version());
+                    if (currentIndexMetaData != null) {
+                        replacedIndices.add(indexMetaData);
+                    }
+                } catch (Throwable e) {
+                    success = false;
+                    if (committedVersion != null) {
+                        indexVersions.put(indexMetaData.index(), committedVersion);
+                    }
+                }
+            }
+
+            // commit the new generations, the previous ones are deleted once the manifest no longer points to them
+            Manifest newManifest = new Manifest(previousManifest == null ? 0 : previousManifest.generation + 1, globalVersion, indexVersions);
+            if (previousManifest == null || !newManifest.isSameState(previousManifest)) {
+                try {
+                    writeManifest(newManifest);
+                    manifest = newManifest;
+                    if (globalWritten) {
+                        MetaDataStateFormat.deleteOtherGenerations(GLOBAL_STATE_PREFIX, globalVersion, nodeStateLocations());
+                    }
+                    for (IndexMetaData indexMetaData : replacedIndices) {
+                        MetaDataStateFormat.deleteOtherGenerations(INDEX_STATE_PREFIX, indexMetaData.version(), indexStateLocations(indexMetaData.index()));
+                    }
                 } catch (Throwable e) {
+                    logger.warn("[_manifest]: failed to write manifest", e);
                     success = false;
                 }
             }
@@ -336,63 +392,22 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
         }
     }
 
-    private void writeIndex(String reason, IndexMetaData indexMetaData, @Nullable IndexMetaData previousIndexMetaData) throws Exception {
+    private void writeIndex(String reason, IndexMetaData indexMetaData) throws Exception {
         logger.trace("[{}] writing state, reason [{}]", indexMetaData.index(), reason);
         XContentBuilder builder = XContentFactory.contentBuilder(format, new BytesStreamOutput());
         builder.startObject();
         IndexMetaData.Builder.toXContent(indexMetaData, builder, formatParams);
         builder.endObject();
         builder.flush();
-
-        String stateFileName = "state-" + indexMetaData.version();
-        Throwable lastFailure = null;
-        boolean wroteAtLeastOnce = false;
-        for (File indexLocation : nodeEnv.indexLocations(new Index(indexMetaData.index()))) {
-            File stateLocation = new File(indexLocation, "_state");
-            FileSystemUtils.mkdirs(stateLocation);
-            File stateFile = new File(stateLocation, stateFileName);
-
-            FileOutputStream fos = null;
-            try {
-                fos = new FileOutputStream(stateFile);
-                BytesReference bytes = builder.bytes();
-                fos.write(bytes.array(), bytes.arrayOffset(), bytes.length());
-                fos.getChannel().force(true);
-                fos.close();
-                wroteAtLeastOnce = true;
-            } catch (Throwable e) {
-                lastFailure = e;
-            } finally {
-                IOUtils.closeWhileHandlingException(fos);
-            }
-        }
-
-        if (!wroteAtLeastOnce) {
-            logger.warn("[{}]: failed to state", lastFailure, indexMetaData.index());
-            throw new IOException("failed to write state for [" + indexMetaData.index() + "]", lastFailure);
-        }
-
-        // delete the old files
-        if (previousIndexMetaData != null && previousIndexMetaData.version() != indexMetaData.version()) {
-            for (File indexLocation : nodeEnv.indexLocations(new Index(indexMetaData.index()))) {
-                File[] files = new File(indexLocation, "_state").listFiles();
-                if (files == null) {
-                    continue;
-                }
-                for (File file : files) {
-                    if (!file.getName().startsWith("state-")) {
-                        continue;
-                    }
-                    if (file.getName().equals(stateFileName)) {
-                        continue;
-                    }
-                    file.delete();
-                }
-            }
+        try {
+            MetaDataStateFormat.write(builder.bytes(), INDEX_STATE_PREFIX, indexMetaData.version(), indexStateLocations(indexMetaData.index()));
+        } catch (IOException e) {
+            logger.warn("[{}]: failed to state", e, indexMetaData.index());
+            throw new IOException("failed to write state for [" + indexMetaData.index() + "]", e);
         }
     }
 
-    private void writeGlobalState(String reason, MetaData metaData, @Nullable MetaData previousMetaData) throws Exception {
+    private void writeGlobalState(String reason, MetaData metaData) throws Exception {
         logger.trace("[_global] writing state, reason [{}]", reason);
 
         XContentBuilder builder = XContentFactory.contentBuilder(format);
@@ -400,54 +415,47 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
         MetaData.Builder.toXContent(metaData, builder, globalOnlyFormatParams);
         builder.endObject();
         builder.flush();
-        String globalFileName = "global-" + metaData.version();
-        Throwable lastFailure = null;
-        boolean wroteAtLeastOnce = false;
-        for (File dataLocation : nodeEnv.nodeDataLocations()) {
-            File stateLocation = new File(dataLocation, "_state");
-            FileSystemUtils.mkdirs(stateLocation);
-            File stateFile = new File(stateLocation, globalFileName);
-
-            FileOutputStream fos = null;
-            try {
-                fos = new FileOutputStream(stateFile);
-                BytesReference bytes = builder.bytes();
-                fos.write(bytes.array(), bytes.arrayOffset(), bytes.length());
-                fos.getChannel().force(true);
-                fos.close();
-                wroteAtLeastOnce = true;
-            } catch (Throwable e) {
-                lastFailure = e;
-            } finally {
-                IOUtils.closeWhileHandlingException(fos);
-            }
+        try {
+            MetaDataStateFormat.write(builder.bytes(), GLOBAL_STATE_PREFIX, metaData.version(), nodeStateLocations());
+        } catch (IOException e) {
+            logger.warn("[_global]: failed to write global state", e);
+            throw new IOException("failed to write global state", e);
         }
+    }
+
+    private void writeManifest(Manifest manifest) throws Exception {
+        logger.trace("[_manifest] writing generation [{}]", manifest.generation);
+
+        XContentBuilder builder = XContentFactory.contentBuilder(format);
+        builder.startObject();
+        manifest.toXContent(builder);
+        builder.endObject();
+        builder.flush();
+        MetaDataStateFormat.write(builder.bytes(), MANIFEST_PREFIX, manifest.generation, nodeStateLocations());
+        MetaDataStateFormat.deleteOtherGenerations(MANIFEST_PREFIX, manifest.generation, nodeStateLocations());
+    }
 
-        if (!wroteAtLeastOnce) {
-            logger.warn("[_global]: failed to write global state", lastFailure);
-            throw new IOException("failed to write global state", lastFailure);
+    private File[] nodeStateLocations() {
+        File[] dataLocations = nodeEnv.nodeDataLocations();
+        File[] stateLocations = new File[dataLocations.length];
+        for (int i = 0; i < dataLocations.length; i++) {
+            stateLocations[i] = new File(dataLocations[i], "_state");
         }
+        return stateLocations;
+    }
 
-        // delete the old files
-        for (File dataLocation : nodeEnv.nodeDataLocations()) {
-            File[] files = new File(dataLocation, "_state").listFiles();
-            if (files == null) {
-                continue;
-            }
-            for (File file : files) {
-                if (!file.getName().startsWith("global-")) {
-                    continue;
-                }
-                if (file.getName().equals(globalFileName)) {
-                    continue;
-                }
-                file.delete();
-            }
+    private File[] indexStateLocations(String index) {
+        File[] indexLocations = nodeEnv.indexLocations(new Index(index));
+        File[] stateLocations = new File[indexLocations.length];
+        for (int i = 0; i < indexLocations.length; i++) {
+            stateLocations[i] = new File(indexLocations[i], "_state");
         }
+        return stateLocations;
     }
 
     private MetaData loadState() throws Exception {
-        MetaData globalMetaData = loadGlobalState();
+        Manifest manifest = loadManifest();
+        MetaData globalMetaData = loadGlobalState(manifest);
         MetaData.Builder metaDataBuilder;
         if (globalMetaData != null) {
             metaDataBuilder = MetaData.builder(globalMetaData);
@@ -456,8 +464,9 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
         }
 
         Set<String> indices = nodeEnv.findAllIndices();
+        Map<String, IndexMetaData> indicesMetaData = loadIndices(indices, manifest);
         for (String index : indices) {
-            IndexMetaData indexMetaData = loadIndex(index);
+            IndexMetaData indexMetaData = indicesMetaData.get(index);
             if (indexMetaData == null) {
                 logger.debug("[{}] failed to find metadata for existing index location", index);
             } else {
@@ -467,96 +476,154 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
         return metaDataBuilder.build();
     }
 
-    @Nullable
-    private IndexMetaData loadIndex(String index) {
-        long highestVersion = -1;
-        IndexMetaData indexMetaData = null;
-        for (File indexLocation : nodeEnv.indexLocations(new Index(index))) {
-            File stateDir = new File(indexLocation, "_state");
-            if (!stateDir.exists() || !stateDir.isDirectory()) {
-                continue;
-            }
-            // now, iterate over the current versions, and find latest one
-            File[] stateFiles = stateDir.listFiles();
-            if (stateFiles == null) {
-                continue;
-            }
-            for (File stateFile : stateFiles) {
-                if (!stateFile.getName().startsWith("state-")) {
-                    continue;
+    /**
+     * Loads the state of the provided indices, using up to one thread per processor since every index has its own
+     * state files.
+     */
+    private Map<String, IndexMetaData> loadIndices(Set<String> indices, @Nullable final Manifest manifest) throws InterruptedException {
+        final Map<String, IndexMetaData> indicesMetaData = ConcurrentCollections.newConcurrentMap();
+        final Queue<String> toLoad = ConcurrentCollections.newQueue();
+        toLoad.addAll(indices);
+        int concurrency = Math.min(indices.size(), EsExecutors.boundedNumberOfProcessors(settings));
+        if (concurrency <= 1) {
+            for (String index : indices) {
+                IndexMetaData indexMetaData = loadIndex(index, manifest);
+                if (indexMetaData != null) {
+                    indicesMetaData.put(index, indexMetaData);
                 }
-                try {
-                    long version = Long.parseLong(stateFile.getName().substring("state-".length()));
-                    if (version > highestVersion) {
-                        byte[] data = Streams.copyToByteArray(new FileInputStream(stateFile));
-                        if (data.length == 0) {
-                            logger.debug("[{}]: no data for [" + stateFile.getAbsolutePath() + "], ignoring...", index);
-                            continue;
-                        }
-                        XContentParser parser = null;
-                        try {
-                            parser = XContentHelper.createParser(data, 0, data.length);
-                            parser.nextToken(); // move to START_OBJECT
-                            indexMetaData = IndexMetaData.Builder.fromXContent(parser);
-                            highestVersion = version;
-                        } finally {
-                            if (parser != null) {
-                                parser.close();
+            }
+            return indicesMetaData;
+        }
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            threadPool.generic().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String index;
+                        while ((index = toLoad.poll()) != null) {
+                            IndexMetaData indexMetaData = loadIndex(index, manifest);
+                            if (indexMetaData != null) {
+                                indicesMetaData.put(index, indexMetaData);
                             }
                         }
+                    } finally {
+                        latch.countDown();
                     }
-                } catch (Throwable e) {
-                    logger.debug("[{}]: failed to read [" + stateFile.getAbsolutePath() + "], ignoring...", e, index);
                 }
-            }
+            });
         }
-        return indexMetaData;
+        latch.await();
+        return indicesMetaData;
     }
 
-    private MetaData loadGlobalState() {
-        long highestVersion = -1;
-        MetaData metaData = null;
-        for (File dataLocation : nodeEnv.nodeDataLocations()) {
-            File stateLocation = new File(dataLocation, "_state");
-            if (!stateLocation.exists()) {
-                continue;
+    @Nullable
+    private IndexMetaData loadIndex(String index) {
+        return loadIndex(index, null);
+    }
+
+    @Nullable
+    private IndexMetaData loadIndex(final String index, @Nullable Manifest manifest) {
+        Long generation = manifest == null ? null : manifest.indices.get(index);
+        return loadLatestState(INDEX_STATE_PREFIX, indexStateLocations(index), generation == null ? -1 : generation, new StateReader<IndexMetaData>() {
+            @Override
+            public IndexMetaData fromXContent(XContentParser parser) throws IOException {
+                parser.nextToken(); // move to START_OBJECT
+                return IndexMetaData.Builder.fromXContent(parser);
             }
-            File[] stateFiles = stateLocation.listFiles();
-            if (stateFiles == null) {
-                continue;
+
+            @Override
+            public String name() {
+                return index;
             }
-            for (File stateFile : stateFiles) {
-                String name = stateFile.getName();
-                if (!name.startsWith("global-")) {
-                    continue;
+        });
+    }
+
+    @Nullable
+    private MetaData loadGlobalState(@Nullable Manifest manifest) {
+        return loadLatestState(GLOBAL_STATE_PREFIX, nodeStateLocations(), manifest == null ? -1 : manifest.globalVersion, new StateReader<MetaData>() {
+            @Override
+            public MetaData fromXContent(XContentParser parser) throws IOException {
+                return MetaData.Builder.fromXContent(parser);
+            }
+
+            @Override
+            public String name() {
+                return "_global";
+            }
+        });
+    }
+
+    @Nullable
+    private Manifest loadManifest() {
+        File[] stateLocations = nodeStateLocations();
+        for (final File stateFile : MetaDataStateFormat.listStateFiles(MANIFEST_PREFIX, stateLocations)) {
+            Manifest manifest = readState(stateFile, new StateReader<Manifest>() {
+                @Override
+                public Manifest fromXContent(XContentParser parser) throws IOException {
+                    return Manifest.fromXContent(parser, MetaDataStateFormat.generation(MANIFEST_PREFIX, stateFile));
                 }
-                try {
-                    long version = Long.parseLong(stateFile.getName().substring("global-".length()));
-                    if (version > highestVersion) {
-                        byte[] data = Streams.copyToByteArray(new FileInputStream(stateFile));
-                        if (data.length == 0) {
-                            logger.debug("[_global] no data for [" + stateFile.getAbsolutePath() + "], ignoring...");
-                            continue;
-                        }
 
-                        XContentParser parser = null;
-                        try {
-                            parser = XContentHelper.createParser(data, 0, data.length);
-                            metaData = MetaData.Builder.fromXContent(parser);
-                            highestVersion = version;
-                        } finally {
-                            if (parser != null) {
-                                parser.close();
-                            }
-                        }
+                @Override
+                public String name() {
+                    return "_manifest";
+                }
+            });
+            if (manifest != null) {
+                return manifest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads the state with the highest generation that can be read. The generation the manifest points to, if any,
+     * is tried first: state files with a higher generation were written after the manifest and were never committed.
+     */
+    @Nullable
+    private <T> T loadLatestState(String prefix, File[] stateLocations, long manifestGeneration, StateReader<T> reader) {
+        if (manifestGeneration >= 0) {
+            for (File stateLocation : stateLocations) {
+                File stateFile = new File(stateLocation, prefix + manifestGeneration);
+                if (stateFile.exists()) {
+                    T state = readState(stateFile, reader);
+                    if (state != null) {
+                        return state;
                     }
-                } catch (Throwable e) {
-                    logger.debug("failed to load global state from [{}]", e, stateFile.getAbsolutePath());
                 }
             }
+            logger.debug("[{}] failed to read generation [{}] referenced by the manifest, falling back to the latest readable state", reader.name(), manifestGeneration);
+        }
+        for (File stateFile : MetaDataStateFormat.listStateFiles(prefix, stateLocations)) {
+            T state = readState(stateFile, reader);
+            if (state != null) {
+                return state;
+            }
         }
+        return null;
+    }
 
-        return metaData;
+    @Nullable
+    private <T> T readState(File stateFile, StateReader<T> reader) {
+        try {
+            byte[] data = MetaDataStateFormat.read(stateFile);
+            if (data == null) {
+                logger.debug("[{}]: no data for [" + stateFile.getAbsolutePath() + "], ignoring...", reader.name());
+                return null;
+            }
+            XContentParser parser = null;
+            try {
+                parser = XContentHelper.createParser(data, 0, data.length);
+                return reader.fromXContent(parser);
+            } finally {
+                if (parser != null) {
+                    parser.close();
+                }
+            }
+        } catch (Throwable e) {
+            logger.debug("[{}]: failed to read [" + stateFile.getAbsolutePath() + "], ignoring...", e, reader.name());
+            return null;
+        }
     }
 
     private void pre019Upgrade() throws Exception {
@@ -625,12 +692,12 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
 
         logger.info("found old metadata state, loading metadata from [{}] and converting to new metadata location and strucutre...", metaDataFile.getAbsolutePath());
 
-        writeGlobalState("upgrade", MetaData.builder(metaData).version(version).build(), null);
+        writeGlobalState("upgrade", MetaData.builder(metaData).version(version).build());
         for (IndexMetaData indexMetaData : metaData) {
             IndexMetaData.Builder indexMetaDataBuilder = IndexMetaData.builder(indexMetaData).version(version);
             // set the created version to 0.18
             indexMetaDataBuilder.settings(ImmutableSettings.settingsBuilder().put(indexMetaData.settings()).put(IndexMetaData.SETTING_VERSION_CREATED, Version.V_0_18_0));
-            writeIndex("upgrade", indexMetaDataBuilder.build(), null);
+            writeIndex("upgrade", indexMetaDataBuilder.build());
         }
 
         // rename shards state to backup state
@@ -692,4 +759,77 @@ public class LocalGatewayMetaState extends AbstractComponent implements ClusterS
             this.future = future;
         }
     }
+
+    interface StateReader<T> {
+
+        T fromXContent(XContentParser parser) throws IOException;
+
+        /**
+         * @return The name of the state, used for logging.
+         */
+        String name();
+    }
+
+    /**
+     * Points to the generation of the global state and of the state of every index that were last committed. Only
+     * master eligible nodes write a manifest.
+     */
+    static class Manifest {
+        final long generation;
+        final long globalVersion;
+        final Map<String, Long> indices;
+
+        Manifest(long generation, long globalVersion, Map<String, Long> indices) {
+            this.generation = generation;
+            this.globalVersion = globalVersion;
+            this.indices = indices;
+        }
+
+        /**
+         * @return <tt>true</tt> if both manifests point to the same states, regardless of their generation
+         */
+        boolean isSameState(Manifest other) {
+            return globalVersion == other.globalVersion && indices.equals(other.indices);
+        }
+
+        void toXContent(XContentBuilder builder) throws IOException {
+            builder.field("global", globalVersion);
+            builder.startObject("indices");
+            for (Map.Entry<String, Long> entry : indices.entrySet()) {
+                builder.field(entry.getKey(), entry.getValue());
+            }
+            builder.endObject();
+        }
+
+        static Manifest fromXContent(XContentParser parser, long generation) throws IOException {
+            long globalVersion = -1;
+            Map<String, Long> indices = Maps.newHashMap();
+            String currentFieldName = null;
+            XContentParser.Token token = parser.nextToken();
+            if (token == XContentParser.Token.START_OBJECT) {
+                while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                    if (token == XContentParser.Token.FIELD_NAME) {
+                        currentFieldName = parser.currentName();
+                    } else if (token == XContentParser.Token.START_OBJECT) {
+                        if ("indices".equals(currentFieldName)) {
+                            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                                if (token == XContentParser.Token.FIELD_NAME) {
+                                    currentFieldName = parser.currentName();
+                                } else if (token.isValue()) {
+                                    indices.put(currentFieldName, parser.longValue());
+                                }
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    } else if (token.isValue()) {
+                        if ("global".equals(currentFieldName)) {
+                            globalVersion = parser.longValue();
+                        }
+                    }
+                }
+            }
+            return new Manifest(generation, globalVersion, indices);
+        }
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.gateway.local.state.meta;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.io.Streams;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * The on disk format of the local gateway state files. A state file is first written to a temporary file, fsynced
+ * and then renamed to its final name, so a state file is either complete or not there at all. Its content is
+ * prefixed with a header and followed by a CRC32 checksum of the content, which is verified when the file is read.
+ * <p/>
+ * State files are named <tt>prefix + generation</tt>. Files written before the header was introduced have no
+ * header and are read as is.
+ */
+public final class MetaDataStateFormat {
+
+    static final int MAGIC = 0x3fd76c17;
+
+    static final int VERSION = 1;
+
+    static final String TMP_SUFFIX = ".tmp";
+
+    private MetaDataStateFormat() {
+    }
+
+    /**
+     * Writes the content to <tt>prefix + generation</tt> in each of the provided state directories.
+     *
+     * @throws IOException if the file could not be written to any of the directories
+     */
+    public static void write(BytesReference content, String prefix, long generation, File[] stateLocations) throws IOException {
+        BytesArray bytes = content.toBytesArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.array(), bytes.arrayOffset(), bytes.length());
+        String fileName = prefix + generation;
+
+        Throwable lastFailure = null;
+        boolean wroteAtLeastOnce = false;
+        for (File stateLocation : stateLocations) {
+            FileSystemUtils.mkdirs(stateLocation);
+            File tmpFile = new File(stateLocation, fileName + TMP_SUFFIX);
+            File stateFile = new File(stateLocation, fileName);
+            FileOutputStream fos = null;
+            try {
+                fos = new FileOutputStream(tmpFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(bytes.length());
+                out.write(bytes.array(), bytes.arrayOffset(), bytes.length());
+                out.writeLong(checksum.getValue());
+                out.flush();
+                fos.getChannel().force(true);
+                fos.close();
+                fos = null;
+                // renameTo doesn't replace an existing file on all platforms
+                if (stateFile.exists() && !stateFile.delete()) {
+                    throw new IOException("failed to delete existing state file [" + stateFile.getAbsolutePath() + "]");
+                }
+                if (!tmpFile.renameTo(stateFile)) {
+                    throw new IOException("failed to rename [" + tmpFile.getAbsolutePath() + "] to [" + stateFile.getAbsolutePath() + "]");
+                }
+                wroteAtLeastOnce = true;
+            } catch (Throwable e) {
+                lastFailure = e;
+                IOUtils.closeWhileHandlingException(fos);
+                tmpFile.delete();
+            }
+        }
+        if (!wroteAtLeastOnce) {
+            throw new IOException("failed to write state file [" + fileName + "]", lastFailure);
+        }
+    }
+
+    /**
+     * Reads the content of a state file and verifies its checksum.
+     *
+     * @return The content, or <tt>null</tt> if the file is empty
+     * @throws IOException if the file can't be read or is corrupted
+     */
+    public static byte[] read(File stateFile) throws IOException {
+        byte[] data = Streams.copyToByteArray(new FileInputStream(stateFile));
+        if (data.length == 0) {
+            return null;
+        }
+        if (data.length < 4 || readInt(data, 0) != MAGIC) {
+            // written before the state files had a header
+            return data;
+        }
+        if (data.length < 20) {
+            throw new IOException("state file [" + stateFile.getAbsolutePath() + "] is truncated");
+        }
+        int version = readInt(data, 4);
+        if (version != VERSION) {
+            throw new IOException("state file [" + stateFile.getAbsolutePath() + "] has unsupported version [" + version + "]");
+        }
+        int length = readInt(data, 8);
+        if (length < 0 || length != data.length - 20) {
+            throw new IOException("state file [" + stateFile.getAbsolutePath() + "] has length [" + (data.length - 20) + "] but expected [" + length + "]");
+        }
+        long expected = ((long) readInt(data, 12 + length) << 32) | (readInt(data, 16 + length) & 0xFFFFFFFFL);
+        CRC32 checksum = new CRC32();
+        checksum.update(data, 12, length);
+        if (checksum.getValue() != expected) {
+            throw new IOException("checksum failed for state file [" + stateFile.getAbsolutePath() + "], expected [" + expected + "] but got [" + checksum.getValue() + "]");
+        }
+        return Arrays.copyOfRange(data, 12, 12 + length);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @return The generation of a state file with the provided prefix, or <tt>-1</tt> if the file is not such a
+     *         state file (including temporary files of a write that didn't complete)
+     */
+    public static long generation(String prefix, File file) {
+        String name = file.getName();
+        if (!name.startsWith(prefix) || name.endsWith(TMP_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lists the state files with the provided prefix in the provided state directories, from the highest
+     * generation to the lowest. The same generation can appear once per directory.
+     */
+    public static File[] listStateFiles(final String prefix, File[] stateLocations) {
+        int count = 0;
+        File[][] perLocation = new File[stateLocations.length][];
+        for (int i = 0; i < stateLocations.length; i++) {
+            File[] files = stateLocations[i].listFiles();
+            perLocation[i] = files == null ? new File[0] : files;
+            count += perLocation[i].length;
+        }
+        File[] stateFiles = new File[count];
+        int upto = 0;
+        for (File[] files : perLocation) {
+            for (File file : files) {
+                if (generation(prefix, file) >= 0) {
+                    stateFiles[upto++] = file;
+                }
+            }
+        }
+        stateFiles = Arrays.copyOf(stateFiles, upto);
+        ArrayUtil.timSort(stateFiles, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long g1 = generation(prefix, o1);
+                long g2 = generation(prefix, o2);
+                return g1 > g2 ? -1 : (g1 == g2 ? 0 : 1);
+            }
+        });
+        return stateFiles;
+    }
+
+    /**
+     * Deletes all state files with the provided prefix apart from the provided generation, including leftover
+     * temporary files.
+     */
+    public static void deleteOtherGenerations(String prefix, long keepGeneration, File[] stateLocations) {
+        String keep = prefix + keepGeneration;
+        for (File stateLocation : stateLocations) {
+            File[] files = stateLocation.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!file.getName().startsWith(prefix) || file.getName().equals(keep)) {
+                    continue;
+                }
+                file.delete();
+            }
+        }
+    }
+}
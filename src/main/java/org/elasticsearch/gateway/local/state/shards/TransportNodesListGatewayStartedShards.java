@@ -21,7 +21,10 @@ package org.elasticsearch.gateway.local.state.shards;
 
 import com.google.common.collect.Lists;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.FailedNodeException;
 import org.elasticsearch.action.support.nodes.*;
 import org.elasticsearch.cluster.ClusterName;
@@ -60,7 +63,15 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesOperat
     }
 
     public ActionFuture<NodesLocalGatewayStartedShards> list(ShardId shardId, String[] nodesIds, @Nullable TimeValue timeout) {
-        return execute(new Request(shardId, nodesIds).timeout(timeout));
+        return execute(new Request(new ShardId[]{shardId}, nodesIds).timeout(timeout));
+    }
+
+    /**
+     * Lists the state of several shards on the provided nodes with a single request per node. Nodes before
+     * {@link Version#V_2_0_0} can only be asked for one shard at a time.
+     */
+    public void list(ShardId[] shardIds, String[] nodesIds, @Nullable TimeValue timeout, ActionListener<NodesLocalGatewayStartedShards> listener) {
+        execute(new Request(shardIds, nodesIds).timeout(timeout), listener);
     }
 
     @Override
@@ -117,11 +128,12 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesOperat
     @Override
     protected NodeLocalGatewayStartedShards nodeOperation(NodeRequest request) throws ElasticsearchException {
         try {
-            ShardStateInfo shardStateInfo = shardsState.loadShardInfo(request.shardId);
-            if (shardStateInfo != null) {
-                return new NodeLocalGatewayStartedShards(clusterService.localNode(), shardStateInfo.version);
+            long[] versions = new long[request.shardIds.length];
+            for (int i = 0; i < versions.length; i++) {
+                ShardStateInfo shardStateInfo = shardsState.loadShardInfo(request.shardIds[i]);
+                versions[i] = shardStateInfo != null ? shardStateInfo.version : -1;
             }
-            return new NodeLocalGatewayStartedShards(clusterService.localNode(), -1);
+            return new NodeLocalGatewayStartedShards(clusterService.localNode(), versions);
         } catch (Exception e) {
             throw new ElasticsearchException("failed to load started shards", e);
         }
@@ -134,34 +146,35 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesOperat
 
     static class Request extends NodesOperationRequest<Request> {
 
-        private ShardId shardId;
+        private ShardId[] shardIds;
 
         public Request() {
         }
 
-        public Request(ShardId shardId, Set<String> nodesIds) {
+        public Request(ShardId[] shardIds, Set<String> nodesIds) {
             super(nodesIds.toArray(new String[nodesIds.size()]));
-            this.shardId = shardId;
+            this.shardIds = shardIds;
         }
-        public Request(ShardId shardId, String... nodesIds) {
+
+        public Request(ShardId[] shardIds, String... nodesIds) {
             super(nodesIds);
-            this.shardId = shardId;
+            this.shardIds = shardIds;
         }
 
-        public ShardId shardId() {
-            return this.shardId;
+        public ShardId[] shardIds() {
+            return this.shardIds;
         }
 
         @Override
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
-            shardId = ShardId.readShardId(in);
+            shardIds = readShardIds(in);
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
-            shardId.writeTo(out);
+            writeShardIds(shardIds, out);
         }
     }
 
@@ -204,59 +217,116 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesOperat
 
     static class NodeRequest extends NodeOperationRequest {
 
-        ShardId shardId;
+        ShardId[] shardIds;
 
         NodeRequest() {
         }
 
         NodeRequest(String nodeId, TransportNodesListGatewayStartedShards.Request request) {
             super(request, nodeId);
-            this.shardId = request.shardId();
+            this.shardIds = request.shardIds();
         }
 
         @Override
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
-            shardId = ShardId.readShardId(in);
+            shardIds = readShardIds(in);
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
-            shardId.writeTo(out);
+            writeShardIds(shardIds, out);
         }
     }
 
     public static class NodeLocalGatewayStartedShards extends NodeOperationResponse {
 
-        private long version = -1;
+        private long[] versions;
 
         NodeLocalGatewayStartedShards() {
         }
 
         public NodeLocalGatewayStartedShards(DiscoveryNode node, long version) {
+            this(node, new long[]{version});
+        }
+
+        /**
+         * @param versions The versions of the requested shards, in the order of the request, <tt>-1</tt> for the
+         *                 shards the node doesn't have
+         */
+        public NodeLocalGatewayStartedShards(DiscoveryNode node, long[] versions) {
             super(node);
-            this.version = version;
+            this.versions = versions;
         }
 
         public boolean hasVersion() {
-            return version != -1;
+            return version() != -1;
         }
 
+        /**
+         * @return The version of the first requested shard.
+         */
         public long version() {
-            return this.version;
+            return versions[0];
+        }
+
+        /**
+         * @return The version of the requested shard at the provided position.
+         */
+        public long version(int shard) {
+            return versions[shard];
         }
 
         @Override
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
-            version = in.readLong();
+            if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+                versions = new long[in.readVInt()];
+                for (int i = 0; i < versions.length; i++) {
+                    versions[i] = in.readLong();
+                }
+            } else {
+                versions = new long[]{in.readLong()};
+            }
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
-            out.writeLong(version);
+            if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+                out.writeVInt(versions.length);
+                for (long version : versions) {
+                    out.writeLong(version);
+                }
+            } else {
+                out.writeLong(versions[0]);
+            }
+        }
+    }
+
+    static ShardId[] readShardIds(StreamInput in) throws IOException {
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            ShardId[] shardIds = new ShardId[in.readVInt()];
+            for (int i = 0; i < shardIds.length; i++) {
+                shardIds[i] = ShardId.readShardId(in);
+            }
+            return shardIds;
+        }
+        return new ShardId[]{ShardId.readShardId(in)};
+    }
+
+    static void writeShardIds(ShardId[] shardIds, StreamOutput out) throws IOException {
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVInt(shardIds.length);
+            for (ShardId shardId : shardIds) {
+                shardId.writeTo(out);
+            }
+        } else {
+            if (shardIds.length != 1) {
+                throw new ElasticsearchIllegalStateException("nodes before [" + Version.V_2_0_0 + "] can only list the state of a single shard");
+            }
+            shardIds[0].writeTo(out);
         }
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * An output stream that writes a chunked http response. The response headers are only written with the first
+ * chunk, so a failure before the first chunk is sent can still be reported with a regular response.
+ * <p/>
+ * When the channel is no longer writable, writing a chunk waits for the previous writes to complete, which
+ * bounds the amount of content that is kept in memory for slow clients. This is not done on netty I/O threads,
+ * which must never block.
+ */
+class ChunkedResponseOutputStream extends OutputStream {
+
+    private final NettyHttpChannel httpChannel;
+
+    private final Channel channel;
+
+    private final HttpResponse response;
+
+    private final int chunkSize;
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean started;
+
+    private ChannelFuture lastFuture;
+
+    ChunkedResponseOutputStream(NettyHttpChannel httpChannel, HttpResponse response, int chunkSize) {
+        this.httpChannel = httpChannel;
+        this.channel = httpChannel.channel();
+        this.response = response;
+        this.chunkSize = chunkSize;
+        this.buffer = new byte[chunkSize];
+    }
+
+    /**
+     * Returns <tt>true</tt> if the response headers have been written to the channel.
+     */
+    boolean started() {
+        return started;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            writeChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            int length = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, length);
+            count += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Writes the buffered content and the last chunk, and returns the future of the last write.
+     */
+    ChannelFuture finish() throws IOException {
+        if (count > 0) {
+            writeChunk();
+        }
+        startResponse();
+        lastFuture = httpChannel.write(HttpChunk.LAST_CHUNK, true);
+        return lastFuture;
+    }
+
+    private void writeChunk() throws IOException {
+        startResponse();
+        // the buffer is handed over to netty, so a new one is needed for the next chunk
+        lastFuture = httpChannel.write(new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(buffer, 0, count)), false);
+        buffer = new byte[chunkSize];
+        count = 0;
+        // netty I/O threads never wait, be it the one of this channel, which needs to drain it, or a transport
+        // worker the response is generated on, which would hold up the traffic between the nodes. Writes held
+        // behind the responses to previous pipelined requests are not waited for either, those responses may
+        // still need the thread pools to be generated
+        if (!channel.isWritable() && DeadLockProofWorker.PARENT.get() == null && httpChannel.writing()) {
+            lastFuture.awaitUninterruptibly();
+        }
+        if (!channel.isConnected()) {
+            // the client went away, no need to generate the rest of the response
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void startResponse() {
+        if (!started) {
+            started = true;
+            httpChannel.write(response, false);
+        }
+    }
+}
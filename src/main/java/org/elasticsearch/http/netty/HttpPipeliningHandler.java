@@ -0,0 +1,185 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.jboss.netty.channel.*;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements HTTP pipelining for a single connection. Each request gets a sequence number and is sent upstream
+ * as an {@link OrderedUpstreamMessageEvent}, so it can be handled concurrently with the other requests of the
+ * connection. Responses are written as {@link OrderedDownstreamMessageEvent}s, and are held back until all
+ * the responses to the previous requests have been written, so they go out in request order.
+ * <p/>
+ * A response can be written in several parts (for example a chunked response), the sequence moves to the next
+ * response once the last part was written. Once the number of requests in flight reaches the configured maximum,
+ * the connection stops being read until a response is completed.
+ * <p/>
+ * A new instance must be created for each channel, and it must be placed after the aggregator and before the
+ * request handler, so it sees complete requests and the response events before they get encoded.
+ */
+public class HttpPipeliningHandler extends SimpleChannelHandler {
+
+    private final int maxInFlight;
+
+    // only accessed from the I/O thread reading the channel
+    private int nextRequestSequence;
+
+    private int inFlight;
+
+    private int nextResponseSequence;
+
+    private final Map<Integer, List<OrderedDownstreamMessageEvent>> held = new HashMap<Integer, List<OrderedDownstreamMessageEvent>>();
+
+    public HttpPipeliningHandler(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (!(e.getMessage() instanceof HttpRequest)) {
+            ctx.sendUpstream(e);
+            return;
+        }
+        synchronized (this) {
+            if (++inFlight >= maxInFlight) {
+                ctx.getChannel().setReadable(false);
+            }
+        }
+        ctx.sendUpstream(new OrderedUpstreamMessageEvent(nextRequestSequence++, e.getChannel(), e.getMessage(), e.getRemoteAddress()));
+    }
+
+    @Override
+    public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        if (!(e instanceof OrderedDownstreamMessageEvent)) {
+            ctx.sendDownstream(e);
+            return;
+        }
+        OrderedDownstreamMessageEvent event = (OrderedDownstreamMessageEvent) e;
+        synchronized (this) {
+            if (event.sequence() != nextResponseSequence) {
+                List<OrderedDownstreamMessageEvent> events = held.get(event.sequence());
+                if (events == null) {
+                    events = new ArrayList<OrderedDownstreamMessageEvent>();
+                    held.put(event.sequence(), events);
+                }
+                events.add(event);
+                return;
+            }
+            ctx.sendDownstream(event);
+            if (event.last()) {
+                nextResponse(ctx);
+            }
+        }
+    }
+
+    /**
+     * Moves to the next response, and writes the parts of it (and of the responses after it) that were already
+     * written by their handlers.
+     */
+    private void nextResponse(ChannelHandlerContext ctx) {
+        while (true) {
+            nextResponseSequence++;
+            if (inFlight-- == maxInFlight) {
+                ctx.getChannel().setReadable(true);
+            }
+            List<OrderedDownstreamMessageEvent> events = held.remove(nextResponseSequence);
+            if (events == null) {
+                return;
+            }
+            for (OrderedDownstreamMessageEvent event : events) {
+                ctx.sendDownstream(event);
+            }
+            if (!events.get(events.size() - 1).last()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the writes of the response with the provided sequence are not held back anymore.
+     */
+    public synchronized boolean writing(int sequence) {
+        return sequence <= nextResponseSequence;
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        List<OrderedDownstreamMessageEvent> events = new ArrayList<OrderedDownstreamMessageEvent>();
+        synchronized (this) {
+            for (List<OrderedDownstreamMessageEvent> sequenceEvents : held.values()) {
+                events.addAll(sequenceEvents);
+            }
+            held.clear();
+        }
+        for (OrderedDownstreamMessageEvent event : events) {
+            event.getFuture().setFailure(new ClosedChannelException());
+        }
+        super.channelClosed(ctx, e);
+    }
+
+    /**
+     * A request received on a pipelined connection, with the sequence its response must be written with.
+     */
+    public static class OrderedUpstreamMessageEvent extends UpstreamMessageEvent {
+
+        private final int sequence;
+
+        public OrderedUpstreamMessageEvent(int sequence, Channel channel, Object message, SocketAddress remoteAddress) {
+            super(channel, message, remoteAddress);
+            this.sequence = sequence;
+        }
+
+        public int sequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * A part of a response to a pipelined request. The last part completes the response.
+     */
+    public static class OrderedDownstreamMessageEvent extends DownstreamMessageEvent {
+
+        private final int sequence;
+
+        private final boolean last;
+
+        public OrderedDownstreamMessageEvent(int sequence, boolean last, Channel channel, ChannelFuture future, Object message) {
+            super(channel, future, message, null);
+            this.sequence = sequence;
+            this.last = last;
+        }
+
+        public int sequence() {
+            return sequence;
+        }
+
+        public boolean last() {
+            return last;
+        }
+    }
+}
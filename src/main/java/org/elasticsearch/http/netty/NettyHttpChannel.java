@@ -24,6 +24,7 @@ import org.elasticsearch.http.HttpChannel;
 import org.elasticsearch.http.HttpException;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.StreamingXContentRestResponse;
 import org.elasticsearch.rest.XContentRestResponse;
 import org.elasticsearch.rest.support.RestUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -31,6 +32,7 @@ import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.Channels;
 import org.jboss.netty.handler.codec.http.*;
 
 import java.io.IOException;
@@ -46,14 +48,28 @@ public class NettyHttpChannel implements HttpChannel {
     private final Channel channel;
     private final org.jboss.netty.handler.codec.http.HttpRequest request;
 
+    // the sequence of the request on a pipelined connection, -1 if pipelining is disabled
+    private final int sequence;
+
+    private volatile boolean streamFailed;
+
     public NettyHttpChannel(NettyHttpServerTransport transport, Channel channel, org.jboss.netty.handler.codec.http.HttpRequest request) {
+        this(transport, channel, request, -1);
+    }
+
+    public NettyHttpChannel(NettyHttpServerTransport transport, Channel channel, org.jboss.netty.handler.codec.http.HttpRequest request, int sequence) {
         this.transport = transport;
         this.channel = channel;
         this.request = request;
+        this.sequence = sequence;
     }
 
     @Override
     public void sendResponse(RestResponse response) {
+        if (streamFailed) {
+            // part of a streamed response was already sent and the connection is being closed
+            return;
+        }
 
         // Decide whether to close the connection or not.
         boolean http10 = request.getProtocolVersion().equals(HttpVersion.HTTP_1_0);
@@ -100,6 +116,27 @@ public class NettyHttpChannel implements HttpChannel {
             }
         }
 
+        if (transport.resetCookies) {
+            String cookieString = request.headers().get(HttpHeaders.Names.COOKIE);
+            if (cookieString != null) {
+                CookieDecoder cookieDecoder = new CookieDecoder();
+                Set<Cookie> cookies = cookieDecoder.decode(cookieString);
+                if (!cookies.isEmpty()) {
+                    // Reset the cookies if necessary.
+                    CookieEncoder cookieEncoder = new CookieEncoder(true);
+                    for (Cookie cookie : cookies) {
+                        cookieEncoder.addCookie(cookie);
+                    }
+                    resp.headers().add(HttpHeaders.Names.SET_COOKIE, cookieEncoder.encode());
+                }
+            }
+        }
+
+        if (response instanceof StreamingXContentRestResponse && transport.streaming && !http10) {
+            sendStreamingResponse((StreamingXContentRestResponse) response, resp, close);
+            return;
+        }
+
         // Convert the response content to a ChannelBuffer.
         ChannelBuffer buf;
         try {
@@ -138,30 +175,74 @@ public class NettyHttpChannel implements HttpChannel {
 
         resp.headers().add(HttpHeaders.Names.CONTENT_LENGTH, String.valueOf(buf.readableBytes()));
 
-        if (transport.resetCookies) {
-            String cookieString = request.headers().get(HttpHeaders.Names.COOKIE);
-            if (cookieString != null) {
-                CookieDecoder cookieDecoder = new CookieDecoder();
-                Set<Cookie> cookies = cookieDecoder.decode(cookieString);
-                if (!cookies.isEmpty()) {
-                    // Reset the cookies if necessary.
-                    CookieEncoder cookieEncoder = new CookieEncoder(true);
-                    for (Cookie cookie : cookies) {
-                        cookieEncoder.addCookie(cookie);
-                    }
-                    resp.headers().add(HttpHeaders.Names.SET_COOKIE, cookieEncoder.encode());
-                }
-            }
-        }
-
         // Write the response.
-        ChannelFuture future = channel.write(resp);
+        ChannelFuture future = write(resp, true);
         // Close the connection after the write operation is done if necessary.
         if (close) {
             future.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
+    private void sendStreamingResponse(StreamingXContentRestResponse response, org.jboss.netty.handler.codec.http.HttpResponse resp, boolean close) {
+        resp.setChunked(true);
+        resp.headers().add(HttpHeaders.Names.CONTENT_TYPE, response.contentType());
+        resp.headers().add(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+
+        ChunkedResponseOutputStream out = new ChunkedResponseOutputStream(this, resp, (int) transport.streamingChunkSize.bytes());
+        ChannelFuture future;
+        try {
+            if (response.prefixContent() != null) {
+                out.write(response.prefixContent(), response.prefixContentOffset(), response.prefixContentLength());
+            }
+            response.writeTo(out);
+            if (response.suffixContent() != null) {
+                out.write(response.suffixContent(), response.suffixContentOffset(), response.suffixContentLength());
+            }
+            future = out.finish();
+        } catch (Throwable e) {
+            if (!out.started()) {
+                throw new HttpException("Failed to write response", e);
+            }
+            // the status and part of the content were already sent, closing the connection is the only way left
+            // to tell the client that the response is incomplete
+            streamFailed = true;
+            channel.close();
+            return;
+        }
+        if (close) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    /**
+     * Writes a part of the response. On a pipelined connection the write is held back until the responses to
+     * the previous requests are written, and the last part of the response lets the next response be written.
+     */
+    ChannelFuture write(Object message, boolean last) {
+        if (sequence == -1) {
+            return channel.write(message);
+        }
+        ChannelFuture future = Channels.future(channel);
+        channel.getPipeline().sendDownstream(new HttpPipeliningHandler.OrderedDownstreamMessageEvent(sequence, last, channel, future, message));
+        return future;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the writes of this response go to the channel right away, and are not held back
+     * behind the responses to previous pipelined requests.
+     */
+    boolean writing() {
+        if (sequence == -1) {
+            return true;
+        }
+        HttpPipeliningHandler pipelining = channel.getPipeline().get(HttpPipeliningHandler.class);
+        return pipelining == null || pipelining.writing(sequence);
+    }
+
     private HttpResponseStatus getStatus(RestStatus status) {
         switch (status) {
             case CONTINUE:
@@ -80,6 +80,14 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
 
     final boolean resetCookies;
 
+    final boolean streaming;
+
+    final ByteSizeValue streamingChunkSize;
+
+    final boolean pipelining;
+
+    final int pipeliningMaxInFlight;
+
     private final String port;
 
     private final String bindHost;
@@ -157,6 +165,18 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
         this.compression = settings.getAsBoolean("http.compression", false);
         this.compressionLevel = settings.getAsInt("http.compression_level", 6);
 
+        // large responses (search and scroll) can be written as chunks while they are generated
+        this.streaming = componentSettings.getAsBoolean("streaming.enabled", settings.getAsBoolean("http.streaming.enabled", false));
+        ByteSizeValue streamingChunkSize = componentSettings.getAsBytesSize("streaming.chunk_size", settings.getAsBytesSize("http.streaming.chunk_size", new ByteSizeValue(16, ByteSizeUnit.KB)));
+        if (streamingChunkSize.bytes() > Integer.MAX_VALUE || streamingChunkSize.bytes() <= 0) {
+            logger.warn("streaming chunk_size[" + streamingChunkSize + "] set to an invalid value, resetting it to [16kb]");
+            streamingChunkSize = new ByteSizeValue(16, ByteSizeUnit.KB);
+        }
+        this.streamingChunkSize = streamingChunkSize;
+
+        this.pipelining = componentSettings.getAsBoolean("pipelining", settings.getAsBoolean("http.pipelining", true));
+        this.pipeliningMaxInFlight = componentSettings.getAsInt("pipelining.max_in_flight", settings.getAsInt("http.pipelining.max_in_flight", 100));
+
         // validate max content length
         if (maxContentLength.bytes() > Integer.MAX_VALUE) {
             logger.warn("maxContentLength[" + maxContentLength + "] set to high value, resetting it to [100mb]");
@@ -164,8 +184,8 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
         }
         this.maxContentLength = maxContentLength;
 
-        logger.debug("using max_chunk_size[{}], max_header_size[{}], max_initial_line_length[{}], max_content_length[{}], receive_predictor[{}->{}]",
-                maxChunkSize, maxHeaderSize, maxInitialLineLength, this.maxContentLength, receivePredictorMin, receivePredictorMax);
+        logger.debug("using max_chunk_size[{}], max_header_size[{}], max_initial_line_length[{}], max_content_length[{}], receive_predictor[{}->{}], streaming[{}], streaming_chunk_size[{}], pipelining[{}], pipelining_max_in_flight[{}]",
+                maxChunkSize, maxHeaderSize, maxInitialLineLength, this.maxContentLength, receivePredictorMin, receivePredictorMax, streaming, this.streamingChunkSize, pipelining, pipeliningMaxInFlight);
     }
 
     public Settings settings() {
@@ -355,6 +375,9 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
             if (transport.compression) {
                 pipeline.addLast("encoder_compress", new HttpContentCompressor(transport.compressionLevel));
             }
+            if (transport.pipelining) {
+                pipeline.addLast("pipelining", new HttpPipeliningHandler(transport.pipeliningMaxInFlight));
+            }
             pipeline.addLast("handler", requestHandler);
             return pipeline;
         }
@@ -32,6 +32,7 @@ import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.cache.fixedbitset.FixedBitSetFilterCache;
 import org.elasticsearch.index.cache.query.parser.QueryParserCache;
 import org.elasticsearch.index.settings.IndexSettings;
 
@@ -43,15 +44,18 @@ public class IndexCache extends AbstractIndexComponent implements CloseableCompo
     private final FilterCache filterCache;
     private final QueryParserCache queryParserCache;
     private final DocSetCache docSetCache;
+    private final FixedBitSetFilterCache fixedBitSetFilterCache;
 
     private ClusterService clusterService;
 
     @Inject
-    public IndexCache(Index index, @IndexSettings Settings indexSettings, FilterCache filterCache, QueryParserCache queryParserCache, DocSetCache docSetCache) {
+    public IndexCache(Index index, @IndexSettings Settings indexSettings, FilterCache filterCache, QueryParserCache queryParserCache, DocSetCache docSetCache,
+                      FixedBitSetFilterCache fixedBitSetFilterCache) {
         super(index, indexSettings);
         this.filterCache = filterCache;
         this.queryParserCache = queryParserCache;
         this.docSetCache = docSetCache;
+        this.fixedBitSetFilterCache = fixedBitSetFilterCache;
     }
 
     @Inject(optional = true)
@@ -70,6 +74,13 @@ public class IndexCache extends AbstractIndexComponent implements CloseableCompo
         return this.docSetCache;
     }
 
+    /**
+     * Return the {@link FixedBitSetFilterCache} for this index.
+     */
+    public FixedBitSetFilterCache fixedBitSetFilterCache() {
+        return fixedBitSetFilterCache;
+    }
+
     public QueryParserCache queryParserCache() {
         return this.queryParserCache;
     }
@@ -79,6 +90,7 @@ public class IndexCache extends AbstractIndexComponent implements CloseableCompo
         filterCache.close();
         queryParserCache.close();
         docSetCache.clear("close");
+        fixedBitSetFilterCache.close();
         if (clusterService != null) {
             clusterService.remove(this);
         }
@@ -87,12 +99,14 @@ public class IndexCache extends AbstractIndexComponent implements CloseableCompo
     public void clear(IndexReader reader) {
         filterCache.clear(reader);
         docSetCache.clear(reader);
+        fixedBitSetFilterCache.clear(reader);
     }
 
     public void clear(String reason) {
         filterCache.clear(reason);
         queryParserCache.clear();
         docSetCache.clear(reason);
+        fixedBitSetFilterCache.clear(reason);
     }
 
     @Override
@@ -0,0 +1,295 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.fixedbitset;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.CloseableComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.docset.DocIdSets;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.AbstractIndexComponent;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.object.ObjectMapper;
+import org.elasticsearch.index.search.nested.NonNestedDocsFilter;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardUtils;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.warmer.IndicesWarmer;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * A per segment cache for filters that need to be resolved as a {@link FixedBitSet}, like the parent filters used by
+ * nested queries, sorting, facets and aggregations.
+ * <p/>
+ * Unlike the regular filter cache, entries are never evicted. An entry stays until the segment it was built for is
+ * closed. The parent filters of all nested paths in the mapping are loaded for new segments when a shard is warmed,
+ * so that searches after a refresh don't need to build them.
+ */
+public class FixedBitSetFilterCache extends AbstractIndexComponent implements SegmentReader.CoreClosedListener, CloseableComponent {
+
+    public static final String LOAD_FIXED_BITSET_FILTERS_EAGERLY = "index.load_fixed_bitset_filters_eagerly";
+
+    private final boolean loadFiltersEagerly;
+    private final ConcurrentMap<Object, ConcurrentMap<Filter, Value>> loadedFilters = ConcurrentCollections.newConcurrentMap();
+    private final FixedBitSetFilterWarmer warmer = new FixedBitSetFilterWarmer();
+
+    private IndexService indexService;
+    private IndicesWarmer indicesWarmer;
+
+    @Inject
+    public FixedBitSetFilterCache(Index index, @IndexSettings Settings indexSettings) {
+        super(index, indexSettings);
+        this.loadFiltersEagerly = indexSettings.getAsBoolean(LOAD_FIXED_BITSET_FILTERS_EAGERLY, true);
+    }
+
+    @Inject(optional = true)
+    public void setIndicesWarmer(IndicesWarmer indicesWarmer) {
+        this.indicesWarmer = indicesWarmer;
+        indicesWarmer.addListener(warmer);
+    }
+
+    public void setIndexService(IndexService indexService) {
+        this.indexService = indexService;
+    }
+
+    /**
+     * Returns a filter that resolves the provided filter as a {@link FixedBitSet} that is cached per segment.
+     */
+    public FixedBitSetFilter getFixedBitSetFilter(Filter filter) {
+        assert filter != null;
+        if (filter instanceof FixedBitSetFilterWrapper) {
+            return (FixedBitSetFilter) filter;
+        }
+        return new FixedBitSetFilterWrapper(filter);
+    }
+
+    @Nullable
+    private FixedBitSet getAndLoadIfNotPresent(Filter filter, AtomicReaderContext context) throws IOException {
+        final Object coreCacheKey = context.reader().getCoreCacheKey();
+        ConcurrentMap<Filter, Value> filterToFixedBitSet = loadedFilters.get(coreCacheKey);
+        if (filterToFixedBitSet == null) {
+            filterToFixedBitSet = ConcurrentCollections.newConcurrentMap();
+            ConcurrentMap<Filter, Value> previous = loadedFilters.putIfAbsent(coreCacheKey, filterToFixedBitSet);
+            if (previous != null) {
+                filterToFixedBitSet = previous;
+            } else if (context.reader() instanceof SegmentReader) {
+                // we add a core closed listener only, for non core IndexReaders we rely on clear being called (percolator for example)
+                ((SegmentReader) context.reader()).addCoreClosedListener(this);
+            }
+        }
+
+        Value value = filterToFixedBitSet.get(filter);
+        if (value == null) {
+            // we don't pass down the accepted docs nor the live docs, the same cached set is shared between all
+            // the queries and the reopened versions of a segment which may have more deleted documents
+            DocIdSet docIdSet = filter.getDocIdSet(context, null);
+            final FixedBitSet fixedBitSet;
+            if (DocIdSets.isEmpty(docIdSet)) {
+                fixedBitSet = null;
+            } else if (docIdSet instanceof FixedBitSet) {
+                fixedBitSet = (FixedBitSet) docIdSet;
+            } else {
+                fixedBitSet = DocIdSets.toFixedBitSet(docIdSet.iterator(), context.reader().maxDoc());
+            }
+
+            value = new Value(fixedBitSet, ShardUtils.extractShardId(context.reader()));
+            Value previous = filterToFixedBitSet.putIfAbsent(filter, value);
+            if (previous != null) {
+                // loaded concurrently, use the one that made it into the cache
+                return previous.fixedBitSet;
+            }
+            onCached(value);
+        }
+        return value.fixedBitSet;
+    }
+
+    @Override
+    public void onClose(Object coreCacheKey) {
+        ConcurrentMap<Filter, Value> removed = loadedFilters.remove(coreCacheKey);
+        if (removed != null) {
+            for (Value value : removed.values()) {
+                onRemoval(value);
+            }
+        }
+    }
+
+    public void clear(IndexReader reader) {
+        onClose(reader.getCoreCacheKey());
+    }
+
+    public void clear(String reason) {
+        logger.debug("full fixed bitset filter cache clear, reason [{}]", reason);
+        for (Object coreCacheKey : loadedFilters.keySet()) {
+            onClose(coreCacheKey);
+        }
+    }
+
+    @Override
+    public void close() throws ElasticsearchException {
+        if (indicesWarmer != null) {
+            indicesWarmer.removeListener(warmer);
+        }
+        clear("close");
+    }
+
+    private ShardFixedBitSetFilterCache shardCache(@Nullable ShardId shardId) {
+        if (shardId == null || indexService == null) {
+            return null;
+        }
+        IndexShard shard = indexService.shard(shardId.id());
+        return shard == null ? null : shard.fixedBitSetFilterCache();
+    }
+
+    private void onCached(Value value) {
+        ShardFixedBitSetFilterCache shardCache = shardCache(value.shardId);
+        if (shardCache != null) {
+            shardCache.onCached(value.sizeInBytes());
+        }
+    }
+
+    private void onRemoval(Value value) {
+        ShardFixedBitSetFilterCache shardCache = shardCache(value.shardId);
+        if (shardCache != null) {
+            shardCache.onRemoval(value.sizeInBytes());
+        }
+    }
+
+    private static final class Value {
+
+        @Nullable
+        final FixedBitSet fixedBitSet;
+        @Nullable
+        final ShardId shardId;
+
+        Value(FixedBitSet fixedBitSet, ShardId shardId) {
+            this.fixedBitSet = fixedBitSet;
+            this.shardId = shardId;
+        }
+
+        long sizeInBytes() {
+            return fixedBitSet == null ? 0 : DocIdSets.sizeInBytes(fixedBitSet);
+        }
+    }
+
+    final class FixedBitSetFilterWrapper extends FixedBitSetFilter {
+
+        private final Filter filter;
+
+        FixedBitSetFilterWrapper(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public FixedBitSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+            // like the regular filter cache, the accepted docs are applied by the consumer if needed
+            return getAndLoadIfNotPresent(filter, context);
+        }
+
+        public String toString() {
+            return "fixed_bitset(" + filter + ")";
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof FixedBitSetFilterWrapper)) return false;
+            return this.filter.equals(((FixedBitSetFilterWrapper) o).filter);
+        }
+
+        public int hashCode() {
+            return filter.hashCode() ^ 0x1117BF26;
+        }
+    }
+
+    final class FixedBitSetFilterWarmer extends IndicesWarmer.Listener {
+
+        @Override
+        public TerminationHandle warm(final IndexShard indexShard, IndexMetaData indexMetaData, IndicesWarmer.WarmerContext context, ThreadPool threadPool) {
+            if (!index.equals(indexShard.shardId().index()) || !loadFiltersEagerly) {
+                return TerminationHandle.NO_WAIT;
+            }
+            final MapperService mapperService = indexShard.mapperService();
+            if (!mapperService.hasNested()) {
+                return TerminationHandle.NO_WAIT;
+            }
+
+            final Set<Filter> warmUp = new HashSet<Filter>();
+            warmUp.add(NonNestedDocsFilter.INSTANCE);
+            for (DocumentMapper docMapper : mapperService) {
+                for (ObjectMapper objectMapper : docMapper.objectMappers().values()) {
+                    if (objectMapper.nested().isNested()) {
+                        warmUp.add(objectMapper.nestedTypeFilter());
+                    }
+                }
+            }
+
+            final Executor executor = threadPool.executor(executor());
+            final CountDownLatch latch = new CountDownLatch(context.newSearcher().reader().leaves().size() * warmUp.size());
+            for (final AtomicReaderContext ctx : context.newSearcher().reader().leaves()) {
+                for (final Filter filter : warmUp) {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                final long start = System.nanoTime();
+                                getAndLoadIfNotPresent(filter, ctx);
+                                if (indexShard.warmerService().logger().isTraceEnabled()) {
+                                    indexShard.warmerService().logger().trace("warmed fixed bitset for [{}], took [{}]", filter, TimeValue.timeValueNanos(System.nanoTime() - start));
+                                }
+                            } catch (Throwable t) {
+                                indexShard.warmerService().logger().warn("failed to warm-up fixed bitset for [{}]", t, filter);
+                            } finally {
+                                latch.countDown();
+                            }
+                        }
+
+                    });
+                }
+            }
+            return new TerminationHandle() {
+                @Override
+                public void awaitTermination() throws InterruptedException {
+                    latch.await();
+                }
+            };
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.engine;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -36,6 +37,7 @@ public class SegmentsStats implements Streamable, ToXContent {
 
     private long count;
     private long memoryInBytes;
+    private long fixedBitSetMemoryInBytes;
 
     public SegmentsStats() {
 
@@ -51,6 +53,11 @@ public class SegmentsStats implements Streamable, ToXContent {
             return;
         }
         add(mergeStats.count, mergeStats.memoryInBytes);
+        addFixedBitSetMemoryInBytes(mergeStats.fixedBitSetMemoryInBytes);
+    }
+
+    public void addFixedBitSetMemoryInBytes(long fixedBitSetMemoryInBytes) {
+        this.fixedBitSetMemoryInBytes += fixedBitSetMemoryInBytes;
     }
 
     /**
@@ -71,6 +78,17 @@ public class SegmentsStats implements Streamable, ToXContent {
         return new ByteSizeValue(memoryInBytes);
     }
 
+    /**
+     * Estimation of the memory used by the cached fixed bitset filters of the segments, like nested parent filters.
+     */
+    public long getFixedBitSetMemoryInBytes() {
+        return fixedBitSetMemoryInBytes;
+    }
+
+    public ByteSizeValue getFixedBitSetMemory() {
+        return new ByteSizeValue(fixedBitSetMemoryInBytes);
+    }
+
     public static SegmentsStats readSegmentsStats(StreamInput in) throws IOException {
         SegmentsStats stats = new SegmentsStats();
         stats.readFrom(in);
@@ -82,6 +100,7 @@ public class SegmentsStats implements Streamable, ToXContent {
         builder.startObject(Fields.SEGMENTS);
         builder.field(Fields.COUNT, count);
         builder.byteSizeField(Fields.MEMORY_IN_BYTES, Fields.MEMORY, memoryInBytes);
+        builder.byteSizeField(Fields.FIXED_BIT_SET_MEMORY_IN_BYTES, Fields.FIXED_BIT_SET, fixedBitSetMemoryInBytes);
         builder.endObject();
         return builder;
     }
@@ -91,17 +110,25 @@ public class SegmentsStats implements Streamable, ToXContent {
         static final XContentBuilderString COUNT = new XContentBuilderString("count");
         static final XContentBuilderString MEMORY = new XContentBuilderString("memory");
         static final XContentBuilderString MEMORY_IN_BYTES = new XContentBuilderString("memory_in_bytes");
+        static final XContentBuilderString FIXED_BIT_SET = new XContentBuilderString("fixed_bit_set");
+        static final XContentBuilderString FIXED_BIT_SET_MEMORY_IN_BYTES = new XContentBuilderString("fixed_bit_set_memory_in_bytes");
     }
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
         count = in.readVLong();
         memoryInBytes = in.readLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            fixedBitSetMemoryInBytes = in.readLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(count);
         out.writeLong(memoryInBytes);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeLong(fixedBitSetMemoryInBytes);
+        }
     }
 }
\ No newline at end of file
@@ -77,8 +77,13 @@ public class ShardFieldData extends AbstractIndexShardComponent implements Index
 
     @Override
     public void onLoad(FieldMapper.Names fieldNames, FieldDataType fieldDataType, AtomicFieldData fieldData) {
-        long sizeInBytes = fieldData.getMemorySizeInBytes();
+        onLoad(fieldNames, fieldData.getMemorySizeInBytes());
+    }
 
+    /**
+     * Accounts field data that isn't loaded per segment, like the parent/child global ordinals.
+     */
+    public void onLoad(FieldMapper.Names fieldNames, long sizeInBytes) {
         totalMetric.inc(sizeInBytes);
 
         String keyFieldName = fieldNames.indexName();
@@ -55,6 +55,13 @@ public class BytesRefFieldComparatorSource extends IndexFieldData.XFieldComparat
         return SortField.Type.STRING;
     }
 
+    /**
+     * Returns the value documents without a value for the field are sorted with.
+     */
+    public BytesRef missingBytes(boolean reversed) {
+        return (BytesRef) missingObject(missingValue, reversed);
+    }
+
     @Override
     public FieldComparator<?> newComparator(String fieldname, int numHits, int sortPos, boolean reversed) throws IOException {
         assert fieldname.equals(indexFieldData.getFieldNames().indexName());
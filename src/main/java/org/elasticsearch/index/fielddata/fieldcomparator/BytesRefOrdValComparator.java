@@ -85,6 +85,12 @@ public final class BytesRefOrdValComparator extends NestedWrappableComparator<By
        @lucene.internal */
     long bottomOrd;
 
+    /* Value the hits must be sorted after (when paging), and its ord
+       in the current reader, computed like the bottom ord.
+       @lucene.internal */
+    BytesRef topValue;
+    long topOrd;
+
     final BytesRef tempBR = new BytesRef();
 
     public BytesRefOrdValComparator(IndexFieldData.WithOrdinals<?> indexFieldData, int numHits, SortMode sortMode, BytesRef missingValue) {
@@ -205,7 +211,9 @@ public final class BytesRefOrdValComparator extends NestedWrappableComparator<By
 
         @Override
         public int compareTop(int doc) throws IOException {
-            throw new UnsupportedOperationException("compareTop() not used for sorting in ES");
+            final long docOrd = getOrd(doc);
+            final long comparableOrd = docOrd == Ordinals.MISSING_ORDINAL ? missingOrd : docOrd << 2;
+            return LongValuesComparator.compare(topOrd, comparableOrd);
         }
 
         @Override
@@ -283,6 +291,9 @@ public final class BytesRefOrdValComparator extends NestedWrappableComparator<By
             missingOrd = ordInCurrentReader(termsIndex, missingValue);
             assert consistentInsertedOrd(termsIndex, missingOrd, missingValue);
         }
+        if (topValue != null) {
+            topOrd = insertedOrd(topValue);
+        }
         FieldComparator<BytesRef> perSegComp = null;
         assert termsIndex.ordinals() != null && termsIndex.ordinals().ordinals() != null;
         if (termsIndex.isMultiValued()) {
@@ -312,27 +323,37 @@ public final class BytesRefOrdValComparator extends NestedWrappableComparator<By
         } else if (currentReaderGen == readerGen[bottomSlot]) {
             bottomOrd = ords[bottomSlot];
         } else {
-            // insert an ord
-            bottomOrd = ordInCurrentReader(termsIndex, bottomValue);
-            if (bottomOrd == missingOrd) {
-                // bottomValue and missingValue and in-between the same field data values -> tie-break
-                // this is why we multiply ords by 4
-                assert missingValue != null;
-                final int cmp = bottomValue.compareTo(missingValue);
-                if (cmp < 0) {
-                    --bottomOrd;
-                } else if (cmp > 0) {
-                    ++bottomOrd;
-                }
-            }
-            assert consistentInsertedOrd(termsIndex, bottomOrd, bottomValue);
+            bottomOrd = insertedOrd(bottomValue);
         }
         readerGen[bottomSlot] = currentReaderGen;
     }
 
+    // insert an ord for a value of another reader in the current one
+    private long insertedOrd(BytesRef value) {
+        long ord = ordInCurrentReader(termsIndex, value);
+        if (ord == missingOrd) {
+            // value and missingValue and in-between the same field data values -> tie-break
+            // this is why we multiply ords by 4
+            assert missingValue != null;
+            final int cmp = value.compareTo(missingValue);
+            if (cmp < 0) {
+                --ord;
+            } else if (cmp > 0) {
+                ++ord;
+            }
+        }
+        assert consistentInsertedOrd(termsIndex, ord, value);
+        return ord;
+    }
+
     @Override
     public void setTopValue(BytesRef value) {
-        throw new UnsupportedOperationException("setTopValue() not used for sorting in ES");
+        topValue = value;
+        if (value == null) {
+            topOrd = Ordinals.MISSING_ORDINAL;
+        } else if (termsIndex != null) {
+            topOrd = insertedOrd(value);
+        }
     }
 
     @Override
@@ -66,7 +66,7 @@ public final class BytesRefValComparator extends NestedWrappableComparator<Bytes
 
     @Override
     public int compareTop(int doc) throws IOException {
-        return  top.compareTo(sortMode.getRelevantValue(docTerms, doc, missingValue));
+        return compareValues(top, sortMode.getRelevantValue(docTerms, doc, missingValue));
     }
 
     @Override
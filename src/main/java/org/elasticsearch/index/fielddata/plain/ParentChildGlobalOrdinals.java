@@ -0,0 +1,189 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.plain;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.packed.MonotonicAppendingLongBuffer;
+import org.elasticsearch.index.fielddata.BytesValues;
+import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+
+import java.util.List;
+
+/**
+ * Maps the per segment ordinals of the parent ids of a single parent type to ordinals that are unique across all
+ * the segments of a top level reader. The same parent id has the same global ordinal in every segment, which
+ * allows parent/child queries to join children and parents by keeping their state in arrays indexed by global
+ * ordinal instead of hashing the parent ids.
+ * <p/>
+ * Like the per segment ordinals, global ordinal <tt>0</tt> is reserved for documents without a value.
+ */
+public final class ParentChildGlobalOrdinals {
+
+    private static final MonotonicAppendingLongBuffer EMPTY_SEGMENT = new MonotonicAppendingLongBuffer();
+
+    static {
+        EMPTY_SEGMENT.add(Ordinals.MISSING_ORDINAL);
+        EMPTY_SEGMENT.freeze();
+    }
+
+    private final MonotonicAppendingLongBuffer[] segmentToGlobalOrds;
+    private final long maxOrd;
+
+    private ParentChildGlobalOrdinals(MonotonicAppendingLongBuffer[] segmentToGlobalOrds, long maxOrd) {
+        this.segmentToGlobalOrds = segmentToGlobalOrds;
+        this.maxOrd = maxOrd;
+    }
+
+    /**
+     * @return The maximum global ordinal + 1, arrays indexed by global ordinal should be sized with this value.
+     */
+    public long getMaxOrd() {
+        return maxOrd;
+    }
+
+    /**
+     * @return The mapping from the ordinals of the provided segment to global ordinals.
+     */
+    public Segment segment(AtomicReaderContext context) {
+        return new Segment(segmentToGlobalOrds[context.ord]);
+    }
+
+    public long getMemorySizeInBytes() {
+        long size = 0;
+        for (MonotonicAppendingLongBuffer segmentToGlobalOrd : segmentToGlobalOrds) {
+            if (segmentToGlobalOrd != EMPTY_SEGMENT) {
+                size += segmentToGlobalOrd.ramBytesUsed();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Translates the segment ordinals of a single segment to global ordinals.
+     */
+    public static final class Segment {
+
+        private final MonotonicAppendingLongBuffer segmentToGlobalOrd;
+
+        private Segment(MonotonicAppendingLongBuffer segmentToGlobalOrd) {
+            this.segmentToGlobalOrd = segmentToGlobalOrd;
+        }
+
+        public long getGlobalOrd(long segmentOrd) {
+            return segmentToGlobalOrd.get(segmentOrd);
+        }
+
+        /**
+         * @return The global ordinal of the parent id of the provided document or
+         * {@link Ordinals#MISSING_ORDINAL} if the document doesn't have one.
+         */
+        public long getGlobalOrd(Ordinals.Docs ordinals, int docId) {
+            return segmentToGlobalOrd.get(ordinals.getOrd(docId));
+        }
+    }
+
+    /**
+     * Merges the sorted parent ids of all segments and assigns a global ordinal to each unique parent id.
+     */
+    static ParentChildGlobalOrdinals build(IndexReader indexReader, ParentChildIndexFieldData indexFieldData, String parentType) {
+        List<AtomicReaderContext> leaves = indexReader.leaves();
+        MonotonicAppendingLongBuffer[] segmentToGlobalOrds = new MonotonicAppendingLongBuffer[leaves.size()];
+        SegmentQueue queue = new SegmentQueue(leaves.size());
+        for (AtomicReaderContext context : leaves) {
+            BytesValues.WithOrdinals values = indexFieldData.load(context).getBytesValues(parentType);
+            if (values == null) {
+                segmentToGlobalOrds[context.ord] = EMPTY_SEGMENT;
+                continue;
+            }
+            segmentToGlobalOrds[context.ord] = new MonotonicAppendingLongBuffer();
+            segmentToGlobalOrds[context.ord].add(Ordinals.MISSING_ORDINAL);
+            SegmentCursor cursor = new SegmentCursor(context.ord, values);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+
+        long globalOrd = Ordinals.MISSING_ORDINAL;
+        BytesRef previous = new BytesRef();
+        while (queue.size() > 0) {
+            SegmentCursor top = queue.top();
+            if (globalOrd == Ordinals.MISSING_ORDINAL || !previous.bytesEquals(top.current)) {
+                globalOrd++;
+                previous.copyBytes(top.current);
+            }
+            segmentToGlobalOrds[top.segment].add(globalOrd);
+            if (top.next()) {
+                queue.updateTop();
+            } else {
+                queue.pop();
+            }
+        }
+
+        for (MonotonicAppendingLongBuffer segmentToGlobalOrd : segmentToGlobalOrds) {
+            if (segmentToGlobalOrd != EMPTY_SEGMENT) {
+                segmentToGlobalOrd.freeze();
+            }
+        }
+        return new ParentChildGlobalOrdinals(segmentToGlobalOrds, globalOrd + 1);
+    }
+
+    private static final class SegmentCursor {
+
+        final int segment;
+        final BytesValues.WithOrdinals values;
+        final long maxOrd;
+
+        long ord = Ordinals.MISSING_ORDINAL;
+        BytesRef current;
+
+        SegmentCursor(int segment, BytesValues.WithOrdinals values) {
+            this.segment = segment;
+            this.values = values;
+            this.maxOrd = values.ordinals().getMaxOrd();
+        }
+
+        boolean next() {
+            if (++ord >= maxOrd) {
+                return false;
+            }
+            current = values.getValueByOrd(ord);
+            return true;
+        }
+    }
+
+    private static final class SegmentQueue extends PriorityQueue<SegmentCursor> {
+
+        SegmentQueue(int size) {
+            super(size);
+        }
+
+        @Override
+        protected boolean lessThan(SegmentCursor a, SegmentCursor b) {
+            final int cmp = a.current.compareTo(b.current);
+            if (cmp != 0) {
+                return cmp < 0;
+            }
+            return a.segment < b.segment;
+        }
+    }
+}
@@ -24,17 +24,20 @@ import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.PagedBytes;
 import org.apache.lucene.util.packed.MonotonicAppendingLongBuffer;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.AbstractIndexFieldData;
 import org.elasticsearch.index.fielddata.FieldDataType;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.ShardFieldData;
 import org.elasticsearch.index.fielddata.fieldcomparator.BytesRefFieldComparatorSource;
 import org.elasticsearch.index.fielddata.fieldcomparator.SortMode;
 import org.elasticsearch.index.fielddata.ordinals.Ordinals;
@@ -51,6 +54,7 @@ import org.elasticsearch.indices.fielddata.breaker.CircuitBreakerService;
 import java.io.IOException;
 import java.util.NavigableSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  */
@@ -63,6 +67,10 @@ public class ParentChildIndexFieldData extends AbstractIndexFieldData<ParentChil
     // while loading.
     private final Object lock = new Object();
 
+    // The global ordinals per parent type, keyed by the top level reader they were built for. Entries are removed
+    // when the top level reader is closed, which happens after each refresh.
+    private final ConcurrentMap<Object, ConcurrentMap<String, LoadedGlobalOrdinals>> globalOrdinals = ConcurrentCollections.newConcurrentMap();
+
     public ParentChildIndexFieldData(Index index, @IndexSettings Settings indexSettings, FieldMapper.Names fieldNames, FieldDataType fieldDataType, IndexFieldDataCache cache, MapperService mapperService, CircuitBreakerService breakerService) {
         super(index, indexSettings, fieldNames, fieldDataType, cache);
         parentTypes = new TreeSet<BytesRef>(BytesRef.getUTF8SortedAsUnicodeComparator());
@@ -144,6 +152,75 @@ public class ParentChildIndexFieldData extends AbstractIndexFieldData<ParentChil
         }
     }
 
+    /**
+     * Returns the global ordinals of the parent ids of the provided parent type for the provided top level reader.
+     * The global ordinals are built on first use and cached until the top level reader is closed. The memory they
+     * take is accounted in the field data circuit breaker and, if a shard field data is provided, in the field data
+     * stats of the <tt>_parent</tt> field of that shard.
+     */
+    public ParentChildGlobalOrdinals loadGlobalOrdinals(IndexReader indexReader, String parentType, @Nullable ShardFieldData shardFieldData) {
+        final Object readerKey = indexReader.getCoreCacheKey();
+        ConcurrentMap<String, LoadedGlobalOrdinals> perType = globalOrdinals.get(readerKey);
+        if (perType == null) {
+            perType = ConcurrentCollections.newConcurrentMap();
+            ConcurrentMap<String, LoadedGlobalOrdinals> existing = globalOrdinals.putIfAbsent(readerKey, perType);
+            if (existing != null) {
+                perType = existing;
+            } else {
+                indexReader.addReaderClosedListener(new IndexReader.ReaderClosedListener() {
+                    @Override
+                    public void onClose(IndexReader reader) {
+                        release(globalOrdinals.remove(readerKey));
+                    }
+                });
+            }
+        }
+        LoadedGlobalOrdinals loaded = perType.get(parentType);
+        if (loaded == null) {
+            ParentChildGlobalOrdinals ordinals = ParentChildGlobalOrdinals.build(indexReader, this, parentType);
+            long sizeInBytes = ordinals.getMemorySizeInBytes();
+            // Throws if the global ordinals don't fit, in which case they don't get cached either
+            breakerService.getBreaker().addEstimateBytesAndMaybeBreak(sizeInBytes);
+            loaded = new LoadedGlobalOrdinals(ordinals, sizeInBytes, shardFieldData);
+            LoadedGlobalOrdinals existing = perType.putIfAbsent(parentType, loaded);
+            if (existing != null) {
+                breakerService.getBreaker().addWithoutBreaking(-sizeInBytes);
+                loaded = existing;
+            } else if (shardFieldData != null) {
+                shardFieldData.onLoad(getFieldNames(), sizeInBytes);
+            }
+        }
+        return loaded.ordinals;
+    }
+
+    private void release(@Nullable ConcurrentMap<String, LoadedGlobalOrdinals> perType) {
+        if (perType == null) {
+            return;
+        }
+        for (LoadedGlobalOrdinals loaded : perType.values()) {
+            if (loaded.shardFieldData != null) {
+                // also releases the bytes in the breaker
+                loaded.shardFieldData.onUnload(getFieldNames(), fieldDataType, false, loaded.sizeInBytes, null);
+            } else {
+                breakerService.getBreaker().addWithoutBreaking(-loaded.sizeInBytes);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (Object readerKey : globalOrdinals.keySet()) {
+            release(globalOrdinals.remove(readerKey));
+        }
+    }
+
+    @Override
+    public void clear(IndexReader reader) {
+        super.clear(reader);
+        release(globalOrdinals.remove(reader.getCoreCacheKey()));
+    }
+
     @Override
     public void beforeCreate(DocumentMapper mapper) {
         synchronized (lock) {
@@ -168,6 +245,19 @@ public class ParentChildIndexFieldData extends AbstractIndexFieldData<ParentChil
         }
     }
 
+    private static final class LoadedGlobalOrdinals {
+
+        final ParentChildGlobalOrdinals ordinals;
+        final long sizeInBytes;
+        final ShardFieldData shardFieldData;
+
+        LoadedGlobalOrdinals(ParentChildGlobalOrdinals ordinals, long sizeInBytes, @Nullable ShardFieldData shardFieldData) {
+            this.ordinals = ordinals;
+            this.sizeInBytes = sizeInBytes;
+            this.shardFieldData = shardFieldData;
+        }
+    }
+
     class TypeBuilder {
 
         final PagedBytes bytes;
@@ -18,6 +18,8 @@
  */
 package org.elasticsearch.index.mapper.core;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.lucene.analysis.Analyzer;
@@ -26,7 +28,10 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.search.suggest.analyzing.XAnalyzingSuggester;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.automaton.Automaton;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -40,6 +45,7 @@ import org.elasticsearch.index.similarity.SimilarityProvider;
 import org.elasticsearch.search.suggest.completion.AnalyzingCompletionLookupProvider;
 import org.elasticsearch.search.suggest.completion.CompletionPostingsFormatProvider;
 import org.elasticsearch.search.suggest.completion.CompletionTokenStream;
+import org.elasticsearch.search.suggest.context.ContextMapping;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -47,6 +53,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 import static org.elasticsearch.index.mapper.MapperBuilders.completionField;
 import static org.elasticsearch.index.mapper.core.TypeParsers.parseMultiField;
@@ -82,15 +89,17 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         public static final String PAYLOADS = "payloads";
         public static final String TYPE = "type";
         public static final ParseField MAX_INPUT_LENGTH = new ParseField("max_input_length", "max_input_len");
+        public static final String CONTEXT = "context";
         // Content field names
         public static final String CONTENT_FIELD_NAME_INPUT = "input";
         public static final String CONTENT_FIELD_NAME_OUTPUT = "output";
         public static final String CONTENT_FIELD_NAME_PAYLOAD = "payload";
         public static final String CONTENT_FIELD_NAME_WEIGHT = "weight";
+        public static final String CONTENT_FIELD_NAME_CONTEXT = "context";
     }
 
     public static Set<String> ALLOWED_CONTENT_FIELD_NAMES = Sets.newHashSet(Fields.CONTENT_FIELD_NAME_INPUT,
-            Fields.CONTENT_FIELD_NAME_OUTPUT, Fields.CONTENT_FIELD_NAME_PAYLOAD, Fields.CONTENT_FIELD_NAME_WEIGHT);
+            Fields.CONTENT_FIELD_NAME_OUTPUT, Fields.CONTENT_FIELD_NAME_PAYLOAD, Fields.CONTENT_FIELD_NAME_WEIGHT, Fields.CONTENT_FIELD_NAME_CONTEXT);
 
     public static class Builder extends AbstractFieldMapper.Builder<Builder, CompletionFieldMapper> {
 
@@ -98,6 +107,7 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         private boolean payloads = Defaults.DEFAULT_HAS_PAYLOADS;
         private boolean preservePositionIncrements = Defaults.DEFAULT_POSITION_INCREMENTS;
         private int maxInputLength = Defaults.DEFAULT_MAX_INPUT_LENGTH;
+        private SortedMap<String, ContextMapping> contextMapping = ImmutableSortedMap.of();
 
         public Builder(String name) {
             super(name, new FieldType(Defaults.FIELD_TYPE));
@@ -127,10 +137,15 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
             return this;
         }
 
+        public Builder contextMapping(SortedMap<String, ContextMapping> contextMapping) {
+            this.contextMapping = contextMapping;
+            return this;
+        }
+
         @Override
         public CompletionFieldMapper build(Mapper.BuilderContext context) {
             return new CompletionFieldMapper(buildNames(context), indexAnalyzer, searchAnalyzer, postingsProvider, similarity, payloads,
-                    preserveSeparators, preservePositionIncrements, maxInputLength, multiFieldsBuilder.build(this, context), copyTo);
+                    preserveSeparators, preservePositionIncrements, maxInputLength, contextMapping, multiFieldsBuilder.build(this, context), copyTo);
         }
     }
 
@@ -161,6 +176,8 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
                     builder.preservePositionIncrements(Boolean.parseBoolean(fieldNode.toString()));
                 } else if (Fields.MAX_INPUT_LENGTH.match(fieldName)) {
                     builder.maxInputLength(Integer.parseInt(fieldNode.toString()));
+                } else if (fieldName.equals(Fields.CONTEXT)) {
+                    builder.contextMapping(ContextMapping.parseMappings(fieldNode));
                 } else if ("fields".equals(fieldName) || "path".equals(fieldName)) {
                     parseMultiField(builder, name, node, parserContext, fieldName, fieldNode);
                 } else {
@@ -197,9 +214,11 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
     private final boolean preservePositionIncrements;
     private final boolean preserveSeparators;
     private int maxInputLength;
+    private final SortedMap<String, ContextMapping> contextMapping;
 
     public CompletionFieldMapper(Names names, NamedAnalyzer indexAnalyzer, NamedAnalyzer searchAnalyzer, PostingsFormatProvider postingsProvider, SimilarityProvider similarity, boolean payloads,
-                                 boolean preserveSeparators, boolean preservePositionIncrements, int maxInputLength, MultiFields multiFields, CopyTo copyTo) {
+                                 boolean preserveSeparators, boolean preservePositionIncrements, int maxInputLength, SortedMap<String, ContextMapping> contextMapping,
+                                 MultiFields multiFields, CopyTo copyTo) {
         super(names, 1.0f, Defaults.FIELD_TYPE, null, indexAnalyzer, searchAnalyzer, postingsProvider, null, similarity, null, null, null, multiFields, copyTo);
         analyzingSuggestLookupProvider = new AnalyzingCompletionLookupProvider(preserveSeparators, false, preservePositionIncrements, payloads);
         this.completionPostingsFormatProvider = new CompletionPostingsFormatProvider("completion", postingsProvider, analyzingSuggestLookupProvider);
@@ -207,6 +226,7 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         this.payloads = payloads;
         this.preservePositionIncrements = preservePositionIncrements;
         this.maxInputLength = maxInputLength;
+        this.contextMapping = contextMapping;
     }
 
 
@@ -224,6 +244,7 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         BytesRef payload = null;
         long weight = -1;
         List<String> inputs = Lists.newArrayListWithExpectedSize(4);
+        Map<String, Object> contexts = ImmutableMap.of();
 
         if (token == XContentParser.Token.VALUE_STRING) {
             inputs.add(parser.text());
@@ -236,6 +257,14 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
                     if (!ALLOWED_CONTENT_FIELD_NAMES.contains(currentFieldName)) {
                         throw new ElasticsearchIllegalArgumentException("Unknown field name[" + currentFieldName + "], must be one of " + ALLOWED_CONTENT_FIELD_NAMES);
                     }
+                } else if (Fields.CONTENT_FIELD_NAME_CONTEXT.equals(currentFieldName)) {
+                    if (token != XContentParser.Token.START_OBJECT) {
+                        throw new ElasticsearchIllegalArgumentException("context must be an object but was " + token);
+                    }
+                    if (contextMapping.isEmpty()) {
+                        throw new MapperException("Contexts are not defined in mapping");
+                    }
+                    contexts = parser.map();
                 } else if (Fields.CONTENT_FIELD_NAME_PAYLOAD.equals(currentFieldName)) {
                     if (!isStoringPayloads()) {
                         throw new MapperException("Payloads disabled in mapping");
@@ -277,22 +306,30 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
             }
         }
         payload = payload == null ? EMPTY : payload;
+        List<IntsRef> contextPrefixes = contextMapping.isEmpty() ? null : ContextMapping.indexPrefixes(contextMapping, contexts);
         if (surfaceForm == null) { // no surface form use the input
             for (String input : inputs) {
                 BytesRef suggestPayload = analyzingSuggestLookupProvider.buildPayload(new BytesRef(
                         input), weight, payload);
-                context.doc().add(getCompletionField(input, suggestPayload));
+                context.doc().add(getCompletionField(input, suggestPayload, contextPrefixes));
             }
         } else {
             BytesRef suggestPayload = analyzingSuggestLookupProvider.buildPayload(new BytesRef(
                     surfaceForm), weight, payload);
             for (String input : inputs) {
-                context.doc().add(getCompletionField(input, suggestPayload));
+                context.doc().add(getCompletionField(input, suggestPayload, contextPrefixes));
             }
         }
     }
 
     public Field getCompletionField(String input, BytesRef payload) {
+        return getCompletionField(input, payload, null);
+    }
+
+    /**
+     * @param contextPrefixes The context values the suggestion is indexed with, see {@link ContextMapping#indexPrefixes}
+     */
+    public Field getCompletionField(String input, BytesRef payload, @Nullable List<IntsRef> contextPrefixes) {
         final String originalInput = input;
         if (input.length() > maxInputLength) {
             final int len = correctSubStringLen(input, Math.min(maxInputLength, input.length()));
@@ -305,7 +342,7 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
                         + "] at position " + i + " is a reserved character");
             }
         }
-        return new SuggestField(names.indexName(), input, this.fieldType, payload, analyzingSuggestLookupProvider);
+        return new SuggestField(names.indexName(), input, this.fieldType, payload, analyzingSuggestLookupProvider, contextPrefixes);
     }
 
     public static int correctSubStringLen(String input, int len) {
@@ -324,23 +361,26 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
     private static final class SuggestField extends Field {
         private final BytesRef payload;
         private final CompletionTokenStream.ToFiniteStrings toFiniteStrings;
+        private final List<IntsRef> contextPrefixes;
 
-        public SuggestField(String name, Reader value, FieldType type, BytesRef payload, CompletionTokenStream.ToFiniteStrings toFiniteStrings) {
+        public SuggestField(String name, Reader value, FieldType type, BytesRef payload, CompletionTokenStream.ToFiniteStrings toFiniteStrings, List<IntsRef> contextPrefixes) {
             super(name, value, type);
             this.payload = payload;
             this.toFiniteStrings = toFiniteStrings;
+            this.contextPrefixes = contextPrefixes;
         }
 
-        public SuggestField(String name, String value, FieldType type, BytesRef payload, CompletionTokenStream.ToFiniteStrings toFiniteStrings) {
+        public SuggestField(String name, String value, FieldType type, BytesRef payload, CompletionTokenStream.ToFiniteStrings toFiniteStrings, List<IntsRef> contextPrefixes) {
             super(name, value, type);
             this.payload = payload;
             this.toFiniteStrings = toFiniteStrings;
+            this.contextPrefixes = contextPrefixes;
         }
 
         @Override
         public TokenStream tokenStream(Analyzer analyzer) throws IOException {
             TokenStream ts = super.tokenStream(analyzer);
-            return new CompletionTokenStream(ts, payload, toFiniteStrings);
+            return new CompletionTokenStream(ts, payload, toFiniteStrings, contextPrefixes);
         }
     }
 
@@ -359,6 +399,13 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         builder.field(Fields.PRESERVE_SEPARATORS.getPreferredName(), this.preserveSeparators);
         builder.field(Fields.PRESERVE_POSITION_INCREMENTS.getPreferredName(), this.preservePositionIncrements);
         builder.field(Fields.MAX_INPUT_LENGTH.getPreferredName(), this.maxInputLength);
+        if (!contextMapping.isEmpty()) {
+            builder.startObject(Fields.CONTEXT);
+            for (ContextMapping mapping : contextMapping.values()) {
+                mapping.toXContent(builder, params);
+            }
+            builder.endObject();
+        }
         multiFields.toXContent(builder, params);
         return builder.endObject();
     }
@@ -405,6 +452,17 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         return payloads;
     }
 
+    public SortedMap<String, ContextMapping> getContextMapping() {
+        return contextMapping;
+    }
+
+    /**
+     * @return The automaton of the FST input prefixes of the suggestions in the requested contexts, see {@link ContextMapping#queryAutomaton}
+     */
+    public Automaton contextQueryAutomaton(Map<String, Object> contexts) {
+        return ContextMapping.queryAutomaton(contextMapping, contexts);
+    }
+
     @Override
     public void merge(Mapper mergeWith, MergeContext mergeContext) throws MergeMappingException {
         super.merge(mergeWith, mergeContext);
@@ -418,6 +476,9 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
         if (preserveSeparators != fieldMergeWith.preserveSeparators) {
             mergeContext.addConflict("mapper [" + names.fullName() + "] has different 'preserve_separators' values");
         }
+        if (!contextMapping.equals(fieldMergeWith.contextMapping)) {
+            mergeContext.addConflict("mapper [" + names.fullName() + "] has different 'context' values");
+        }
         if (!mergeContext.mergeFlags().simulate()) {
             this.maxInputLength = fieldMergeWith.maxInputLength;
         }
@@ -434,6 +495,7 @@ public class CompletionFieldMapper extends AbstractFieldMapper<String> {
              case  XAnalyzingSuggester.END_BYTE:
              case  XAnalyzingSuggester.SEP_LABEL:
              case  XAnalyzingSuggester.HOLE_CHARACTER:
+             case  ContextMapping.SEPARATOR:
                 return true;
             default:
                 return false;
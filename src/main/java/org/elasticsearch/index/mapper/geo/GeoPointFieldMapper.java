@@ -28,6 +28,8 @@ import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.geo.GeoDistance;
@@ -381,6 +383,8 @@ public class GeoPointFieldMapper extends AbstractFieldMapper<GeoPoint> implement
     private final boolean enableGeoHash;
 
     private final boolean enableGeohashPrefix;
+    // whether short geohashes are indexed with the prefixes of their full precision geohash, see hasFullGeohashPrefixes()
+    private final boolean fullGeohashPrefixes;
 
     private final Integer precisionStep;
 
@@ -411,6 +415,8 @@ public class GeoPointFieldMapper extends AbstractFieldMapper<GeoPoint> implement
         this.enableLatLon = enableLatLon;
         this.enableGeoHash = enableGeoHash || enableGeohashPrefix; // implicitly enable geohashes if geohash_prefix is set
         this.enableGeohashPrefix = enableGeohashPrefix;
+        this.fullGeohashPrefixes = enableGeohashPrefix && (indexSettings == null
+                || indexSettings.getAsVersion(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT).onOrAfter(Version.V_2_0_0));
         this.precisionStep = precisionStep;
         this.geoHashPrecision = geoHashPrecision;
 
@@ -460,6 +466,19 @@ public class GeoPointFieldMapper extends AbstractFieldMapper<GeoPoint> implement
         return enableGeohashPrefix;
     }
 
+    /**
+     * Whether the prefixes of the geohash of every document are indexed up to the geohash precision, so that the geo
+     * filters can look up the documents by geohash cell. Indices created before 2.0 may hold documents indexed from a
+     * shorter geohash, which lack the finer prefixes.
+     */
+    public boolean hasFullGeohashPrefixes() {
+        return fullGeohashPrefixes;
+    }
+
+    public int geoHashPrecision() {
+        return geoHashPrecision;
+    }
+
     @Override
     public GeoPoint value(Object value) {
         if (value instanceof GeoPoint) {
@@ -608,6 +627,9 @@ public class GeoPointFieldMapper extends AbstractFieldMapper<GeoPoint> implement
         if (enableGeoHash) {
             if (geohash == null) {
                 geohash = GeoHashUtils.encode(point.lat(), point.lon());
+            } else if (fullGeohashPrefixes && geohash.length() < geoHashPrecision) {
+                // geo filters look up documents by the prefixes of the geohash up to the configured precision
+                geohash = GeoHashUtils.encode(point.lat(), point.lon(), geoHashPrecision);
             }
             parseGeohashField(context, geohash);
         }
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.merge;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -42,6 +43,9 @@ public class MergeStats implements Streamable, ToXContent {
     private long current;
     private long currentNumDocs;
     private long currentSizeInBytes;
+    private long totalPausedTimeInMillis;
+    private long totalThrottledTimeInMillis;
+    private long totalAutoThrottleBytesPerSec;
 
     public MergeStats() {
 
@@ -57,6 +61,15 @@ public class MergeStats implements Streamable, ToXContent {
         this.currentSizeInBytes += currentSizeInBytes;
     }
 
+    public void addPausedTime(long totalPausedTimeInMillis) {
+        this.totalPausedTimeInMillis += totalPausedTimeInMillis;
+    }
+
+    public void addAutoThrottle(long totalThrottledTimeInMillis, long autoThrottleBytesPerSec) {
+        this.totalThrottledTimeInMillis += totalThrottledTimeInMillis;
+        this.totalAutoThrottleBytesPerSec += autoThrottleBytesPerSec;
+    }
+
     public void add(MergeStats mergeStats) {
         if (mergeStats == null) {
             return;
@@ -68,6 +81,9 @@ public class MergeStats implements Streamable, ToXContent {
         this.current += mergeStats.current;
         this.currentNumDocs += mergeStats.currentNumDocs;
         this.currentSizeInBytes += mergeStats.currentSizeInBytes;
+        this.totalPausedTimeInMillis += mergeStats.totalPausedTimeInMillis;
+        this.totalThrottledTimeInMillis += mergeStats.totalThrottledTimeInMillis;
+        this.totalAutoThrottleBytesPerSec += mergeStats.totalAutoThrottleBytesPerSec;
     }
 
     /**
@@ -122,6 +138,39 @@ public class MergeStats implements Streamable, ToXContent {
         return new ByteSizeValue(currentSizeInBytes);
     }
 
+    /**
+     * The total time merges were paused because more merges than merge threads were running (in milliseconds).
+     */
+    public long getTotalPausedTimeInMillis() {
+        return this.totalPausedTimeInMillis;
+    }
+
+    public TimeValue getTotalPausedTime() {
+        return new TimeValue(totalPausedTimeInMillis);
+    }
+
+    /**
+     * The total time auto throttled merges waited on their rate limit (in milliseconds).
+     */
+    public long getTotalThrottledTimeInMillis() {
+        return this.totalThrottledTimeInMillis;
+    }
+
+    public TimeValue getTotalThrottledTime() {
+        return new TimeValue(totalThrottledTimeInMillis);
+    }
+
+    /**
+     * The sum of the current auto throttle rates of the shards, in bytes per second.
+     */
+    public long getTotalAutoThrottleBytesPerSec() {
+        return this.totalAutoThrottleBytesPerSec;
+    }
+
+    public ByteSizeValue getTotalAutoThrottle() {
+        return new ByteSizeValue(totalAutoThrottleBytesPerSec);
+    }
+
     public static MergeStats readMergeStats(StreamInput in) throws IOException {
         MergeStats stats = new MergeStats();
         stats.readFrom(in);
@@ -138,6 +187,9 @@ public class MergeStats implements Streamable, ToXContent {
         builder.timeValueField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, totalTimeInMillis);
         builder.field(Fields.TOTAL_DOCS, totalNumDocs);
         builder.byteSizeField(Fields.TOTAL_SIZE_IN_BYTES, Fields.TOTAL_SIZE, totalSizeInBytes);
+        builder.timeValueField(Fields.TOTAL_PAUSED_TIME_IN_MILLIS, Fields.TOTAL_PAUSED_TIME, totalPausedTimeInMillis);
+        builder.timeValueField(Fields.TOTAL_THROTTLED_TIME_IN_MILLIS, Fields.TOTAL_THROTTLED_TIME, totalThrottledTimeInMillis);
+        builder.byteSizeField(Fields.TOTAL_AUTO_THROTTLE_IN_BYTES, Fields.TOTAL_AUTO_THROTTLE, totalAutoThrottleBytesPerSec);
         builder.endObject();
         return builder;
     }
@@ -154,6 +206,12 @@ public class MergeStats implements Streamable, ToXContent {
         static final XContentBuilderString TOTAL_DOCS = new XContentBuilderString("total_docs");
         static final XContentBuilderString TOTAL_SIZE = new XContentBuilderString("total_size");
         static final XContentBuilderString TOTAL_SIZE_IN_BYTES = new XContentBuilderString("total_size_in_bytes");
+        static final XContentBuilderString TOTAL_PAUSED_TIME = new XContentBuilderString("total_paused_time");
+        static final XContentBuilderString TOTAL_PAUSED_TIME_IN_MILLIS = new XContentBuilderString("total_paused_time_in_millis");
+        static final XContentBuilderString TOTAL_THROTTLED_TIME = new XContentBuilderString("total_throttled_time");
+        static final XContentBuilderString TOTAL_THROTTLED_TIME_IN_MILLIS = new XContentBuilderString("total_throttled_time_in_millis");
+        static final XContentBuilderString TOTAL_AUTO_THROTTLE = new XContentBuilderString("total_auto_throttle");
+        static final XContentBuilderString TOTAL_AUTO_THROTTLE_IN_BYTES = new XContentBuilderString("total_auto_throttle_in_bytes");
     }
 
     @Override
@@ -165,6 +223,11 @@ public class MergeStats implements Streamable, ToXContent {
         current = in.readVLong();
         currentNumDocs = in.readVLong();
         currentSizeInBytes = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            totalPausedTimeInMillis = in.readVLong();
+            totalThrottledTimeInMillis = in.readVLong();
+            totalAutoThrottleBytesPerSec = in.readVLong();
+        }
     }
 
     @Override
@@ -176,5 +239,10 @@ public class MergeStats implements Streamable, ToXContent {
         out.writeVLong(current);
         out.writeVLong(currentNumDocs);
         out.writeVLong(currentSizeInBytes);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(totalPausedTimeInMillis);
+            out.writeVLong(totalThrottledTimeInMillis);
+            out.writeVLong(totalAutoThrottleBytesPerSec);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.merge.policy;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.settings.IndexSettingsService;
+import org.elasticsearch.index.store.Store;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A merge policy for indices that stop receiving writes at some point, like time based indices. While the shard
+ * is written to, merges are found by the {@link TieredMergePolicyProvider tiered} merge policy, using its settings.
+ * Once the shard wasn't written to for <tt>inactive_time</tt>, the shard force merges itself down to
+ * <tt>inactive_max_num_segments</tt> segments, see {@link #startForceMergeIfInactive()}, and the merge policy
+ * stops finding merges until the shard is written to again.
+ */
+public class ColdMergePolicyProvider extends AbstractMergePolicyProvider<MergePolicy> {
+
+    private final TieredMergePolicyProvider tieredMergePolicyProvider;
+
+    private final TimeValue inactiveTime;
+    private final int inactiveMaxNumSegments;
+
+    private volatile ColdMergePolicy mergePolicy;
+
+    @Inject
+    public ColdMergePolicyProvider(Store store, IndexSettingsService indexSettingsService) {
+        super(store);
+        this.tieredMergePolicyProvider = new TieredMergePolicyProvider(store, indexSettingsService);
+        this.inactiveTime = componentSettings.getAsTime("inactive_time", TimeValue.timeValueMinutes(30));
+        this.inactiveMaxNumSegments = componentSettings.getAsInt("inactive_max_num_segments", 1);
+        logger.debug("using [cold] merge policy with inactive_time[{}], inactive_max_num_segments[{}]", inactiveTime, inactiveMaxNumSegments);
+    }
+
+    @Override
+    public MergePolicy newMergePolicy() {
+        ColdMergePolicy mergePolicy = new ColdMergePolicy(tieredMergePolicyProvider.newMergePolicy());
+        this.mergePolicy = mergePolicy;
+        return mergePolicy;
+    }
+
+    /**
+     * The number of segments to force merge inactive shards to.
+     */
+    public int inactiveMaxNumSegments() {
+        return inactiveMaxNumSegments;
+    }
+
+    /**
+     * Checks whether the shard wasn't written to for <tt>inactive_time</tt> and isn't force merged yet. If so, the
+     * caller is expected to force merge the shard and to call {@link #onForceMergeDone(boolean)} once done.
+     */
+    public boolean startForceMergeIfInactive() {
+        ColdMergePolicy mergePolicy = this.mergePolicy;
+        return mergePolicy != null && mergePolicy.startForceMergeIfInactive(System.currentTimeMillis(), inactiveTime.millis());
+    }
+
+    public void onForceMergeDone(boolean success) {
+        ColdMergePolicy mergePolicy = this.mergePolicy;
+        if (mergePolicy != null) {
+            mergePolicy.onForceMergeDone(System.currentTimeMillis(), success);
+        }
+    }
+
+    @Override
+    public void close() throws ElasticsearchException {
+        tieredMergePolicyProvider.close();
+    }
+
+    static class ColdMergePolicy extends MergePolicy {
+
+        enum State {
+            HOT,
+            FORCE_MERGING,
+            COLD
+        }
+
+        private final MergePolicy delegate;
+
+        private State state = State.HOT;
+        private long lastWriteMillis = System.currentTimeMillis();
+
+        ColdMergePolicy(MergePolicy delegate) {
+            this.delegate = delegate;
+        }
+
+        synchronized boolean startForceMergeIfInactive(long nowMillis, long inactiveMillis) {
+            if (state == State.HOT && nowMillis - lastWriteMillis >= inactiveMillis) {
+                state = State.FORCE_MERGING;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onForceMergeDone(long nowMillis, boolean success) {
+            // the shard may have been written to in the meantime, in which case it is hot again
+            if (state == State.FORCE_MERGING) {
+                if (success) {
+                    state = State.COLD;
+                } else {
+                    // try again after another inactive period
+                    state = State.HOT;
+                    lastWriteMillis = nowMillis;
+                }
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        @Override
+        public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos) throws IOException {
+            synchronized (this) {
+                if (mergeTrigger == MergeTrigger.SEGMENT_FLUSH || mergeTrigger == MergeTrigger.FULL_FLUSH || mergeTrigger == MergeTrigger.EXPLICIT) {
+                    // new segments or deletes, the shard is being written to
+                    state = State.HOT;
+                    lastWriteMillis = System.currentTimeMillis();
+                } else if (state == State.COLD) {
+                    return null;
+                }
+            }
+            return delegate.findMerges(mergeTrigger, segmentInfos);
+        }
+
+        @Override
+        public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount, Map<SegmentCommitInfo, Boolean> segmentsToMerge) throws IOException {
+            return delegate.findForcedMerges(segmentInfos, maxSegmentCount, segmentsToMerge);
+        }
+
+        @Override
+        public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos) throws IOException {
+            return delegate.findForcedDeletesMerges(segmentInfos);
+        }
+
+        @Override
+        public boolean useCompoundFile(SegmentInfos segments, SegmentCommitInfo newSegment) throws IOException {
+            return delegate.useCompoundFile(segments, newSegment);
+        }
+
+        @Override
+        public void setIndexWriter(IndexWriter writer) {
+            delegate.setIndexWriter(writer);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        @Override
+        public MergePolicy clone() {
+            // Lucene IW makes a clone internally but since we hold on to this instance
+            // the clone will just be the identity.
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + getClass().getSimpleName() + "->" + delegate + "]";
+        }
+    }
+}
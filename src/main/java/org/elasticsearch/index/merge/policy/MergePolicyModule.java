@@ -20,6 +20,8 @@
 package org.elasticsearch.index.merge.policy;
 
 import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Key;
+import org.elasticsearch.common.inject.TypeLiteral;
 import org.elasticsearch.common.settings.Settings;
 
 /**
@@ -35,9 +37,12 @@ public class MergePolicyModule extends AbstractModule {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     protected void configure() {
         bind(MergePolicyProvider.class)
                 .to(settings.getAsClass("index.merge.policy.type", TieredMergePolicyProvider.class, "org.elasticsearch.index.merge.policy.", "MergePolicyProvider"))
                 .asEagerSingleton();
+        // the same provider, for the components that don't use the raw type
+        bind(new TypeLiteral<MergePolicyProvider<?>>() {}).to((Key) Key.get(MergePolicyProvider.class));
     }
 }
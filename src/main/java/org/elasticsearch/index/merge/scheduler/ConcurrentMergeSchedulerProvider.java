@@ -24,9 +24,12 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.TrackingConcurrentMergeScheduler;
+import org.apache.lucene.store.StoreRateLimiting;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.merge.OnGoingMerge;
@@ -37,15 +40,26 @@ import org.elasticsearch.threadpool.ThreadPool;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 /**
- *
+ * Runs the merges of a shard on up to <tt>max_thread_count</tt> threads. When more merges are needed, the largest
+ * ones are paused, and indexing is blocked once <tt>max_merge_count</tt> merges are running.
+ * <p/>
+ * With <tt>auto_throttle</tt> enabled, the merges of at least <tt>auto_throttle.min_merge_size</tt> aren't
+ * throttled by the store but by a rate limiter of the shard, see {@link MergeRateLimiter}: it goes faster when
+ * merges back up and slower when they keep up, so merges catch up during indexing bursts without wasting IO
+ * when indexing is light. Forced merges are always throttled by the store.
  */
 public class ConcurrentMergeSchedulerProvider extends MergeSchedulerProvider {
 
     private final int maxThreadCount;
     private final int maxMergeCount;
 
+    private final boolean autoThrottle;
+    private final ByteSizeValue autoThrottleMinMergeSize;
+    private final MergeRateLimiter mergeRateLimiter;
+
     private Set<CustomConcurrentMergeScheduler> schedulers = new CopyOnWriteArraySet<CustomConcurrentMergeScheduler>();
 
     @Inject
@@ -55,7 +69,13 @@ public class ConcurrentMergeSchedulerProvider extends MergeSchedulerProvider {
         // TODO LUCENE MONITOR this will change in Lucene 4.0
         this.maxThreadCount = componentSettings.getAsInt("max_thread_count", Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2)));
         this.maxMergeCount = componentSettings.getAsInt("max_merge_count", maxThreadCount + 2);
-        logger.debug("using [concurrent] merge scheduler with max_thread_count[{}]", maxThreadCount);
+        this.autoThrottle = componentSettings.getAsBoolean("auto_throttle", true);
+        this.autoThrottleMinMergeSize = componentSettings.getAsBytesSize("auto_throttle.min_merge_size", new ByteSizeValue(50, ByteSizeUnit.MB));
+        ByteSizeValue initialRate = componentSettings.getAsBytesSize("auto_throttle.initial_bytes_per_sec", new ByteSizeValue(20, ByteSizeUnit.MB));
+        ByteSizeValue minRate = componentSettings.getAsBytesSize("auto_throttle.min_bytes_per_sec", new ByteSizeValue(5, ByteSizeUnit.MB));
+        ByteSizeValue maxRate = componentSettings.getAsBytesSize("auto_throttle.max_bytes_per_sec", new ByteSizeValue(10, ByteSizeUnit.GB));
+        this.mergeRateLimiter = new MergeRateLimiter(initialRate.mbFrac(), minRate.mbFrac(), maxRate.mbFrac());
+        logger.debug("using [concurrent] merge scheduler with max_thread_count[{}], auto_throttle[{}]", maxThreadCount, autoThrottle);
     }
 
     @Override
@@ -72,6 +92,11 @@ public class ConcurrentMergeSchedulerProvider extends MergeSchedulerProvider {
         for (CustomConcurrentMergeScheduler scheduler : schedulers) {
             mergeStats.add(scheduler.totalMerges(), scheduler.totalMergeTime(), scheduler.totalMergeNumDocs(), scheduler.totalMergeSizeInBytes(),
                     scheduler.currentMerges(), scheduler.currentMergesNumDocs(), scheduler.currentMergesSizeInBytes());
+            mergeStats.addPausedTime(scheduler.totalMergePausedTime());
+        }
+        if (autoThrottle) {
+            mergeStats.addAutoThrottle(TimeUnit.NANOSECONDS.toMillis(mergeRateLimiter.throttledTimeInNanos()),
+                    (long) (mergeRateLimiter.getMbPerSec() * 1024 * 1024));
         }
         return mergeStats;
     }
@@ -103,6 +128,27 @@ public class ConcurrentMergeSchedulerProvider extends MergeSchedulerProvider {
             return thread;
         }
 
+        @Override
+        protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+            if (!provider.autoThrottle || isForcedMerge(merge) || merge.estimatedMergeBytes < provider.autoThrottleMinMergeSize.bytes()) {
+                super.doMerge(merge);
+                return;
+            }
+            // this thread counts too, so there is a backlog when some merges don't have a thread to run on
+            boolean backlog = mergeThreadCount() > getMaxThreadCount();
+            double mbPerSec = provider.mergeRateLimiter.onMergeStart(backlog);
+            if (logger.isDebugEnabled()) {
+                logger.debug("merge of [{}] starting with{} backlog, auto throttling merges to [{}/s]", new ByteSizeValue(merge.estimatedMergeBytes),
+                        backlog ? "" : "out", new ByteSizeValue((long) (mbPerSec * 1024 * 1024)));
+            }
+            StoreRateLimiting.setMergeRateLimiter(provider.mergeRateLimiter);
+            try {
+                super.doMerge(merge);
+            } finally {
+                StoreRateLimiting.setMergeRateLimiter(null);
+            }
+        }
+
         @Override
         protected void handleMergeException(Throwable exc) {
             logger.warn("failed to merge", exc);
@@ -0,0 +1,90 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.merge.scheduler;
+
+import org.apache.lucene.store.RateLimiter;
+import org.elasticsearch.common.metrics.CounterMetric;
+
+/**
+ * The rate limiter shared by the auto throttled merges of a shard. Its rate goes up whenever a merge starts
+ * while merges are backing up, and down whenever a merge starts while they keep up, within the configured
+ * bounds.
+ */
+public class MergeRateLimiter extends RateLimiter {
+
+    static final double INCREASE_FACTOR = 1.2;
+    static final double DECREASE_FACTOR = 0.9;
+
+    private final RateLimiter.SimpleRateLimiter rateLimiter;
+    private final double minMbPerSec;
+    private final double maxMbPerSec;
+
+    private final CounterMetric throttledTimeInNanos = new CounterMetric();
+
+    public MergeRateLimiter(double initialMbPerSec, double minMbPerSec, double maxMbPerSec) {
+        this.minMbPerSec = minMbPerSec;
+        this.maxMbPerSec = maxMbPerSec;
+        this.rateLimiter = new RateLimiter.SimpleRateLimiter(Math.max(minMbPerSec, Math.min(maxMbPerSec, initialMbPerSec)));
+    }
+
+    /**
+     * Adjusts the rate when a merge starts.
+     *
+     * @param backlog whether there are more merges than merge threads
+     * @return the new rate
+     */
+    public synchronized double onMergeStart(boolean backlog) {
+        double mbPerSec = rateLimiter.getMbPerSec();
+        double newMbPerSec;
+        if (backlog) {
+            newMbPerSec = Math.min(maxMbPerSec, mbPerSec * INCREASE_FACTOR);
+        } else {
+            newMbPerSec = Math.max(minMbPerSec, mbPerSec * DECREASE_FACTOR);
+        }
+        if (newMbPerSec != mbPerSec) {
+            rateLimiter.setMbPerSec(newMbPerSec);
+        }
+        return newMbPerSec;
+    }
+
+    /**
+     * @return the time merges waited on this rate limiter
+     */
+    public long throttledTimeInNanos() {
+        return throttledTimeInNanos.count();
+    }
+
+    @Override
+    public void setMbPerSec(double mbPerSec) {
+        rateLimiter.setMbPerSec(mbPerSec);
+    }
+
+    @Override
+    public double getMbPerSec() {
+        return rateLimiter.getMbPerSec();
+    }
+
+    @Override
+    public long pause(long bytes) {
+        long pausedNanos = rateLimiter.pause(bytes);
+        throttledTimeInNanos.inc(pausedNanos);
+        return pausedNanos;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.percolator;
 
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.TermFilter;
 import org.apache.lucene.search.Query;
@@ -53,7 +54,10 @@ import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.percolator.PercolatorService;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -77,6 +81,8 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
     private final ShardPercolateService shardPercolateService;
 
     private final ConcurrentMap<HashedBytesRef, Query> percolateQueries = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    // null if the queries are not prefiltered
+    private final QueryTermsIndex queryTermsIndex;
     private final ShardLifecycleListener shardLifecycleListener = new ShardLifecycleListener();
     private final RealTimePercolatorOperationListener realTimePercolatorOperationListener = new RealTimePercolatorOperationListener();
     private final PercolateTypeListener percolateTypeListener = new PercolateTypeListener();
@@ -94,6 +100,7 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
         this.indexCache = indexCache;
         this.indexFieldDataService = indexFieldDataService;
         this.shardPercolateService = shardPercolateService;
+        this.queryTermsIndex = indexSettings.getAsBoolean("index.percolator.prefilter", true) ? new QueryTermsIndex() : null;
 
         indicesLifecycle.addListener(shardLifecycleListener);
         mapperService.addTypeListener(percolateTypeListener);
@@ -103,6 +110,27 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
         return percolateQueries;
     }
 
+    /**
+     * Returns the registered queries that may match the documents of the provided reader. Queries that require
+     * terms that don't occur in the documents are left out, unless prefiltering is disabled, in which case all the
+     * registered queries are returned.
+     */
+    public Map<HashedBytesRef, Query> candidateQueries(IndexReader reader) throws IOException {
+        if (queryTermsIndex == null) {
+            return percolateQueries;
+        }
+        Set<HashedBytesRef> ids = queryTermsIndex.candidates(reader);
+        Map<HashedBytesRef, Query> candidates = new HashMap<HashedBytesRef, Query>(ids.size());
+        for (HashedBytesRef id : ids) {
+            Query query = percolateQueries.get(id);
+            // the query might have been removed in the meantime
+            if (query != null) {
+                candidates.put(id, query);
+            }
+        }
+        return candidates;
+    }
+
     public void close() {
         mapperService.removeTypeListener(percolateTypeListener);
         indicesLifecycle.removeListener(shardLifecycleListener);
@@ -112,6 +140,9 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
 
     public void clear() {
         percolateQueries.clear();
+        if (queryTermsIndex != null) {
+            queryTermsIndex.clear();
+        }
     }
 
     void enableRealTimePercolator() {
@@ -129,13 +160,23 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
     public void addPercolateQuery(String idAsString, BytesReference source) {
         Query newquery = parsePercolatorDocument(idAsString, source);
         HashedBytesRef id = new HashedBytesRef(new BytesRef(idAsString));
-        Query previousQuery = percolateQueries.put(id, newquery);
-        shardPercolateService.addedQuery(id, previousQuery, newquery);
+        addPercolateQuery(id, newquery);
+    }
+
+    private void addPercolateQuery(HashedBytesRef id, Query query) {
+        Query previousQuery = percolateQueries.put(id, query);
+        if (queryTermsIndex != null) {
+            queryTermsIndex.add(id, query);
+        }
+        shardPercolateService.addedQuery(id, previousQuery, query);
     }
 
     public void removePercolateQuery(String idAsString) {
         HashedBytesRef id = new HashedBytesRef(idAsString);
         Query query = percolateQueries.remove(id);
+        if (queryTermsIndex != null) {
+            queryTermsIndex.remove(id);
+        }
         if (query != null) {
             shardPercolateService.removedQuery(id, query);
         }
@@ -267,8 +308,7 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
                     searcher.searcher().search(query, queryCollector);
                     Map<HashedBytesRef, Query> queries = queryCollector.queries();
                     for (Map.Entry<HashedBytesRef, Query> entry : queries.entrySet()) {
-                        Query previousQuery = percolateQueries.put(entry.getKey(), entry.getValue());
-                        shardPercolateService.addedQuery(entry.getKey(), previousQuery, entry.getValue());
+                        addPercolateQuery(entry.getKey(), entry.getValue());
                     }
                 } finally {
                     searcher.release();
@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.FilterClause;
+import org.apache.lucene.queries.TermFilter;
+import org.apache.lucene.search.*;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lucene.search.XBooleanFilter;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.common.lucene.search.function.FiltersFunctionScoreQuery;
+import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts from a query a set of terms of which at least one has to occur in a document for the query to match it.
+ * <p/>
+ * Queries and filters that are not understood, or that can match documents without any specific term (for example
+ * range queries or queries with only prohibited clauses) return <tt>null</tt>, meaning that the query has to be
+ * executed against every document.
+ */
+public final class QueryTermsExtractor {
+
+    private QueryTermsExtractor() {
+    }
+
+    /**
+     * Returns the terms of which at least one must occur in a document matching the query, or <tt>null</tt> if
+     * no such terms can be extracted.
+     */
+    @Nullable
+    public static Set<Term> extractQueryTerms(Query query) {
+        if (query instanceof TermQuery) {
+            return Collections.singleton(((TermQuery) query).getTerm());
+        } else if (query instanceof PhraseQuery) {
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            if (terms.length == 0) {
+                return null;
+            }
+            // all the terms are required, the longest is likely the rarest
+            Term longest = terms[0];
+            for (Term term : terms) {
+                if (term.bytes().length > longest.bytes().length) {
+                    longest = term;
+                }
+            }
+            return Collections.singleton(longest);
+        } else if (query instanceof BooleanQuery) {
+            return extractBooleanQueryTerms((BooleanQuery) query);
+        } else if (query instanceof DisjunctionMaxQuery) {
+            return union(((DisjunctionMaxQuery) query).getDisjuncts(), null);
+        } else if (query instanceof ConstantScoreQuery) {
+            ConstantScoreQuery constantScoreQuery = (ConstantScoreQuery) query;
+            if (constantScoreQuery.getQuery() != null) {
+                return extractQueryTerms(constantScoreQuery.getQuery());
+            }
+            return extractFilterTerms(constantScoreQuery.getFilter());
+        } else if (query instanceof FilteredQuery) {
+            FilteredQuery filteredQuery = (FilteredQuery) query;
+            return selectTerms(extractQueryTerms(filteredQuery.getQuery()), extractFilterTerms(filteredQuery.getFilter()));
+        } else if (query instanceof XFilteredQuery) {
+            XFilteredQuery filteredQuery = (XFilteredQuery) query;
+            return selectTerms(extractQueryTerms(filteredQuery.getQuery()), extractFilterTerms(filteredQuery.getFilter()));
+        } else if (query instanceof FunctionScoreQuery) {
+            return extractQueryTerms(((FunctionScoreQuery) query).getSubQuery());
+        } else if (query instanceof FiltersFunctionScoreQuery) {
+            return extractQueryTerms(((FiltersFunctionScoreQuery) query).getSubQuery());
+        }
+        return null;
+    }
+
+    private static Set<Term> extractBooleanQueryTerms(BooleanQuery query) {
+        Set<Term> best = null;
+        List<Query> shouldClauses = new ArrayList<Query>();
+        boolean hasRequiredClauses = false;
+        for (BooleanClause clause : query.getClauses()) {
+            if (clause.isRequired()) {
+                hasRequiredClauses = true;
+                best = selectTerms(best, extractQueryTerms(clause.getQuery()));
+            } else if (clause.getOccur() == BooleanClause.Occur.SHOULD) {
+                shouldClauses.add(clause.getQuery());
+            }
+        }
+        // should clauses are only required when there are no required clauses, or a minimum should match is set
+        if (!shouldClauses.isEmpty() && (!hasRequiredClauses || query.getMinimumNumberShouldMatch() > 0)) {
+            best = selectTerms(best, union(shouldClauses, null));
+        }
+        return best;
+    }
+
+    @Nullable
+    static Set<Term> extractFilterTerms(Filter filter) {
+        if (filter instanceof TermFilter) {
+            return Collections.singleton(((TermFilter) filter).getTerm());
+        } else if (filter instanceof QueryWrapperFilter) {
+            return extractQueryTerms(((QueryWrapperFilter) filter).getQuery());
+        } else if (filter instanceof XBooleanFilter) {
+            Set<Term> best = null;
+            List<Filter> shouldClauses = new ArrayList<Filter>();
+            for (FilterClause clause : (XBooleanFilter) filter) {
+                if (clause.getOccur() == BooleanClause.Occur.MUST) {
+                    best = selectTerms(best, extractFilterTerms(clause.getFilter()));
+                } else if (clause.getOccur() == BooleanClause.Occur.SHOULD) {
+                    shouldClauses.add(clause.getFilter());
+                }
+            }
+            // unlike boolean queries, one of the should clauses of a boolean filter must always match
+            if (!shouldClauses.isEmpty()) {
+                best = selectTerms(best, union(null, shouldClauses));
+            }
+            return best;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the union of the terms of the provided queries and filters, or <tt>null</tt> if the terms of one of
+     * them can't be extracted.
+     */
+    private static Set<Term> union(@Nullable List<Query> queries, @Nullable List<Filter> filters) {
+        Set<Term> terms = new HashSet<Term>();
+        if (queries != null) {
+            for (Query query : queries) {
+                Set<Term> queryTerms = extractQueryTerms(query);
+                if (queryTerms == null) {
+                    return null;
+                }
+                terms.addAll(queryTerms);
+            }
+        }
+        if (filters != null) {
+            for (Filter filter : filters) {
+                Set<Term> filterTerms = extractFilterTerms(filter);
+                if (filterTerms == null) {
+                    return null;
+                }
+                terms.addAll(filterTerms);
+            }
+        }
+        return terms.isEmpty() ? null : terms;
+    }
+
+    /**
+     * Selects between two sets of required terms the one that is likely to select the least documents: the one
+     * whose shortest term is the longest, since longer terms tend to be less frequent.
+     */
+    private static Set<Term> selectTerms(@Nullable Set<Term> terms1, @Nullable Set<Term> terms2) {
+        if (terms1 == null) {
+            return terms2;
+        } else if (terms2 == null) {
+            return terms1;
+        }
+        return shortestTermLength(terms1) >= shortestTermLength(terms2) ? terms1 : terms2;
+    }
+
+    private static int shortestTermLength(Set<Term> terms) {
+        int shortest = Integer.MAX_VALUE;
+        for (Term term : terms) {
+            shortest = Math.min(shortest, term.bytes().length);
+        }
+        return shortest;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.HashedBytesRef;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in memory inverted index from the terms extracted from the registered percolator queries (see
+ * {@link QueryTermsExtractor}) to the ids of these queries. Given the reader of the document being percolated, it
+ * returns the ids of the queries that can possibly match it, so the other queries don't need to be executed.
+ * <p/>
+ * Modifications are serialized, lookups can happen concurrently with them.
+ */
+public class QueryTermsIndex {
+
+    private final ConcurrentMap<Term, Set<HashedBytesRef>> termToQueries = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<HashedBytesRef, Set<Term>> queryToTerms = ConcurrentCollections.newConcurrentMap();
+    // the number of indexed terms per field, so fields without any can be skipped when looking up a document
+    private final ConcurrentMap<String, Integer> fields = ConcurrentCollections.newConcurrentMap();
+    // queries without extracted terms, they are always candidates
+    private final Set<HashedBytesRef> unindexedQueries = ConcurrentCollections.newConcurrentSet();
+
+    public synchronized void add(HashedBytesRef id, Query query) {
+        remove(id);
+        Set<Term> terms = QueryTermsExtractor.extractQueryTerms(query);
+        if (terms == null) {
+            unindexedQueries.add(id);
+            return;
+        }
+        queryToTerms.put(id, terms);
+        for (Term term : terms) {
+            Set<HashedBytesRef> ids = termToQueries.get(term);
+            if (ids == null) {
+                ids = ConcurrentCollections.newConcurrentSet();
+                termToQueries.put(term, ids);
+                Integer count = fields.get(term.field());
+                fields.put(term.field(), count == null ? 1 : count + 1);
+            }
+            ids.add(id);
+        }
+    }
+
+    public synchronized void remove(HashedBytesRef id) {
+        if (unindexedQueries.remove(id)) {
+            return;
+        }
+        Set<Term> terms = queryToTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (Term term : terms) {
+            Set<HashedBytesRef> ids = termToQueries.get(term);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                termToQueries.remove(term);
+                int count = fields.get(term.field());
+                if (count == 1) {
+                    fields.remove(term.field());
+                } else {
+                    fields.put(term.field(), count - 1);
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        termToQueries.clear();
+        queryToTerms.clear();
+        fields.clear();
+        unindexedQueries.clear();
+    }
+
+    /**
+     * Returns the ids of the queries that may match the documents of the provided reader.
+     */
+    public Set<HashedBytesRef> candidates(IndexReader reader) throws IOException {
+        Set<HashedBytesRef> candidates = new HashSet<HashedBytesRef>(unindexedQueries);
+        Fields readerFields = MultiFields.getFields(reader);
+        if (readerFields == null) {
+            return candidates;
+        }
+        for (String field : readerFields) {
+            if (!fields.containsKey(field)) {
+                continue;
+            }
+            Terms terms = readerFields.terms(field);
+            if (terms == null) {
+                continue;
+            }
+            TermsEnum termsEnum = terms.iterator(null);
+            for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                Set<HashedBytesRef> ids = termToQueries.get(new Term(field, term));
+                if (ids != null) {
+                    candidates.addAll(ids);
+                }
+            }
+        }
+        return candidates;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.index.percolator.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -39,6 +40,8 @@ public class PercolateStats implements Streamable, ToXContent {
     private long current;
     private long memorySizeInBytes;
     private long numQueries;
+    private long queriesConsidered;
+    private long queriesPruned;
 
     /**
      * Noop constructor for serialazation purposes.
@@ -46,12 +49,14 @@ public class PercolateStats implements Streamable, ToXContent {
     public PercolateStats() {
     }
 
-    PercolateStats(long percolateCount, long percolateTimeInMillis, long current, long memorySizeInBytes, long numQueries) {
+    PercolateStats(long percolateCount, long percolateTimeInMillis, long current, long memorySizeInBytes, long numQueries, long queriesConsidered, long queriesPruned) {
         this.percolateCount = percolateCount;
         this.percolateTimeInMillis = percolateTimeInMillis;
         this.current = current;
         this.memorySizeInBytes = memorySizeInBytes;
         this.numQueries = numQueries;
+        this.queriesConsidered = queriesConsidered;
+        this.queriesPruned = queriesPruned;
     }
 
     /**
@@ -89,6 +94,28 @@ public class PercolateStats implements Streamable, ToXContent {
         return numQueries;
     }
 
+    /**
+     * @return The total number of registered queries the percolate api invocations had to consider.
+     */
+    public long getQueriesConsidered() {
+        return queriesConsidered;
+    }
+
+    /**
+     * @return The total number of registered queries that were skipped without being executed, because the terms
+     * they require don't occur in the percolated documents.
+     */
+    public long getQueriesPruned() {
+        return queriesPruned;
+    }
+
+    /**
+     * @return The ratio of the considered queries that were skipped without being executed.
+     */
+    public double getQueriesPrunedRatio() {
+        return queriesConsidered == 0 ? 0 : (double) queriesPruned / queriesConsidered;
+    }
+
     /**
      * @return The total size the loaded queries take in memory.
      */
@@ -112,6 +139,9 @@ public class PercolateStats implements Streamable, ToXContent {
         builder.field(Fields.MEMORY_SIZE_IN_BYTES, memorySizeInBytes);
         builder.field(Fields.MEMORY_SIZE, getMemorySize());
         builder.field(Fields.QUERIES, getNumQueries());
+        builder.field(Fields.QUERIES_CONSIDERED, queriesConsidered);
+        builder.field(Fields.QUERIES_PRUNED, queriesPruned);
+        builder.field(Fields.QUERIES_PRUNED_RATIO, getQueriesPrunedRatio());
         builder.endObject();
         return builder;
     }
@@ -126,6 +156,8 @@ public class PercolateStats implements Streamable, ToXContent {
         current += percolate.getCurrent();
         memorySizeInBytes += percolate.getMemorySizeInBytes();
         numQueries += percolate.getNumQueries();
+        queriesConsidered += percolate.getQueriesConsidered();
+        queriesPruned += percolate.getQueriesPruned();
     }
 
     static final class Fields {
@@ -137,6 +169,9 @@ public class PercolateStats implements Streamable, ToXContent {
         static final XContentBuilderString MEMORY_SIZE_IN_BYTES = new XContentBuilderString("memory_size_in_bytes");
         static final XContentBuilderString MEMORY_SIZE = new XContentBuilderString("memory_size");
         static final XContentBuilderString QUERIES = new XContentBuilderString("queries");
+        static final XContentBuilderString QUERIES_CONSIDERED = new XContentBuilderString("queries_considered");
+        static final XContentBuilderString QUERIES_PRUNED = new XContentBuilderString("queries_pruned");
+        static final XContentBuilderString QUERIES_PRUNED_RATIO = new XContentBuilderString("queries_pruned_ratio");
     }
 
     public static PercolateStats readPercolateStats(StreamInput in) throws IOException {
@@ -152,6 +187,10 @@ public class PercolateStats implements Streamable, ToXContent {
         current = in.readVLong();
         memorySizeInBytes = in.readVLong();
         numQueries = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            queriesConsidered = in.readVLong();
+            queriesPruned = in.readVLong();
+        }
     }
 
     @Override
@@ -161,5 +200,9 @@ public class PercolateStats implements Streamable, ToXContent {
         out.writeVLong(current);
         out.writeVLong(memorySizeInBytes);
         out.writeVLong(numQueries);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(queriesConsidered);
+            out.writeVLong(queriesPruned);
+        }
     }
 }
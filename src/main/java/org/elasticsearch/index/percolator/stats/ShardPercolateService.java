@@ -39,6 +39,7 @@ import java.util.concurrent.TimeUnit;
  *     <li> the current number of percolate requests
  *     <li> number of registered percolate queries
  *     <li> the estimated amount of memory the registered queries take
+ *     <li> the number of registered queries that were skipped by the prefiltering
  * </ul>
  */
 public class ShardPercolateService extends AbstractIndexShardComponent {
@@ -54,6 +55,9 @@ public class ShardPercolateService extends AbstractIndexShardComponent {
     private final CounterMetric numberOfQueries = new CounterMetric();
     private final CounterMetric memorySizeInBytes = new CounterMetric();
 
+    private final CounterMetric queriesConsidered = new CounterMetric();
+    private final CounterMetric queriesPruned = new CounterMetric();
+
     public void prePercolate() {
         currentMetric.inc();
     }
@@ -63,6 +67,15 @@ public class ShardPercolateService extends AbstractIndexShardComponent {
         percolateMetric.inc(tookInNanos);
     }
 
+    /**
+     * Records that out of the registered queries, only the candidate ones will be executed for a percolate request.
+     */
+    public void prefiltered(long registeredQueries, long candidateQueries) {
+        queriesConsidered.inc(registeredQueries);
+        // queries can be registered while we select the candidates
+        queriesPruned.inc(Math.max(0, registeredQueries - candidateQueries));
+    }
+
     public void addedQuery(HashedBytesRef id, Query previousQuery, Query newQuery) {
         if (previousQuery != null) {
             memorySizeInBytes.dec(computeSizeInMemory(id, previousQuery));
@@ -81,7 +94,7 @@ public class ShardPercolateService extends AbstractIndexShardComponent {
      * @return The current metrics
      */
     public PercolateStats stats() {
-        return new PercolateStats(percolateMetric.count(), TimeUnit.NANOSECONDS.toMillis(percolateMetric.sum()), currentMetric.count(), memorySizeInBytes.count(), numberOfQueries.count());
+        return new PercolateStats(percolateMetric.count(), TimeUnit.NANOSECONDS.toMillis(percolateMetric.sum()), currentMetric.count(), memorySizeInBytes.count(), numberOfQueries.count(), queriesConsidered.count(), queriesPruned.count());
     }
 
     private static long computeSizeInMemory(HashedBytesRef id, Query query) {
@@ -147,7 +147,7 @@ public class GeoPolygonFilterParser implements FilterParser {
         }
 
         IndexGeoPointFieldData<?> indexFieldData = parseContext.fieldData().getForField(mapper);
-        Filter filter = new GeoPolygonFilter(indexFieldData, shell.toArray(new GeoPoint[shell.size()]));
+        Filter filter = new GeoPolygonFilter(indexFieldData, (GeoPointFieldMapper) mapper, shell.toArray(new GeoPoint[shell.size()]));
         if (cache) {
             filter = parseContext.cacheFilter(filter, cacheKey);
         }
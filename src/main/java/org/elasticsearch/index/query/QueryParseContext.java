@@ -35,6 +35,7 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.IndexCache;
+import org.elasticsearch.index.cache.fixedbitset.FixedBitSetFilter;
 import org.elasticsearch.index.cache.filter.support.CacheKeyFilter;
 import org.elasticsearch.index.engine.IndexEngine;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
@@ -180,6 +181,14 @@ public class QueryParseContext {
         return indexQueryParser.indexCache.filter().cache(filter);
     }
 
+    /**
+     * Returns a filter that is resolved as a {@link org.apache.lucene.util.FixedBitSet} cached per segment, like
+     * the parent filters that block join queries require.
+     */
+    public FixedBitSetFilter fixedBitSetFilter(Filter filter) {
+        return indexQueryParser.indexCache.fixedBitSetFilterCache().getFixedBitSetFilter(filter);
+    }
+
     public void addNamedFilter(String name, Filter filter) {
         namedFilters.put(name, filter);
     }
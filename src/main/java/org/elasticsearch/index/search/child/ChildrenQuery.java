@@ -38,9 +38,11 @@ import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.FloatArray;
 import org.elasticsearch.common.util.IntArray;
-import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.index.fielddata.BytesValues;
+import org.elasticsearch.index.fielddata.ShardFieldData;
 import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.index.fielddata.plain.ParentChildGlobalOrdinals;
 import org.elasticsearch.index.fielddata.plain.ParentChildIndexFieldData;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
@@ -57,9 +59,11 @@ import java.util.Set;
  * parent documents using {@link ParentChildIndexFieldData}.
  * <p/>
  * This query is executed in two rounds. The first round resolves all the matching child documents and groups these
- * documents by parent uid value. Also the child scores are aggregated per parent uid value. During the second round
- * all parent documents having the same uid value that is collected in the first phase are emitted as hit including
- * a score based on the aggregated child scores and score type.
+ * documents by the global ordinal of their parent uid value. Also the child scores are aggregated per global ordinal,
+ * in arrays indexed by the order the parents were first seen in, so their size depends on the number of matching
+ * parents rather than the total number of parents.
+ * During the second round all parent documents having a global ordinal that is collected in the first phase are
+ * emitted as hit including a score based on the aggregated child scores and score type.
  */
 public class ChildrenQuery extends Query {
 
@@ -153,46 +157,36 @@ public class ChildrenQuery extends Query {
         IndexSearcher indexSearcher = new IndexSearcher(searcher.getIndexReader());
         indexSearcher.setSimilarity(searcher.getSimilarity());
 
-        final BytesRefHash parentIds;
-        final FloatArray scores;
-        final IntArray occurrences;
+        ShardFieldData shardFieldData = searchContext.indexShard() != null ? searchContext.indexShard().fieldData() : null;
+        ParentChildGlobalOrdinals globalOrdinals = parentChildIndexFieldData.loadGlobalOrdinals(searcher.getIndexReader(), parentType, shardFieldData);
+        final ParentOrdAndScoreCollector collector;
         switch (scoreType) {
             case MAX:
-                MaxCollector maxCollector = new MaxCollector(parentChildIndexFieldData, parentType, searchContext);
-                indexSearcher.search(childQuery, maxCollector);
-                parentIds = maxCollector.parentIds;
-                scores = maxCollector.scores;
-                occurrences = null;
-                Releasables.release(maxCollector.parentIdsIndex);
+                collector = new MaxCollector(parentChildIndexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
                 break;
             case SUM:
-                SumCollector sumCollector = new SumCollector(parentChildIndexFieldData, parentType, searchContext);
-                indexSearcher.search(childQuery, sumCollector);
-                parentIds = sumCollector.parentIds;
-                scores = sumCollector.scores;
-                occurrences = null;
-                Releasables.release(sumCollector.parentIdsIndex);
+                collector = new SumCollector(parentChildIndexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
                 break;
             case AVG:
-                AvgCollector avgCollector = new AvgCollector(parentChildIndexFieldData, parentType, searchContext);
-                indexSearcher.search(childQuery, avgCollector);
-                parentIds = avgCollector.parentIds;
-                scores = avgCollector.scores;
-                occurrences = avgCollector.occurrences;
-                Releasables.release(avgCollector.parentIdsIndex);
+                collector = new AvgCollector(parentChildIndexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
                 break;
             default:
                 throw new RuntimeException("Are we missing a score type here? -- " + scoreType);
         }
+        indexSearcher.search(childQuery, collector);
 
-        int size = (int) parentIds.size();
+        final LongHash parentIdxs = collector.parentIdxs;
+        final FloatArray scores = collector.scores;
+        final IntArray occurrences = collector.occurrences;
+        final BytesRefHash parentIds = collector.parentIds;
+        int size = (int) parentIdxs.size();
         if (size == 0) {
-            Releasables.release(parentIds, scores, occurrences);
+            Releasables.release(parentIds, parentIdxs, scores, occurrences);
             return Queries.newMatchNoDocsQuery().createWeight(searcher);
         }
 
         final Filter parentFilter;
-        if (size == 1) {
+        if (parentIds != null && size == 1) {
             BytesRef id = parentIds.get(0, new BytesRef());
             if (nonNestedDocsFilter != null) {
                 List<Filter> filters = Arrays.asList(
@@ -203,12 +197,12 @@ public class ChildrenQuery extends Query {
             } else {
                 parentFilter = new TermFilter(new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(parentType, id)));
             }
-        } else if (size <= shortCircuitParentDocSet) {
+        } else if (parentIds != null) {
             parentFilter = new ParentIdsFilter(parentType, nonNestedDocsFilter, parentIds);
         } else {
             parentFilter = new ApplyAcceptedDocsFilter(this.parentFilter);
         }
-        ParentWeight parentWeight = new ParentWeight(rewrittenChildQuery.createWeight(searcher), parentFilter, size, parentIds, scores, occurrences);
+        ParentWeight parentWeight = new ParentWeight(rewrittenChildQuery.createWeight(searcher), parentFilter, size, globalOrdinals, parentIds, parentIdxs, scores, occurrences);
         searchContext.addReleasable(parentWeight);
         return parentWeight;
     }
@@ -217,17 +211,21 @@ public class ChildrenQuery extends Query {
 
         private final Weight childWeight;
         private final Filter parentFilter;
+        private final ParentChildGlobalOrdinals globalOrdinals;
         private final BytesRefHash parentIds;
+        private final LongHash parentIdxs;
         private final FloatArray scores;
         private final IntArray occurrences;
 
         private int remaining;
 
-        private ParentWeight(Weight childWeight, Filter parentFilter, int remaining, BytesRefHash parentIds, FloatArray scores, IntArray occurrences) {
+        private ParentWeight(Weight childWeight, Filter parentFilter, int remaining, ParentChildGlobalOrdinals globalOrdinals, BytesRefHash parentIds, LongHash parentIdxs, FloatArray scores, IntArray occurrences) {
             this.childWeight = childWeight;
             this.parentFilter = parentFilter;
             this.remaining = remaining;
+            this.globalOrdinals = globalOrdinals;
             this.parentIds = parentIds;
+            this.parentIdxs = parentIdxs;
             this.scores = scores;
             this.occurrences = occurrences;
         }
@@ -260,7 +258,7 @@ public class ChildrenQuery extends Query {
                 return null;
             }
 
-            BytesValues bytesValues = parentChildIndexFieldData.load(context).getBytesValues(parentType);
+            BytesValues.WithOrdinals bytesValues = parentChildIndexFieldData.load(context).getBytesValues(parentType);
             if (bytesValues == null) {
                 return null;
             }
@@ -268,37 +266,42 @@ public class ChildrenQuery extends Query {
             // We can't be sure of the fact that liveDocs have been applied, so we apply it here. The "remaining"
             // count down (short circuit) logic will then work as expected.
             DocIdSetIterator parentsIterator = BitsFilteredDocIdSet.wrap(parentsSet, context.reader().getLiveDocs()).iterator();
+            ParentChildGlobalOrdinals.Segment segmentOrdinals = globalOrdinals.segment(context);
             switch (scoreType) {
                 case AVG:
-                    return new AvgParentScorer(this, bytesValues, parentIds, scores, occurrences, parentsIterator);
+                    return new AvgParentScorer(this, bytesValues.ordinals(), segmentOrdinals, parentIdxs, scores, occurrences, parentsIterator);
                 default:
-                    return new ParentScorer(this, bytesValues, parentIds, scores, parentsIterator);
+                    return new ParentScorer(this, bytesValues.ordinals(), segmentOrdinals, parentIdxs, scores, occurrences, parentsIterator);
             }
         }
 
         @Override
         public boolean release() throws ElasticsearchException {
-            Releasables.release(parentIds, scores, occurrences);
+            Releasables.release(parentIds, parentIdxs, scores, occurrences);
             return true;
         }
 
         private class ParentScorer extends Scorer {
 
-            final BytesRefHash parentIds;
+            final LongHash parentIdxs;
             final FloatArray scores;
+            final IntArray occurrences;
 
-            final BytesValues bytesValues;
+            final Ordinals.Docs ordinals;
+            final ParentChildGlobalOrdinals.Segment segmentOrdinals;
             final DocIdSetIterator parentsIterator;
 
             int currentDocId = -1;
             float currentScore;
 
-            ParentScorer(Weight weight, BytesValues bytesValues, BytesRefHash parentIds, FloatArray scores, DocIdSetIterator parentsIterator) {
+            ParentScorer(Weight weight, Ordinals.Docs ordinals, ParentChildGlobalOrdinals.Segment segmentOrdinals, LongHash parentIdxs, FloatArray scores, IntArray occurrences, DocIdSetIterator parentsIterator) {
                 super(weight);
-                this.bytesValues = bytesValues;
+                this.parentIdxs = parentIdxs;
+                this.ordinals = ordinals;
+                this.segmentOrdinals = segmentOrdinals;
                 this.parentsIterator = parentsIterator;
-                this.parentIds = parentIds;
                 this.scores = scores;
+                this.occurrences = occurrences;
             }
 
             @Override
@@ -330,10 +333,7 @@ public class ChildrenQuery extends Query {
                         return currentDocId;
                     }
 
-                    bytesValues.setDocument(currentDocId);
-                    long index = parentIds.find(bytesValues.nextValue(), bytesValues.currentValueHash());
-                    if (index != -1) {
-                        currentScore = scores.get(index);
+                    if (acceptParent(segmentOrdinals.getGlobalOrd(ordinals, currentDocId))) {
                         remaining--;
                         return currentDocId;
                     }
@@ -351,10 +351,7 @@ public class ChildrenQuery extends Query {
                     return currentDocId;
                 }
 
-                bytesValues.setDocument(currentDocId);
-                long index = parentIds.find(bytesValues.nextValue(), bytesValues.currentValueHash());
-                if (index != -1) {
-                    currentScore = scores.get(index);
+                if (acceptParent(segmentOrdinals.getGlobalOrd(ordinals, currentDocId))) {
                     remaining--;
                     return currentDocId;
                 } else {
@@ -362,6 +359,22 @@ public class ChildrenQuery extends Query {
                 }
             }
 
+            boolean acceptParent(long globalOrd) {
+                if (globalOrd == Ordinals.MISSING_ORDINAL) {
+                    return false;
+                }
+                long parentIdx = parentIdxs.find(globalOrd);
+                if (parentIdx == -1) {
+                    return false;
+                }
+                return acceptParentIdx(parentIdx);
+            }
+
+            boolean acceptParentIdx(long parentIdx) {
+                currentScore = scores.get(parentIdx);
+                return true;
+            }
+
             @Override
             public long cost() {
                 return parentsIterator.cost();
@@ -370,128 +383,97 @@ public class ChildrenQuery extends Query {
 
         private final class AvgParentScorer extends ParentScorer {
 
-            final IntArray occurrences;
-
-            AvgParentScorer(Weight weight, BytesValues values, BytesRefHash parentIds, FloatArray scores, IntArray occurrences, DocIdSetIterator parentsIterator) {
-                super(weight, values, parentIds, scores, parentsIterator);
-                this.occurrences = occurrences;
-            }
-
-            @Override
-            public int nextDoc() throws IOException {
-                if (remaining == 0) {
-                    return currentDocId = NO_MORE_DOCS;
-                }
-
-                while (true) {
-                    currentDocId = parentsIterator.nextDoc();
-                    if (currentDocId == DocIdSetIterator.NO_MORE_DOCS) {
-                        return currentDocId;
-                    }
-
-                    bytesValues.setDocument(currentDocId);
-                    long index = parentIds.find(bytesValues.nextValue(), bytesValues.currentValueHash());
-                    if (index != -1) {
-                        currentScore = scores.get(index);
-                        currentScore /= occurrences.get(index);
-                        remaining--;
-                        return currentDocId;
-                    }
-                }
+            AvgParentScorer(Weight weight, Ordinals.Docs ordinals, ParentChildGlobalOrdinals.Segment segmentOrdinals, LongHash parentIdxs, FloatArray scores, IntArray occurrences, DocIdSetIterator parentsIterator) {
+                super(weight, ordinals, segmentOrdinals, parentIdxs, scores, occurrences, parentsIterator);
             }
 
             @Override
-            public int advance(int target) throws IOException {
-                if (remaining == 0) {
-                    return currentDocId = NO_MORE_DOCS;
-                }
-
-                currentDocId = parentsIterator.advance(target);
-                if (currentDocId == DocIdSetIterator.NO_MORE_DOCS) {
-                    return currentDocId;
-                }
-
-                bytesValues.setDocument(currentDocId);
-                long index = parentIds.find(bytesValues.nextValue(), bytesValues.currentValueHash());
-                if (index != -1) {
-                    currentScore = scores.get(index);
-                    currentScore /= occurrences.get(index);
-                    remaining--;
-                    return currentDocId;
-                } else {
-                    return nextDoc();
-                }
+            boolean acceptParentIdx(long parentIdx) {
+                currentScore = scores.get(parentIdx) / occurrences.get(parentIdx);
+                return true;
             }
         }
 
     }
 
-    private abstract static class ParentIdAndScoreCollector extends NoopCollector {
+    /**
+     * Aggregates the scores of the matching children per global ordinal of their parent id. Each matching parent
+     * gets an index, in the order parents are first seen, in {@link #parentIdxs} which the scores and the number of
+     * matching children are stored at.
+     */
+    private abstract static class ParentOrdAndScoreCollector extends NoopCollector {
 
-        final BytesRefHash parentIds;
         protected final String parentType;
         private final ParentChildIndexFieldData indexFieldData;
-        private final PageCacheRecycler pageCacheRecycler;
+        private final ParentChildGlobalOrdinals globalOrdinals;
+        private final int shortCircuitParentDocSet;
 
+        protected final LongHash parentIdxs;
         protected FloatArray scores;
+        protected IntArray occurrences;
+        // The actual parent ids are only kept around while there are few enough of them to look the parents up by id
+        protected BytesRefHash parentIds;
 
         protected BytesValues.WithOrdinals values;
         protected Ordinals.Docs ordinals;
+        protected ParentChildGlobalOrdinals.Segment segmentOrdinals;
         protected Scorer scorer;
 
-        // This remembers what ordinals have already been seen in the current segment
-        // and prevents from fetch the actual id from FD and checking if it exists in parentIds
-        protected LongArray parentIdsIndex;
-
-        private ParentIdAndScoreCollector(ParentChildIndexFieldData indexFieldData, String parentType, SearchContext searchContext) {
+        private ParentOrdAndScoreCollector(ParentChildIndexFieldData indexFieldData, ParentChildGlobalOrdinals globalOrdinals, String parentType, int shortCircuitParentDocSet, SearchContext searchContext) {
             this.parentType = parentType;
             this.indexFieldData = indexFieldData;
-            this.pageCacheRecycler = searchContext.pageCacheRecycler();
-            this.parentIds = new BytesRefHash(512, pageCacheRecycler);
+            this.globalOrdinals = globalOrdinals;
+            this.shortCircuitParentDocSet = shortCircuitParentDocSet;
+            PageCacheRecycler pageCacheRecycler = searchContext.pageCacheRecycler();
+            this.parentIdxs = new LongHash(512, pageCacheRecycler);
             this.scores = BigArrays.newFloatArray(512, pageCacheRecycler, false);
+            this.occurrences = BigArrays.newIntArray(512, pageCacheRecycler, false);
+            this.parentIds = new BytesRefHash(Math.min(512, Math.max(1, shortCircuitParentDocSet)), pageCacheRecycler);
         }
 
-
         @Override
         public void collect(int doc) throws IOException {
             if (values != null) {
-                long ord = ordinals.getOrd(doc);
-                long parentIdx = parentIdsIndex.get(ord);
-                if (parentIdx < 0) {
-                    final BytesRef bytes  = values.getValueByOrd(ord);
-                    final int hash = values.currentValueHash();
-                    parentIdx = parentIds.add(bytes, hash);
-                    if (parentIdx < 0) {
-                        parentIdx = -parentIdx - 1;
-                        doScore(parentIdx);
-                    } else {
-                        scores = BigArrays.grow(scores, parentIdx + 1);
-                        scores.set(parentIdx, scorer.score());
-                    }
-                    parentIdsIndex.set(ord, parentIdx);
+                final long segmentOrd = ordinals.getOrd(doc);
+                final long globalOrd = segmentOrdinals.getGlobalOrd(segmentOrd);
+                if (globalOrd == Ordinals.MISSING_ORDINAL) {
+                    return;
+                }
+                long parentIdx = parentIdxs.add(globalOrd);
+                if (parentIdx >= 0) {
+                    scores = BigArrays.grow(scores, parentIdx + 1);
+                    occurrences = BigArrays.grow(occurrences, parentIdx + 1);
+                    scores.set(parentIdx, scorer.score());
+                    occurrences.set(parentIdx, 1);
+                    newParent(segmentOrd);
                 } else {
+                    parentIdx = -1 - parentIdx;
                     doScore(parentIdx);
+                    occurrences.increment(parentIdx, 1);
                 }
             }
         }
 
-        protected void doScore(long index) throws IOException {
+        private void newParent(long segmentOrd) {
+            if (parentIdxs.size() > shortCircuitParentDocSet) {
+                if (parentIds != null) {
+                    Releasables.release(parentIds);
+                    parentIds = null;
+                }
+            } else {
+                parentIds.add(values.getValueByOrd(segmentOrd), values.currentValueHash());
+            }
         }
 
+        protected abstract void doScore(long parentIdx) throws IOException;
+
         @Override
         public void setNextReader(AtomicReaderContext context) throws IOException {
             values = indexFieldData.load(context).getBytesValues(parentType);
             if (values != null) {
                 ordinals = values.ordinals();
-                final long maxOrd = ordinals.getMaxOrd();
-                if (parentIdsIndex == null) {
-                    parentIdsIndex = BigArrays.newLongArray(BigArrays.overSize(maxOrd), pageCacheRecycler, false);
-                } else if (parentIdsIndex.size() < maxOrd) {
-                    parentIdsIndex = BigArrays.grow(parentIdsIndex, maxOrd);
-                }
-                parentIdsIndex.fill(0, maxOrd, -1L);
+                segmentOrdinals = globalOrdinals.segment(context);
             }
-
         }
 
         @Override
@@ -501,69 +483,43 @@ public class ChildrenQuery extends Query {
 
     }
 
-    private final static class SumCollector extends ParentIdAndScoreCollector {
+    private final static class SumCollector extends ParentOrdAndScoreCollector {
 
-        private SumCollector(ParentChildIndexFieldData indexFieldData, String parentType, SearchContext searchContext) {
-            super(indexFieldData, parentType, searchContext);
+        private SumCollector(ParentChildIndexFieldData indexFieldData, ParentChildGlobalOrdinals globalOrdinals, String parentType, int shortCircuitParentDocSet, SearchContext searchContext) {
+            super(indexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
         }
 
         @Override
-        protected void doScore(long index) throws IOException {
-            scores.increment(index, scorer.score());
+        protected void doScore(long parentIdx) throws IOException {
+            scores.increment(parentIdx, scorer.score());
         }
     }
 
-    private final static class MaxCollector extends ParentIdAndScoreCollector {
+    private final static class MaxCollector extends ParentOrdAndScoreCollector {
 
-        private MaxCollector(ParentChildIndexFieldData indexFieldData, String childType, SearchContext searchContext) {
-            super(indexFieldData, childType, searchContext);
+        private MaxCollector(ParentChildIndexFieldData indexFieldData, ParentChildGlobalOrdinals globalOrdinals, String parentType, int shortCircuitParentDocSet, SearchContext searchContext) {
+            super(indexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
         }
 
         @Override
-        protected void doScore(long index) throws IOException {
+        protected void doScore(long parentIdx) throws IOException {
             float currentScore = scorer.score();
-            if (currentScore > scores.get(index)) {
-                scores.set(index, currentScore);
+            if (currentScore > scores.get(parentIdx)) {
+                scores.set(parentIdx, currentScore);
             }
         }
     }
 
-    private final static class AvgCollector extends ParentIdAndScoreCollector {
-
-        private IntArray occurrences;
+    private final static class AvgCollector extends ParentOrdAndScoreCollector {
 
-        AvgCollector(ParentChildIndexFieldData indexFieldData, String childType, SearchContext searchContext) {
-            super(indexFieldData, childType, searchContext);
-            this.occurrences = BigArrays.newIntArray(512, searchContext.pageCacheRecycler(), false);
+        private AvgCollector(ParentChildIndexFieldData indexFieldData, ParentChildGlobalOrdinals globalOrdinals, String parentType, int shortCircuitParentDocSet, SearchContext searchContext) {
+            super(indexFieldData, globalOrdinals, parentType, shortCircuitParentDocSet, searchContext);
         }
 
         @Override
-        public void collect(int doc) throws IOException {
-            if (values != null) {
-                int ord = (int) ordinals.getOrd(doc);
-                long parentIdx = parentIdsIndex.get(ord);
-                if (parentIdx < 0) {
-                    final BytesRef bytes = values.getValueByOrd(ord);
-                    final int hash = values.currentValueHash();
-                    parentIdx = parentIds.add(bytes, hash);
-                    if (parentIdx < 0) {
-                        parentIdx = -parentIdx - 1;
-                        scores.increment(parentIdx, scorer.score());
-                        occurrences.increment(parentIdx, 1);
-                    } else {
-                        scores = BigArrays.grow(scores, parentIdx + 1);
-                        scores.set(parentIdx, scorer.score());
-                        occurrences = BigArrays.grow(occurrences, parentIdx + 1);
-                        occurrences.set(parentIdx, 1);
-                    }
-                    parentIdsIndex.set(ord, parentIdx);
-                } else {
-                    scores.increment(parentIdx, scorer.score());
-                    occurrences.increment(parentIdx, 1);
-                }
-            }
+        protected void doScore(long parentIdx) throws IOException {
+            scores.increment(parentIdx, scorer.score());
         }
-
     }
 
 }
@@ -23,7 +23,6 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.Bits;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.ToStringUtils;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.lease.Releasable;
@@ -34,11 +33,12 @@ import org.elasticsearch.common.lucene.search.NoopCollector;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.FloatArray;
-import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.index.fielddata.BytesValues;
+import org.elasticsearch.index.fielddata.ShardFieldData;
 import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.index.fielddata.plain.ParentChildGlobalOrdinals;
 import org.elasticsearch.index.fielddata.plain.ParentChildIndexFieldData;
-import org.elasticsearch.common.util.BytesRefHash;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
@@ -47,7 +47,8 @@ import java.util.Set;
 /**
  * A query implementation that executes the wrapped parent query and
  * connects the matching parent docs to the related child documents
- * using the {@link ParentChildIndexFieldData}.
+ * using the {@link ParentChildIndexFieldData}. Matching parents are
+ * joined with their children by the global ordinal of the parent id.
  */
 public class ParentQuery extends Query {
 
@@ -123,7 +124,9 @@ public class ParentQuery extends Query {
     @Override
     public Weight createWeight(IndexSearcher searcher) throws IOException {
         SearchContext searchContext = SearchContext.current();
-        ParentIdAndScoreCollector collector = new ParentIdAndScoreCollector(searchContext, parentChildIndexFieldData, parentType);
+        ShardFieldData shardFieldData = searchContext.indexShard() != null ? searchContext.indexShard().fieldData() : null;
+        ParentChildGlobalOrdinals globalOrdinals = parentChildIndexFieldData.loadGlobalOrdinals(searcher.getIndexReader(), parentType, shardFieldData);
+        ParentOrdAndScoreCollector collector = new ParentOrdAndScoreCollector(searchContext, parentChildIndexFieldData, globalOrdinals, parentType);
 
         final Query parentQuery;
         if (rewrittenParentQuery == null) {
@@ -135,45 +138,54 @@ public class ParentQuery extends Query {
         IndexSearcher indexSearcher = new IndexSearcher(searcher.getIndexReader());
         indexSearcher.setSimilarity(searcher.getSimilarity());
         indexSearcher.search(parentQuery, collector);
+        LongHash parentIdxs = collector.parentIdxs;
         FloatArray scores = collector.scores;
-        BytesRefHash parentIds = collector.parentIds;
 
-        if (parentIds.size() == 0) {
-            Releasables.release(parentIds, scores);
+        if (parentIdxs.size() == 0) {
+            Releasables.release(parentIdxs, scores);
             return Queries.newMatchNoDocsQuery().createWeight(searcher);
         }
 
-        ChildWeight childWeight = new ChildWeight(searchContext, parentQuery.createWeight(searcher), childrenFilter, parentIds, scores);
+        ChildWeight childWeight = new ChildWeight(parentQuery.createWeight(searcher), childrenFilter, globalOrdinals, parentIdxs, scores);
         searchContext.addReleasable(childWeight);
         return childWeight;
     }
 
-    private static class ParentIdAndScoreCollector extends NoopCollector {
+    /**
+     * Keeps track of the score of each matching parent by the global ordinal of its id. The scores are stored at the
+     * index the global ordinal has in {@link #parentIdxs}, so their size depends on the number of matching parents.
+     */
+    private static class ParentOrdAndScoreCollector extends NoopCollector {
 
-        private final BytesRefHash parentIds;
+        private final LongHash parentIdxs;
         private FloatArray scores;
         private final ParentChildIndexFieldData indexFieldData;
+        private final ParentChildGlobalOrdinals globalOrdinals;
         private final String parentType;
 
         private Scorer scorer;
-        private BytesValues values;
+        private Ordinals.Docs ordinals;
+        private ParentChildGlobalOrdinals.Segment segmentOrdinals;
 
-        ParentIdAndScoreCollector(SearchContext searchContext, ParentChildIndexFieldData indexFieldData, String parentType) {
-            this.parentIds = new BytesRefHash(512, searchContext.pageCacheRecycler());
+        ParentOrdAndScoreCollector(SearchContext searchContext, ParentChildIndexFieldData indexFieldData, ParentChildGlobalOrdinals globalOrdinals, String parentType) {
+            this.parentIdxs = new LongHash(512, searchContext.pageCacheRecycler());
             this.scores = BigArrays.newFloatArray(512, searchContext.pageCacheRecycler(), false);
             this.indexFieldData = indexFieldData;
+            this.globalOrdinals = globalOrdinals;
             this.parentType = parentType;
         }
 
         @Override
         public void collect(int doc) throws IOException {
             // It can happen that for particular segment no document exist for an specific type. This prevents NPE
-            if (values != null) {
-                values.setDocument(doc);
-                long index = parentIds.add(values.nextValue(), values.currentValueHash());
-                if (index >= 0) {
-                    scores = BigArrays.grow(scores, index + 1);
-                    scores.set(index, scorer.score());
+            if (ordinals != null) {
+                long globalOrd = segmentOrdinals.getGlobalOrd(ordinals, doc);
+                if (globalOrd != Ordinals.MISSING_ORDINAL) {
+                    long parentIdx = parentIdxs.add(globalOrd);
+                    if (parentIdx >= 0) {
+                        scores = BigArrays.grow(scores, parentIdx + 1);
+                        scores.set(parentIdx, scorer.score());
+                    }
                 }
             }
         }
@@ -185,26 +197,30 @@ public class ParentQuery extends Query {
 
         @Override
         public void setNextReader(AtomicReaderContext context) throws IOException {
-            values = indexFieldData.load(context).getBytesValues(parentType);
+            BytesValues.WithOrdinals values = indexFieldData.load(context).getBytesValues(parentType);
+            if (values != null) {
+                ordinals = values.ordinals();
+                segmentOrdinals = globalOrdinals.segment(context);
+            } else {
+                ordinals = null;
+                segmentOrdinals = null;
+            }
         }
     }
 
     private class ChildWeight extends Weight implements Releasable {
 
-        private final SearchContext searchContext;
         private final Weight parentWeight;
         private final Filter childrenFilter;
-        private final BytesRefHash parentIds;
+        private final ParentChildGlobalOrdinals globalOrdinals;
+        private final LongHash parentIdxs;
         private final FloatArray scores;
 
-        private FixedBitSet seenOrdinalsCache;
-        private LongArray parentIdsIndexCache;
-
-        private ChildWeight(SearchContext searchContext, Weight parentWeight, Filter childrenFilter, BytesRefHash parentIds, FloatArray scores) {
-            this.searchContext = searchContext;
+        private ChildWeight(Weight parentWeight, Filter childrenFilter, ParentChildGlobalOrdinals globalOrdinals, LongHash parentIdxs, FloatArray scores) {
             this.parentWeight = parentWeight;
             this.childrenFilter = new ApplyAcceptedDocsFilter(childrenFilter);
-            this.parentIds = parentIds;
+            this.globalOrdinals = globalOrdinals;
+            this.parentIdxs = parentIdxs;
             this.scores = scores;
         }
 
@@ -239,56 +255,35 @@ public class ParentQuery extends Query {
             if (bytesValues == null) {
                 return null;
             }
-
-            Ordinals.Docs ordinals = bytesValues.ordinals();
-            final int maxOrd = (int) ordinals.getMaxOrd();
-            if (parentIdsIndexCache == null) {
-                parentIdsIndexCache = BigArrays.newLongArray(BigArrays.overSize(maxOrd), searchContext.pageCacheRecycler(), false);
-            } else if (parentIdsIndexCache.size() < maxOrd) {
-                parentIdsIndexCache = BigArrays.grow(parentIdsIndexCache, maxOrd);
-            }
-            parentIdsIndexCache.fill(0, maxOrd, -1L);
-            if (seenOrdinalsCache == null || seenOrdinalsCache.length() < maxOrd) {
-                seenOrdinalsCache = new FixedBitSet(maxOrd);
-            } else {
-                seenOrdinalsCache.clear(0, maxOrd);
-            }
-            return new ChildScorer(this, parentIds, scores, childrenDocSet.iterator(), bytesValues, ordinals, seenOrdinalsCache, parentIdsIndexCache);
+            return new ChildScorer(this, parentIdxs, scores, childrenDocSet.iterator(), bytesValues.ordinals(), globalOrdinals.segment(context));
         }
 
         @Override
         public boolean release() throws ElasticsearchException {
-            Releasables.release(parentIds, scores);
+            Releasables.release(parentIdxs, scores);
             return true;
         }
     }
 
     private static class ChildScorer extends Scorer {
 
-        private final BytesRefHash parentIds;
+        private final LongHash parentIdxs;
         private final FloatArray scores;
         private final DocIdSetIterator childrenIterator;
-        private final BytesValues.WithOrdinals bytesValues;
         private final Ordinals.Docs ordinals;
-
-        // This remembers what ordinals have already been seen in the current segment
-        // and prevents from fetch the actual id from FD and checking if it exists in parentIds
-        private final FixedBitSet seenOrdinals;
-        private final LongArray parentIdsIndex;
+        private final ParentChildGlobalOrdinals.Segment segmentOrdinals;
 
         private int currentChildDoc = -1;
         private float currentScore;
 
-        ChildScorer(Weight weight, BytesRefHash parentIds, FloatArray scores, DocIdSetIterator childrenIterator,
-                    BytesValues.WithOrdinals bytesValues, Ordinals.Docs ordinals, FixedBitSet seenOrdinals, LongArray parentIdsIndex) {
+        ChildScorer(Weight weight, LongHash parentIdxs, FloatArray scores, DocIdSetIterator childrenIterator,
+                    Ordinals.Docs ordinals, ParentChildGlobalOrdinals.Segment segmentOrdinals) {
             super(weight);
-            this.parentIds = parentIds;
+            this.parentIdxs = parentIdxs;
             this.scores = scores;
             this.childrenIterator = childrenIterator;
-            this.bytesValues = bytesValues;
             this.ordinals = ordinals;
-            this.seenOrdinals = seenOrdinals;
-            this.parentIdsIndex = parentIdsIndex;
+            this.segmentOrdinals = segmentOrdinals;
         }
 
         @Override
@@ -315,26 +310,8 @@ public class ParentQuery extends Query {
                 if (currentChildDoc == DocIdSetIterator.NO_MORE_DOCS) {
                     return currentChildDoc;
                 }
-
-                int ord = (int) ordinals.getOrd(currentChildDoc);
-                if (ord == Ordinals.MISSING_ORDINAL) {
-                    continue;
-                }
-
-                if (!seenOrdinals.get(ord)) {
-                    seenOrdinals.set(ord);
-                    long parentIdx = parentIds.find(bytesValues.getValueByOrd(ord), bytesValues.currentValueHash());
-                    if (parentIdx != -1) {
-                        currentScore = scores.get(parentIdx);
-                        parentIdsIndex.set(ord, parentIdx);
-                        return currentChildDoc;
-                    }
-                } else {
-                    long parentIdx = parentIdsIndex.get(ord);
-                    if (parentIdx != -1) {
-                        currentScore = scores.get(parentIdx);
-                        return currentChildDoc;
-                    }
+                if (acceptChild()) {
+                    return currentChildDoc;
                 }
             }
         }
@@ -345,31 +322,24 @@ public class ParentQuery extends Query {
             if (currentChildDoc == DocIdSetIterator.NO_MORE_DOCS) {
                 return currentChildDoc;
             }
-
-            int ord = (int) ordinals.getOrd(currentChildDoc);
-            if (ord == Ordinals.MISSING_ORDINAL) {
+            if (acceptChild()) {
+                return currentChildDoc;
+            } else {
                 return nextDoc();
             }
+        }
 
-            if (!seenOrdinals.get(ord)) {
-                seenOrdinals.set(ord);
-                long parentIdx = parentIds.find(bytesValues.getValueByOrd(ord), bytesValues.currentValueHash());
-                if (parentIdx != -1) {
-                    currentScore = scores.get(parentIdx);
-                    parentIdsIndex.set(ord, parentIdx);
-                    return currentChildDoc;
-                } else {
-                    return nextDoc();
-                }
-            } else {
-                long parentIdx = parentIdsIndex.get(ord);
-                if (parentIdx != -1) {
-                    currentScore = scores.get(parentIdx);
-                    return currentChildDoc;
-                } else {
-                    return nextDoc();
-                }
+        private boolean acceptChild() {
+            long globalOrd = segmentOrdinals.getGlobalOrd(ordinals, currentChildDoc);
+            if (globalOrd == Ordinals.MISSING_ORDINAL) {
+                return false;
+            }
+            long parentIdx = parentIdxs.find(globalOrd);
+            if (parentIdx == -1) {
+                return false;
             }
+            currentScore = scores.get(parentIdx);
+            return true;
         }
 
         @Override
@@ -54,6 +54,8 @@ public class GeoDistanceFilter extends Filter {
     private final GeoDistance.FixedSourceDistance fixedSourceDistance;
     private GeoDistance.DistanceBoundingCheck distanceBoundingCheck;
     private final Filter boundingBoxFilter;
+    private final GeohashCellCover geohashCellCover;
+    private final String geohashFieldName;
 
     public GeoDistanceFilter(double lat, double lon, double distance, GeoDistance geoDistance, IndexGeoPointFieldData indexFieldData, GeoPointFieldMapper mapper,
                              String optimizeBbox) {
@@ -78,6 +80,16 @@ public class GeoDistanceFilter extends Filter {
             distanceBoundingCheck = GeoDistance.ALWAYS_INSTANCE;
             boundingBoxFilter = null;
         }
+
+        // the factor distance isn't a distance, the cells within it can't be told apart from its corners
+        if (mapper != null && mapper.hasFullGeohashPrefixes() && geoDistance != GeoDistance.FACTOR) {
+            geohashCellCover = GeohashCellCover.build(new DistanceShape(lat, lon, distance, fixedSourceDistance),
+                    mapper.geoHashPrecision(), GeohashCellCover.DEFAULT_MAX_CELLS);
+            geohashFieldName = mapper.geoHashStringMapper().names().indexName();
+        } else {
+            geohashCellCover = null;
+            geohashFieldName = null;
+        }
     }
 
     public double lat() {
@@ -102,6 +114,12 @@ public class GeoDistanceFilter extends Filter {
 
     @Override
     public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptedDocs) throws IOException {
+        if (geohashCellCover != null) {
+            // the cells already bound the circle, only the points in the cells on its boundary are checked
+            final GeoPointValues values = indexFieldData.load(context).getGeoPointValues();
+            GeoDistanceDocSet boundaryCheck = new GeoDistanceDocSet(context.reader().maxDoc(), null, values, fixedSourceDistance, distanceBoundingCheck, distance);
+            return geohashCellCover.docs(context.reader(), geohashFieldName, acceptedDocs, boundaryCheck);
+        }
         DocIdSet boundingBoxDocSet = null;
         if (boundingBoxFilter != null) {
             boundingBoxDocSet = boundingBoxFilter.getDocIdSet(context, acceptedDocs);
@@ -155,6 +173,69 @@ public class GeoDistanceFilter extends Filter {
         return result;
     }
 
+    /**
+     * The circle of a distance filter, as seen by a {@link GeohashCellCover}.
+     */
+    static class DistanceShape implements GeohashCellCover.Shape {
+
+        private final GeoDistance.FixedSourceDistance fixedSourceDistance;
+        private final double distance;
+        private final GeoPoint topLeft;
+        private final GeoPoint bottomRight;
+        private final double lon;
+        private final double antipodalLon;
+
+        DistanceShape(double lat, double lon, double distance, GeoDistance.FixedSourceDistance fixedSourceDistance) {
+            this.fixedSourceDistance = fixedSourceDistance;
+            this.distance = distance;
+            // widened a bit so that the earth model differences between the distance functions never leave a matching point out
+            GeoDistance.DistanceBoundingCheck boundingCheck = GeoDistance.distanceBoundingCheck(lat, lon, distance * 1.01, DistanceUnit.DEFAULT);
+            this.topLeft = boundingCheck.topLeft();
+            this.bottomRight = boundingCheck.bottomRight();
+            this.lon = lon;
+            this.antipodalLon = lon > 0 ? lon - 180 : lon + 180;
+        }
+
+        @Override
+        public GeohashCellCover.Relation relate(double minLat, double maxLat, double minLon, double maxLon) {
+            if (maxLat < bottomRight.lat() || minLat > topLeft.lat()) {
+                return GeohashCellCover.Relation.OUTSIDE;
+            }
+            if (topLeft.lon() > bottomRight.lon()) {
+                // the bounding box crosses the 180 meridian
+                if (maxLon < topLeft.lon() && minLon > bottomRight.lon()) {
+                    return GeohashCellCover.Relation.OUTSIDE;
+                }
+            } else if (maxLon < topLeft.lon() || minLon > bottomRight.lon()) {
+                return GeohashCellCover.Relation.OUTSIDE;
+            }
+            // the point of a cell that is the farthest from the center is one of its corners, unless the cell
+            // spans the meridian opposite to the center
+            if (containsLon(minLon, maxLon, antipodalLon) || containsLon(minLon, maxLon, antipodalLon - 360) || containsLon(minLon, maxLon, antipodalLon + 360)) {
+                return GeohashCellCover.Relation.CROSSES;
+            }
+            // along a meridian more than 90 degrees of longitude away from the center the distance is the largest
+            // between the poles, so the corners are only the farthest points of cells that stay closer than that
+            if (lonDelta(minLon) > 90 || lonDelta(maxLon) > 90) {
+                return GeohashCellCover.Relation.CROSSES;
+            }
+            if (fixedSourceDistance.calculate(minLat, minLon) < distance && fixedSourceDistance.calculate(minLat, maxLon) < distance
+                    && fixedSourceDistance.calculate(maxLat, minLon) < distance && fixedSourceDistance.calculate(maxLat, maxLon) < distance) {
+                return GeohashCellCover.Relation.INSIDE;
+            }
+            return GeohashCellCover.Relation.CROSSES;
+        }
+
+        private static boolean containsLon(double minLon, double maxLon, double lon) {
+            return lon >= minLon && lon <= maxLon;
+        }
+
+        private double lonDelta(double otherLon) {
+            double delta = Math.abs(otherLon - lon) % 360;
+            return delta > 180 ? 360 - delta : delta;
+        }
+    }
+
     public static class GeoDistanceDocSet extends MatchDocIdSet {
         private final double distance; // in miles
         private final GeoPointValues values;
@@ -28,6 +28,7 @@ import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.lucene.docset.MatchDocIdSet;
 import org.elasticsearch.index.fielddata.GeoPointValues;
 import org.elasticsearch.index.fielddata.IndexGeoPointFieldData;
+import org.elasticsearch.index.mapper.geo.GeoPointFieldMapper;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -39,11 +40,25 @@ public class GeoPolygonFilter extends Filter {
 
     private final GeoPoint[] points;
 
-    private final IndexGeoPointFieldData indexFieldData;
+    private final IndexGeoPointFieldData<?> indexFieldData;
 
-    public GeoPolygonFilter(IndexGeoPointFieldData indexFieldData, GeoPoint...points) {
+    private final GeohashCellCover geohashCellCover;
+    private final String geohashFieldName;
+
+    public GeoPolygonFilter(IndexGeoPointFieldData<?> indexFieldData, GeoPoint...points) {
+        this(indexFieldData, null, points);
+    }
+
+    public GeoPolygonFilter(IndexGeoPointFieldData<?> indexFieldData, @Nullable GeoPointFieldMapper mapper, GeoPoint...points) {
         this.points = points;
         this.indexFieldData = indexFieldData;
+        if (mapper != null && mapper.hasFullGeohashPrefixes()) {
+            geohashCellCover = GeohashCellCover.build(new PolygonShape(points), mapper.geoHashPrecision(), GeohashCellCover.DEFAULT_MAX_CELLS);
+            geohashFieldName = mapper.geoHashStringMapper().names().indexName();
+        } else {
+            geohashCellCover = null;
+            geohashFieldName = null;
+        }
     }
 
     public GeoPoint[] points() {
@@ -57,6 +72,10 @@ public class GeoPolygonFilter extends Filter {
     @Override
     public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptedDocs) throws IOException {
         final GeoPointValues values = indexFieldData.load(context).getGeoPointValues();
+        if (geohashCellCover != null) {
+            GeoPolygonDocIdSet boundaryCheck = new GeoPolygonDocIdSet(context.reader().maxDoc(), null, values, points);
+            return geohashCellCover.docs(context.reader(), geohashFieldName, acceptedDocs, boundaryCheck);
+        }
         return new GeoPolygonDocIdSet(context.reader().maxDoc(), acceptedDocs, values, points);
     }
 
@@ -68,6 +87,78 @@ public class GeoPolygonFilter extends Filter {
         return sb.toString();
     }
 
+    /**
+     * The polygon of a polygon filter, as seen by a {@link GeohashCellCover}.
+     */
+    static class PolygonShape implements GeohashCellCover.Shape {
+
+        private final GeoPoint[] points;
+        private double minLat = Double.POSITIVE_INFINITY;
+        private double maxLat = Double.NEGATIVE_INFINITY;
+        private double minLon = Double.POSITIVE_INFINITY;
+        private double maxLon = Double.NEGATIVE_INFINITY;
+
+        PolygonShape(GeoPoint[] points) {
+            this.points = points;
+            for (GeoPoint point : points) {
+                minLat = Math.min(minLat, point.lat());
+                maxLat = Math.max(maxLat, point.lat());
+                minLon = Math.min(minLon, point.lon());
+                maxLon = Math.max(maxLon, point.lon());
+            }
+        }
+
+        @Override
+        public GeohashCellCover.Relation relate(double cellMinLat, double cellMaxLat, double cellMinLon, double cellMaxLon) {
+            if (cellMaxLat < minLat || cellMinLat > maxLat || cellMaxLon < minLon || cellMinLon > maxLon) {
+                return GeohashCellCover.Relation.OUTSIDE;
+            }
+            for (int i = 1; i < points.length; i++) {
+                if (segmentIntersectsCell(points[i - 1], points[i], cellMinLat, cellMaxLat, cellMinLon, cellMaxLon)) {
+                    return GeohashCellCover.Relation.CROSSES;
+                }
+            }
+            // no edge of the polygon touches the cell, so the cell is either completely within the polygon or not at all
+            if (GeoPolygonDocIdSet.pointInPolygon(points, cellMinLat, cellMinLon)) {
+                return GeohashCellCover.Relation.INSIDE;
+            }
+            return GeohashCellCover.Relation.OUTSIDE;
+        }
+
+        /**
+         * Clips the segment against the cell (Liang-Barsky), the segment intersects the cell if something remains.
+         */
+        private static boolean segmentIntersectsCell(GeoPoint from, GeoPoint to, double minLat, double maxLat, double minLon, double maxLon) {
+            double dLon = to.lon() - from.lon();
+            double dLat = to.lat() - from.lat();
+            double[] p = {-dLon, dLon, -dLat, dLat};
+            double[] q = {from.lon() - minLon, maxLon - from.lon(), from.lat() - minLat, maxLat - from.lat()};
+            double t0 = 0;
+            double t1 = 1;
+            for (int i = 0; i < 4; i++) {
+                if (p[i] == 0) {
+                    if (q[i] < 0) {
+                        return false;
+                    }
+                } else {
+                    double t = q[i] / p[i];
+                    if (p[i] < 0) {
+                        if (t > t1) {
+                            return false;
+                        }
+                        t0 = Math.max(t0, t);
+                    } else {
+                        if (t < t0) {
+                            return false;
+                        }
+                        t1 = Math.min(t1, t);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
     public static class GeoPolygonDocIdSet extends MatchDocIdSet {
         private final GeoPointValues values;
         private final GeoPoint[] points;
@@ -95,7 +186,7 @@ public class GeoPolygonFilter extends Filter {
             return false;
         }
 
-        private static boolean pointInPolygon(GeoPoint[] points, double lat, double lon) {
+        static boolean pointInPolygon(GeoPoint[] points, double lat, double lon) {
             boolean inPoly = false;
 
             for (int i = 1; i < points.length; i++) {
@@ -0,0 +1,190 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.geo;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CollectionUtil;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.geo.GeoHashUtils;
+import org.elasticsearch.common.geo.GeoPoint;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Covers a shape with the geohash cells that intersect it, so that geo filters on a <tt>geo_point</tt> field
+ * that indexes geohash prefixes can look up documents by cell instead of checking the point of every document.
+ * <p/>
+ * Cells are subdivided breadth first, one geohash level at a time, for as long as the cells that still cross
+ * the shape's boundary can be refined without exceeding the maximum number of cells or the geohash precision
+ * of the field. Cells that lie entirely within the shape match all their documents, only the documents of the
+ * cells on the boundary need the exact (per point) check.
+ */
+public class GeohashCellCover {
+
+    /**
+     * The default maximum number of cells a cover is made of.
+     */
+    public static final int DEFAULT_MAX_CELLS = 1024;
+
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    public static enum Relation {
+        /**
+         * The cell and the shape don't intersect.
+         */
+        OUTSIDE,
+        /**
+         * The cell may intersect with the shape's boundary, its points need to be checked one by one.
+         */
+        CROSSES,
+        /**
+         * Every point of the cell lies within the shape.
+         */
+        INSIDE
+    }
+
+    /**
+     * A shape that can be covered with geohash cells.
+     */
+    public static interface Shape {
+
+        /**
+         * @return How the cell delimited by the provided (inclusive) bounds relates to this shape. An implementation
+         * may return {@link Relation#CROSSES} whenever it isn't sure, but must never return {@link Relation#INSIDE}
+         * or {@link Relation#OUTSIDE} for a cell that has points on both sides of the shape's boundary.
+         */
+        Relation relate(double minLat, double maxLat, double minLon, double maxLon);
+    }
+
+    private final BytesRef[] insideCells;
+    private final BytesRef[] boundaryCells;
+
+    private GeohashCellCover(List<String> insideCells, List<String> boundaryCells) {
+        this.insideCells = toSortedBytesRefs(insideCells);
+        this.boundaryCells = toSortedBytesRefs(boundaryCells);
+    }
+
+    /**
+     * Computes the cells covering the provided shape.
+     *
+     * @param shape    The shape to cover
+     * @param maxLevel The length of the longest geohash prefix that is indexed
+     * @param maxCells The number of cells after which cells are no longer subdivided
+     */
+    public static GeohashCellCover build(Shape shape, int maxLevel, int maxCells) {
+        List<String> insideCells = new ArrayList<String>();
+        List<String> boundaryCells = new ArrayList<String>();
+        GeoPoint northWest = new GeoPoint();
+        GeoPoint southEast = new GeoPoint();
+
+        List<String> current = Collections.singletonList("");
+        for (int level = 1; level <= maxLevel && !current.isEmpty(); level++) {
+            List<String> crossing = new ArrayList<String>();
+            for (String parent : current) {
+                for (char c : BASE_32) {
+                    String cell = parent + c;
+                    GeoHashUtils.decodeCell(cell, northWest, southEast);
+                    switch (shape.relate(southEast.lat(), northWest.lat(), northWest.lon(), southEast.lon())) {
+                        case INSIDE:
+                            insideCells.add(cell);
+                            break;
+                        case CROSSES:
+                            crossing.add(cell);
+                            break;
+                    }
+                }
+            }
+            if (level == maxLevel || insideCells.size() + crossing.size() * BASE_32.length > maxCells) {
+                boundaryCells.addAll(crossing);
+                break;
+            }
+            current = crossing;
+        }
+        return new GeohashCellCover(insideCells, boundaryCells);
+    }
+
+    public int insideCells() {
+        return insideCells.length;
+    }
+
+    public int boundaryCells() {
+        return boundaryCells.length;
+    }
+
+    /**
+     * @param reader        The segment reader
+     * @param field         The index name of the field holding the geohash prefixes
+     * @param acceptedDocs  The documents that are allowed to match
+     * @param boundaryCheck Decides whether a document in one of the boundary cells matches
+     * @return The matching documents of the segment or <tt>null</tt> if there are none
+     */
+    public FixedBitSet docs(AtomicReader reader, String field, Bits acceptedDocs, Bits boundaryCheck) throws IOException {
+        Terms terms = reader.terms(field);
+        if (terms == null) {
+            return null;
+        }
+        TermsEnum termsEnum = terms.iterator(null);
+        DocsEnum docsEnum = null;
+        FixedBitSet result = null;
+        for (BytesRef cell : insideCells) {
+            if (termsEnum.seekExact(cell)) {
+                docsEnum = termsEnum.docs(acceptedDocs, docsEnum, DocsEnum.FLAG_NONE);
+                for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+                    if (result == null) {
+                        result = new FixedBitSet(reader.maxDoc());
+                    }
+                    result.set(doc);
+                }
+            }
+        }
+        for (BytesRef cell : boundaryCells) {
+            if (termsEnum.seekExact(cell)) {
+                docsEnum = termsEnum.docs(acceptedDocs, docsEnum, DocsEnum.FLAG_NONE);
+                for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+                    if ((result == null || !result.get(doc)) && boundaryCheck.get(doc)) {
+                        if (result == null) {
+                            result = new FixedBitSet(reader.maxDoc());
+                        }
+                        result.set(doc);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BytesRef[] toSortedBytesRefs(List<String> cells) {
+        CollectionUtil.timSort(cells);
+        BytesRef[] refs = new BytesRef[cells.size()];
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = new BytesRef(cells.get(i));
+        }
+        return refs;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.search.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -46,17 +47,23 @@ public class SearchStats implements Streamable, ToXContent {
         private long fetchTimeInMillis;
         private long fetchCurrent;
 
+        private long highlightCacheHitCount;
+        private long highlightCacheMissCount;
+
         Stats() {
 
         }
 
-        public Stats(long queryCount, long queryTimeInMillis, long queryCurrent, long fetchCount, long fetchTimeInMillis, long fetchCurrent) {
+        public Stats(long queryCount, long queryTimeInMillis, long queryCurrent, long fetchCount, long fetchTimeInMillis, long fetchCurrent,
+                     long highlightCacheHitCount, long highlightCacheMissCount) {
             this.queryCount = queryCount;
             this.queryTimeInMillis = queryTimeInMillis;
             this.queryCurrent = queryCurrent;
             this.fetchCount = fetchCount;
             this.fetchTimeInMillis = fetchTimeInMillis;
             this.fetchCurrent = fetchCurrent;
+            this.highlightCacheHitCount = highlightCacheHitCount;
+            this.highlightCacheMissCount = highlightCacheMissCount;
         }
 
         public void add(Stats stats) {
@@ -67,6 +74,9 @@ public class SearchStats implements Streamable, ToXContent {
             fetchCount += stats.fetchCount;
             fetchTimeInMillis += stats.fetchTimeInMillis;
             fetchCurrent += stats.fetchCurrent;
+
+            highlightCacheHitCount += stats.highlightCacheHitCount;
+            highlightCacheMissCount += stats.highlightCacheMissCount;
         }
 
         public long getQueryCount() {
@@ -101,6 +111,20 @@ public class SearchStats implements Streamable, ToXContent {
             return fetchCurrent;
         }
 
+        /**
+         * @return The number of highlighted fields that were served from the highlight cache
+         */
+        public long getHighlightCacheHitCount() {
+            return highlightCacheHitCount;
+        }
+
+        /**
+         * @return The number of highlighted fields that could have been cached but had to be highlighted
+         */
+        public long getHighlightCacheMissCount() {
+            return highlightCacheMissCount;
+        }
+
 
         public static Stats readStats(StreamInput in) throws IOException {
             Stats stats = new Stats();
@@ -117,6 +141,11 @@ public class SearchStats implements Streamable, ToXContent {
             fetchCount = in.readVLong();
             fetchTimeInMillis = in.readVLong();
             fetchCurrent = in.readVLong();
+
+            if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+                highlightCacheHitCount = in.readVLong();
+                highlightCacheMissCount = in.readVLong();
+            }
         }
 
         @Override
@@ -128,6 +157,11 @@ public class SearchStats implements Streamable, ToXContent {
             out.writeVLong(fetchCount);
             out.writeVLong(fetchTimeInMillis);
             out.writeVLong(fetchCurrent);
+
+            if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+                out.writeVLong(highlightCacheHitCount);
+                out.writeVLong(highlightCacheMissCount);
+            }
         }
 
         @Override
@@ -140,6 +174,9 @@ public class SearchStats implements Streamable, ToXContent {
             builder.timeValueField(Fields.FETCH_TIME_IN_MILLIS, Fields.FETCH_TIME, fetchTimeInMillis);
             builder.field(Fields.FETCH_CURRENT, fetchCurrent);
 
+            builder.field(Fields.HIGHLIGHT_CACHE_HIT_COUNT, highlightCacheHitCount);
+            builder.field(Fields.HIGHLIGHT_CACHE_MISS_COUNT, highlightCacheMissCount);
+
             return builder;
         }
     }
@@ -228,6 +265,8 @@ public class SearchStats implements Streamable, ToXContent {
         static final XContentBuilderString FETCH_TIME = new XContentBuilderString("fetch_time");
         static final XContentBuilderString FETCH_TIME_IN_MILLIS = new XContentBuilderString("fetch_time_in_millis");
         static final XContentBuilderString FETCH_CURRENT = new XContentBuilderString("fetch_current");
+        static final XContentBuilderString HIGHLIGHT_CACHE_HIT_COUNT = new XContentBuilderString("highlight_cache_hit_count");
+        static final XContentBuilderString HIGHLIGHT_CACHE_MISS_COUNT = new XContentBuilderString("highlight_cache_miss_count");
     }
 
     public static SearchStats readSearchStats(StreamInput in) throws IOException {
@@ -142,6 +142,24 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         slowLogSearchService.onFetchPhase(searchContext, tookInNanos);
     }
 
+    public void onHighlightCacheHit(SearchContext searchContext) {
+        totalStats.highlightCacheHits.inc();
+        if (searchContext.groupStats() != null) {
+            for (int i = 0; i < searchContext.groupStats().size(); i++) {
+                groupStats(searchContext.groupStats().get(i)).highlightCacheHits.inc();
+            }
+        }
+    }
+
+    public void onHighlightCacheMiss(SearchContext searchContext) {
+        totalStats.highlightCacheMisses.inc();
+        if (searchContext.groupStats() != null) {
+            for (int i = 0; i < searchContext.groupStats().size(); i++) {
+                groupStats(searchContext.groupStats().get(i)).highlightCacheMisses.inc();
+            }
+        }
+    }
+
     public void clear() {
         totalStats.clear();
         synchronized (this) {
@@ -185,11 +203,14 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         public final MeanMetric fetchMetric = new MeanMetric();
         public final CounterMetric queryCurrent = new CounterMetric();
         public final CounterMetric fetchCurrent = new CounterMetric();
+        public final CounterMetric highlightCacheHits = new CounterMetric();
+        public final CounterMetric highlightCacheMisses = new CounterMetric();
 
         public SearchStats.Stats stats() {
             return new SearchStats.Stats(
                     queryMetric.count(), TimeUnit.NANOSECONDS.toMillis(queryMetric.sum()), queryCurrent.count(),
-                    fetchMetric.count(), TimeUnit.NANOSECONDS.toMillis(fetchMetric.sum()), fetchCurrent.count());
+                    fetchMetric.count(), TimeUnit.NANOSECONDS.toMillis(fetchMetric.sum()), fetchCurrent.count(),
+                    highlightCacheHits.count(), highlightCacheMisses.count());
         }
 
         public long totalCurrent() {
@@ -199,6 +220,8 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         public void clear() {
             queryMetric.clear();
             fetchMetric.clear();
+            highlightCacheHits.dec(highlightCacheHits.count());
+            highlightCacheMisses.dec(highlightCacheMisses.count());
         }
     }
 }
@@ -45,6 +45,7 @@ import org.elasticsearch.index.aliases.IndexAliasesService;
 import org.elasticsearch.index.cache.IndexCache;
 import org.elasticsearch.index.cache.filter.FilterCacheStats;
 import org.elasticsearch.index.cache.filter.ShardFilterCache;
+import org.elasticsearch.index.cache.fixedbitset.ShardFixedBitSetFilterCache;
 import org.elasticsearch.index.cache.id.IdCacheStats;
 import org.elasticsearch.index.codec.CodecService;
 import org.elasticsearch.index.deletionpolicy.SnapshotIndexCommit;
@@ -60,6 +61,8 @@ import org.elasticsearch.index.indexing.ShardIndexingService;
 import org.elasticsearch.index.mapper.*;
 import org.elasticsearch.index.mapper.internal.ParentFieldMapper;
 import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.merge.policy.ColdMergePolicyProvider;
+import org.elasticsearch.index.merge.policy.MergePolicyProvider;
 import org.elasticsearch.index.merge.scheduler.MergeSchedulerProvider;
 import org.elasticsearch.index.percolator.PercolatorQueriesRegistry;
 import org.elasticsearch.index.percolator.stats.ShardPercolateService;
@@ -107,6 +110,7 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
     private final InternalIndicesLifecycle indicesLifecycle;
     private final Store store;
     private final MergeSchedulerProvider mergeScheduler;
+    private final MergePolicyProvider<?> mergePolicyProvider;
     private final Engine engine;
     private final Translog translog;
     private final IndexAliasesService indexAliasesService;
@@ -115,6 +119,7 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
     private final ShardGetService getService;
     private final ShardIndexWarmerService shardWarmerService;
     private final ShardFilterCache shardFilterCache;
+    private final ShardFixedBitSetFilterCache shardFixedBitSetFilterCache;
     private final ShardFieldData shardFieldData;
     private final PercolatorQueriesRegistry percolatorQueriesRegistry;
     private final ShardPercolateService shardPercolateService;
@@ -143,16 +148,17 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
     private final MeanMetric flushMetric = new MeanMetric();
 
     @Inject
-    public InternalIndexShard(ShardId shardId, @IndexSettings Settings indexSettings, IndexSettingsService indexSettingsService, IndicesLifecycle indicesLifecycle, Store store, Engine engine, MergeSchedulerProvider mergeScheduler, Translog translog,
+    public InternalIndexShard(ShardId shardId, @IndexSettings Settings indexSettings, IndexSettingsService indexSettingsService, IndicesLifecycle indicesLifecycle, Store store, Engine engine, MergeSchedulerProvider mergeScheduler, MergePolicyProvider<?> mergePolicyProvider, Translog translog,
                               ThreadPool threadPool, MapperService mapperService, IndexQueryParserService queryParserService, IndexCache indexCache, IndexAliasesService indexAliasesService, ShardIndexingService indexingService, ShardGetService getService, ShardSearchService searchService, ShardIndexWarmerService shardWarmerService,
                               ShardFilterCache shardFilterCache, ShardFieldData shardFieldData, PercolatorQueriesRegistry percolatorQueriesRegistry, ShardPercolateService shardPercolateService, CodecService codecService,
-                              ShardTermVectorService termVectorService, IndexFieldDataService indexFieldDataService, IndexService indexService) {
+                              ShardTermVectorService termVectorService, IndexFieldDataService indexFieldDataService, IndexService indexService, ShardFixedBitSetFilterCache shardFixedBitSetFilterCache) {
         super(shardId, indexSettings);
         this.indicesLifecycle = (InternalIndicesLifecycle) indicesLifecycle;
         this.indexSettingsService = indexSettingsService;
         this.store = store;
         this.engine = engine;
         this.mergeScheduler = mergeScheduler;
+        this.mergePolicyProvider = mergePolicyProvider;
         this.translog = translog;
         this.threadPool = threadPool;
         this.mapperService = mapperService;
@@ -165,6 +171,7 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         this.searchService = searchService;
         this.shardWarmerService = shardWarmerService;
         this.shardFilterCache = shardFilterCache;
+        this.shardFixedBitSetFilterCache = shardFixedBitSetFilterCache;
         this.shardFieldData = shardFieldData;
         this.percolatorQueriesRegistry = percolatorQueriesRegistry;
         this.shardPercolateService = shardPercolateService;
@@ -243,6 +250,11 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         return this.shardFilterCache;
     }
 
+    @Override
+    public ShardFixedBitSetFilterCache fixedBitSetFilterCache() {
+        return this.shardFixedBitSetFilterCache;
+    }
+
     @Override
     public ShardFieldData fieldData() {
         return this.shardFieldData;
@@ -437,7 +449,7 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         query = filterQueryIfNeeded(query, types);
 
         Filter aliasFilter = indexAliasesService.aliasFilter(filteringAliases);
-        Filter parentFilter = mapperService.hasNested() ? indexCache.filter().cache(NonNestedDocsFilter.INSTANCE) : null;
+        Filter parentFilter = mapperService.hasNested() ? indexCache.fixedBitSetFilterCache().getFixedBitSetFilter(NonNestedDocsFilter.INSTANCE) : null;
         return new Engine.DeleteByQuery(query, source, filteringAliases, aliasFilter, parentFilter, types).startTime(startTime);
     }
 
@@ -521,7 +533,9 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
 
     @Override
     public SegmentsStats segmentStats() {
-        return engine.segmentsStats();
+        SegmentsStats segmentsStats = engine.segmentsStats();
+        segmentsStats.addFixedBitSetMemoryInBytes(shardFixedBitSetFilterCache.getMemorySizeInBytes());
+        return segmentsStats;
     }
 
     @Override
@@ -949,6 +963,9 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         @Override
         public void run() {
             if (!engine().possibleMergeNeeded()) {
+                if (mergePolicyProvider instanceof ColdMergePolicyProvider && ((ColdMergePolicyProvider) mergePolicyProvider).startForceMergeIfInactive()) {
+                    optimizeInactive((ColdMergePolicyProvider) mergePolicyProvider);
+                }
                 synchronized (mutex) {
                     if (state != IndexShardState.CLOSED) {
                         mergeScheduleFuture = threadPool.schedule(mergeInterval, ThreadPool.Names.SAME, this);
@@ -992,6 +1009,28 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         }
     }
 
+    private void optimizeInactive(final ColdMergePolicyProvider coldMergePolicyProvider) {
+        threadPool.executor(ThreadPool.Names.OPTIMIZE).execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    logger.debug("shard is inactive, optimizing it to [{}] segments", coldMergePolicyProvider.inactiveMaxNumSegments());
+                    optimize(new Engine.Optimize().maxNumSegments(coldMergePolicyProvider.inactiveMaxNumSegments()).waitForMerge(true).flush(true));
+                    success = true;
+                } catch (EngineClosedException e) {
+                    // we are being closed, ignore
+                } catch (Exception e) {
+                    if (state != IndexShardState.CLOSED) {
+                        logger.warn("Failed to optimize inactive shard", e);
+                    }
+                } finally {
+                    coldMergePolicyProvider.onForceMergeDone(success);
+                }
+            }
+        });
+    }
+
     private void checkIndex(boolean throwException) throws IndexShardException {
         try {
             checkIndexTook = 0;
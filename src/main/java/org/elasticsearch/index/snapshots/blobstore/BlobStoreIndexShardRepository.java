@@ -21,10 +21,14 @@ package org.elasticsearch.index.snapshots.blobstore;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.cluster.metadata.SnapshotId;
 import org.elasticsearch.common.blobstore.*;
@@ -51,6 +55,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -71,6 +76,8 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
     private ByteSizeValue chunkSize;
 
+    private boolean contentAddressable;
+
     private final IndicesService indicesService;
 
     private RateLimiter snapshotRateLimiter;
@@ -83,6 +90,10 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
     private static final String SNAPSHOT_PREFIX = "snapshot-";
 
+    private static final String CONTENT_BLOB_PREFIX = "sha1_";
+
+    private static final int BUFFER_SIZE = 8192;
+
     @Inject
     BlobStoreIndexShardRepository(Settings settings, RepositoryName repositoryName, IndicesService indicesService) {
         super(settings);
@@ -93,16 +104,18 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
     /**
      * Called by {@link org.elasticsearch.repositories.blobstore.BlobStoreRepository} on repository startup
      *
-     * @param blobStore blob store
-     * @param basePath  base path to blob store
-     * @param chunkSize chunk size
+     * @param blobStore          blob store
+     * @param basePath           base path to blob store
+     * @param chunkSize          chunk size
+     * @param contentAddressable true if new files should be stored in the shared content addressed container
      */
-    public void initialize(BlobStore blobStore, BlobPath basePath, ByteSizeValue chunkSize,
+    public void initialize(BlobStore blobStore, BlobPath basePath, ByteSizeValue chunkSize, boolean contentAddressable,
                            RateLimiter snapshotRateLimiter, RateLimiter restoreRateLimiter,
                            final RateLimiterListener rateLimiterListener) {
         this.blobStore = blobStore;
         this.basePath = basePath;
         this.chunkSize = chunkSize;
+        this.contentAddressable = contentAddressable;
         this.snapshotRateLimiter = snapshotRateLimiter;
         this.restoreRateLimiter = restoreRateLimiter;
         this.rateLimiterListener = rateLimiterListener;
@@ -182,6 +195,27 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         return SNAPSHOT_PREFIX + snapshotId.getSnapshot();
     }
 
+    /**
+     * Returns true if the file is stored in the shared content addressed container
+     *
+     * @param fileInfo file info
+     * @return true if the file is content addressed
+     */
+    private static boolean isContentAddressed(FileInfo fileInfo) {
+        return fileInfo.name().startsWith(CONTENT_BLOB_PREFIX);
+    }
+
+    /**
+     * Returns name of the blob that marks content addressed file as referenced by the given shard
+     *
+     * @param name    content addressed file name
+     * @param shardId shard id
+     * @return reference blob name
+     */
+    private static String contentReferenceBlobName(String name, ShardId shardId) {
+        return name + "." + shardId.getIndex() + "-" + shardId.getId();
+    }
+
     /**
      * Serializes snapshot to JSON
      *
@@ -223,6 +257,10 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
         protected final ImmutableBlobContainer blobContainer;
 
+        protected final ImmutableBlobContainer contentBlobContainer;
+
+        protected final ImmutableBlobContainer contentReferencesBlobContainer;
+
         public Context(SnapshotId snapshotId, ShardId shardId) {
             this(snapshotId, shardId, shardId);
         }
@@ -231,6 +269,18 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             this.snapshotId = snapshotId;
             this.shardId = shardId;
             blobContainer = blobStore.immutableBlobContainer(basePath.add("indices").add(snapshotShardId.getIndex()).add(Integer.toString(snapshotShardId.getId())));
+            contentBlobContainer = blobStore.immutableBlobContainer(basePath.add("blobs"));
+            contentReferencesBlobContainer = blobStore.immutableBlobContainer(basePath.add("refs"));
+        }
+
+        /**
+         * Returns the container that stores the given file
+         *
+         * @param fileInfo file info
+         * @return blob container
+         */
+        protected ImmutableBlobContainer blobContainer(FileInfo fileInfo) {
+            return isContentAddressed(fileInfo) ? contentBlobContainer : blobContainer;
         }
 
         /**
@@ -257,12 +307,69 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             // delete all files that are not referenced by any commit point
             // build a new BlobStoreIndexShardSnapshot, that includes this one and all the saved ones
             List<BlobStoreIndexShardSnapshot> newSnapshotsList = Lists.newArrayList();
+            BlobStoreIndexShardSnapshot deletedSnapshot = null;
             for (BlobStoreIndexShardSnapshot point : snapshots) {
                 if (!point.snapshot().equals(snapshotId.getSnapshot())) {
                     newSnapshotsList.add(point);
+                } else {
+                    deletedSnapshot = point;
                 }
             }
             cleanup(newSnapshotsList, blobs);
+            if (deletedSnapshot != null) {
+                releaseContentFiles(deletedSnapshot, new BlobStoreIndexShardSnapshots(newSnapshotsList));
+            }
+        }
+
+        /**
+         * Removes references of this shard to the content addressed files that are no longer used by any of its
+         * snapshots and deletes the files that are no longer referenced by any shard in the repository
+         *
+         * @param deletedSnapshot  deleted snapshot
+         * @param snapshots        remaining snapshots of the shard
+         */
+        protected void releaseContentFiles(BlobStoreIndexShardSnapshot deletedSnapshot, BlobStoreIndexShardSnapshots snapshots) {
+            Set<String> released = Sets.newHashSet();
+            for (FileInfo fileInfo : deletedSnapshot.indexFiles()) {
+                if (isContentAddressed(fileInfo) && snapshots.findNameFile(fileInfo.name()) == null) {
+                    released.add(fileInfo.name());
+                }
+            }
+            if (released.isEmpty()) {
+                return;
+            }
+            for (String name : released) {
+                try {
+                    contentReferencesBlobContainer.deleteBlob(contentReferenceBlobName(name, shardId));
+                } catch (IOException e) {
+                    logger.debug("[{}] [{}] failed to delete reference to [{}]", e, snapshotId, shardId, name);
+                }
+            }
+            final ImmutableMap<String, BlobMetaData> references;
+            final ImmutableMap<String, BlobMetaData> contentBlobs;
+            try {
+                references = contentReferencesBlobContainer.listBlobs();
+                contentBlobs = contentBlobContainer.listBlobs();
+            } catch (IOException e) {
+                logger.debug("[{}] [{}] failed to list content addressed files, skipping cleanup", e, snapshotId, shardId);
+                return;
+            }
+            // the file name never contains a dot, everything after it identifies the referencing shard
+            for (String reference : references.keySet()) {
+                int index = reference.indexOf('.');
+                if (index > 0) {
+                    released.remove(reference.substring(0, index));
+                }
+            }
+            for (String blobName : contentBlobs.keySet()) {
+                if (released.contains(FileInfo.canonicalName(blobName))) {
+                    try {
+                        contentBlobContainer.deleteBlob(blobName);
+                    } catch (IOException e) {
+                        logger.debug("[{}] [{}] error deleting blob [{}] during cleanup", e, snapshotId, shardId, blobName);
+                    }
+                }
+            }
         }
 
         /**
@@ -381,6 +488,17 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                 throw new IndexShardSnapshotFailedException(shardId, "failed to list blobs", e);
             }
 
+            final ImmutableMap<String, BlobMetaData> contentBlobs;
+            if (contentAddressable) {
+                try {
+                    contentBlobs = contentBlobContainer.listBlobs();
+                } catch (IOException e) {
+                    throw new IndexShardSnapshotFailedException(shardId, "failed to list content addressed blobs", e);
+                }
+            } else {
+                contentBlobs = ImmutableMap.of();
+            }
+
             long generation = findLatestFileNameGeneration(blobs);
             BlobStoreIndexShardSnapshots snapshots = buildBlobStoreIndexShardSnapshots(blobs);
 
@@ -389,6 +507,7 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             final CountDownLatch indexLatch = new CountDownLatch(snapshotIndexCommit.getFiles().length);
             final CopyOnWriteArrayList<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
             final List<BlobStoreIndexShardSnapshot.FileInfo> indexCommitPointFiles = newArrayList();
+            final Set<String> scheduledContentFiles = Sets.newHashSet();
 
             int indexNumberOfFiles = 0;
             long indexTotalFilesSize = 0;
@@ -413,17 +532,35 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
                 BlobStoreIndexShardSnapshot.FileInfo fileInfo = snapshots.findPhysicalIndexFile(fileName);
 
-                if (fileInfo == null || !fileInfo.isSame(md) || !snapshotFileExistsInBlobs(fileInfo, blobs)) {
+                if (fileInfo == null || !fileInfo.isSame(md) || !snapshotFileExistsInBlobs(fileInfo, isContentAddressed(fileInfo) ? contentBlobs : blobs)) {
                     // commit point file does not exists in any commit point, or has different length, or does not fully exists in the listed blobs
                     snapshotRequired = true;
                 }
 
+                if (snapshotRequired && contentAddressable) {
+                    // the same content might have been already stored by another shard or snapshot
+                    try {
+                        fileInfo = new BlobStoreIndexShardSnapshot.FileInfo(contentBlobName(fileName), fileName, md.length(), chunkSize, md.checksum());
+                    } catch (IOException e) {
+                        throw new IndexShardSnapshotFailedException(shardId, "Failed to compute hash of [" + fileName + "]", e);
+                    }
+                    if (!scheduledContentFiles.add(fileInfo.name()) || snapshotFileExistsInBlobs(fileInfo, contentBlobs)) {
+                        logger.trace("[{}] [{}] Reusing content addressed file [{}] for [{}]", shardId, snapshotId, fileInfo.name(), fileName);
+                        snapshotRequired = false;
+                    }
+                }
+
                 if (snapshotRequired) {
                     indexNumberOfFiles++;
                     indexTotalFilesSize += md.length();
                     // create a new FileInfo
                     try {
-                        BlobStoreIndexShardSnapshot.FileInfo snapshotFileInfo = new BlobStoreIndexShardSnapshot.FileInfo(fileNameFromGeneration(++generation), fileName, md.length(), chunkSize, md.checksum());
+                        BlobStoreIndexShardSnapshot.FileInfo snapshotFileInfo;
+                        if (contentAddressable) {
+                            snapshotFileInfo = fileInfo;
+                        } else {
+                            snapshotFileInfo = new BlobStoreIndexShardSnapshot.FileInfo(fileNameFromGeneration(++generation), fileName, md.length(), chunkSize, md.checksum());
+                        }
                         indexCommitPointFiles.add(snapshotFileInfo);
                         snapshotFile(snapshotFileInfo, indexLatch, failures);
                     } catch (IOException e) {
@@ -451,6 +588,20 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             // now create and write the commit point
             snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.FINALIZE);
 
+            // mark content addressed files as referenced by this shard before they become visible in the commit point
+            for (BlobStoreIndexShardSnapshot.FileInfo fileInfo : indexCommitPointFiles) {
+                if (isContentAddressed(fileInfo)) {
+                    String referenceName = contentReferenceBlobName(fileInfo.name(), shardId);
+                    try {
+                        if (!contentReferencesBlobContainer.blobExists(referenceName)) {
+                            contentReferencesBlobContainer.writeBlob(referenceName, new BytesStreamInput(BytesRef.EMPTY_BYTES, false), 0);
+                        }
+                    } catch (IOException e) {
+                        throw new IndexShardSnapshotFailedException(shardId, "Failed to write reference to [" + fileInfo.name() + "]", e);
+                    }
+                }
+            }
+
             String commitPointName = snapshotBlobName(snapshotId);
             BlobStoreIndexShardSnapshot snapshot = new BlobStoreIndexShardSnapshot(snapshotId.getSnapshot(), snapshotIndexCommit.getGeneration(), indexCommitPointFiles);
             try {
@@ -500,7 +651,7 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                     } else {
                         inputStream = inputStreamIndexInput;
                     }
-                    blobContainer.writeBlob(fileInfo.partName(i), inputStream, size, new ImmutableBlobContainer.WriterListener() {
+                    blobContainer(fileInfo).writeBlob(fileInfo.partName(i), inputStream, size, new ImmutableBlobContainer.WriterListener() {
                         @Override
                         public void onCompleted() {
                             IOUtils.closeWhileHandlingException(fIndexInput);
@@ -526,6 +677,31 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             }
         }
 
+        /**
+         * Generates content addressed blob name from the SHA-1 hash of the file content
+         *
+         * @param physicalName original file name
+         * @return the blob name
+         * @throws IOException
+         */
+        private String contentBlobName(String physicalName) throws IOException {
+            IndexInput indexInput = store.openInputRaw(physicalName, IOContext.READONCE);
+            try {
+                Hasher hasher = Hashing.sha1().newHasher();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long remaining = indexInput.length();
+                while (remaining > 0) {
+                    int length = (int) Math.min(buffer.length, remaining);
+                    indexInput.readBytes(buffer, 0, length);
+                    hasher.putBytes(buffer, 0, length);
+                    remaining -= length;
+                }
+                return CONTENT_BLOB_PREFIX + hasher.hash().toString();
+            } finally {
+                IOUtils.closeWhileHandlingException(indexInput);
+            }
+        }
+
         /**
          * Checks if snapshot file already exists in the list of blobs
          *
@@ -705,8 +881,9 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
             String firstFileToRecover = fileInfo.partName(0);
             final AtomicInteger partIndex = new AtomicInteger();
+            final ImmutableBlobContainer fileBlobContainer = blobContainer(fileInfo);
 
-            blobContainer.readBlob(firstFileToRecover, new BlobContainer.ReadBlobListener() {
+            fileBlobContainer.readBlob(firstFileToRecover, new BlobContainer.ReadBlobListener() {
                 @Override
                 public synchronized void onPartial(byte[] data, int offset, int size) throws IOException {
                     recoveryStatus.index().addCurrentFilesSize(size);
@@ -722,7 +899,7 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                     if (part < fileInfo.numberOfParts()) {
                         String partName = fileInfo.partName(part);
                         // continue with the new part
-                        blobContainer.readBlob(partName, this);
+                        fileBlobContainer.readBlob(partName, this);
                         return;
                     } else {
                         // we are done...
@@ -0,0 +1,180 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.store;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of fixed size blocks of files, stored off heap and evicted in LRU order. The cache is split in segments,
+ * each guarded by its own lock and backed by a direct buffer that is allocated when the cache is created, so that
+ * a cache that doesn't fit in the direct memory of the JVM fails at startup rather than on a search.
+ * <p/>
+ * Blocks are identified by a file id, see {@link #newFileId()}, and the index of the block in the file. Since
+ * files are identified by id rather than by name, the blocks of files that are deleted or rewritten don't have to
+ * be invalidated, they are evicted like any other block that isn't read anymore.
+ */
+public final class BlockCache {
+
+    // keep the direct buffers of the segments under 2gb
+    private static final long MAX_SEGMENT_SIZE_IN_BYTES = 1 << 30;
+
+    private final int blockSize;
+    private final Segment[] segments;
+
+    private final AtomicLong fileIds = new AtomicLong();
+
+    public BlockCache(long sizeInBytes, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("block size must be positive but was [" + blockSize + "]");
+        }
+        this.blockSize = blockSize;
+        long numBlocks = sizeInBytes / blockSize;
+        int numSegments = (int) Math.max(Math.min(16, numBlocks), (sizeInBytes + MAX_SEGMENT_SIZE_IN_BYTES - 1) / MAX_SEGMENT_SIZE_IN_BYTES);
+        this.segments = new Segment[Math.max(1, numSegments)];
+        for (int i = 0; i < segments.length; i++) {
+            // spread the remaining blocks over the first segments
+            int segmentBlocks = (int) (numBlocks / segments.length + (i < numBlocks % segments.length ? 1 : 0));
+            segments[i] = new Segment(segmentBlocks, blockSize);
+        }
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return a new file id, the blocks of a file must only be cached under a single id while the file doesn't change
+     */
+    public long newFileId() {
+        return fileIds.incrementAndGet();
+    }
+
+    /**
+     * Copies <tt>length</tt> bytes of a block, starting at <tt>offsetInBlock</tt>, if the block is cached.
+     *
+     * @return whether the block was cached
+     */
+    public boolean read(long fileId, long block, int offsetInBlock, byte[] b, int offset, int length) {
+        return segment(fileId, block).read(new BlockKey(fileId, block), offsetInBlock, b, offset, length);
+    }
+
+    /**
+     * Caches the first <tt>length</tt> bytes of <tt>bytes</tt> as the block of a file, evicting the least recently
+     * used block if the cache is full.
+     */
+    public void put(long fileId, long block, byte[] bytes, int length) {
+        assert length <= blockSize;
+        segment(fileId, block).put(new BlockKey(fileId, block), bytes, length);
+    }
+
+    private Segment segment(long fileId, long block) {
+        int hash = (int) (fileId * 31 + block);
+        hash ^= (hash >>> 16);
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static final class BlockKey {
+
+        final long fileId;
+        final long block;
+
+        BlockKey(long fileId, long block) {
+            this.fileId = fileId;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) o;
+            return fileId == other.fileId && block == other.block;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fileId * 31 + block);
+        }
+    }
+
+    private static final class Slot {
+
+        final int index;
+        int length;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class Segment {
+
+        private final int capacity;
+        private final int blockSize;
+
+        // access ordered, so the first entry is the least recently used block
+        private final LinkedHashMap<BlockKey, Slot> blocks = new LinkedHashMap<BlockKey, Slot>(16, 0.75f, true);
+        private final ByteBuffer buffer;
+        private int nextFreeSlot;
+
+        Segment(int capacity, int blockSize) {
+            this.capacity = capacity;
+            this.blockSize = blockSize;
+            this.buffer = capacity == 0 ? null : ByteBuffer.allocateDirect(capacity * blockSize);
+        }
+
+        synchronized boolean read(BlockKey key, int offsetInBlock, byte[] b, int offset, int length) {
+            Slot slot = blocks.get(key);
+            if (slot == null) {
+                return false;
+            }
+            assert offsetInBlock + length <= slot.length;
+            buffer.position(slot.index * blockSize + offsetInBlock);
+            buffer.get(b, offset, length);
+            return true;
+        }
+
+        synchronized void put(BlockKey key, byte[] bytes, int length) {
+            if (capacity == 0 || blocks.containsKey(key)) {
+                return;
+            }
+            Slot slot;
+            if (nextFreeSlot < capacity) {
+                slot = new Slot(nextFreeSlot++);
+            } else {
+                Iterator<Map.Entry<BlockKey, Slot>> eldest = blocks.entrySet().iterator();
+                slot = eldest.next().getValue();
+                eldest.remove();
+            }
+            slot.length = length;
+            buffer.position(slot.index * blockSize);
+            buffer.put(bytes, 0, length);
+            blocks.put(key, slot);
+        }
+    }
+}
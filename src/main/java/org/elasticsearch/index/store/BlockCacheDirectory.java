@@ -0,0 +1,207 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.store;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.store.*;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A directory that reads the files with one of the configured extensions through a {@link BlockCache}, typically
+ * shared by all the shards of a node. Merges, and files that are read once, bypass the cache so that they don't
+ * evict the blocks searches keep reading.
+ */
+public final class BlockCacheDirectory extends FilterDirectory {
+
+    private final BlockCache cache;
+    private final ImmutableSet<String> extensions;
+
+    private final CounterMetric hits;
+    private final CounterMetric misses;
+
+    // the id the blocks of a file are cached under, a new id is used once the file changes
+    private final ConcurrentMap<String, CachedFile> files = ConcurrentCollections.newConcurrentMap();
+
+    public BlockCacheDirectory(Directory in, BlockCache cache, ImmutableSet<String> extensions, CounterMetric hits, CounterMetric misses) {
+        super(in);
+        this.cache = cache;
+        this.extensions = extensions;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        IndexInput input = in.openInput(name, context);
+        if (context.context == IOContext.Context.MERGE || context.readOnce || !extensions.contains(extension(name))) {
+            return input;
+        }
+        return new BlockCacheIndexInput(input, context, fileId(name, input.length()), cache, hits, misses);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        files.remove(name);
+        return in.createOutput(name, context);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        files.remove(name);
+        in.deleteFile(name);
+    }
+
+    /**
+     * Makes sure the blocks cached for the file aren't read anymore, for when the file is changed without going
+     * through this directory.
+     */
+    public void onFileChanged(String name) {
+        files.remove(name);
+    }
+
+    @Override
+    public String toString() {
+        return "block_cache(" + in.toString() + ")";
+    }
+
+    private long fileId(String name, long length) {
+        CachedFile file = files.get(name);
+        if (file != null && file.length == length) {
+            return file.id;
+        }
+        // concurrent opens of a new file may use different ids, which only wastes some cache space
+        file = new CachedFile(cache.newFileId(), length);
+        files.put(name, file);
+        return file.id;
+    }
+
+    private static String extension(String name) {
+        int index = name.lastIndexOf('.');
+        return index == -1 ? "" : name.substring(index + 1);
+    }
+
+    private static final class CachedFile {
+
+        final long id;
+        final long length;
+
+        CachedFile(long id, long length) {
+            this.id = id;
+            this.length = length;
+        }
+    }
+
+    static final class BlockCacheIndexInput extends BufferedIndexInput {
+
+        private final long fileId;
+        private final long length;
+        private final BlockCache cache;
+        private final CounterMetric hits;
+        private final CounterMetric misses;
+
+        private IndexInput in;
+        private byte[] block;
+        // the last block this input read, so that a block is only counted once as a hit or a miss while it is read
+        private long lastBlockIndex = -1;
+        private boolean isClone;
+
+        BlockCacheIndexInput(IndexInput in, IOContext context, long fileId, BlockCache cache, CounterMetric hits, CounterMetric misses) {
+            // the regular buffer size, inputs are cloned for every terms and postings enum and mostly read a few bytes
+            // after a seek, a buffer of a whole block would need to be allocated and filled for each of them
+            super("block_cache(" + in.toString() + ")", context);
+            this.in = in;
+            this.fileId = fileId;
+            this.length = in.length();
+            this.cache = cache;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int len) throws IOException {
+            long position = getFilePointer();
+            if (position + len > length) {
+                throw new EOFException("read past EOF: " + this);
+            }
+            int blockSize = cache.blockSize();
+            while (len > 0) {
+                long blockIndex = position / blockSize;
+                int offsetInBlock = (int) (position % blockSize);
+                int toRead = Math.min(len, blockSize - offsetInBlock);
+                boolean newBlock = blockIndex != lastBlockIndex;
+                lastBlockIndex = blockIndex;
+                if (cache.read(fileId, blockIndex, offsetInBlock, b, offset, toRead)) {
+                    if (newBlock) {
+                        hits.inc();
+                    }
+                } else {
+                    if (newBlock) {
+                        misses.inc();
+                    }
+                    if (block == null) {
+                        block = new byte[blockSize];
+                    }
+                    long blockStart = blockIndex * blockSize;
+                    int blockLength = (int) Math.min(blockSize, length - blockStart);
+                    in.seek(blockStart);
+                    in.readBytes(block, 0, blockLength);
+                    cache.put(fileId, blockIndex, block, blockLength);
+                    System.arraycopy(block, offsetInBlock, b, offset, toRead);
+                }
+                position += toRead;
+                offset += toRead;
+                len -= toRead;
+            }
+        }
+
+        @Override
+        protected void seekInternal(long pos) throws IOException {
+            // the position is read from the file pointer
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public BlockCacheIndexInput clone() {
+            BlockCacheIndexInput clone = (BlockCacheIndexInput) super.clone();
+            clone.in = in.clone();
+            clone.block = null;
+            clone.lastBlockIndex = -1;
+            clone.isClone = true;
+            return clone;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // only the original input closes the underlying file
+            if (!isClone) {
+                in.close();
+            }
+        }
+    }
+}
@@ -31,6 +31,10 @@ public interface DirectoryService {
 
     long throttleTimeInNanos();
 
+    long blockCacheHits();
+
+    long blockCacheMisses();
+
     void renameFile(Directory dir, String from, String to) throws IOException;
 
     void fullDelete(Directory dir) throws IOException;
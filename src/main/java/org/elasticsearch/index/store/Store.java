@@ -143,7 +143,8 @@ public class Store extends AbstractIndexShardComponent implements CloseableIndex
     }
 
     public StoreStats stats() throws IOException {
-        return new StoreStats(Directories.estimateSize(directory), directoryService.throttleTimeInNanos());
+        return new StoreStats(Directories.estimateSize(directory), directoryService.throttleTimeInNanos(),
+                directoryService.blockCacheHits(), directoryService.blockCacheMisses());
     }
 
     public ByteSizeValue estimateSize() throws IOException {
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.store;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -38,13 +39,23 @@ public class StoreStats implements Streamable, ToXContent {
 
     private long throttleTimeInNanos;
 
+    private long blockCacheHitCount;
+
+    private long blockCacheMissCount;
+
     public StoreStats() {
 
     }
 
     public StoreStats(long sizeInBytes, long throttleTimeInNanos) {
+        this(sizeInBytes, throttleTimeInNanos, 0, 0);
+    }
+
+    public StoreStats(long sizeInBytes, long throttleTimeInNanos, long blockCacheHitCount, long blockCacheMissCount) {
         this.sizeInBytes = sizeInBytes;
         this.throttleTimeInNanos = throttleTimeInNanos;
+        this.blockCacheHitCount = blockCacheHitCount;
+        this.blockCacheMissCount = blockCacheMissCount;
     }
 
     public void add(StoreStats stats) {
@@ -53,6 +64,8 @@ public class StoreStats implements Streamable, ToXContent {
         }
         sizeInBytes += stats.sizeInBytes;
         throttleTimeInNanos += stats.throttleTimeInNanos;
+        blockCacheHitCount += stats.blockCacheHitCount;
+        blockCacheMissCount += stats.blockCacheMissCount;
     }
 
 
@@ -80,6 +93,20 @@ public class StoreStats implements Streamable, ToXContent {
         return throttleTime();
     }
 
+    /**
+     * The number of blocks read from the block cache of the node.
+     */
+    public long getBlockCacheHitCount() {
+        return blockCacheHitCount;
+    }
+
+    /**
+     * The number of blocks that were not in the block cache of the node and had to be read from disk.
+     */
+    public long getBlockCacheMissCount() {
+        return blockCacheMissCount;
+    }
+
     public static StoreStats readStoreStats(StreamInput in) throws IOException {
         StoreStats store = new StoreStats();
         store.readFrom(in);
@@ -90,12 +117,20 @@ public class StoreStats implements Streamable, ToXContent {
     public void readFrom(StreamInput in) throws IOException {
         sizeInBytes = in.readVLong();
         throttleTimeInNanos = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            blockCacheHitCount = in.readVLong();
+            blockCacheMissCount = in.readVLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(sizeInBytes);
         out.writeVLong(throttleTimeInNanos);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(blockCacheHitCount);
+            out.writeVLong(blockCacheMissCount);
+        }
     }
 
     @Override
@@ -103,6 +138,10 @@ public class StoreStats implements Streamable, ToXContent {
         builder.startObject(Fields.STORE);
         builder.byteSizeField(Fields.SIZE_IN_BYTES, Fields.SIZE, sizeInBytes);
         builder.timeValueField(Fields.THROTTLE_TIME_IN_MILLIS, Fields.THROTTLE_TIME, throttleTime());
+        builder.startObject(Fields.BLOCK_CACHE);
+        builder.field(Fields.HIT_COUNT, blockCacheHitCount);
+        builder.field(Fields.MISS_COUNT, blockCacheMissCount);
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -114,5 +153,9 @@ public class StoreStats implements Streamable, ToXContent {
 
         static final XContentBuilderString THROTTLE_TIME = new XContentBuilderString("throttle_time");
         static final XContentBuilderString THROTTLE_TIME_IN_MILLIS = new XContentBuilderString("throttle_time_in_millis");
+
+        static final XContentBuilderString BLOCK_CACHE = new XContentBuilderString("block_cache");
+        static final XContentBuilderString HIT_COUNT = new XContentBuilderString("hit_count");
+        static final XContentBuilderString MISS_COUNT = new XContentBuilderString("miss_count");
     }
 }
@@ -27,6 +27,8 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.BlockCache;
+import org.elasticsearch.index.store.BlockCacheDirectory;
 import org.elasticsearch.index.store.DirectoryService;
 import org.elasticsearch.index.store.DirectoryUtils;
 import org.elasticsearch.index.store.IndexStore;
@@ -44,6 +46,9 @@ public abstract class FsDirectoryService extends AbstractIndexShardComponent imp
 
     private final CounterMetric rateLimitingTimeInNanos = new CounterMetric();
 
+    private final CounterMetric blockCacheHits = new CounterMetric();
+    private final CounterMetric blockCacheMisses = new CounterMetric();
+
     public FsDirectoryService(ShardId shardId, @IndexSettings Settings indexSettings, IndexStore indexStore) {
         super(shardId, indexSettings);
         this.indexStore = (FsIndexStore) indexStore;
@@ -54,6 +59,16 @@ public abstract class FsDirectoryService extends AbstractIndexShardComponent imp
         return rateLimitingTimeInNanos.count();
     }
 
+    @Override
+    public long blockCacheHits() {
+        return blockCacheHits.count();
+    }
+
+    @Override
+    public long blockCacheMisses() {
+        return blockCacheMisses.count();
+    }
+
     @Override
     public final StoreRateLimiting rateLimiting() {
         return indexStore.rateLimiting();
@@ -79,6 +94,9 @@ public abstract class FsDirectoryService extends AbstractIndexShardComponent imp
         if (fsDirectory == null) {
             throw new ElasticsearchIllegalArgumentException("Can not rename file on non-filesystem based directory ");
         }
+        if (dir instanceof BlockCacheDirectory) {
+            ((BlockCacheDirectory) dir).onFileChanged(to);
+        }
         File directory = fsDirectory.getDirectory();
         File old = new File(directory, from);
         File nu = new File(directory, to);
@@ -124,14 +142,26 @@ public abstract class FsDirectoryService extends AbstractIndexShardComponent imp
     @Override
     public Directory[] build() throws IOException {
         File[] locations = indexStore.shardIndexLocations(shardId);
+        BlockCache blockCache = useBlockCache() ? indexStore.indicesStore().blockCache() : null;
         Directory[] dirs = new Directory[locations.length];
         for (int i = 0; i < dirs.length; i++) {
             FileSystemUtils.mkdirs(locations[i]);
             FSDirectory wrapped = newFSDirectory(locations[i], buildLockFactory());
             dirs[i] = new RateLimitedFSDirectory(wrapped, this, this) ;
+            if (blockCache != null) {
+                dirs[i] = new BlockCacheDirectory(dirs[i], blockCache, indexStore.indicesStore().blockCacheExtensions(), blockCacheHits, blockCacheMisses);
+            }
         }
         return dirs;
     }
+
+    /**
+     * Should the files be read through the block cache of the node, if enabled. Can be disabled per index with
+     * <tt>index.store.block_cache.enabled</tt>.
+     */
+    protected boolean useBlockCache() {
+        return indexSettings.getAsBoolean("index.store.block_cache.enabled", true);
+    }
     
     protected abstract FSDirectory newFSDirectory(File location, LockFactory lockFactory) throws IOException;
 
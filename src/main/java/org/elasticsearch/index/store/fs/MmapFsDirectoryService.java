@@ -44,4 +44,10 @@ public class MmapFsDirectoryService extends FsDirectoryService {
     protected FSDirectory newFSDirectory(File location, LockFactory lockFactory) throws IOException {
         return new MMapDirectory(location, buildLockFactory());
     }
+
+    @Override
+    protected boolean useBlockCache() {
+        // mmapped files are already cached by the OS, copying their blocks off heap again would only waste memory
+        return false;
+    }
 }
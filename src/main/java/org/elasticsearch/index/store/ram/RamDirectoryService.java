@@ -47,6 +47,16 @@ public final class RamDirectoryService extends AbstractIndexShardComponent imple
         return 0;
     }
 
+    @Override
+    public long blockCacheHits() {
+        return 0;
+    }
+
+    @Override
+    public long blockCacheMisses() {
+        return 0;
+    }
+
     @Override
     public Directory[] build() {
         return new Directory[]{new CustomRAMDirectory()};
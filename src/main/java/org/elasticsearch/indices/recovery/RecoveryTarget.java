@@ -48,6 +48,7 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
@@ -624,10 +625,21 @@ public class RecoveryTarget extends AbstractComponent {
                         recoverySettings.rateLimiter().pause(request.content().length());
                     }
                     BytesReference content = request.content();
-                    if (!content.hasArray()) {
-                        content = content.toBytesArray();
+                    if (content.hasArray()) {
+                        indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
+                    } else {
+                        // the content is a slice of the transport buffer that spans several network reads, write
+                        // it component by component instead of copying the whole chunk into a fresh array first
+                        for (ByteBuffer component : content.toChannelBuffer().toByteBuffers()) {
+                            if (component.hasArray()) {
+                                indexOutput.writeBytes(component.array(), component.arrayOffset() + component.position(), component.remaining());
+                            } else {
+                                byte[] bytes = new byte[component.remaining()];
+                                component.get(bytes);
+                                indexOutput.writeBytes(bytes, bytes.length);
+                            }
+                        }
                     }
-                    indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
                     onGoingRecovery.currentFilesSize.addAndGet(request.length());
                     if (indexOutput.getFilePointer() == request.length()) {
                         // we are done
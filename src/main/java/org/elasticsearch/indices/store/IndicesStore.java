@@ -19,7 +19,9 @@
 
 package org.elasticsearch.indices.store;
 
+import com.google.common.collect.ImmutableSet;
 import org.apache.lucene.store.StoreRateLimiting;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterStateListener;
@@ -27,6 +29,7 @@ import org.elasticsearch.cluster.routing.IndexRoutingTable;
 import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.settings.Settings;
@@ -35,7 +38,9 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.BlockCache;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -83,6 +88,9 @@ public class IndicesStore extends AbstractComponent implements ClusterStateListe
     private volatile ByteSizeValue rateLimitingThrottle;
     private final StoreRateLimiting rateLimiting = new StoreRateLimiting();
 
+    private final BlockCache blockCache;
+    private final ImmutableSet<String> blockCacheExtensions;
+
     private final ApplySettings applySettings = new ApplySettings();
 
     @Inject
@@ -100,6 +108,20 @@ public class IndicesStore extends AbstractComponent implements ClusterStateListe
 
         logger.debug("using indices.store.throttle.type [{}], with index.store.throttle.max_bytes_per_sec [{}]", rateLimitingType, rateLimitingThrottle);
 
+        ByteSizeValue blockCacheSize = componentSettings.getAsBytesSize("block_cache.size", new ByteSizeValue(0));
+        ByteSizeValue blockCacheBlockSize = componentSettings.getAsBytesSize("block_cache.block_size", new ByteSizeValue(32, ByteSizeUnit.KB));
+        this.blockCacheExtensions = ImmutableSet.copyOf(componentSettings.getAsArray("block_cache.extensions", new String[]{"tim", "tip", "doc", "dvd"}));
+        if (blockCacheSize.bytes() >= blockCacheBlockSize.bytes()) {
+            ByteSizeValue directMemoryMax = JvmInfo.jvmInfo().mem().directMemoryMax();
+            if (directMemoryMax.bytes() > 0 && blockCacheSize.bytes() > directMemoryMax.bytes()) {
+                throw new ElasticsearchIllegalArgumentException("block cache size [" + blockCacheSize + "] is larger than the max direct memory [" + directMemoryMax + "], set indices.store.block_cache.size lower or raise -XX:MaxDirectMemorySize");
+            }
+            this.blockCache = new BlockCache(blockCacheSize.bytes(), (int) blockCacheBlockSize.bytes());
+            logger.debug("using block cache with size [{}], block_size [{}], extensions {}", blockCacheSize, blockCacheBlockSize, blockCacheExtensions);
+        } else {
+            this.blockCache = null;
+        }
+
         nodeSettingsService.addListener(applySettings);
         clusterService.addLast(this);
     }
@@ -108,6 +130,21 @@ public class IndicesStore extends AbstractComponent implements ClusterStateListe
         return this.rateLimiting;
     }
 
+    /**
+     * The cache of file blocks shared by the shards of this node, <tt>null</tt> if disabled.
+     */
+    @Nullable
+    public BlockCache blockCache() {
+        return this.blockCache;
+    }
+
+    /**
+     * The extensions of the files that are read through the {@link #blockCache()}.
+     */
+    public ImmutableSet<String> blockCacheExtensions() {
+        return this.blockCacheExtensions;
+    }
+
     public void close() {
         nodeSettingsService.removeListener(applySettings);
         clusterService.remove(this);
@@ -32,6 +32,7 @@ import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 
 import java.io.IOException;
+import java.util.List;
 
 
 
@@ -58,6 +59,25 @@ class MultiDocumentPercolatorIndex implements PercolatorIndex {
         }
     }
 
+    /**
+     * Indexes the root documents of a batch of percolate requests into a single reader, in which the doc id of each
+     * document is its position in the batch.
+     */
+    Engine.Searcher prepareBatch(List<ParsedDocument> parsedDocuments) {
+        IndexReader[] memoryIndices = new IndexReader[parsedDocuments.size()];
+        for (int i = 0; i < memoryIndices.length; i++) {
+            ParsedDocument parsedDocument = parsedDocuments.get(i);
+            memoryIndices[i] = indexDoc(parsedDocument.rootDoc(), parsedDocument.analyzer()).createSearcher().getIndexReader();
+        }
+        MultiReader mReader = new MultiReader(memoryIndices, true);
+        try {
+            AtomicReader slowReader = SlowCompositeReaderWrapper.wrap(mReader);
+            return new DocSearcher(new IndexSearcher(slowReader));
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to create index for percolator with a batch of documents", e);
+        }
+    }
+
     MemoryIndex indexDoc(ParseContext.Document d, Analyzer analyzer) {
         MemoryIndex memoryIndex = new MemoryIndex(true);
         for (IndexableField field : d.getFields()) {
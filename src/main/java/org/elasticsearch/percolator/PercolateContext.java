@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
@@ -37,6 +38,7 @@ import org.elasticsearch.common.text.StringText;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.cache.fixedbitset.FixedBitSetFilterCache;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.fieldvisitor.JustSourceFieldsVisitor;
@@ -95,6 +97,7 @@ public class PercolateContext extends SearchContext {
     private final PageCacheRecycler pageCacheRecycler;
     private final ScriptService scriptService;
     private final ConcurrentMap<HashedBytesRef, Query> percolateQueries;
+    private Map<HashedBytesRef, Query> candidateQueries;
     private String[] types;
 
     private Engine.Searcher docSearcher;
@@ -166,6 +169,18 @@ public class PercolateContext extends SearchContext {
         return percolateQueries;
     }
 
+    /**
+     * @return The registered queries that may match the document being percolated, or all the registered queries
+     * if they haven't been prefiltered.
+     */
+    public Map<HashedBytesRef, Query> candidateQueries() {
+        return candidateQueries != null ? candidateQueries : percolateQueries;
+    }
+
+    public void candidateQueries(Map<HashedBytesRef, Query> candidateQueries) {
+        this.candidateQueries = candidateQueries;
+    }
+
     public Query percolateQuery() {
         return percolateQuery;
     }
@@ -482,6 +497,11 @@ public class PercolateContext extends SearchContext {
         return indexService.cache().filter();
     }
 
+    @Override
+    public FixedBitSetFilterCache fixedBitSetFilterCache() {
+        return indexService.cache().fixedBitSetFilterCache();
+    }
+
     @Override
     public DocSetCache docSetCache() {
         return indexService.cache().docSet();
@@ -529,6 +549,26 @@ public class PercolateContext extends SearchContext {
         return trackScores;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
+    @Override
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Filter sliceFilter() {
+        return null;
+    }
+
     @Override
     public SearchContext parsedPostFilter(ParsedFilter postFilter) {
         throw new UnsupportedOperationException();
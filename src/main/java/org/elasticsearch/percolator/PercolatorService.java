@@ -25,6 +25,7 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.ElasticsearchParseException;
@@ -101,7 +102,7 @@ public class PercolatorService extends AbstractComponent {
     private final ClusterService clusterService;
 
     private final PercolatorIndex single;
-    private final PercolatorIndex multi;
+    private final MultiDocumentPercolatorIndex multi;
 
     private final FacetPhase facetPhase;
     private final HighlightPhase highlightPhase;
@@ -150,67 +151,288 @@ public class PercolatorService extends AbstractComponent {
         shardPercolateService.prePercolate();
         long startTime = System.nanoTime();
 
-        SearchShardTarget searchShardTarget = new SearchShardTarget(clusterService.localNode().id(), request.index(), request.shardId());
-        final PercolateContext context = new PercolateContext(
-                request, searchShardTarget, indexShard, percolateIndexService, cacheRecycler, pageCacheRecycler, scriptService
-        );
+        final PercolateContext context = createContext(request, percolateIndexService, indexShard);
         try {
-            ParsedDocument parsedDocument = parseRequest(percolateIndexService, request, context);
-            if (context.percolateQueries().isEmpty()) {
+            ParsedDocument parsedDocument = prepareRequest(percolateIndexService, indexShard, request, context);
+            if (parsedDocument == null) {
                 return new PercolateShardResponse(context, request.index(), request.shardId());
             }
+            return percolate(indexShard, request, context, parsedDocument);
+        } finally {
+            context.release();
+            shardPercolateService.postPercolate(System.nanoTime() - startTime);
+        }
+    }
 
-            if (request.docSource() != null && request.docSource().length() != 0) {
-                parsedDocument = parseFetchedDoc(context, request.docSource(), percolateIndexService, request.documentType());
-            } else if (parsedDocument == null) {
-                throw new ElasticsearchIllegalArgumentException("Nothing to percolate");
-            }
+    /**
+     * Percolates a batch of requests targeting the same shard. The documents of the requests that only need the ids of
+     * the matching queries (or their count) are indexed together into a single in-memory reader, against which each
+     * registered query is executed only once. The other requests are percolated one by one.
+     * <p/>
+     * The response or the failure of each request is set at its position in the provided arrays.
+     */
+    public void percolate(List<PercolateShardRequest> requests, PercolateShardResponse[] responses, Throwable[] failures) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        IndexService percolateIndexService = indicesService.indexServiceSafe(requests.get(0).index());
+        IndexShard indexShard = percolateIndexService.shardSafe(requests.get(0).shardId());
+        ShardPercolateService shardPercolateService = indexShard.shardPercolateService();
 
-            if (context.percolateQuery() == null && (context.trackScores() || context.doSort || context.facets() != null || context.aggregations() != null)) {
-                context.percolateQuery(new MatchAllDocsQuery());
+        List<Integer> batchSlots = new ArrayList<Integer>();
+        List<PercolateShardRequest> batchRequests = new ArrayList<PercolateShardRequest>();
+        List<PercolateContext> batchContexts = new ArrayList<PercolateContext>();
+        List<ParsedDocument> batchDocuments = new ArrayList<ParsedDocument>();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                PercolateShardRequest request = requests.get(i);
+                shardPercolateService.prePercolate();
+                long startTime = System.nanoTime();
+                PercolateContext context = createContext(request, percolateIndexService, indexShard);
+                boolean batched = false;
+                try {
+                    ParsedDocument parsedDocument = prepareRequest(percolateIndexService, indexShard, request, context);
+                    if (parsedDocument == null) {
+                        responses[i] = new PercolateShardResponse(context, request.index(), request.shardId());
+                    } else if (batchable(indexShard, request, context)) {
+                        batchSlots.add(i);
+                        batchRequests.add(request);
+                        batchContexts.add(context);
+                        batchDocuments.add(parsedDocument);
+                        batched = true;
+                    } else {
+                        responses[i] = percolate(indexShard, request, context, parsedDocument);
+                    }
+                } catch (Throwable t) {
+                    failures[i] = t;
+                } finally {
+                    if (!batched) {
+                        context.release();
+                        shardPercolateService.postPercolate(System.nanoTime() - startTime);
+                    }
+                }
             }
 
-            if (context.doSort && !context.limit) {
-                throw new ElasticsearchIllegalArgumentException("Can't sort if size isn't specified");
+            if (batchContexts.size() == 1) {
+                // nothing to share with other documents
+                PercolateContext context = batchContexts.get(0);
+                int slot = batchSlots.get(0);
+                batchContexts.clear();
+                long startTime = System.nanoTime();
+                try {
+                    responses[slot] = percolate(indexShard, requests.get(slot), context, batchDocuments.get(0));
+                } catch (Throwable t) {
+                    failures[slot] = t;
+                } finally {
+                    context.release();
+                    shardPercolateService.postPercolate(System.nanoTime() - startTime);
+                }
+            } else if (!batchContexts.isEmpty()) {
+                long startTime = System.nanoTime();
+                try {
+                    PercolateShardResponse[] batchResponses = percolateBatch(indexShard, batchRequests, batchContexts, batchDocuments);
+                    for (int i = 0; i < batchResponses.length; i++) {
+                        responses[batchSlots.get(i)] = batchResponses[i];
+                    }
+                } catch (Throwable t) {
+                    for (int slot : batchSlots) {
+                        failures[slot] = t;
+                    }
+                } finally {
+                    // the time spent on the batch is shared among its requests
+                    long tookInNanos = (System.nanoTime() - startTime) / batchContexts.size();
+                    for (PercolateContext context : batchContexts) {
+                        shardPercolateService.postPercolate(tookInNanos);
+                    }
+                }
+            }
+        } finally {
+            for (PercolateContext context : batchContexts) {
+                context.release();
             }
+        }
+    }
+
+    private PercolateContext createContext(PercolateShardRequest request, IndexService percolateIndexService, IndexShard indexShard) {
+        SearchShardTarget searchShardTarget = new SearchShardTarget(clusterService.localNode().id(), request.index(), request.shardId());
+        return new PercolateContext(
+                request, searchShardTarget, indexShard, percolateIndexService, cacheRecycler, pageCacheRecycler, scriptService
+        );
+    }
+
+    /**
+     * Parses the request, validates it and selects the way it is going to be percolated. Returns the document to
+     * percolate, or <tt>null</tt> if there are no registered queries to percolate it against.
+     */
+    private ParsedDocument prepareRequest(IndexService percolateIndexService, IndexShard indexShard, PercolateShardRequest request, PercolateContext context) {
+        ParsedDocument parsedDocument = parseRequest(percolateIndexService, request, context);
+        if (context.percolateQueries().isEmpty()) {
+            return null;
+        }
+
+        if (request.docSource() != null && request.docSource().length() != 0) {
+            parsedDocument = parseFetchedDoc(context, request.docSource(), percolateIndexService, request.documentType());
+        } else if (parsedDocument == null) {
+            throw new ElasticsearchIllegalArgumentException("Nothing to percolate");
+        }
 
-            if (context.highlight() != null && !context.limit) {
-                throw new ElasticsearchIllegalArgumentException("Can't highlight if size isn't specified");
+        if (context.percolateQuery() == null && (context.trackScores() || context.doSort || context.facets() != null || context.aggregations() != null)) {
+            context.percolateQuery(new MatchAllDocsQuery());
+        }
+
+        if (context.doSort && !context.limit) {
+            throw new ElasticsearchIllegalArgumentException("Can't sort if size isn't specified");
+        }
+
+        if (context.highlight() != null && !context.limit) {
+            throw new ElasticsearchIllegalArgumentException("Can't highlight if size isn't specified");
+        }
+
+        if (context.size < 0) {
+            context.size = 0;
+        }
+
+        PercolatorType action;
+        if (request.onlyCount()) {
+            action = context.percolateQuery() != null ? queryCountPercolator : countPercolator;
+        } else {
+            if (context.doSort) {
+                action = topMatchingPercolator;
+            } else if (context.percolateQuery() != null) {
+                action = context.trackScores() ? scoringPercolator : queryPercolator;
+            } else {
+                action = matchPercolator;
             }
+        }
+        context.percolatorTypeId = action.id();
+        return parsedDocument;
+    }
 
-            if (context.size < 0) {
-                context.size = 0;
+    private PercolateShardResponse percolate(IndexShard indexShard, PercolateShardRequest request, PercolateContext context, ParsedDocument parsedDocument) {
+        // parse the source either into one MemoryIndex, if it is a single document or index multiple docs if nested
+        PercolatorIndex percolatorIndex;
+        if (indexShard.mapperService().documentMapper(request.documentType()).hasNestedObjects()) {
+            percolatorIndex = multi;
+        } else {
+            percolatorIndex = single;
+        }
+        percolatorIndex.prepare(context, parsedDocument);
+
+        // only the queries whose required terms occur in the document need to be executed
+        try {
+            Map<HashedBytesRef, Query> candidateQueries = indexShard.percolateRegistry().candidateQueries(context.docSearcher().getIndexReader());
+            indexShard.shardPercolateService().prefiltered(context.percolateQueries().size(), candidateQueries.size());
+            context.candidateQueries(candidateQueries);
+        } catch (IOException e) {
+            throw new PercolateException(indexShard.shardId(), "failed to select the candidate queries", e);
+        }
+
+        indexShard.readAllowed();
+        return percolatorTypes.get(context.percolatorTypeId).doPercolate(request, context);
+    }
+
+    /**
+     * Only requests that execute each registered query against the document alone, without highlighting, can
+     * share the execution of the queries with other documents. Nested documents need their own reader.
+     */
+    private boolean batchable(IndexShard indexShard, PercolateShardRequest request, PercolateContext context) {
+        if (context.percolatorTypeId != countPercolator.id() && context.percolatorTypeId != matchPercolator.id()) {
+            return false;
+        }
+        return context.highlight() == null && !indexShard.mapperService().documentMapper(request.documentType()).hasNestedObjects();
+    }
+
+    private PercolateShardResponse[] percolateBatch(IndexShard indexShard, List<PercolateShardRequest> requests, List<PercolateContext> contexts,
+                                                    List<ParsedDocument> parsedDocuments) throws IOException {
+        Engine.Searcher docSearcher = multi.prepareBatch(parsedDocuments);
+        try {
+            Map<HashedBytesRef, Query> candidateQueries = indexShard.percolateRegistry().candidateQueries(docSearcher.reader());
+            // the registered queries are considered once for the whole batch
+            indexShard.shardPercolateService().prefiltered(indexShard.percolateRegistry().percolateQueries().size(), candidateQueries.size());
+            indexShard.readAllowed();
+
+            long[] counts = new long[contexts.size()];
+            List<List<BytesRef>> matches = new ArrayList<List<BytesRef>>(contexts.size());
+            for (int i = 0; i < contexts.size(); i++) {
+                matches.add(new ArrayList<BytesRef>());
             }
+            BatchCollector collector = new BatchCollector(contexts.size());
+            for (Map.Entry<HashedBytesRef, Query> entry : candidateQueries.entrySet()) {
+                collector.reset();
+                try {
+                    docSearcher.searcher().search(entry.getValue(), collector);
+                } catch (Throwable e) {
+                    logger.warn("[" + entry.getKey() + "] failed to execute query", e);
+                }
 
-            // parse the source either into one MemoryIndex, if it is a single document or index multiple docs if nested
-            PercolatorIndex percolatorIndex;
-            if (indexShard.mapperService().documentMapper(request.documentType()).hasNestedObjects()) {
-                percolatorIndex = multi;
-            } else {
-                percolatorIndex = single;
+                FixedBitSet matchingDocs = collector.matchingDocs();
+                for (int doc = 0; doc < counts.length; doc++) {
+                    if (!matchingDocs.get(doc)) {
+                        continue;
+                    }
+                    PercolateContext context = contexts.get(doc);
+                    if (context.percolatorTypeId == matchPercolator.id() && (!context.limit || counts[doc] < context.size)) {
+                        matches.get(doc).add(entry.getKey().bytes);
+                    }
+                    counts[doc]++;
+                }
             }
 
-            PercolatorType action;
-            if (request.onlyCount()) {
-                action = context.percolateQuery() != null ? queryCountPercolator : countPercolator;
-            } else {
-                if (context.doSort) {
-                    action = topMatchingPercolator;
-                } else if (context.percolateQuery() != null) {
-                    action = context.trackScores() ? scoringPercolator : queryPercolator;
+            PercolateShardResponse[] responses = new PercolateShardResponse[contexts.size()];
+            for (int i = 0; i < responses.length; i++) {
+                PercolateContext context = contexts.get(i);
+                PercolateShardRequest request = requests.get(i);
+                if (context.percolatorTypeId == countPercolator.id()) {
+                    responses[i] = new PercolateShardResponse(counts[i], context, request.index(), request.shardId());
                 } else {
-                    action = matchPercolator;
+                    BytesRef[] finalMatches = matches.get(i).toArray(new BytesRef[matches.get(i).size()]);
+                    responses[i] = new PercolateShardResponse(finalMatches, new ArrayList<Map<String, HighlightField>>(), counts[i], context, request.index(), request.shardId());
                 }
             }
-            context.percolatorTypeId = action.id();
+            return responses;
+        } finally {
+            docSearcher.release();
+        }
+    }
 
-            percolatorIndex.prepare(context, parsedDocument);
+    /**
+     * Collects the positions in the batch of the documents a query matches.
+     */
+    private static class BatchCollector extends Collector {
 
-            indexShard.readAllowed();
-            return action.doPercolate(request, context);
-        } finally {
-            context.release();
-            shardPercolateService.postPercolate(System.nanoTime() - startTime);
+        private final FixedBitSet matchingDocs;
+
+        private int docBase;
+
+        BatchCollector(int numDocs) {
+            this.matchingDocs = new FixedBitSet(numDocs);
+        }
+
+        void reset() {
+            matchingDocs.clear(0, matchingDocs.length());
+        }
+
+        FixedBitSet matchingDocs() {
+            return matchingDocs;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            matchingDocs.set(docBase + doc);
+        }
+
+        @Override
+        public void setNextReader(AtomicReaderContext context) throws IOException {
+            docBase = context.docBase;
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return true;
         }
     }
 
@@ -418,7 +640,7 @@ public class PercolatorService extends AbstractComponent {
         public PercolateShardResponse doPercolate(PercolateShardRequest request, PercolateContext context) {
             long count = 0;
             Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
-            for (Map.Entry<HashedBytesRef, Query> entry : context.percolateQueries().entrySet()) {
+            for (Map.Entry<HashedBytesRef, Query> entry : context.candidateQueries().entrySet()) {
                 collector.reset();
                 try {
                     context.docSearcher().search(entry.getValue(), collector);
@@ -511,7 +733,7 @@ public class PercolatorService extends AbstractComponent {
             List<Map<String, HighlightField>> hls = new ArrayList<Map<String, HighlightField>>();
             Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
 
-            for (Map.Entry<HashedBytesRef, Query> entry : context.percolateQueries().entrySet()) {
+            for (Map.Entry<HashedBytesRef, Query> entry : context.candidateQueries().entrySet()) {
                 collector.reset();
                 if (context.highlight() != null) {
                     context.parsedQuery(new ParsedQuery(entry.getValue(), ImmutableMap.<String, Filter>of()));
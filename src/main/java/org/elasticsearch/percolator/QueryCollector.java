@@ -45,7 +45,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  */
@@ -53,7 +52,7 @@ abstract class QueryCollector extends Collector {
 
     final IndexFieldData<?> idFieldData;
     final IndexSearcher searcher;
-    final ConcurrentMap<HashedBytesRef, Query> queries;
+    final Map<HashedBytesRef, Query> queries;
     final ESLogger logger;
 
     final Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
@@ -66,7 +65,7 @@ abstract class QueryCollector extends Collector {
 
     QueryCollector(ESLogger logger, PercolateContext context) {
         this.logger = logger;
-        this.queries = context.percolateQueries();
+        this.queries = context.candidateQueries();
         this.searcher = context.docSearcher();
         final FieldMapper<?> idMapper = context.mapperService().smartNameFieldMapper(IdFieldMapper.NAME);
         this.idFieldData = context.fieldData().getForField(idMapper);
@@ -98,6 +98,23 @@ import static com.google.common.collect.Lists.newArrayList;
  *      ......
  * }
  * </pre>
+ * <p/>
+ * If the repository is created with the {@code content_addressable} setting, new data files are not stored in the
+ * shard directories. Instead they are keyed by the SHA-1 hash of their content and shared by all shards and all
+ * snapshots in the repository, so identical files are only written once:
+ * <pre>
+ * {@code
+ *   STORE_ROOT
+ *   |- blobs/ - content addressed data files
+ *   |  |- sha1_0beec7b5ea3f0fdbc95d0dd47f3c5bc275da8a33 - file content, see snapshot-* for mappings to real segment files
+ *   |  .....
+ *   |- refs/ - references to the content addressed data files
+ *   |  |- sha1_0beec7b5ea3f0fdbc95d0dd47f3c5bc275da8a33.foo-0 - shard "0" of index "foo" references the file
+ *   |  |- sha1_0beec7b5ea3f0fdbc95d0dd47f3c5bc275da8a33.bar-0 - shard "0" of index "bar" references the same file
+ *   |  .....
+ * }
+ * </pre>
+ * A data file is deleted from {@code blobs/} once the last reference to it is removed.
  */
 public abstract class BlobStoreRepository extends AbstractLifecycleComponent<Repository> implements Repository, RateLimiterListener {
 
@@ -119,6 +136,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent<Rep
 
     private final RateLimiter restoreRateLimiter;
 
+    private final boolean contentAddressable;
+
     private final CounterMetric snapshotRateLimitingTimeInNanos = new CounterMetric();
 
     private final CounterMetric restoreRateLimitingTimeInNanos = new CounterMetric();
@@ -140,6 +159,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent<Rep
         globalOnlyFormatParams = new ToXContent.MapParams(globalOnlyParams);
         snapshotRateLimiter = getRateLimiter(repositorySettings, "max_snapshot_bytes_per_sec", new ByteSizeValue(20, ByteSizeUnit.MB));
         restoreRateLimiter = getRateLimiter(repositorySettings, "max_restore_bytes_per_sec", new ByteSizeValue(20, ByteSizeUnit.MB));
+        contentAddressable = repositorySettings.settings().getAsBoolean("content_addressable", componentSettings.getAsBoolean("content_addressable", false));
     }
 
     /**
@@ -148,7 +168,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent<Rep
     @Override
     protected void doStart() throws ElasticsearchException {
         this.snapshotsBlobContainer = blobStore().immutableBlobContainer(basePath());
-        indexShardRepository.initialize(blobStore(), basePath(), chunkSize(), snapshotRateLimiter, restoreRateLimiter, this);
+        indexShardRepository.initialize(blobStore(), basePath(), chunkSize(), contentAddressable, snapshotRateLimiter, restoreRateLimiter, this);
     }
 
     /**
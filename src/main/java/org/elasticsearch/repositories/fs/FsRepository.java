@@ -45,6 +45,7 @@ import java.util.concurrent.TimeUnit;
  * <dt>{@code concurrent_streams}</dt><dd>Number of concurrent read/write stream (per repository on each node). Defaults to 5.</dd>
  * <dt>{@code chunk_size}</dt><dd>Large file can be divided into chunks. This parameter specifies the chunk size. Defaults to not chucked.</dd>
  * <dt>{@code compress}</dt><dd>If set to true metadata files will be stored compressed. Defaults to false.</dd>
+ * <dt>{@code content_addressable}</dt><dd>If set to true data files are stored once per repository, keyed by the hash of their content. Defaults to false.</dd>
  * </ol>
  */
 public class FsRepository extends BlobStoreRepository {
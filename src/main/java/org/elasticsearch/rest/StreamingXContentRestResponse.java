@@ -0,0 +1,75 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.elasticsearch.rest.action.support.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.action.support.RestXContentBuilder.restStreamingContentBuilder;
+
+/**
+ * An {@link XContentRestResponse} whose content is only generated when it is sent. Channels that support it
+ * can call {@link #writeTo(java.io.OutputStream)} to stream the content as it is generated instead of
+ * building it in memory first, other channels get the content built on the first call to {@link #builder()}.
+ */
+public abstract class StreamingXContentRestResponse extends XContentRestResponse {
+
+    private final RestRequest request;
+
+    private boolean built;
+
+    public StreamingXContentRestResponse(RestRequest request, RestStatus status) throws IOException {
+        super(request, status, restContentBuilder(request));
+        this.request = request;
+    }
+
+    /**
+     * Writes the content of the response to the provided builder.
+     */
+    protected abstract void writeContent(XContentBuilder builder) throws IOException;
+
+    /**
+     * Writes the content of the response to the provided stream, using a builder with the same options
+     * (content type, pretty printing, casing) as {@link #builder()}. The prefix and suffix content are not written.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        XContentBuilder builder = restStreamingContentBuilder(request, outputStream);
+        writeContent(builder);
+        builder.flush();
+    }
+
+    @Override
+    public XContentBuilder builder() {
+        XContentBuilder builder = super.builder();
+        if (!built) {
+            built = true;
+            try {
+                writeContent(builder);
+            } catch (IOException e) {
+                throw new ElasticsearchIllegalStateException("failed to build response content", e);
+            }
+        }
+        return builder;
+    }
+}
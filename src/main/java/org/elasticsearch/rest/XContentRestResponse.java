@@ -71,12 +71,12 @@ public class XContentRestResponse extends AbstractRestResponse {
 
     @Override
     public byte[] content() throws IOException {
-        return builder.bytes().array();
+        return builder().bytes().array();
     }
 
     @Override
     public int contentLength() throws IOException {
-        return builder.bytes().length();
+        return builder().bytes().length();
     }
 
     @Override
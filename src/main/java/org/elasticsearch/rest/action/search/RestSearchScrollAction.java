@@ -87,13 +87,17 @@ public class RestSearchScrollAction extends BaseRestHandler {
 
         client.searchScroll(searchScrollRequest, new ActionListener<SearchResponse>() {
             @Override
-            public void onResponse(SearchResponse response) {
+            public void onResponse(final SearchResponse response) {
                 try {
-                    XContentBuilder builder = restContentBuilder(request);
-                    builder.startObject();
-                    response.toXContent(builder, request);
-                    builder.endObject();
-                    channel.sendResponse(new XContentRestResponse(request, response.status(), builder));
+                    // the hits can be large, let the channel stream them if it can instead of building them in memory
+                    channel.sendResponse(new StreamingXContentRestResponse(request, response.status()) {
+                        @Override
+                        protected void writeContent(XContentBuilder builder) throws IOException {
+                            builder.startObject();
+                            response.toXContent(builder, request);
+                            builder.endObject();
+                        }
+                    });
                 } catch (Throwable e) {
                     onFailure(e);
                 }
@@ -26,6 +26,7 @@ import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.rest.RestRequest;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  *
@@ -38,6 +39,17 @@ public class RestXContentBuilder {
     }
 
     public static XContentBuilder restContentBuilder(RestRequest request, @Nullable BytesReference autoDetectSource) throws IOException {
+        return restContentBuilder(request, autoDetectSource, new BytesStreamOutput());
+    }
+
+    /**
+     * Creates a builder for the request that writes directly to the provided output stream.
+     */
+    public static XContentBuilder restStreamingContentBuilder(RestRequest request, OutputStream outputStream) throws IOException {
+        return restContentBuilder(request, request.hasContent() ? request.content() : null, outputStream);
+    }
+
+    private static XContentBuilder restContentBuilder(RestRequest request, @Nullable BytesReference autoDetectSource, OutputStream outputStream) throws IOException {
         XContentType contentType = XContentType.fromRestContentType(request.param("format", request.header("Content-Type")));
         if (contentType == null) {
             // try and guess it from the auto detect source
@@ -49,7 +61,7 @@ public class RestXContentBuilder {
             // default to JSON
             contentType = XContentType.JSON;
         }
-        XContentBuilder builder = new XContentBuilder(XContentFactory.xContent(contentType), new BytesStreamOutput());
+        XContentBuilder builder = new XContentBuilder(XContentFactory.xContent(contentType), outputStream);
         if (request.paramAsBoolean("pretty", false)) {
             builder.prettyPrint().lfAtEnd();
         }
@@ -35,6 +35,7 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.script.expression.ExpressionScriptEngineService;
 import org.elasticsearch.search.lookup.SearchLookup;
 import org.elasticsearch.watcher.FileChangesListener;
 import org.elasticsearch.watcher.FileWatcher;
@@ -180,7 +181,8 @@ public class ScriptService extends AbstractComponent {
             return false;
         }
         // we allow "native" executions since they register through plugins, so they are "allowed"
-        return !"native".equals(lang);
+        // and expressions, since they can only compute numbers out of numeric fields and parameters
+        return !"native".equals(lang) && !ExpressionScriptEngineService.NAME.equals(lang);
     }
 
     private class ScriptChangesListener extends FileChangesListener {
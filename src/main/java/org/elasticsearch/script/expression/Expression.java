@@ -0,0 +1,96 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import java.util.List;
+
+/**
+ * An expression compiled by {@link ExpressionCompiler}. The expression reads all its variables from a single
+ * <tt>double[]</tt>, one slot per distinct variable in the order they first appear in the expression, so that
+ * evaluating it never boxes a value or looks a variable up by name.
+ */
+public final class Expression {
+
+    public static enum VariableType {
+        /**
+         * The (first) value of a numeric field of the current document: <tt>doc['field'].value</tt>
+         */
+        FIELD,
+        /**
+         * The score of the current document: <tt>_score</tt>
+         */
+        SCORE,
+        /**
+         * A script parameter
+         */
+        PARAM
+    }
+
+    /**
+     * The base class of the generated bytecode.
+     */
+    public static abstract class Evaluator {
+
+        public abstract double evaluate(double[] variables);
+    }
+
+    private final String source;
+    private final Evaluator evaluator;
+    private final VariableType[] variableTypes;
+    private final String[] variableNames;
+
+    Expression(String source, Evaluator evaluator, List<VariableType> variableTypes, List<String> variableNames) {
+        this.source = source;
+        this.evaluator = evaluator;
+        this.variableTypes = variableTypes.toArray(new VariableType[variableTypes.size()]);
+        this.variableNames = variableNames.toArray(new String[variableNames.size()]);
+    }
+
+    public String source() {
+        return source;
+    }
+
+    /**
+     * @return The number of slots of the array the expression is evaluated with.
+     */
+    public int numVariables() {
+        return variableTypes.length;
+    }
+
+    public VariableType variableType(int slot) {
+        return variableTypes[slot];
+    }
+
+    /**
+     * @return The field name, <tt>_score</tt> or the parameter name of the variable in the provided slot.
+     */
+    public String variableName(int slot) {
+        return variableNames[slot];
+    }
+
+    public double evaluate(double[] variables) {
+        return evaluator.evaluate(variables);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.script.ScriptException;
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.Label;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles a restricted, JavaScript like expression language straight to JVM bytecode. The generated class
+ * evaluates the whole expression on primitive doubles, which the JIT can then inline like a native script.
+ * <p/>
+ * The language supports numeric literals, the <tt>+ - * / %</tt> arithmetic operators, the <tt>&lt; &lt;= &gt; &gt;=
+ * == !=</tt> comparison operators, the <tt>&amp;&amp; || !</tt> logical operators and the <tt>?:</tt> conditional
+ * operator (<tt>0</tt> and <tt>NaN</tt> are false, anything else is true, comparisons and logical operators evaluate to <tt>0</tt> or
+ * <tt>1</tt>), the functions of {@link #FUNCTIONS} and parentheses. Variables are <tt>doc['field'].value</tt>,
+ * <tt>_score</tt> and the names of the script parameters.
+ * <p/>
+ * The code is emitted while parsing, since the operands of every operator are parsed (and so emitted) in the order
+ * they are evaluated.
+ */
+public class ExpressionCompiler implements Opcodes {
+
+    /**
+     * The supported functions, mapped to the number of arguments of their {@link Math} counterpart.
+     */
+    static final ImmutableMap<String, Function> FUNCTIONS = ImmutableMap.<String, Function>builder()
+            .put("abs", new Function("abs", 1))
+            .put("acos", new Function("acos", 1))
+            .put("asin", new Function("asin", 1))
+            .put("atan", new Function("atan", 1))
+            .put("atan2", new Function("atan2", 2))
+            .put("cbrt", new Function("cbrt", 1))
+            .put("ceil", new Function("ceil", 1))
+            .put("cos", new Function("cos", 1))
+            .put("cosh", new Function("cosh", 1))
+            .put("exp", new Function("exp", 1))
+            .put("floor", new Function("floor", 1))
+            .put("hypot", new Function("hypot", 2))
+            .put("ln", new Function("log", 1))
+            .put("log10", new Function("log10", 1))
+            .put("max", new Function("max", 2))
+            .put("min", new Function("min", 2))
+            .put("pow", new Function("pow", 2))
+            .put("sin", new Function("sin", 1))
+            .put("sinh", new Function("sinh", 1))
+            .put("sqrt", new Function("sqrt", 1))
+            .put("tan", new Function("tan", 1))
+            .put("tanh", new Function("tanh", 1))
+            .build();
+
+    static final class Function {
+        final String method;
+        final int arity;
+        final String descriptor;
+
+        Function(String method, int arity) {
+            this.method = method;
+            this.arity = arity;
+            StringBuilder descriptor = new StringBuilder("(");
+            for (int i = 0; i < arity; i++) {
+                descriptor.append('D');
+            }
+            this.descriptor = descriptor.append(")D").toString();
+        }
+    }
+
+    private static final String EVALUATOR_NAME = Expression.Evaluator.class.getName().replace('.', '/');
+    private static final String CLASS_NAME_PREFIX = "org/elasticsearch/script/expression/CompiledExpression$";
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    /**
+     * How deep expressions (parentheses, conditionals and unary operators) can be nested, so that the recursive
+     * descent parser fails with an error rather than overflowing the stack of the thread compiling the script.
+     */
+    static final int MAX_DEPTH = 64;
+
+    private final String source;
+    private int pos;
+    private int depth;
+    private MethodVisitor mv;
+    private final List<Expression.VariableType> variableTypes = new ArrayList<Expression.VariableType>();
+    private final List<String> variableNames = new ArrayList<String>();
+
+    private ExpressionCompiler(String source) {
+        this.source = source;
+    }
+
+    public static Expression compile(String source) {
+        return new ExpressionCompiler(source).compile();
+    }
+
+    private Expression compile() {
+        String className = CLASS_NAME_PREFIX + CLASS_COUNTER.incrementAndGet();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        // no stack map frames before java 6
+        cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, EVALUATOR_NAME, null);
+
+        MethodVisitor constructor = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, EVALUATOR_NAME, "<init>", "()V");
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "evaluate", "([D)D", null, null);
+        mv.visitCode();
+        parseExpression();
+        skipWhitespace();
+        if (pos < source.length()) {
+            throw error("unexpected character [" + source.charAt(pos) + "]");
+        }
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        Expression.Evaluator evaluator;
+        try {
+            Class<?> clazz = new Loader(ExpressionCompiler.class.getClassLoader()).define(className.replace('/', '.'), cw.toByteArray());
+            evaluator = (Expression.Evaluator) clazz.newInstance();
+        } catch (Throwable t) {
+            throw new ScriptException("failed to load compiled expression [" + source + "]", t);
+        }
+        return new Expression(source, evaluator, variableTypes, variableNames);
+    }
+
+    // expression := or ( '?' expression ':' expression )?
+    private void parseExpression() {
+        enter();
+        parseOr();
+        if (consume("?")) {
+            Label otherwise = new Label();
+            Label end = new Label();
+            jumpIfFalse(otherwise);
+            parseExpression();
+            mv.visitJumpInsn(GOTO, end);
+            expect(":");
+            mv.visitLabel(otherwise);
+            parseExpression();
+            mv.visitLabel(end);
+        }
+        depth--;
+    }
+
+    // or := and ( '||' and )*
+    private void parseOr() {
+        parseAnd();
+        while (consume("||")) {
+            Label isTrue = new Label();
+            Label end = new Label();
+            jumpIfTrue(isTrue);
+            parseAnd();
+            jumpIfTrue(isTrue);
+            mv.visitInsn(DCONST_0);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(DCONST_1);
+            mv.visitLabel(end);
+        }
+    }
+
+    // and := equality ( '&&' equality )*
+    private void parseAnd() {
+        parseEquality();
+        while (consume("&&")) {
+            Label isFalse = new Label();
+            Label end = new Label();
+            jumpIfFalse(isFalse);
+            parseEquality();
+            jumpIfFalse(isFalse);
+            mv.visitInsn(DCONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isFalse);
+            mv.visitInsn(DCONST_0);
+            mv.visitLabel(end);
+        }
+    }
+
+    // equality := relational ( ( '==' | '!=' ) relational )*
+    private void parseEquality() {
+        parseRelational();
+        while (true) {
+            if (consume("==")) {
+                parseRelational();
+                compare(DCMPL, IFNE);
+            } else if (consume("!=")) {
+                parseRelational();
+                compare(DCMPL, IFEQ);
+            } else {
+                return;
+            }
+        }
+    }
+
+    // relational := additive ( ( '<=' | '<' | '>=' | '>' ) additive )*
+    private void parseRelational() {
+        parseAdditive();
+        while (true) {
+            // comparisons with NaN are false: DCMPG pushes 1 and DCMPL pushes -1 for NaN
+            if (consume("<=")) {
+                parseAdditive();
+                compare(DCMPG, IFGT);
+            } else if (consume("<")) {
+                parseAdditive();
+                compare(DCMPG, IFGE);
+            } else if (consume(">=")) {
+                parseAdditive();
+                compare(DCMPL, IFLT);
+            } else if (consume(">")) {
+                parseAdditive();
+                compare(DCMPL, IFLE);
+            } else {
+                return;
+            }
+        }
+    }
+
+    // additive := multiplicative ( ( '+' | '-' ) multiplicative )*
+    private void parseAdditive() {
+        parseMultiplicative();
+        while (true) {
+            if (consume("+")) {
+                parseMultiplicative();
+                mv.visitInsn(DADD);
+            } else if (consume("-")) {
+                parseMultiplicative();
+                mv.visitInsn(DSUB);
+            } else {
+                return;
+            }
+        }
+    }
+
+    // multiplicative := unary ( ( '*' | '/' | '%' ) unary )*
+    private void parseMultiplicative() {
+        parseUnary();
+        while (true) {
+            if (consume("*")) {
+                parseUnary();
+                mv.visitInsn(DMUL);
+            } else if (consume("/")) {
+                parseUnary();
+                mv.visitInsn(DDIV);
+            } else if (consume("%")) {
+                parseUnary();
+                mv.visitInsn(DREM);
+            } else {
+                return;
+            }
+        }
+    }
+
+    // unary := ( '-' | '+' | '!' ) unary | primary
+    private void parseUnary() {
+        if (consume("-")) {
+            parseNestedUnary();
+            mv.visitInsn(DNEG);
+        } else if (consume("+")) {
+            parseNestedUnary();
+        } else if (peek("!") && !peek("!=")) {
+            pos++;
+            parseNestedUnary();
+            Label isTrue = new Label();
+            Label end = new Label();
+            jumpIfTrue(isTrue);
+            mv.visitInsn(DCONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(DCONST_0);
+            mv.visitLabel(end);
+        } else {
+            parsePrimary();
+        }
+    }
+
+    private void parseNestedUnary() {
+        enter();
+        parseUnary();
+        depth--;
+    }
+
+    // primary := number | '(' expression ')' | function '(' arguments ')' | 'doc[' string '].value' | '_score' | param
+    private void parsePrimary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("unexpected end of expression");
+        }
+        char c = source.charAt(pos);
+        if (consume("(")) {
+            parseExpression();
+            expect(")");
+        } else if (Character.isDigit(c) || c == '.') {
+            parseNumber();
+        } else if (Character.isJavaIdentifierStart(c)) {
+            String identifier = parseIdentifier();
+            if (identifier.equals("doc")) {
+                expect("[");
+                String field = parseString();
+                expect("]");
+                expect(".");
+                if (!"value".equals(parseIdentifier())) {
+                    throw error("only the value of doc['" + field + "'] is supported");
+                }
+                loadVariable(Expression.VariableType.FIELD, field);
+            } else if (identifier.equals("_score")) {
+                loadVariable(Expression.VariableType.SCORE, identifier);
+            } else if (consume("(")) {
+                Function function = FUNCTIONS.get(identifier);
+                if (function == null) {
+                    throw error("unknown function [" + identifier + "]");
+                }
+                int arguments = 0;
+                if (!consume(")")) {
+                    do {
+                        parseExpression();
+                        arguments++;
+                    } while (consume(","));
+                    expect(")");
+                }
+                if (arguments != function.arity) {
+                    throw error("function [" + identifier + "] takes [" + function.arity + "] arguments but got [" + arguments + "]");
+                }
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", function.method, function.descriptor);
+            } else {
+                loadVariable(Expression.VariableType.PARAM, identifier);
+            }
+        } else {
+            throw error("unexpected character [" + c + "]");
+        }
+    }
+
+    private void parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                pos++;
+            }
+        }
+        double value;
+        try {
+            value = Double.parseDouble(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("invalid number [" + source.substring(start, pos) + "]");
+        }
+        if (value == 0 && 1 / value > 0) {
+            mv.visitInsn(DCONST_0);
+        } else if (value == 1) {
+            mv.visitInsn(DCONST_1);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private String parseIdentifier() {
+        skipWhitespace();
+        int start = pos;
+        if (pos < source.length() && Character.isJavaIdentifierStart(source.charAt(pos))) {
+            pos++;
+            while (pos < source.length() && Character.isJavaIdentifierPart(source.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (start == pos) {
+            throw error("expected an identifier");
+        }
+        return source.substring(start, pos);
+    }
+
+    private String parseString() {
+        skipWhitespace();
+        if (pos >= source.length() || (source.charAt(pos) != '\'' && source.charAt(pos) != '"')) {
+            throw error("expected a quoted field name");
+        }
+        char quote = source.charAt(pos++);
+        int end = source.indexOf(quote, pos);
+        if (end < 0) {
+            throw error("unterminated string");
+        }
+        String value = source.substring(pos, end);
+        pos = end + 1;
+        return value;
+    }
+
+    private void loadVariable(Expression.VariableType type, String name) {
+        int slot = -1;
+        for (int i = 0; i < variableTypes.size(); i++) {
+            if (variableTypes.get(i) == type && variableNames.get(i).equals(name)) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot == -1) {
+            slot = variableTypes.size();
+            variableTypes.add(type);
+            variableNames.add(name);
+        }
+        mv.visitVarInsn(ALOAD, 1);
+        if (slot <= 5) {
+            mv.visitInsn(ICONST_0 + slot);
+        } else if (slot <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, slot);
+        } else {
+            mv.visitIntInsn(SIPUSH, slot);
+        }
+        mv.visitInsn(DALOAD);
+    }
+
+    /**
+     * Replaces the two doubles on top of the stack with <tt>1</tt> or <tt>0</tt>.
+     *
+     * @param compare The comparison instruction
+     * @param ifFalse The jump instruction that jumps when the result of the comparison means false
+     */
+    private void compare(int compare, int ifFalse) {
+        Label isFalse = new Label();
+        Label end = new Label();
+        mv.visitInsn(compare);
+        mv.visitJumpInsn(ifFalse, isFalse);
+        mv.visitInsn(DCONST_1);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(isFalse);
+        mv.visitInsn(DCONST_0);
+        mv.visitLabel(end);
+    }
+
+    // a value is true if abs(value) > 0, which is false for both 0 and NaN since DCMPL pushes -1 for NaN
+    private void jumpIfFalse(Label label) {
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs", "(D)D");
+        mv.visitInsn(DCONST_0);
+        mv.visitInsn(DCMPL);
+        mv.visitJumpInsn(IFLE, label);
+    }
+
+    private void jumpIfTrue(Label label) {
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs", "(D)D");
+        mv.visitInsn(DCONST_0);
+        mv.visitInsn(DCMPL);
+        mv.visitJumpInsn(IFGT, label);
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("expression is nested more than [" + MAX_DEPTH + "] levels deep");
+        }
+    }
+
+    private boolean peek(String token) {
+        skipWhitespace();
+        return source.startsWith(token, pos);
+    }
+
+    private boolean consume(String token) {
+        if (peek(token)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!consume(token)) {
+            throw error("expected [" + token + "]");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private ScriptException error(String message) {
+        return new ScriptException("failed to compile expression [" + source + "]: " + message + " at position [" + pos + "]");
+    }
+
+    private static final class Loader extends ClassLoader {
+
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.script.ExecutableScript;
+import org.elasticsearch.script.ScriptEngineService;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.script.SearchScript;
+import org.elasticsearch.search.lookup.SearchLookup;
+
+import java.util.Map;
+
+/**
+ * A script engine for numeric expressions that are compiled to bytecode, see {@link ExpressionCompiler} for the
+ * language. Expressions only read numeric fields, the score and numeric parameters, which makes them safe to run
+ * even when dynamic scripts are disabled.
+ */
+public class ExpressionScriptEngineService extends AbstractComponent implements ScriptEngineService {
+
+    public static final String NAME = "expression";
+
+    @Inject
+    public ExpressionScriptEngineService(Settings settings) {
+        super(settings);
+    }
+
+    @Override
+    public String[] types() {
+        return new String[]{NAME};
+    }
+
+    @Override
+    public String[] extensions() {
+        return new String[]{NAME};
+    }
+
+    @Override
+    public Object compile(String script) {
+        return ExpressionCompiler.compile(script);
+    }
+
+    @Override
+    public ExecutableScript executable(Object compiledScript, @Nullable Map<String, Object> vars) {
+        return new ExpressionExecutableScript((Expression) compiledScript, vars);
+    }
+
+    @Override
+    public SearchScript search(Object compiledScript, SearchLookup lookup, @Nullable Map<String, Object> vars) {
+        return new ExpressionSearchScript((Expression) compiledScript, lookup, vars);
+    }
+
+    @Override
+    public Object execute(Object compiledScript, Map<String, Object> vars) {
+        return executable(compiledScript, vars).run();
+    }
+
+    @Override
+    public Object unwrap(Object value) {
+        return value;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Binds the parameters of the expression to their slots.
+     *
+     * @return The variables array, with the parameter slots set
+     */
+    static double[] bindParams(Expression expression, @Nullable Map<String, Object> vars) {
+        double[] variables = new double[expression.numVariables()];
+        for (int slot = 0; slot < variables.length; slot++) {
+            if (expression.variableType(slot) == Expression.VariableType.PARAM) {
+                String name = expression.variableName(slot);
+                Object value = vars == null ? null : vars.get(name);
+                if (value == null) {
+                    throw new ScriptException("missing parameter [" + name + "] for expression [" + expression.source() + "]");
+                }
+                variables[slot] = toDouble(expression, name, value);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Updates the value of a parameter, variables that the expression doesn't use are ignored.
+     */
+    static void setParam(Expression expression, double[] variables, String name, Object value) {
+        for (int slot = 0; slot < variables.length; slot++) {
+            if (expression.variableType(slot) == Expression.VariableType.PARAM && expression.variableName(slot).equals(name)) {
+                variables[slot] = toDouble(expression, name, value);
+            }
+        }
+    }
+
+    private static double toDouble(Expression expression, String name, Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        throw new ScriptException("parameter [" + name + "] of expression [" + expression.source() + "] must be a number but was [" + value + "]");
+    }
+
+    static class ExpressionExecutableScript implements ExecutableScript {
+
+        private final Expression expression;
+        private final double[] variables;
+
+        ExpressionExecutableScript(Expression expression, @Nullable Map<String, Object> vars) {
+            for (int slot = 0; slot < expression.numVariables(); slot++) {
+                if (expression.variableType(slot) != Expression.VariableType.PARAM) {
+                    throw new ScriptException("expression [" + expression.source() + "] can only read [" + expression.variableName(slot) + "] in a search");
+                }
+            }
+            this.expression = expression;
+            this.variables = bindParams(expression, vars);
+        }
+
+        @Override
+        public void setNextVar(String name, Object value) {
+            setParam(expression, variables, name, value);
+        }
+
+        @Override
+        public Object run() {
+            return expression.evaluate(variables);
+        }
+
+        @Override
+        public Object unwrap(Object value) {
+            return value;
+        }
+    }
+}
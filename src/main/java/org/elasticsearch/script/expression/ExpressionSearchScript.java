@@ -0,0 +1,185 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Scorer;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.fielddata.DoubleValues;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.script.SearchScript;
+import org.elasticsearch.search.lookup.DocLookup;
+import org.elasticsearch.search.lookup.SearchLookup;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Evaluates an {@link Expression} on the documents of a search. The field data of the fields the expression reads
+ * is resolved once per search and its {@link DoubleValues} once per segment, so that setting the variables of a
+ * document is a plain array write per field.
+ */
+public class ExpressionSearchScript implements SearchScript {
+
+    private final Expression expression;
+    private final SearchLookup lookup;
+    private final double[] variables;
+
+    // the slots of the fields and their field data, in the same order
+    private final int[] fieldSlots;
+    private final IndexNumericFieldData<?>[] fieldData;
+    private final DoubleValues[] values;
+    private final int scoreSlot;
+
+    private Scorer scorer;
+    private float score;
+    private boolean scoreSet;
+    private int docId = -1;
+    private boolean docLoaded;
+
+    public ExpressionSearchScript(Expression expression, SearchLookup lookup, @Nullable Map<String, Object> vars) {
+        this.expression = expression;
+        this.lookup = lookup;
+        this.variables = ExpressionScriptEngineService.bindParams(expression, vars);
+
+        int numFields = 0;
+        int scoreSlot = -1;
+        for (int slot = 0; slot < expression.numVariables(); slot++) {
+            if (expression.variableType(slot) == Expression.VariableType.FIELD) {
+                numFields++;
+            } else if (expression.variableType(slot) == Expression.VariableType.SCORE) {
+                scoreSlot = slot;
+            }
+        }
+        this.scoreSlot = scoreSlot;
+        this.fieldSlots = new int[numFields];
+        this.fieldData = new IndexNumericFieldData<?>[numFields];
+        this.values = new DoubleValues[numFields];
+        DocLookup doc = lookup.doc();
+        for (int slot = 0, i = 0; slot < expression.numVariables(); slot++) {
+            if (expression.variableType(slot) == Expression.VariableType.FIELD) {
+                String field = expression.variableName(slot);
+                FieldMapper<?> mapper = doc.mapperService().smartNameFieldMapper(field, doc.types());
+                if (mapper == null) {
+                    throw new ScriptException("no mapping found for field [" + field + "] of expression [" + expression.source() + "]");
+                }
+                IndexFieldData<?> indexFieldData = doc.fieldDataService().getForField(mapper);
+                if (!(indexFieldData instanceof IndexNumericFieldData)) {
+                    throw new ScriptException("field [" + field + "] of expression [" + expression.source() + "] must be numeric");
+                }
+                fieldSlots[i] = slot;
+                fieldData[i] = (IndexNumericFieldData<?>) indexFieldData;
+                i++;
+            }
+        }
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+        lookup.setScorer(scorer);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) {
+        lookup.setNextReader(context);
+        for (int i = 0; i < fieldData.length; i++) {
+            values[i] = fieldData[i].load(context).getDoubleValues();
+        }
+        docLoaded = false;
+    }
+
+    @Override
+    public void setNextDocId(int doc) {
+        lookup.setNextDocId(doc);
+        this.docId = doc;
+        this.docLoaded = false;
+        this.scoreSet = false;
+    }
+
+    @Override
+    public void setNextSource(Map<String, Object> source) {
+        lookup.source().setNextSource(source);
+    }
+
+    @Override
+    public void setNextScore(float score) {
+        this.score = score;
+        this.scoreSet = true;
+    }
+
+    @Override
+    public void setNextVar(String name, Object value) {
+        ExpressionScriptEngineService.setParam(expression, variables, name, value);
+    }
+
+    @Override
+    public Object run() {
+        return runAsDouble();
+    }
+
+    @Override
+    public float runAsFloat() {
+        return (float) runAsDouble();
+    }
+
+    @Override
+    public long runAsLong() {
+        return (long) runAsDouble();
+    }
+
+    @Override
+    public double runAsDouble() {
+        if (!docLoaded) {
+            for (int i = 0; i < fieldSlots.length; i++) {
+                // documents without a value read 0
+                variables[fieldSlots[i]] = values[i].setDocument(docId) == 0 ? 0 : values[i].nextValue();
+            }
+            docLoaded = true;
+        }
+        if (scoreSlot != -1) {
+            variables[scoreSlot] = score();
+        }
+        return expression.evaluate(variables);
+    }
+
+    private float score() {
+        if (scoreSet) {
+            return score;
+        }
+        if (scorer == null) {
+            return 0;
+        }
+        try {
+            return scorer.score();
+        } catch (IOException e) {
+            throw new ElasticsearchException("failed to read the score of [" + docId + "]", e);
+        }
+    }
+
+    @Override
+    public Object unwrap(Object value) {
+        return value;
+    }
+}
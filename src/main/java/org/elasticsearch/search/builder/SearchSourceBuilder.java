@@ -94,6 +94,12 @@ public class SearchSourceBuilder implements ToXContent {
 
     private boolean trackScores = false;
 
+    private Object[] searchAfter;
+
+    private int sliceId = -1;
+
+    private int sliceMax = -1;
+
     private Float minScore;
 
     private long timeoutInMillis = -1;
@@ -338,6 +344,26 @@ public class SearchSourceBuilder implements ToXContent {
         return this;
     }
 
+    /**
+     * Sets the sort values of the last hit of the previous page, so the hits sorted after it are returned. This
+     * requires a sort ending with a field that is unique per document, such as <tt>_uid</tt>, and <tt>from</tt>
+     * to be <tt>0</tt>.
+     */
+    public SearchSourceBuilder searchAfter(Object... values) {
+        this.searchAfter = values;
+        return this;
+    }
+
+    /**
+     * Restricts the search to the slice <tt>id</tt> out of <tt>max</tt> slices of the documents of each shard, so
+     * several scrolls can consume disjoint parts of the same search in parallel.
+     */
+    public SearchSourceBuilder slice(int id, int max) {
+        this.sliceId = id;
+        this.sliceMax = max;
+        return this;
+    }
+
     /**
      * Applies when sorting, and controls if scores will be tracked as well. Defaults to
      * <tt>false</tt>.
@@ -857,6 +883,17 @@ public class SearchSourceBuilder implements ToXContent {
             builder.endArray();
         }
 
+        if (searchAfter != null) {
+            builder.array("search_after", searchAfter);
+        }
+
+        if (sliceMax != -1) {
+            builder.startObject("slice");
+            builder.field("id", sliceId);
+            builder.field("max", sliceMax);
+            builder.endObject();
+        }
+
         if (trackScores) {
             builder.field("track_scores", trackScores);
         }
@@ -0,0 +1,196 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.highlight;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.SegmentReaderUtils;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.MemorySizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.search.fetch.FetchSubPhase;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A node level LRU cache of the highlighted fragments of a field of a document, so that paging through the hits of
+ * the same query doesn't highlight the same (large) documents over and over again.
+ * <p/>
+ * Entries are keyed by segment core, document, field, highlighter and highlight options. Since segments are
+ * immutable, the fragments of a document only change when its segment goes away, the entries of a segment are
+ * removed once its core is closed.
+ */
+public class HighlightCache extends AbstractComponent implements SegmentReader.CoreClosedListener, RemovalListener<HighlightCache.Key, HighlightField> {
+
+    private final ByteSizeValue size;
+
+    @Nullable
+    private final Cache<Key, HighlightField> cache;
+
+    // the cached keys per segment core, so that closing a core only removes its own entries
+    private final ConcurrentMap<Object, Set<Key>> coreKeys = ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public HighlightCache(Settings settings) {
+        super(settings);
+        this.size = MemorySizeValue.parseBytesSizeValueOrHeapRatio(componentSettings.get("cache.size", "1%"));
+        if (size.bytes() > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumWeight(size.bytes())
+                    .weigher(new HighlightFieldWeigher())
+                    .concurrencyLevel(16)
+                    .removalListener(this)
+                    .build();
+        } else {
+            this.cache = null;
+        }
+        logger.debug("using highlight cache with size [{}]", size);
+    }
+
+    /**
+     * @return The key of the provided field of the current hit, or <tt>null</tt> if its fragments can't be cached
+     */
+    @Nullable
+    public Key key(FetchSubPhase.HitContext hitContext, String fieldName, String highlighterType, boolean forceSource,
+                   Query query, SearchContextHighlight.FieldOptions fieldOptions) {
+        if (cache == null) {
+            return null;
+        }
+        // only segments have a lifecycle we can follow, other readers (like the percolator's) are not cached
+        SegmentReader segmentReader = SegmentReaderUtils.segmentReaderOrNull(hitContext.reader());
+        if (segmentReader == null) {
+            return null;
+        }
+        return new Key(segmentReader.getCoreCacheKey(), hitContext.docId(), fieldName, highlighterType, forceSource, query, fieldOptions);
+    }
+
+    @Nullable
+    public HighlightField get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(FetchSubPhase.HitContext hitContext, Key key, HighlightField highlightField) {
+        Set<Key> keys = coreKeys.get(key.coreKey);
+        if (keys == null) {
+            keys = ConcurrentCollections.newConcurrentSet();
+            Set<Key> previous = coreKeys.putIfAbsent(key.coreKey, keys);
+            if (previous == null) {
+                SegmentReaderUtils.registerCoreListener(hitContext.reader(), this);
+            } else {
+                keys = previous;
+            }
+        }
+        keys.add(key);
+        cache.put(key, highlightField);
+    }
+
+    @Override
+    public void onClose(Object coreKey) {
+        Set<Key> keys = coreKeys.remove(coreKey);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, HighlightField> notification) {
+        Key key = notification.getKey();
+        if (key == null || notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        Set<Key> keys = coreKeys.get(key.coreKey);
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    public static final class Key {
+
+        final Object coreKey;
+        final int docId;
+        final String fieldName;
+        final String highlighterType;
+        final boolean forceSource;
+        final Query query;
+        final SearchContextHighlight.FieldOptions fieldOptions;
+        private final int hashCode;
+
+        Key(Object coreKey, int docId, String fieldName, String highlighterType, boolean forceSource, Query query,
+            SearchContextHighlight.FieldOptions fieldOptions) {
+            this.coreKey = coreKey;
+            this.docId = docId;
+            this.fieldName = fieldName;
+            this.highlighterType = highlighterType;
+            this.forceSource = forceSource;
+            this.query = query;
+            this.fieldOptions = fieldOptions;
+            int hashCode = coreKey.hashCode();
+            hashCode = 31 * hashCode + docId;
+            hashCode = 31 * hashCode + fieldName.hashCode();
+            hashCode = 31 * hashCode + highlighterType.hashCode();
+            hashCode = 31 * hashCode + (forceSource ? 1 : 0);
+            hashCode = 31 * hashCode + query.hashCode();
+            this.hashCode = 31 * hashCode + fieldOptions.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return coreKey == that.coreKey && docId == that.docId && forceSource == that.forceSource
+                    && fieldName.equals(that.fieldName) && highlighterType.equals(that.highlighterType)
+                    && query.equals(that.query) && fieldOptions.equals(that.fieldOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static class HighlightFieldWeigher implements Weigher<Key, HighlightField> {
+
+        @Override
+        public int weigh(Key key, HighlightField value) {
+            // the key's query and options are shared with the search request, only count the fragments
+            long weight = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER * 2;
+            if (value.fragments() != null) {
+                for (Text fragment : value.fragments()) {
+                    weight += RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + fragment.string().length() * RamUsageEstimator.NUM_BYTES_CHAR;
+                }
+            }
+            return (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -48,11 +48,13 @@ import static com.google.common.collect.Maps.newHashMap;
 public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
 
     private final Highlighters highlighters;
+    private final HighlightCache highlightCache;
 
     @Inject
-    public HighlightPhase(Settings settings, Highlighters highlighters) {
+    public HighlightPhase(Settings settings, Highlighters highlighters, HighlightCache highlightCache) {
         super(settings);
         this.highlighters = highlighters;
+        this.highlightCache = highlightCache;
     }
 
     @Override
@@ -86,7 +88,8 @@ public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
                 fieldNamesToHighlight = ImmutableSet.of(field.field());
             }
 
-            if (context.highlight().forceSource(field)) {
+            boolean forceSource = context.highlight().forceSource(field);
+            if (forceSource) {
                 SourceFieldMapper sourceFieldMapper = context.mapperService().documentMapper(hitContext.hit().type()).sourceMapper();
                 if (!sourceFieldMapper.enabled()) {
                     throw new ElasticsearchIllegalArgumentException("source is forced for fields " +  fieldNamesToHighlight + " but type [" + hitContext.hit().type() + "] has disabled _source");
@@ -101,11 +104,13 @@ public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
 
                 String highlighterType = field.fieldOptions().highlighterType();
                 if (highlighterType == null) {
+                    // the postings highlighter reads the offsets from the postings list, no need to re-analyze the text
+                    // or to read term vectors
                     boolean useFastVectorHighlighter = fieldMapper.fieldType().storeTermVectors() && fieldMapper.fieldType().storeTermVectorOffsets() && fieldMapper.fieldType().storeTermVectorPositions();
-                    if (useFastVectorHighlighter) {
-                        highlighterType = "fvh";
-                    } else if (fieldMapper.fieldType().indexOptions() == FieldInfo.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
+                    if (fieldMapper.fieldType().indexOptions() == FieldInfo.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
                         highlighterType = "postings";
+                    } else if (useFastVectorHighlighter) {
+                        highlighterType = "fvh";
                     } else {
                         highlighterType = "plain";
                     }
@@ -122,8 +127,24 @@ public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
                 } else {
                     highlightQuery = new HighlighterContext.HighlightQuery(field.fieldOptions().highlightQuery(), field.fieldOptions().highlightQuery(), false);
                 }
-                HighlighterContext highlighterContext = new HighlighterContext(fieldName, field, fieldMapper, context, hitContext, highlightQuery);
-                HighlightField highlightField = highlighter.highlight(highlighterContext);
+
+                HighlightCache.Key cacheKey = highlightCache.key(hitContext, fieldName, highlighterType, forceSource, highlightQuery.originalQuery(), field.fieldOptions());
+                HighlightField highlightField = null;
+                if (cacheKey != null) {
+                    highlightField = highlightCache.get(cacheKey);
+                    if (highlightField != null) {
+                        context.indexShard().searchService().onHighlightCacheHit(context);
+                    } else {
+                        context.indexShard().searchService().onHighlightCacheMiss(context);
+                    }
+                }
+                if (highlightField == null) {
+                    HighlighterContext highlighterContext = new HighlighterContext(fieldName, field, fieldMapper, context, hitContext, highlightQuery);
+                    highlightField = highlighter.highlight(highlighterContext);
+                    if (cacheKey != null && highlightField != null) {
+                        highlightCache.put(hitContext, cacheKey, highlightField);
+                    }
+                }
                 if (highlightField != null) {
                     highlightFields.put(highlightField.name(), highlightField);
                 }
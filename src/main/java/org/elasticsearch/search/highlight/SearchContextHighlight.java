@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.highlight;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
 import org.apache.lucene.search.Query;
 
@@ -191,6 +192,33 @@ public class SearchContextHighlight {
             return options;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FieldOptions that = (FieldOptions) o;
+            return fragmentCharSize == that.fragmentCharSize && numberOfFragments == that.numberOfFragments
+                    && fragmentOffset == that.fragmentOffset && boundaryMaxScan == that.boundaryMaxScan
+                    && noMatchSize == that.noMatchSize && phraseLimit == that.phraseLimit
+                    && Objects.equal(encoder, that.encoder) && Arrays.equals(preTags, that.preTags)
+                    && Arrays.equals(postTags, that.postTags) && Objects.equal(scoreOrdered, that.scoreOrdered)
+                    && Objects.equal(highlightFilter, that.highlightFilter) && Objects.equal(requireFieldMatch, that.requireFieldMatch)
+                    && Objects.equal(highlighterType, that.highlighterType) && Objects.equal(forceSource, that.forceSource)
+                    && Objects.equal(fragmenter, that.fragmenter) && Arrays.equals(boundaryChars, that.boundaryChars)
+                    && Objects.equal(highlightQuery, that.highlightQuery) && Objects.equal(matchedFields, that.matchedFields)
+                    && Objects.equal(options, that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode(fragmentCharSize, numberOfFragments, fragmentOffset, boundaryMaxScan, noMatchSize, phraseLimit,
+                    encoder, scoreOrdered, highlightFilter, requireFieldMatch, highlighterType, forceSource, fragmenter,
+                    highlightQuery, matchedFields, options);
+            result = 31 * result + Arrays.hashCode(preTags);
+            result = 31 * result + Arrays.hashCode(postTags);
+            return 31 * result + Arrays.hashCode(boundaryChars);
+        }
+
         static class Builder {
 
             private final FieldOptions fieldOptions = new FieldOptions();
@@ -21,6 +21,7 @@ package org.elasticsearch.search.internal;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
@@ -39,6 +40,7 @@ import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.cache.fixedbitset.FixedBitSetFilterCache;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.mapper.FieldMapper;
@@ -138,6 +140,10 @@ public class DefaultSearchContext extends SearchContext {
 
     private boolean trackScores = false; // when sorting, track scores as well...
 
+    private FieldDoc searchAfter;
+
+    private Filter sliceFilter;
+
     private ParsedQuery originalQuery;
 
     private Query query;
@@ -232,6 +238,10 @@ public class DefaultSearchContext extends SearchContext {
                 parsedQuery(new ParsedQuery(new XFilteredQuery(query(), searchFilter), parsedQuery()));
             }
         }
+        if (sliceFilter != null) {
+            // cached, since a scroll executes the query again for each page
+            parsedQuery(new ParsedQuery(new XFilteredQuery(query(), filterCache().cache(sliceFilter)), parsedQuery()));
+        }
     }
 
     public Filter searchFilter(String[] types) {
@@ -451,6 +461,10 @@ public class DefaultSearchContext extends SearchContext {
         return indexService.cache().filter();
     }
 
+    public FixedBitSetFilterCache fixedBitSetFilterCache() {
+        return indexService.cache().fixedBitSetFilterCache();
+    }
+
     public DocSetCache docSetCache() {
         return indexService.cache().docSet();
     }
@@ -494,6 +508,24 @@ public class DefaultSearchContext extends SearchContext {
         return this.trackScores;
     }
 
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        this.searchAfter = searchAfter;
+        return this;
+    }
+
+    public FieldDoc searchAfter() {
+        return this.searchAfter;
+    }
+
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        this.sliceFilter = sliceFilter;
+        return this;
+    }
+
+    public Filter sliceFilter() {
+        return this.sliceFilter;
+    }
+
     public SearchContext parsedPostFilter(ParsedFilter postFilter) {
         this.postFilter = postFilter;
         return this;
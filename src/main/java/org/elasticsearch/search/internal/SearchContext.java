@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.search.internal;
 
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
@@ -29,6 +30,7 @@ import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.cache.fixedbitset.FixedBitSetFilterCache;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.index.mapper.FieldMappers;
@@ -184,6 +186,8 @@ public abstract class SearchContext implements Releasable {
 
     public abstract FilterCache filterCache();
 
+    public abstract FixedBitSetFilterCache fixedBitSetFilterCache();
+
     public abstract DocSetCache docSetCache();
 
     public abstract IndexFieldDataService fieldData();
@@ -204,6 +208,20 @@ public abstract class SearchContext implements Releasable {
 
     public abstract boolean trackScores();
 
+    public abstract SearchContext searchAfter(FieldDoc searchAfter);
+
+    /**
+     * The sort values of the hit the returned hits are sorted after, <tt>null</tt> if not set.
+     */
+    public abstract FieldDoc searchAfter();
+
+    public abstract SearchContext sliceFilter(Filter sliceFilter);
+
+    /**
+     * The filter restricting the request to a slice of the documents, <tt>null</tt> if not set.
+     */
+    public abstract Filter sliceFilter();
+
     public abstract SearchContext parsedPostFilter(ParsedFilter postFilter);
 
     public abstract ParsedFilter parsedPostFilter();
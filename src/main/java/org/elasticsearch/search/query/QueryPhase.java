@@ -34,6 +34,7 @@ import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.rescore.RescorePhase;
 import org.elasticsearch.search.rescore.RescoreSearchContext;
+import org.elasticsearch.search.slice.SliceParseElement;
 import org.elasticsearch.search.sort.SortParseElement;
 import org.elasticsearch.search.sort.TrackScoresParseElement;
 import org.elasticsearch.search.suggest.SuggestPhase;
@@ -73,6 +74,9 @@ public class QueryPhase implements SearchPhase {
                 .put("filterBinary", new FilterBinaryParseElement())
                 .put("filter_binary", new FilterBinaryParseElement())
                 .put("sort", new SortParseElement())
+                .put("search_after", new SearchAfterParseElement())
+                .put("searchAfter", new SearchAfterParseElement())
+                .put("slice", new SliceParseElement())
                 .put("trackScores", new TrackScoresParseElement())
                 .put("track_scores", new TrackScoresParseElement())
                 .put("min_score", new MinScoreParseElement())
@@ -88,6 +92,9 @@ public class QueryPhase implements SearchPhase {
     @Override
     public void preProcess(SearchContext context) {
         context.preProcess();
+        if (context.searchAfter() != null) {
+            SearchAfterParseElement.buildFieldDoc(context);
+        }
         facetPhase.preProcess(context);
         aggregationPhase.preProcess(context);
     }
@@ -112,6 +119,10 @@ public class QueryPhase implements SearchPhase {
                 topDocs = new TopDocs(collector.getTotalHits(), Lucene.EMPTY_SCORE_DOCS, 0);
             } else if (searchContext.searchType() == SearchType.SCAN) {
                 topDocs = searchContext.scanContext().execute(searchContext);
+            } else if (searchContext.searchAfter() != null) {
+                // only the hits sorted after the last hit of the previous page are collected, no state is kept between pages
+                topDocs = searchContext.searcher().searchAfter(searchContext.searchAfter(), query, null, numDocs, searchContext.sort(),
+                        searchContext.trackScores(), searchContext.trackScores());
             } else if (searchContext.sort() != null) {
                 topDocs = searchContext.searcher().search(query, null, numDocs, searchContext.sort(),
                         searchContext.trackScores(), searchContext.trackScores());
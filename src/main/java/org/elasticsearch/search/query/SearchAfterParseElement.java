@@ -0,0 +1,152 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.fieldcomparator.BytesRefFieldComparatorSource;
+import org.elasticsearch.index.search.nested.NestedFieldComparatorSource;
+import org.elasticsearch.search.SearchParseElement;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the sort values of the last hit of the previous page, the hits returned are the ones sorted after it.
+ * <p/>
+ * <pre>
+ * "search_after" : [1388534400000, "type#id"]
+ * </pre>
+ * The values are only converted to the types of the sort fields in {@link #buildFieldDoc(SearchContext)}, since the
+ * sort might be parsed after them.
+ */
+public class SearchAfterParseElement implements SearchParseElement {
+
+    @Override
+    public void parse(XContentParser parser, SearchContext context) throws Exception {
+        XContentParser.Token token = parser.currentToken();
+        if (token != XContentParser.Token.START_ARRAY) {
+            throw new SearchParseException(context, "[search_after] must be an array of sort values");
+        }
+        List<Object> values = new ArrayList<Object>();
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.VALUE_NULL) {
+                values.add(null);
+            } else if (token == XContentParser.Token.VALUE_NUMBER) {
+                values.add(parser.numberValue());
+            } else if (token == XContentParser.Token.VALUE_STRING) {
+                values.add(parser.text());
+            } else if (token == XContentParser.Token.VALUE_BOOLEAN) {
+                values.add(parser.booleanValue());
+            } else {
+                throw new SearchParseException(context, "[search_after] only supports values, got [" + token + "]");
+            }
+        }
+        // the doc id is never used to break ties, the sort values have to be unique (for example by sorting on _uid last)
+        context.searchAfter(new FieldDoc(Integer.MAX_VALUE, Float.NaN, values.toArray()));
+    }
+
+    /**
+     * Validates the search after values against the sort of the request, and converts them to the types the
+     * comparators of the sort fields expect.
+     */
+    public static void buildFieldDoc(SearchContext context) throws SearchParseException {
+        FieldDoc searchAfter = context.searchAfter();
+        Sort sort = context.sort();
+        if (sort == null) {
+            throw new SearchParseException(context, "[search_after] requires a sort, ending with a unique field such as _uid");
+        }
+        if (context.from() > 0) {
+            throw new SearchParseException(context, "[from] must be 0 when [search_after] is used");
+        }
+        if (context.searchType() == SearchType.SCAN) {
+            throw new SearchParseException(context, "[search_after] can't be used with search type [scan]");
+        }
+        if (context.scroll() != null) {
+            throw new SearchParseException(context, "[search_after] can't be used with scroll");
+        }
+        SortField[] sortFields = sort.getSort();
+        if (sortFields.length != searchAfter.fields.length) {
+            throw new SearchParseException(context, "[search_after] has " + searchAfter.fields.length + " value(s) but the sort has "
+                    + sortFields.length + " field(s)");
+        }
+        for (int i = 0; i < sortFields.length; i++) {
+            // the nested comparators only compare root documents to the bottom of the queue, not to a top value
+            if (sortFields[i].getComparatorSource() instanceof NestedFieldComparatorSource) {
+                throw new SearchParseException(context, "[search_after] can't be used to sort on nested field [" + sortFields[i].getField() + "]");
+            }
+            try {
+                searchAfter.fields[i] = convertValue(sortFields[i], searchAfter.fields[i]);
+            } catch (NumberFormatException e) {
+                throw new SearchParseException(context, "[search_after] value [" + searchAfter.fields[i] + "] can't be used to sort on ["
+                        + sortFields[i].getField() + "]", e);
+            } catch (ElasticsearchIllegalArgumentException e) {
+                throw new SearchParseException(context, "[search_after] value [" + searchAfter.fields[i] + "] can't be used to sort on ["
+                        + sortFields[i].getField() + "]", e);
+            }
+        }
+    }
+
+    private static Object convertValue(SortField sortField, Object value) {
+        SortField.Type type = sortField.getType();
+        if (sortField.getComparatorSource() instanceof IndexFieldData.XFieldComparatorSource) {
+            type = ((IndexFieldData.XFieldComparatorSource) sortField.getComparatorSource()).reducedType();
+        }
+        switch (type) {
+            case STRING:
+            case STRING_VAL:
+                if (value == null) {
+                    // the hits render the value of documents without one as null
+                    if (sortField.getComparatorSource() instanceof BytesRefFieldComparatorSource) {
+                        return ((BytesRefFieldComparatorSource) sortField.getComparatorSource()).missingBytes(sortField.getReverse());
+                    }
+                    return null;
+                }
+                return new BytesRef(value.toString());
+            case DOC:
+            case INT:
+                return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(nonNull(value).toString());
+            case LONG:
+                return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(nonNull(value).toString());
+            case SCORE:
+            case FLOAT:
+                return value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(nonNull(value).toString());
+            case DOUBLE:
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(nonNull(value).toString());
+            default:
+                throw new ElasticsearchIllegalArgumentException("sort type [" + type + "] is not supported");
+        }
+    }
+
+    private static Object nonNull(Object value) {
+        if (value == null) {
+            throw new ElasticsearchIllegalArgumentException("null is only supported for string sorts");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import com.carrotsearch.hppc.hash.MurmurHash3;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+
+import java.io.IOException;
+
+/**
+ * Matches the documents of a slice: the documents whose <tt>_uid</tt> hashes to the slice id, modulo the number of
+ * slices. The slices partition the documents of each shard, and since the <tt>_uid</tt> of a document is the same
+ * on every copy of a shard, the slices don't depend on the copy that is searched.
+ */
+public class SliceFilter extends Filter {
+
+    private final int id;
+
+    private final int max;
+
+    public SliceFilter(int id, int max) {
+        this.id = id;
+        this.max = max;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public int max() {
+        return max;
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+        Terms terms = context.reader().terms(UidFieldMapper.NAME);
+        if (terms == null) {
+            return null;
+        }
+        FixedBitSet result = null;
+        TermsEnum termsEnum = terms.iterator(null);
+        DocsEnum docsEnum = null;
+        for (BytesRef uid = termsEnum.next(); uid != null; uid = termsEnum.next()) {
+            if (slice(uid) != id) {
+                continue;
+            }
+            docsEnum = termsEnum.docs(acceptDocs, docsEnum, DocsEnum.FLAG_NONE);
+            for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+                if (result == null) {
+                    result = new FixedBitSet(context.reader().maxDoc());
+                }
+                result.set(doc);
+            }
+        }
+        return result;
+    }
+
+    private int slice(BytesRef uid) {
+        // BytesRef has a weak hashCode function, it is rehashed so the uids spread evenly over the slices
+        int hash = MurmurHash3.hash(uid.hashCode());
+        int slice = hash % max;
+        return slice < 0 ? slice + max : slice;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SliceFilter that = (SliceFilter) o;
+        return id == that.id && max == that.max;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + max;
+    }
+
+    @Override
+    public String toString() {
+        return "slice(" + id + "/" + max + ")";
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.SearchParseElement;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.internal.SearchContext;
+
+/**
+ * Parses the slice of the documents a request is restricted to, so several requests (typically scan scrolls) can
+ * consume disjoint parts of the same search in parallel.
+ * <p/>
+ * <pre>
+ * "slice" : {
+ *     "id" : 0,
+ *     "max" : 4
+ * }
+ * </pre>
+ */
+public class SliceParseElement implements SearchParseElement {
+
+    @Override
+    public void parse(XContentParser parser, SearchContext context) throws Exception {
+        int id = -1;
+        int max = -1;
+        String currentFieldName = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token.isValue()) {
+                if ("id".equals(currentFieldName)) {
+                    id = parser.intValue();
+                } else if ("max".equals(currentFieldName)) {
+                    max = parser.intValue();
+                } else {
+                    throw new SearchParseException(context, "[slice] does not support [" + currentFieldName + "]");
+                }
+            } else {
+                throw new SearchParseException(context, "[slice] only supports values, got [" + token + "]");
+            }
+        }
+        if (max <= 1) {
+            throw new SearchParseException(context, "[slice] max must be greater than 1, got [" + max + "]");
+        }
+        if (id < 0 || id >= max) {
+            throw new SearchParseException(context, "[slice] id must be between 0 and max - 1 [" + (max - 1) + "], got [" + id + "]");
+        }
+        context.sliceFilter(new SliceFilter(id, max));
+    }
+}
@@ -280,6 +280,9 @@ public class AnalyzingCompletionLookupProvider extends CompletionLookupProvider
                             analyzingSuggestHolder.maxAnalyzedPathsForOneInput, analyzingSuggestHolder.sepLabel, analyzingSuggestHolder.payloadSep, analyzingSuggestHolder.endByte,
                             analyzingSuggestHolder.holeCharacter);
                 }
+                if (suggestionContext.getContextQuery() != null) {
+                    suggester.setQueryPrefix(suggestionContext.getContextQuery());
+                }
                 return suggester;
             }
 
@@ -18,15 +18,18 @@
  */
 package org.elasticsearch.search.suggest.completion;
 
+import com.google.common.collect.ImmutableMap;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.core.CompletionFieldMapper;
 import org.elasticsearch.search.suggest.SuggestContextParser;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 
 import java.io.IOException;
+import java.util.Map;
 
 import static org.elasticsearch.search.suggest.SuggestUtils.parseSuggestContext;
 
@@ -47,6 +50,7 @@ public class CompletionSuggestParser implements SuggestContextParser {
         XContentParser.Token token;
         String fieldName = null;
         CompletionSuggestionContext suggestion = new CompletionSuggestionContext(completionSuggester);
+        Map<String, Object> contexts = ImmutableMap.of();
         while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
                 fieldName = parser.currentName();
@@ -76,11 +80,21 @@ public class CompletionSuggestParser implements SuggestContextParser {
                         }
                     }
                 }
+            } else if (token == XContentParser.Token.START_OBJECT && "context".equals(fieldName)) {
+                contexts = parser.map();
             } else {
                 throw new ElasticsearchIllegalArgumentException("suggester[completion]  doesn't support field [" + fieldName + "]");
             }
         }
         suggestion.mapper(mapperService.smartNameFieldMapper(suggestion.getField()));
+        if (suggestion.mapper() instanceof CompletionFieldMapper) {
+            CompletionFieldMapper mapper = (CompletionFieldMapper) suggestion.mapper();
+            if (!mapper.getContextMapping().isEmpty()) {
+                suggestion.setContextQuery(mapper.contextQueryAutomaton(contexts));
+            } else if (!contexts.isEmpty()) {
+                throw new ElasticsearchIllegalArgumentException("suggester[completion] field [" + suggestion.getField() + "] doesn't have contexts");
+            }
+        }
 
         return suggestion;
     }
@@ -19,23 +19,51 @@
 package org.elasticsearch.search.suggest.completion;
 
 import org.apache.lucene.search.suggest.analyzing.XFuzzySuggester;
+import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.context.ContextMapping;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
  */
 public class CompletionSuggestionBuilder extends SuggestBuilder.SuggestionBuilder<CompletionSuggestionBuilder> {
 
+    private final Map<String, Object> contexts = new LinkedHashMap<String, Object>();
+
     public CompletionSuggestionBuilder(String name) {
         super(name, "completion");
     }
 
+    /**
+     * Restricts the suggestions to the ones of the provided categories in the category context with the provided name.
+     */
+    public CompletionSuggestionBuilder addCategory(String name, String... categories) {
+        contexts.put(name, Arrays.asList(categories));
+        return this;
+    }
+
+    /**
+     * Restricts the suggestions to the ones close to the provided location in the geo context with the provided name.
+     */
+    public CompletionSuggestionBuilder addGeoLocation(String name, double lat, double lon) {
+        Map<String, Object> location = new HashMap<String, Object>();
+        location.put(GeoPoint.LATITUDE, lat);
+        location.put(GeoPoint.LONGITUDE, lon);
+        contexts.put(name, location);
+        return this;
+    }
+
     @Override
     protected XContentBuilder innerToXContent(XContentBuilder builder, Params params) throws IOException {
+        ContextMapping.contextToXContent(builder, contexts);
         return builder;
     }
 }
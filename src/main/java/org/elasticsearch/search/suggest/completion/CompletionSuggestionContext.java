@@ -19,6 +19,7 @@
 package org.elasticsearch.search.suggest.completion;
 
 import org.apache.lucene.search.suggest.analyzing.XFuzzySuggester;
+import org.apache.lucene.util.automaton.Automaton;
 import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.search.suggest.Suggester;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
@@ -35,6 +36,7 @@ public class CompletionSuggestionContext extends SuggestionSearchContext.Suggest
     private int fuzzyPrefixLength = XFuzzySuggester.DEFAULT_NON_FUZZY_PREFIX;
     private boolean fuzzy = false;
     private boolean fuzzyUnicodeAware = XFuzzySuggester.DEFAULT_UNICODE_AWARE;
+    private Automaton contextQuery;
 
     public CompletionSuggestionContext(Suggester suggester) {
         super(suggester);
@@ -95,4 +97,16 @@ public class CompletionSuggestionContext extends SuggestionSearchContext.Suggest
     public boolean isFuzzyUnicodeAware() {
         return fuzzyUnicodeAware;
     }
+
+    /**
+     * @return The automaton the FST input of the suggestions must start with to be in the requested contexts or
+     * <tt>null</tt> if the field doesn't have contexts.
+     */
+    public Automaton getContextQuery() {
+        return contextQuery;
+    }
+
+    public void setContextQuery(Automaton contextQuery) {
+        this.contextQuery = contextQuery;
+    }
 }
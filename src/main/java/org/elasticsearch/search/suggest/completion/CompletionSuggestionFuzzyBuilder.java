@@ -19,12 +19,18 @@
 package org.elasticsearch.search.suggest.completion;
 
 import org.apache.lucene.search.suggest.analyzing.XFuzzySuggester;
+import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.context.ContextMapping;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
@@ -40,6 +46,7 @@ public class CompletionSuggestionFuzzyBuilder extends SuggestBuilder.SuggestionB
     private int fuzzyMinLength = XFuzzySuggester.DEFAULT_MIN_FUZZY_LENGTH;
     private int fuzzyPrefixLength = XFuzzySuggester.DEFAULT_NON_FUZZY_PREFIX;
     private boolean unicodeAware = XFuzzySuggester.DEFAULT_UNICODE_AWARE;
+    private final Map<String, Object> contexts = new LinkedHashMap<String, Object>();
 
     public Fuzziness getFuzziness() {
         return fuzziness;
@@ -86,6 +93,25 @@ public class CompletionSuggestionFuzzyBuilder extends SuggestBuilder.SuggestionB
         return this;
     }
 
+    /**
+     * Restricts the suggestions to the ones of the provided categories in the category context with the provided name.
+     */
+    public CompletionSuggestionFuzzyBuilder addCategory(String name, String... categories) {
+        contexts.put(name, Arrays.asList(categories));
+        return this;
+    }
+
+    /**
+     * Restricts the suggestions to the ones close to the provided location in the geo context with the provided name.
+     */
+    public CompletionSuggestionFuzzyBuilder addGeoLocation(String name, double lat, double lon) {
+        Map<String, Object> location = new HashMap<String, Object>();
+        location.put(GeoPoint.LATITUDE, lat);
+        location.put(GeoPoint.LONGITUDE, lon);
+        contexts.put(name, location);
+        return this;
+    }
+
     @Override
     protected XContentBuilder innerToXContent(XContentBuilder builder, ToXContent.Params params) throws IOException {
         builder.startObject("fuzzy");
@@ -107,6 +133,7 @@ public class CompletionSuggestionFuzzyBuilder extends SuggestBuilder.SuggestionB
         }
 
         builder.endObject();
+        ContextMapping.contextToXContent(builder, contexts);
         return builder;
     }
 }
@@ -24,7 +24,9 @@ import org.apache.lucene.util.*;
 import org.apache.lucene.util.fst.Util;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -38,6 +40,7 @@ public final class CompletionTokenStream extends TokenStream {
 
 
     private final TokenStream input;
+    private final List<IntsRef> contextPrefixes;
     private BytesRef payload;
     private Iterator<IntsRef> finiteStrings;
     private ToFiniteStrings toFiniteStrings;
@@ -46,11 +49,20 @@ public final class CompletionTokenStream extends TokenStream {
     private CharTermAttribute charTermAttribute;
 
     public CompletionTokenStream(TokenStream input, BytesRef payload, ToFiniteStrings toFiniteStrings) throws IOException {
+        this(input, payload, toFiniteStrings, null);
+    }
+
+    /**
+     * @param contextPrefixes If not <tt>null</tt>, every analyzed path of the input is indexed once per prefix, with
+     *                        the prefix (the context values of the suggestion) in front of it.
+     */
+    public CompletionTokenStream(TokenStream input, BytesRef payload, ToFiniteStrings toFiniteStrings, List<IntsRef> contextPrefixes) throws IOException {
         // Don't call the super(input) ctor - this is a true delegate and has a new attribute source since we consume
         // the input stream entirely in toFiniteStrings(input)
         this.input = input;
         this.payload = payload;
         this.toFiniteStrings = toFiniteStrings;
+        this.contextPrefixes = contextPrefixes;
     }
 
     @Override
@@ -63,6 +75,9 @@ public final class CompletionTokenStream extends TokenStream {
                 throw new IllegalArgumentException("TokenStream expanded to " + strings.size() + " finite strings. Only <= " + MAX_PATHS
                         + " finite strings are supported");
             }
+            if (contextPrefixes != null) {
+                strings = prefix(strings, contextPrefixes);
+            }
             posInc = strings.size();
             finiteStrings = strings.iterator();
         }
@@ -102,6 +117,20 @@ public final class CompletionTokenStream extends TokenStream {
         }
     }
 
+    private static Set<IntsRef> prefix(Set<IntsRef> strings, List<IntsRef> prefixes) {
+        Set<IntsRef> prefixed = new HashSet<IntsRef>(strings.size() * prefixes.size());
+        for (IntsRef prefix : prefixes) {
+            for (IntsRef string : strings) {
+                IntsRef ref = new IntsRef(prefix.length + string.length);
+                System.arraycopy(prefix.ints, prefix.offset, ref.ints, 0, prefix.length);
+                System.arraycopy(string.ints, string.offset, ref.ints, prefix.length, string.length);
+                ref.length = prefix.length + string.length;
+                prefixed.add(ref);
+            }
+        }
+        return prefixed;
+    }
+
     public static interface ToFiniteStrings {
         public Set<IntsRef> toFiniteStrings(TokenStream stream) throws IOException;
     }
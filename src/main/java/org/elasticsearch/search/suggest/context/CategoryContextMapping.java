@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.context;
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A context made of arbitrary string values, e.g. the tenant, the genre or the color of a suggestion.
+ */
+public class CategoryContextMapping extends ContextMapping {
+
+    public static final String TYPE = "category";
+
+    public CategoryContextMapping(String name, List<String> defaultValues) {
+        super(name, defaultValues);
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public List<String> indexValues(Object value) {
+        if (value instanceof List) {
+            List<String> values = new ArrayList<String>();
+            for (Object category : (List<?>) value) {
+                values.add(category(category));
+            }
+            return values;
+        }
+        return Collections.singletonList(category(value));
+    }
+
+    private String category(Object value) {
+        if (value instanceof Map || value instanceof List) {
+            throw new ElasticsearchIllegalArgumentException("category context [" + name + "] only supports strings but got [" + value + "]");
+        }
+        return value.toString();
+    }
+
+    @Override
+    protected void innerToXContent(XContentBuilder builder, Params params) throws IOException {
+    }
+
+    static CategoryContextMapping parse(String name, List<String> defaultValues, Map<String, Object> config) {
+        return new CategoryContextMapping(name, defaultValues);
+    }
+}
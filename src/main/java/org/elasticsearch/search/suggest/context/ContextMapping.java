@@ -0,0 +1,270 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.context;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.BasicAutomata;
+import org.apache.lucene.util.automaton.BasicOperations;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.mapper.MapperParsingException;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A context of a <tt>completion</tt> field. The values of the contexts of a suggestion are prefixed to its
+ * analyzed input in the FST, in the order of the context names and each followed by {@link #SEPARATOR}.
+ * A suggest request can then restrict its lookup to the suggestions of some context values by prefixing its
+ * lookup automaton with these values, instead of filtering the suggestions once they have been looked up.
+ * <p/>
+ * A context that is not restricted by a suggest request matches all its values.
+ */
+public abstract class ContextMapping implements ToXContent {
+
+    /**
+     * Follows each context value in the FST input, this character is reserved in the input of completion fields.
+     */
+    public static final int SEPARATOR = '\u001D';
+
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_DEFAULT = "default";
+
+    protected final String name;
+    protected final List<String> defaultValues;
+
+    protected ContextMapping(String name, List<String> defaultValues) {
+        this.name = name;
+        this.defaultValues = ImmutableList.copyOf(defaultValues);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public abstract String type();
+
+    /**
+     * @return The encoded context values of a suggestion, parsed from its value (a string, a number, a list or a map)
+     * in the <tt>context</tt> object of a completion field.
+     */
+    public abstract List<String> indexValues(Object value);
+
+    /**
+     * @return The encoded context values a suggest request looks suggestions up in.
+     */
+    public List<String> queryValues(Object value) {
+        return indexValues(value);
+    }
+
+    /**
+     * @return The encoded context values of the suggestions that don't define this context.
+     */
+    public List<String> defaultIndexValues() {
+        if (defaultValues.isEmpty()) {
+            // these suggestions are only found by requests that don't restrict this context
+            return Collections.singletonList("");
+        }
+        List<String> values = new ArrayList<String>();
+        for (String defaultValue : defaultValues) {
+            values.addAll(indexValues(defaultValue));
+        }
+        return values;
+    }
+
+    @Override
+    public final XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(name);
+        builder.field(FIELD_TYPE, type());
+        if (!defaultValues.isEmpty()) {
+            builder.field(FIELD_DEFAULT, defaultValues);
+        }
+        innerToXContent(builder, params);
+        return builder.endObject();
+    }
+
+    protected abstract void innerToXContent(XContentBuilder builder, Params params) throws IOException;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContextMapping that = (ContextMapping) o;
+        return name.equals(that.name) && defaultValues.equals(that.defaultValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + defaultValues.hashCode();
+    }
+
+    /**
+     * Parses the <tt>context</tt> object of the mapping of a completion field.
+     */
+    @SuppressWarnings("unchecked")
+    public static SortedMap<String, ContextMapping> parseMappings(Object node) {
+        if (!(node instanceof Map)) {
+            throw new MapperParsingException("context must be an object but was [" + node + "]");
+        }
+        ImmutableSortedMap.Builder<String, ContextMapping> mappings = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) node).entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                throw new MapperParsingException("context [" + entry.getKey() + "] must be an object");
+            }
+            Map<String, Object> config = new HashMap<String, Object>((Map<String, Object>) entry.getValue());
+            Object type = config.remove(FIELD_TYPE);
+            List<String> defaultValues = parseDefaultValues(config.remove(FIELD_DEFAULT));
+            ContextMapping mapping;
+            if (CategoryContextMapping.TYPE.equals(type)) {
+                mapping = CategoryContextMapping.parse(entry.getKey(), defaultValues, config);
+            } else if (GeolocationContextMapping.TYPE.equals(type)) {
+                mapping = GeolocationContextMapping.parse(entry.getKey(), defaultValues, config);
+            } else {
+                throw new MapperParsingException("unknown type [" + type + "] for context [" + entry.getKey() + "]");
+            }
+            if (!config.isEmpty()) {
+                throw new MapperParsingException("context [" + entry.getKey() + "] doesn't support " + config.keySet());
+            }
+            mappings.put(entry.getKey(), mapping);
+        }
+        return mappings.build();
+    }
+
+    private static List<String> parseDefaultValues(Object node) {
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        if (node instanceof List) {
+            List<String> values = new ArrayList<String>();
+            for (Object value : (List<?>) node) {
+                values.add(value.toString());
+            }
+            return values;
+        }
+        return Collections.singletonList(node.toString());
+    }
+
+    /**
+     * @param mappings The context mappings of the field
+     * @param values   The values of the context object of a suggestion
+     * @return All the prefixes the analyzed input of the suggestion is indexed with, one per combination of
+     * context values, as byte labels.
+     */
+    public static List<IntsRef> indexPrefixes(SortedMap<String, ContextMapping> mappings, Map<String, Object> values) {
+        checkContexts(mappings, values);
+        List<IntsRef> prefixes = Collections.singletonList(new IntsRef());
+        for (ContextMapping mapping : mappings.values()) {
+            Object value = values.get(mapping.name());
+            List<String> contextValues = value == null ? mapping.defaultIndexValues() : mapping.indexValues(value);
+            List<IntsRef> combined = new ArrayList<IntsRef>(prefixes.size() * contextValues.size());
+            for (IntsRef prefix : prefixes) {
+                for (String contextValue : contextValues) {
+                    combined.add(append(prefix, contextValue));
+                }
+            }
+            prefixes = combined;
+        }
+        return prefixes;
+    }
+
+    /**
+     * @param mappings The context mappings of the field
+     * @param values   The values of the context object of a suggest request
+     * @return An automaton that accepts the prefixes of the suggestions in the requested context values.
+     */
+    public static Automaton queryAutomaton(SortedMap<String, ContextMapping> mappings, Map<String, Object> values) {
+        checkContexts(mappings, values);
+        List<Automaton> automata = Lists.newArrayListWithCapacity(mappings.size() * 2);
+        for (ContextMapping mapping : mappings.values()) {
+            Object value = values.get(mapping.name());
+            if (value == null) {
+                // any value
+                automata.add(BasicOperations.repeat(BasicOperations.union(BasicAutomata.makeCharRange(0, SEPARATOR - 1),
+                        BasicAutomata.makeCharRange(SEPARATOR + 1, 255))));
+            } else {
+                List<Automaton> contextValues = new ArrayList<Automaton>();
+                for (String contextValue : mapping.queryValues(value)) {
+                    contextValues.add(toAutomaton(contextValue));
+                }
+                automata.add(BasicOperations.union(contextValues));
+            }
+            automata.add(BasicAutomata.makeChar(SEPARATOR));
+        }
+        Automaton automaton = BasicOperations.concatenate(automata);
+        BasicOperations.determinize(automaton);
+        return automaton;
+    }
+
+    private static void checkContexts(SortedMap<String, ContextMapping> mappings, Map<String, Object> values) {
+        for (String name : values.keySet()) {
+            if (!mappings.containsKey(name)) {
+                throw new ElasticsearchIllegalArgumentException("unknown context [" + name + "], the field only has the contexts " + mappings.keySet());
+            }
+        }
+    }
+
+    private static IntsRef append(IntsRef prefix, String contextValue) {
+        BytesRef bytes = toBytes(contextValue);
+        IntsRef result = new IntsRef(prefix.length + bytes.length + 1);
+        System.arraycopy(prefix.ints, prefix.offset, result.ints, 0, prefix.length);
+        for (int i = 0; i < bytes.length; i++) {
+            result.ints[prefix.length + i] = bytes.bytes[bytes.offset + i] & 0xFF;
+        }
+        result.ints[prefix.length + bytes.length] = SEPARATOR;
+        result.length = prefix.length + bytes.length + 1;
+        return result;
+    }
+
+    private static Automaton toAutomaton(String contextValue) {
+        BytesRef bytes = toBytes(contextValue);
+        int[] labels = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            labels[i] = bytes.bytes[bytes.offset + i] & 0xFF;
+        }
+        return BasicAutomata.makeString(labels, 0, labels.length);
+    }
+
+    private static BytesRef toBytes(String contextValue) {
+        if (contextValue.indexOf(SEPARATOR) >= 0) {
+            throw new ElasticsearchIllegalArgumentException("context value [" + contextValue + "] contains the reserved character U+001D");
+        }
+        return new BytesRef(contextValue);
+    }
+
+    /**
+     * Writes the context values of a suggestion or a suggest request as a <tt>context</tt> object.
+     */
+    public static void contextToXContent(XContentBuilder builder, Map<String, Object> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        builder.startObject("context");
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            builder.field(entry.getKey(), entry.getValue());
+        }
+        builder.endObject();
+    }
+}
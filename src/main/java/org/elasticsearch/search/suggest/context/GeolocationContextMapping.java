@@ -0,0 +1,172 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.context;
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.geo.GeoHashUtils;
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.mapper.MapperParsingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A context made of the geohash cells of locations. A suggestion is indexed with the cells of its locations at
+ * the precision of the mapping, a suggest request looks suggestions up in the cell of its location and, unless
+ * disabled, in the neighboring cells so that the suggestions that are close to it but across a cell border are
+ * found as well.
+ */
+public class GeolocationContextMapping extends ContextMapping {
+
+    public static final String TYPE = "geo";
+
+    public static final String FIELD_PRECISION = "precision";
+    public static final String FIELD_NEIGHBORS = "neighbors";
+
+    public static final int DEFAULT_PRECISION = 6;
+    public static final boolean DEFAULT_NEIGHBORS = true;
+
+    private final int precision;
+    private final boolean neighbors;
+
+    public GeolocationContextMapping(String name, List<String> defaultValues, int precision, boolean neighbors) {
+        super(name, defaultValues);
+        if (precision < 1 || precision > GeoHashUtils.PRECISION) {
+            throw new ElasticsearchIllegalArgumentException("precision of geo context [" + name + "] must be between 1 and "
+                    + GeoHashUtils.PRECISION + " but was [" + precision + "]");
+        }
+        this.precision = precision;
+        this.neighbors = neighbors;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public boolean neighbors() {
+        return neighbors;
+    }
+
+    @Override
+    public List<String> indexValues(Object value) {
+        if (value instanceof List && !isLonLatArray((List<?>) value)) {
+            List<String> cells = new ArrayList<String>();
+            for (Object location : (List<?>) value) {
+                cells.add(cell(location));
+            }
+            return cells;
+        }
+        return Collections.singletonList(cell(value));
+    }
+
+    @Override
+    public List<String> queryValues(Object value) {
+        List<String> cells = indexValues(value);
+        if (!neighbors) {
+            return cells;
+        }
+        List<String> withNeighbors = new ArrayList<String>(cells);
+        for (String cell : cells) {
+            withNeighbors.addAll(GeoHashUtils.neighbors(cell));
+        }
+        return withNeighbors;
+    }
+
+    private String cell(Object location) {
+        GeoPoint point;
+        if (location instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) location;
+            if (map.containsKey(GeoPoint.GEOHASH)) {
+                point = new GeoPoint().resetFromGeoHash(map.get(GeoPoint.GEOHASH).toString());
+            } else if (map.containsKey(GeoPoint.LATITUDE) && map.containsKey(GeoPoint.LONGITUDE)) {
+                point = new GeoPoint(XContentMapValues.nodeDoubleValue(map.get(GeoPoint.LATITUDE)),
+                        XContentMapValues.nodeDoubleValue(map.get(GeoPoint.LONGITUDE)));
+            } else {
+                throw new ElasticsearchIllegalArgumentException("geo context [" + name + "] expects a location but got [" + location + "]");
+            }
+        } else if (location instanceof List) {
+            List<?> lonLat = (List<?>) location;
+            if (!isLonLatArray(lonLat)) {
+                throw new ElasticsearchIllegalArgumentException("geo context [" + name + "] expects a location but got [" + location + "]");
+            }
+            point = new GeoPoint(((Number) lonLat.get(1)).doubleValue(), ((Number) lonLat.get(0)).doubleValue());
+        } else if (location != null) {
+            String value = location.toString();
+            if (value.indexOf(',') >= 0) {
+                point = GeoPoint.parseFromLatLon(value);
+            } else {
+                point = new GeoPoint().resetFromGeoHash(value);
+            }
+        } else {
+            throw new ElasticsearchIllegalArgumentException("geo context [" + name + "] expects a location but got [null]");
+        }
+        return GeoHashUtils.encode(point.lat(), point.lon(), precision);
+    }
+
+    private static boolean isLonLatArray(List<?> value) {
+        return value.size() == 2 && value.get(0) instanceof Number && value.get(1) instanceof Number;
+    }
+
+    @Override
+    protected void innerToXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field(FIELD_PRECISION, precision);
+        builder.field(FIELD_NEIGHBORS, neighbors);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) return false;
+        GeolocationContextMapping that = (GeolocationContextMapping) o;
+        return precision == that.precision && neighbors == that.neighbors;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * super.hashCode() + precision) + (neighbors ? 1 : 0);
+    }
+
+    static GeolocationContextMapping parse(String name, List<String> defaultValues, Map<String, Object> config) {
+        int precision = DEFAULT_PRECISION;
+        boolean neighbors = DEFAULT_NEIGHBORS;
+        Object node = config.remove(FIELD_PRECISION);
+        if (node != null) {
+            precision = XContentMapValues.nodeIntegerValue(node);
+        }
+        node = config.remove(FIELD_NEIGHBORS);
+        if (node != null) {
+            neighbors = XContentMapValues.nodeBooleanValue(node);
+        }
+        try {
+            return new GeolocationContextMapping(name, defaultValues, precision, neighbors);
+        } catch (ElasticsearchIllegalArgumentException e) {
+            throw new MapperParsingException(e.getMessage());
+        }
+    }
+}
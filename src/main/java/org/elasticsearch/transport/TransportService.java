@@ -88,6 +88,7 @@ public class TransportService extends AbstractLifecycleComponent<TransportServic
     protected void doStart() throws ElasticsearchException {
         adapter.rxMetric.clear();
         adapter.txMetric.clear();
+        adapter.coalesceMetric.clear();
         transport.transportServiceAdapter(adapter);
         transport.start();
         if (transport.boundAddress() != null && logger.isInfoEnabled()) {
@@ -114,7 +115,8 @@ public class TransportService extends AbstractLifecycleComponent<TransportServic
     }
 
     public TransportStats stats() {
-        return new TransportStats(transport.serverOpen(), adapter.rxMetric.count(), adapter.rxMetric.sum(), adapter.txMetric.count(), adapter.txMetric.sum());
+        return new TransportStats(transport.serverOpen(), adapter.rxMetric.count(), adapter.rxMetric.sum(), adapter.txMetric.count(), adapter.txMetric.sum(),
+                adapter.coalesceMetric.count(), adapter.coalesceMetric.sum());
     }
 
     public BoundTransportAddress boundAddress() {
@@ -244,6 +246,7 @@ public class TransportService extends AbstractLifecycleComponent<TransportServic
 
         final MeanMetric rxMetric = new MeanMetric();
         final MeanMetric txMetric = new MeanMetric();
+        final MeanMetric coalesceMetric = new MeanMetric();
 
         @Override
         public void received(long size) {
@@ -255,6 +258,11 @@ public class TransportService extends AbstractLifecycleComponent<TransportServic
             txMetric.inc(size);
         }
 
+        @Override
+        public void coalesced(int messages) {
+            coalesceMetric.inc(messages);
+        }
+
         @Override
         public TransportRequestHandler handler(String action) {
             return serverHandlers.get(action);
@@ -30,6 +30,11 @@ public interface TransportServiceAdapter {
 
     void sent(long size);
 
+    /**
+     * Called when the given number of coalesced messages is written to a connection at once.
+     */
+    void coalesced(int messages);
+
     TransportRequestHandler handler(String action);
 
     TransportResponseHandler remove(long requestId);
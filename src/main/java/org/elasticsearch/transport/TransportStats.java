@@ -19,6 +19,7 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -36,17 +37,21 @@ public class TransportStats implements Streamable, ToXContent {
     private long rxSize;
     private long txCount;
     private long txSize;
+    private long txCoalescedBatches;
+    private long txCoalescedMessages;
 
     TransportStats() {
 
     }
 
-    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize, long txCoalescedBatches, long txCoalescedMessages) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.txCoalescedBatches = txCoalescedBatches;
+        this.txCoalescedMessages = txCoalescedMessages;
     }
 
     public long serverOpen() {
@@ -89,6 +94,28 @@ public class TransportStats implements Streamable, ToXContent {
         return txSize();
     }
 
+    /**
+     * The number of coalesced writes, each of them writing one or more messages.
+     */
+    public long txCoalescedBatches() {
+        return txCoalescedBatches;
+    }
+
+    public long getTxCoalescedBatches() {
+        return txCoalescedBatches();
+    }
+
+    /**
+     * The number of messages written through coalesced writes.
+     */
+    public long txCoalescedMessages() {
+        return txCoalescedMessages;
+    }
+
+    public long getTxCoalescedMessages() {
+        return txCoalescedMessages();
+    }
+
     public static TransportStats readTransportStats(StreamInput in) throws IOException {
         TransportStats stats = new TransportStats();
         stats.readFrom(in);
@@ -102,6 +129,10 @@ public class TransportStats implements Streamable, ToXContent {
         rxSize = in.readVLong();
         txCount = in.readVLong();
         txSize = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            txCoalescedBatches = in.readVLong();
+            txCoalescedMessages = in.readVLong();
+        }
     }
 
     @Override
@@ -111,6 +142,10 @@ public class TransportStats implements Streamable, ToXContent {
         out.writeVLong(rxSize);
         out.writeVLong(txCount);
         out.writeVLong(txSize);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(txCoalescedBatches);
+            out.writeVLong(txCoalescedMessages);
+        }
     }
 
     @Override
@@ -121,6 +156,8 @@ public class TransportStats implements Streamable, ToXContent {
         builder.byteSizeField(Fields.RX_SIZE_IN_BYTES, Fields.RX_SIZE, rxSize);
         builder.field(Fields.TX_COUNT, txCount);
         builder.byteSizeField(Fields.TX_SIZE_IN_BYTES, Fields.TX_SIZE, txSize);
+        builder.field(Fields.TX_COALESCED_BATCHES, txCoalescedBatches);
+        builder.field(Fields.TX_COALESCED_MESSAGES, txCoalescedMessages);
         builder.endObject();
         return builder;
     }
@@ -134,5 +171,7 @@ public class TransportStats implements Streamable, ToXContent {
         static final XContentBuilderString TX_COUNT = new XContentBuilderString("tx_count");
         static final XContentBuilderString TX_SIZE = new XContentBuilderString("tx_size");
         static final XContentBuilderString TX_SIZE_IN_BYTES = new XContentBuilderString("tx_size_in_bytes");
+        static final XContentBuilderString TX_COALESCED_BATCHES = new XContentBuilderString("tx_coalesced_batches");
+        static final XContentBuilderString TX_COALESCED_MESSAGES = new XContentBuilderString("tx_coalesced_messages");
     }
 }
\ No newline at end of file
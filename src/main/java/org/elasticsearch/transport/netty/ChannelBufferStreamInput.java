@@ -60,10 +60,13 @@ public class ChannelBufferStreamInput extends StreamInput {
 
     @Override
     public BytesRef readBytesRef(int length) throws IOException {
-        if (!buffer.hasArray()) {
+        // a frame that spanned several network reads is a composite buffer, but a slice of it that falls within a
+        // single component is still backed by an array and can be shared
+        ChannelBuffer slice = buffer.slice(buffer.readerIndex(), length);
+        if (!slice.hasArray()) {
             return super.readBytesRef(length);
         }
-        BytesRef bytesRef = new BytesRef(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), length);
+        BytesRef bytesRef = new BytesRef(slice.array(), slice.arrayOffset(), length);
         buffer.skipBytes(length);
         return bytesRef;
     }
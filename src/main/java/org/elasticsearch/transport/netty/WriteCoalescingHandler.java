@@ -0,0 +1,128 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportServiceAdapter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A downstream handler that coalesces the messages written to a single connection. Messages are queued until
+ * either the coalescing window elapses or the queued messages reach the byte threshold, and are then written
+ * as a single composite buffer, saving a write syscall per message when many small requests are sent.
+ * <p/>
+ * A new instance must be created for each channel.
+ */
+public class WriteCoalescingHandler extends SimpleChannelDownstreamHandler {
+
+    private final ThreadPool threadPool;
+
+    private final TransportServiceAdapter transportServiceAdapter;
+
+    private final TimeValue window;
+
+    private final long maxBytes;
+
+    private final Queue<MessageEvent> pending = ConcurrentCollections.newQueue();
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public WriteCoalescingHandler(ThreadPool threadPool, TransportServiceAdapter transportServiceAdapter, TimeValue window, long maxBytes) {
+        this.threadPool = threadPool;
+        this.transportServiceAdapter = transportServiceAdapter;
+        this.window = window;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void writeRequested(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        // always go through the queue, even for buffers above the threshold, to keep the order of writes
+        pending.add(e);
+        long bytes = pendingBytes.addAndGet(((ChannelBuffer) e.getMessage()).readableBytes());
+        if (bytes >= maxBytes) {
+            flush(ctx);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            threadPool.schedule(window, ThreadPool.Names.SAME, new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    flush(ctx);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        // write whatever is still queued so the futures of the queued messages get notified
+        flush(ctx);
+        super.closeRequested(ctx, e);
+    }
+
+    private synchronized void flush(ChannelHandlerContext ctx) {
+        final List<MessageEvent> events = new ArrayList<MessageEvent>();
+        long bytes = 0;
+        MessageEvent event;
+        while ((event = pending.poll()) != null) {
+            events.add(event);
+            bytes += ((ChannelBuffer) event.getMessage()).readableBytes();
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        pendingBytes.addAndGet(-bytes);
+        transportServiceAdapter.coalesced(events.size());
+        if (events.size() == 1) {
+            ctx.sendDownstream(events.get(0));
+            return;
+        }
+        ChannelBuffer[] buffers = new ChannelBuffer[events.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = (ChannelBuffer) events.get(i).getMessage();
+        }
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                for (MessageEvent event : events) {
+                    if (future.isSuccess()) {
+                        event.getFuture().setSuccess();
+                    } else {
+                        event.getFuture().setFailure(future.getCause());
+                    }
+                }
+            }
+        });
+        // false on gathering, cause gathering causes the NIO layer to combine the buffers into a single direct buffer....
+        Channels.write(ctx, future, ChannelBuffers.wrappedBuffer(false, buffers), events.get(0).getRemoteAddress());
+    }
+}
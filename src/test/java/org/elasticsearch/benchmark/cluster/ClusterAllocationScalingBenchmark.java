@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.cluster;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.cluster.routing.allocation.decider.ConcurrentRebalanceAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.ThrottlingAllocationDecider;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ElasticsearchAllocationTestCase;
+
+import java.util.Random;
+
+import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
+
+/**
+ * Measures how the time of a reroute grows with the number of shards in the cluster, from 10k to 100k shards. For each
+ * size, all shards are allocated and started first, then we time a reroute of the balanced cluster and the reroute
+ * that rebalances the cluster onto a newly added node.
+ */
+public class ClusterAllocationScalingBenchmark {
+
+    private static final ESLogger logger = Loggers.getLogger(ClusterAllocationScalingBenchmark.class);
+
+    public static void main(String[] args) {
+        final int[] totalShards = new int[]{10000, 25000, 50000, 100000};
+        final int numShards = 5;
+        final int numReplicas = 1;
+        final int numberOfNodes = 100;
+        final int numberOfReroutes = 5;
+        // don't throttle the initial allocation, we are only interested in the reroutes of the allocated cluster
+        AllocationService strategy = ElasticsearchAllocationTestCase.createAllocationService(ImmutableSettings.builder()
+                .put(ThrottlingAllocationDecider.CLUSTER_ROUTING_ALLOCATION_NODE_INITIAL_PRIMARIES_RECOVERIES, Integer.MAX_VALUE)
+                .put(ThrottlingAllocationDecider.CLUSTER_ROUTING_ALLOCATION_NODE_CONCURRENT_RECOVERIES, Integer.MAX_VALUE)
+                .put(ConcurrentRebalanceAllocationDecider.CLUSTER_ROUTING_ALLOCATION_CLUSTER_CONCURRENT_REBALANCE, -1)
+                .build(), new Random(1));
+
+        for (int total : totalShards) {
+            final int numIndices = total / (numShards * (numReplicas + 1));
+            MetaData.Builder mb = MetaData.builder();
+            for (int i = 1; i <= numIndices; i++) {
+                mb.put(IndexMetaData.builder("test_" + i).numberOfShards(numShards).numberOfReplicas(numReplicas));
+            }
+            MetaData metaData = mb.build();
+            RoutingTable.Builder rb = RoutingTable.builder();
+            for (int i = 1; i <= numIndices; i++) {
+                rb.addAsNew(metaData.index("test_" + i));
+            }
+            DiscoveryNodes.Builder nb = DiscoveryNodes.builder();
+            for (int i = 1; i <= numberOfNodes; i++) {
+                nb.put(ElasticsearchAllocationTestCase.newNode("node" + i));
+            }
+            ClusterState clusterState = ClusterState.builder().metaData(metaData).routingTable(rb.build()).nodes(nb).build();
+
+            long start = System.currentTimeMillis();
+            clusterState = ClusterState.builder(clusterState).routingResult(strategy.reroute(clusterState)).build();
+            while (clusterState.readOnlyRoutingNodes().hasUnassignedShards() || !clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING).isEmpty()) {
+                RoutingAllocation.Result result = strategy.applyStartedShards(clusterState, clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING));
+                clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+            }
+            logger.info("[{}] shards: initial allocation took {}", total, TimeValue.timeValueMillis(System.currentTimeMillis() - start));
+
+            start = System.currentTimeMillis();
+            for (int i = 0; i < numberOfReroutes; i++) {
+                strategy.reroute(clusterState);
+            }
+            logger.info("[{}] shards: reroute of the balanced cluster took {} on average", total,
+                    TimeValue.timeValueMillis((System.currentTimeMillis() - start) / numberOfReroutes));
+
+            clusterState = ClusterState.builder(clusterState).nodes(DiscoveryNodes.builder(clusterState.nodes())
+                    .put(ElasticsearchAllocationTestCase.newNode("node" + (numberOfNodes + 1)))).build();
+            start = System.currentTimeMillis();
+            for (int i = 0; i < numberOfReroutes; i++) {
+                strategy.reroute(clusterState);
+            }
+            logger.info("[{}] shards: reroute onto a new node took {} on average", total,
+                    TimeValue.timeValueMillis((System.currentTimeMillis() - start) / numberOfReroutes));
+        }
+    }
+}
@@ -301,9 +301,13 @@ public class BasicScriptBenchmark {
     }
 
     static List<Entry<String, RequestInfo>> initScriptMatchAllSearchRequests(String script, boolean langNative) {
+        return initScriptMatchAllSearchRequests(script, langNative ? "native" : null);
+    }
+
+    static List<Entry<String, RequestInfo>> initScriptMatchAllSearchRequests(String script, String lang) {
         List<Entry<String, RequestInfo>> nativeSearchRequests = new ArrayList<Entry<String, RequestInfo>>();
         String infoString = "Results for constant score script:";
-        ScriptScoreFunctionBuilder scriptFunction = (langNative == true) ? scriptFunction(script, "native") : scriptFunction(script);
+        ScriptScoreFunctionBuilder scriptFunction = lang != null ? scriptFunction(script, lang) : scriptFunction(script);
         SearchRequest request = searchRequest().searchType(SearchType.QUERY_THEN_FETCH).source(
                 searchSource().explain(false).size(0)
                         .query(functionScoreQuery(FilterBuilders.matchAllFilter(), scriptFunction).boostMode(CombineFunction.REPLACE)));
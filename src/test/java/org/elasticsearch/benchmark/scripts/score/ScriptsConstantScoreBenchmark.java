@@ -24,6 +24,7 @@ import org.elasticsearch.benchmark.scripts.score.script.NativeConstantScoreScrip
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.node.Node;
+import org.elasticsearch.script.expression.ExpressionScriptEngineService;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -76,6 +77,14 @@ public class ScriptsConstantScoreBenchmark extends BasicScriptBenchmark {
         runBenchmark(client, maxIter, results, searchRequests, minTerms, warmerIter);
         allResults.add(results);
 
+        results = new Results();
+        results.init(maxTerms - minTerms, "expression const (log(2) 10X)", "Results for expression const score = log(2) 10X:", "blue", "-.");
+        searchRequests = initScriptMatchAllSearchRequests("ln(2) + ln(2) + ln(2) + ln(2) + ln(2) + ln(2) + ln(2) + ln(2) + ln(2) + ln(2)",
+                ExpressionScriptEngineService.NAME);
+        // run actual benchmark
+        runBenchmark(client, maxIter, results, searchRequests, minTerms, warmerIter);
+        allResults.add(results);
+
         results = new Results();
         results.init(maxTerms - minTerms, "native const script score (2)", "Results for native const script score with score = 2:",
                 "black", ":");
@@ -93,6 +102,13 @@ public class ScriptsConstantScoreBenchmark extends BasicScriptBenchmark {
         runBenchmark(client, maxIter, results, searchRequests, minTerms, warmerIter);
         allResults.add(results);
 
+        results = new Results();
+        results.init(maxTerms - minTerms, "expression const (2)", "Results for expression const score = 2:", "blue", "--");
+        searchRequests = initScriptMatchAllSearchRequests("2", ExpressionScriptEngineService.NAME);
+        // run actual benchmark
+        runBenchmark(client, maxIter, results, searchRequests, minTerms, warmerIter);
+        allResults.add(results);
+
         printOctaveScript(allResults, args);
 
         client.close();
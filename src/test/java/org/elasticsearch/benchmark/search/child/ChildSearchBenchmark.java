@@ -274,6 +274,34 @@ public class ChildSearchBenchmark {
             totalQueryTime += searchResponse.getTookInMillis();
         }
         System.out.println("--> has_child query with match_all Query Avg: " + (totalQueryTime / QUERY_COUNT) + "ms");
+
+        for (String scoreType : new String[]{"sum", "avg"}) {
+            System.out.println("--> Running has_child query with score type [" + scoreType + "]");
+            for (int j = 0; j < QUERY_WARMUP; j++) {
+                client.prepareSearch(indexName).setQuery(hasChildQuery("child", matchAllQuery()).scoreType(scoreType)).execute().actionGet();
+            }
+
+            totalQueryTime = 0;
+            for (int j = 0; j < QUERY_COUNT; j++) {
+                SearchResponse searchResponse = client.prepareSearch(indexName).setQuery(hasChildQuery("child", matchAllQuery()).scoreType(scoreType)).execute().actionGet();
+                if (j % 10 == 0) {
+                    System.out.println("--> hits [" + j + "], got [" + searchResponse.getHits().totalHits() + "]");
+                }
+                totalQueryTime += searchResponse.getTookInMillis();
+            }
+            System.out.println("--> has_child query with match_all and score type [" + scoreType + "] Query Avg: " + (totalQueryTime / QUERY_COUNT) + "ms");
+        }
+
+        // the global parent id ordinals are built by the first parent/child query after a refresh
+        System.out.println("--> Running has_child query right after a refresh");
+        totalQueryTime = 0;
+        for (int j = 0; j < QUERY_COUNT; j++) {
+            client.prepareIndex(indexName, "parent", "refresh_" + j).setSource("field1", "refresh").execute().actionGet();
+            client.admin().indices().prepareRefresh(indexName).execute().actionGet();
+            SearchResponse searchResponse = client.prepareSearch(indexName).setQuery(hasChildQuery("child", termQuery("field2", parentChildIndexGenerator.getQueryValue())).scoreType("max")).execute().actionGet();
+            totalQueryTime += searchResponse.getTookInMillis();
+        }
+        System.out.println("--> has_child query after refresh Query Avg: " + (totalQueryTime / QUERY_COUNT) + "ms");
         
         System.out.println("--> Running has_parent query with score type");
         // run parent child score query
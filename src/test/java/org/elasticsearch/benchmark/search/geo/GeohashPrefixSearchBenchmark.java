@@ -0,0 +1,149 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.search.geo;
+
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.SizeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.node.NodeBuilder;
+
+import java.util.Random;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.FilterBuilders.geoDistanceFilter;
+import static org.elasticsearch.index.query.FilterBuilders.geoPolygonFilter;
+import static org.elasticsearch.index.query.QueryBuilders.filteredQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+
+/**
+ * Compares the geo_distance and geo_polygon filters on a geo_point field that indexes geohash prefixes, where the
+ * filters look up the documents by geohash cell, with the same filters on a field that doesn't.
+ */
+public class GeohashPrefixSearchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        Node node = NodeBuilder.nodeBuilder().clusterName(GeohashPrefixSearchBenchmark.class.getSimpleName()).node();
+        Client client = node.client();
+
+        ClusterHealthResponse clusterHealthResponse = client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+        if (clusterHealthResponse.isTimedOut()) {
+            System.err.println("Failed to wait for green status, bailing");
+            System.exit(1);
+        }
+
+        final long NUM_DOCS = SizeValue.parseSizeValue("1m").singles();
+        final int BATCH = 1000;
+        final long NUM_WARM = 50;
+        final long NUM_RUNS = 100;
+
+        if (client.admin().indices().prepareExists("test").execute().actionGet().isExists()) {
+            System.out.println("Found an index, count: " + client.prepareCount("test").setQuery(QueryBuilders.matchAllQuery()).execute().actionGet().getCount());
+        } else {
+            String mapping = XContentFactory.jsonBuilder().startObject().startObject("type1")
+                    .startObject("properties")
+                    .startObject("location").field("type", "geo_point").endObject()
+                    .startObject("location_prefix").field("type", "geo_point").field("geohash_prefix", true).endObject()
+                    .endObject()
+                    .endObject().endObject().string();
+            client.admin().indices().prepareCreate("test")
+                    .setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0))
+                    .addMapping("type1", mapping)
+                    .execute().actionGet();
+
+            System.err.println("--> Indexing [" + NUM_DOCS + "]");
+            Random random = new Random(0);
+            for (long i = 0; i < NUM_DOCS; ) {
+                BulkRequestBuilder request = client.prepareBulk();
+                for (int j = 0; j < BATCH && i < NUM_DOCS; j++) {
+                    // spread over the continental US
+                    double lat = 25 + random.nextDouble() * 24;
+                    double lon = -125 + random.nextDouble() * 58;
+                    request.add(client.prepareIndex("test", "type1", Long.toString(i++)).setSource(jsonBuilder().startObject()
+                            .startObject("location").field("lat", lat).field("lon", lon).endObject()
+                            .startObject("location_prefix").field("lat", lat).field("lon", lon).endObject()
+                            .endObject()));
+                }
+                BulkResponse response = request.execute().actionGet();
+                if (response.hasFailures()) {
+                    System.err.println("--> failures...");
+                }
+                if ((i % 100000) == 0) {
+                    System.err.println("--> indexed " + i);
+                }
+            }
+            System.err.println("Done indexed");
+            client.admin().indices().prepareFlush("test").execute().actionGet();
+            client.admin().indices().prepareRefresh().execute().actionGet();
+        }
+
+        for (String distance : new String[]{"10km", "100km", "1000km"}) {
+            run(client, "geo_distance (" + distance + ")", geoDistanceFilter("location").distance(distance).point(40.7143528, -74.0059731),
+                    geoDistanceFilter("location_prefix").distance(distance).point(40.7143528, -74.0059731), NUM_WARM, NUM_RUNS);
+        }
+        run(client, "geo_polygon", polygon("location"), polygon("location_prefix"), NUM_WARM, NUM_RUNS);
+
+        node.close();
+    }
+
+    private static FilterBuilder polygon(String field) {
+        // roughly the state of Colorado with a notch
+        return geoPolygonFilter(field).addPoint(41, -109).addPoint(41, -102).addPoint(37, -102)
+                .addPoint(39, -105).addPoint(37, -109);
+    }
+
+    private static void run(Client client, String name, FilterBuilder plain, FilterBuilder prefix, long numWarm, long numRuns) {
+        System.err.println("--> Warming up " + name);
+        for (int i = 0; i < numWarm; i++) {
+            search(client, plain);
+            search(client, prefix);
+        }
+        long hits = 0;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < numRuns; i++) {
+            hits = search(client, plain).getHits().totalHits();
+        }
+        long totalTime = System.currentTimeMillis() - start;
+        System.err.println("--> Perf " + name + " - fielddata: " + (totalTime / numRuns) + "ms, hits " + hits);
+
+        start = System.currentTimeMillis();
+        for (int i = 0; i < numRuns; i++) {
+            hits = search(client, prefix).getHits().totalHits();
+        }
+        totalTime = System.currentTimeMillis() - start;
+        System.err.println("--> Perf " + name + " - geohash cells: " + (totalTime / numRuns) + "ms, hits " + hits);
+    }
+
+    private static SearchResponse search(Client client, FilterBuilder filter) {
+        return client.prepareSearch()
+                .setSearchType(SearchType.COUNT)
+                .setQuery(filteredQuery(matchAllQuery(), filter))
+                .execute().actionGet();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.store;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.store.*;
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.store.BlockCache;
+import org.elasticsearch.index.store.BlockCacheDirectory;
+
+import java.util.Random;
+
+/**
+ * Compares seek heavy reads, like terms dictionary lookups that clone an input, seek and read a few bytes, with and
+ * without the block cache.
+ */
+public class BlockCacheSeekBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final ByteSizeValue fileSize = new ByteSizeValue(64, ByteSizeUnit.MB);
+        final ByteSizeValue blockSize = new ByteSizeValue(32, ByteSizeUnit.KB);
+        final int readLength = 16;
+        final int numberOfSeeks = 5000000;
+
+        Random random = new Random();
+        RAMDirectory ramDirectory = new RAMDirectory();
+        IndexOutput output = ramDirectory.createOutput("_0.tim", IOContext.DEFAULT);
+        byte[] bytes = new byte[(int) blockSize.bytes()];
+        for (long written = 0; written < fileSize.bytes(); written += bytes.length) {
+            random.nextBytes(bytes);
+            output.writeBytes(bytes, bytes.length);
+        }
+        output.close();
+
+        CounterMetric hits = new CounterMetric();
+        CounterMetric misses = new CounterMetric();
+        BlockCache cache = new BlockCache(fileSize.bytes() * 2, (int) blockSize.bytes());
+        Directory cachedDirectory = new BlockCacheDirectory(ramDirectory, cache, ImmutableSet.of("tim"), hits, misses);
+
+        for (int iter = 0; iter < 3; iter++) {
+            // the first iteration warms up the jvm and the cache
+            run("ram", ramDirectory, fileSize.bytes(), readLength, numberOfSeeks);
+            run("block_cache", cachedDirectory, fileSize.bytes(), readLength, numberOfSeeks);
+        }
+        System.out.println("Block cache hits [" + hits.count() + "], misses [" + misses.count() + "]");
+        cachedDirectory.close();
+    }
+
+    private static void run(String name, Directory directory, long fileSize, int readLength, int numberOfSeeks) throws Exception {
+        Random random = new Random(0);
+        byte[] buffer = new byte[readLength];
+        IndexInput input = directory.openInput("_0.tim", IOContext.DEFAULT);
+        StopWatch stopWatch = new StopWatch().start();
+        for (int i = 0; i < numberOfSeeks; i++) {
+            IndexInput clone = input.clone();
+            clone.seek((long) (random.nextDouble() * (fileSize - readLength)));
+            clone.readBytes(buffer, 0, readLength);
+        }
+        stopWatch.stop();
+        input.close();
+        System.out.println("[" + name + "] " + numberOfSeeks + " seeks of " + readLength + " bytes took [" + stopWatch.totalTime()
+                + "], " + (stopWatch.totalTime().nanos() / numberOfSeeks) + "ns per seek");
+    }
+}
@@ -66,9 +66,12 @@ public class TransportBenchmark {
         final byte[] payload = new byte[(int) payloadSize.bytes()];
         final AtomicLong idGenerator = new AtomicLong();
         final Type type = Type.NETTY;
+        // batch the requests written to a connection, run with -Des.write_coalescing=false to compare the socket writes without it
+        final boolean writeCoalescing = Boolean.parseBoolean(System.getProperty("es.write_coalescing", "true"));
 
 
         Settings settings = ImmutableSettings.settingsBuilder()
+                .put("transport.netty.write_coalescing.enabled", writeCoalescing)
                 .build();
 
         final ThreadPool serverThreadPool = new ThreadPool();
@@ -181,6 +184,10 @@ public class TransportBenchmark {
         stopWatch.stop();
 
         System.out.println("Ran [" + NUMBER_OF_CLIENTS + "], each with [" + NUMBER_OF_ITERATIONS + "] iterations, payload [" + payloadSize + "]: took [" + stopWatch.totalTime() + "], TPS: " + (NUMBER_OF_CLIENTS * NUMBER_OF_ITERATIONS) / stopWatch.totalTime().secondsFrac());
+        TransportStats clientStats = clientTransportService.stats();
+        // each coalesced batch is written to the socket at once, the other messages are written one by one
+        long socketWrites = clientStats.txCount() - clientStats.txCoalescedMessages() + clientStats.txCoalescedBatches();
+        System.out.println("Write coalescing [" + writeCoalescing + "]: client messages [" + clientStats.txCount() + "], socket writes [" + socketWrites + "], coalesced batches [" + clientStats.txCoalescedBatches() + "] with [" + clientStats.txCoalescedMessages() + "] requests");
 
         clientTransportService.close();
         clientThreadPool.shutdownNow();
@@ -39,6 +39,8 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -513,6 +515,157 @@ public class ClusterServiceTests extends ElasticsearchIntegrationTest {
         block2.countDown();
     }
 
+    @Test
+    public void testBatchedUpdateTasks() throws Exception {
+        String node_0 = cluster().startNode(settingsBuilder().put("discovery.type", "local"));
+        ClusterService clusterService = cluster().getInstance(ClusterService.class, node_0);
+
+        final CountDownLatch block = new CountDownLatch(1);
+        final CountDownLatch invoked = new CountDownLatch(1);
+        clusterService.submitStateUpdateTask("block", new ClusterStateUpdateTask() {
+            @Override
+            public ClusterState execute(ClusterState currentState) {
+                invoked.countDown();
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    fail();
+                }
+                return currentState;
+            }
+
+            @Override
+            public void onFailure(String source, Throwable t) {
+                invoked.countDown();
+                fail();
+            }
+        });
+        invoked.await();
+
+        final List<List<Integer>> batches = new CopyOnWriteArrayList<List<Integer>>();
+        ClusterStateTaskExecutor<Integer> executor = new ClusterStateTaskExecutor<Integer>() {
+            @Override
+            public ClusterState execute(ClusterState currentState, List<Integer> tasks) {
+                batches.add(new ArrayList<Integer>(tasks));
+                return ClusterState.builder(currentState).build();
+            }
+        };
+        final ClusterStateTaskExecutor<Integer> failingExecutor = new ClusterStateTaskExecutor<Integer>() {
+            @Override
+            public ClusterState execute(ClusterState currentState, List<Integer> tasks) {
+                throw new ElasticsearchException("batch of " + tasks.size() + " failed");
+            }
+        };
+        final int numTasks = randomIntBetween(2, 20);
+        final CountDownLatch processed = new CountDownLatch(numTasks);
+        final CountDownLatch failed = new CountDownLatch(numTasks);
+        final Set<String> failures = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        for (int i = 0; i < numTasks; i++) {
+            clusterService.submitStateUpdateTask("task " + i, Priority.NORMAL, i, executor, new ClusterStateTaskListener() {
+                @Override
+                public void onFailure(String source, Throwable t) {
+                    fail();
+                }
+
+                @Override
+                public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                    processed.countDown();
+                }
+            });
+            clusterService.submitStateUpdateTask("failing task " + i, Priority.NORMAL, i, failingExecutor, new ClusterStateTaskListener() {
+                @Override
+                public void onFailure(String source, Throwable t) {
+                    failures.add(source + ": " + t.getMessage());
+                    failed.countDown();
+                }
+
+                @Override
+                public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                    fail();
+                }
+            });
+        }
+        assertThat(clusterService.pendingTasks().size(), equalTo(numTasks * 2));
+        block.countDown();
+
+        assertThat(processed.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(failed.await(10, TimeUnit.SECONDS), equalTo(true));
+        // all the tasks were queued together, so they were executed in a single batch, in order
+        assertThat(batches.size(), equalTo(1));
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < numTasks; i++) {
+            expected.add(i);
+        }
+        assertThat(batches.get(0), equalTo(expected));
+        assertThat(failures.size(), equalTo(numTasks));
+        assertThat(failures, hasItem("failing task 0: batch of " + numTasks + " failed"));
+    }
+
+    @Test
+    public void testBatchedTasksAreNotPendingOnceProcessed() throws Exception {
+        String node_0 = cluster().startNode(settingsBuilder().put("discovery.type", "local"));
+        ClusterService clusterService = cluster().getInstance(ClusterService.class, node_0);
+
+        final CountDownLatch block1 = new CountDownLatch(1);
+        final CountDownLatch invoked1 = new CountDownLatch(1);
+        clusterService.submitStateUpdateTask("block", new ClusterStateUpdateTask() {
+            @Override
+            public ClusterState execute(ClusterState currentState) {
+                invoked1.countDown();
+                try {
+                    block1.await();
+                } catch (InterruptedException e) {
+                    fail();
+                }
+                return currentState;
+            }
+
+            @Override
+            public void onFailure(String source, Throwable t) {
+                invoked1.countDown();
+                fail();
+            }
+        });
+        invoked1.await();
+
+        final CountDownLatch block2 = new CountDownLatch(1);
+        final CountDownLatch invoked2 = new CountDownLatch(1);
+        ClusterStateTaskExecutor<Integer> executor = new ClusterStateTaskExecutor<Integer>() {
+            @Override
+            public ClusterState execute(ClusterState currentState, List<Integer> tasks) {
+                invoked2.countDown();
+                try {
+                    block2.await();
+                } catch (InterruptedException e) {
+                    fail();
+                }
+                return currentState;
+            }
+        };
+        final int numTasks = randomIntBetween(2, 20);
+        final CountDownLatch processed = new CountDownLatch(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            clusterService.submitStateUpdateTask("task " + i, Priority.NORMAL, i, executor, new ClusterStateTaskListener() {
+                @Override
+                public void onFailure(String source, Throwable t) {
+                    fail();
+                }
+
+                @Override
+                public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                    processed.countDown();
+                }
+            });
+        }
+        assertThat(clusterService.pendingTasks().size(), equalTo(numTasks));
+        block1.countDown();
+        invoked2.await();
+        // the first task executes the whole batch, the other tasks are left in the queue but have nothing to do anymore
+        assertThat(clusterService.pendingTasks(), empty());
+        block2.countDown();
+        assertThat(processed.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
     @Test
     public void testListenerCallbacks() throws Exception {
         Settings settings = settingsBuilder()
@@ -0,0 +1,179 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.allocator;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.MutableShardRouting;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.cluster.routing.allocation.allocator.BalancedShardsAllocator.*;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
+import org.elasticsearch.cluster.routing.allocation.decider.Decision;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.test.ElasticsearchAllocationTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ */
+public class BalancedShardsAllocatorTests extends ElasticsearchAllocationTestCase {
+
+    private static final String[] INDICES = new String[]{"test1", "test2", "test3"};
+
+    @Test
+    public void testReinsertMatchesFullSort() {
+        final int numNodes = randomIntBetween(2, 20);
+        final Balancer balancer = newBalancer(numNodes);
+        final WeightFunction function = newWeightFunction();
+        final ModelNode[] modelNodes = newModelNodes(numNodes);
+        final List<MutableShardRouting> shards = newShards();
+        // only a few shards on many nodes leaves a lot of nodes with the same weight
+        final int numAssigned = randomIntBetween(0, Math.min(shards.size(), numNodes * 2));
+        for (int i = 0; i < numAssigned; i++) {
+            modelNodes[randomInt(numNodes - 1)].addShard(shards.get(i), Decision.YES);
+        }
+        final Operation operation = randomFrom(Operation.values());
+        final String index = randomFrom(INDICES);
+        final NodeSorter sorter = new NodeSorter(modelNodes, function, balancer);
+        sorter.reset(operation, index);
+        assertSorted(sorter);
+
+        final int iters = scaledRandomIntBetween(50, 500);
+        for (int iter = 0; iter < iters; iter++) {
+            final int first = randomInt(numNodes - 2);
+            final int second = randomIntBetween(first + 1, numNodes - 1);
+            if (randomBoolean()) {
+                // move a shard between the two nodes like the balancer does
+                ModelNode from = randomBoolean() ? sorter.modelNodes[first] : sorter.modelNodes[second];
+                ModelNode to = from == sorter.modelNodes[first] ? sorter.modelNodes[second] : sorter.modelNodes[first];
+                for (MutableShardRouting shard : from.shards()) {
+                    if (!to.containsShard(shard)) {
+                        from.removeShard(shard);
+                        to.addShard(shard, Decision.YES);
+                        break;
+                    }
+                }
+                sorter.weights[first] = sorter.weight(operation, sorter.modelNodes[first]);
+                sorter.weights[second] = sorter.weight(operation, sorter.modelNodes[second]);
+            } else {
+                // arbitrary weights, drawn from a small range to get plenty of ties
+                sorter.weights[first] = randomIntBetween(-3, 3);
+                sorter.weights[second] = randomBoolean() ? sorter.weights[first] : randomIntBetween(-3, 3);
+            }
+            sorter.reinsert(first, second);
+            assertSorted(sorter);
+
+            final NodeSorter fullSort = new NodeSorter(sorter.modelNodes.clone(), function, balancer);
+            System.arraycopy(sorter.weights, 0, fullSort.weights, 0, numNodes);
+            // start from a shuffled order, equal weights must still end up in the same order
+            for (int i = numNodes - 1; i > 0; i--) {
+                fullSort.swap(i, randomInt(i));
+            }
+            fullSort.sort(0, numNodes);
+            for (int i = 0; i < numNodes; i++) {
+                assertThat(sorter.modelNodes[i], equalTo(fullSort.modelNodes[i]));
+                assertThat(sorter.weights[i], equalTo(fullSort.weights[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testWeightWithShard() {
+        final int numNodes = randomIntBetween(1, 10);
+        final Balancer balancer = newBalancer(numNodes);
+        final WeightFunction function = newWeightFunction();
+        final ModelNode node = new ModelNode("node0");
+        for (MutableShardRouting shard : newShards()) {
+            if (randomBoolean()) {
+                continue;
+            }
+            for (Operation operation : Operation.values()) {
+                float expected = function.weightWithShard(operation, balancer, node, shard);
+                node.addShard(shard, Decision.YES);
+                assertThat(function.weight(operation, balancer, node, shard.index()), equalTo(expected));
+                node.removeShard(shard);
+            }
+            node.addShard(shard, Decision.YES);
+        }
+    }
+
+    private static void assertSorted(NodeSorter sorter) {
+        for (int i = 1; i < sorter.modelNodes.length; i++) {
+            assertThat(sorter.weights[i - 1], lessThanOrEqualTo(sorter.weights[i]));
+            if (sorter.weights[i - 1] == sorter.weights[i]) {
+                assertThat(sorter.modelNodes[i - 1].getNodeId().compareTo(sorter.modelNodes[i].getNodeId()), lessThanOrEqualTo(0));
+            }
+        }
+    }
+
+    private WeightFunction newWeightFunction() {
+        return new WeightFunction(randomFloat() + 0.1f, randomFloat(), randomFloat());
+    }
+
+    private ModelNode[] newModelNodes(int numNodes) {
+        ModelNode[] modelNodes = new ModelNode[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            modelNodes[i] = new ModelNode("node" + i);
+        }
+        return modelNodes;
+    }
+
+    private List<MutableShardRouting> newShards() {
+        List<MutableShardRouting> shards = new ArrayList<MutableShardRouting>();
+        for (String index : INDICES) {
+            for (int id = 0; id < 5; id++) {
+                shards.add(new MutableShardRouting(index, id, null, true, ShardRoutingState.UNASSIGNED, 0));
+                shards.add(new MutableShardRouting(index, id, null, false, ShardRoutingState.UNASSIGNED, 0));
+            }
+        }
+        return shards;
+    }
+
+    private Balancer newBalancer(int numNodes) {
+        MetaData.Builder metaData = MetaData.builder();
+        RoutingTable.Builder routingTable = RoutingTable.builder();
+        for (String index : INDICES) {
+            metaData.put(IndexMetaData.builder(index).numberOfShards(5).numberOfReplicas(1));
+        }
+        MetaData builtMetaData = metaData.build();
+        for (String index : INDICES) {
+            routingTable.addAsNew(builtMetaData.index(index));
+        }
+        DiscoveryNodes.Builder nodes = DiscoveryNodes.builder();
+        for (int i = 0; i < numNodes; i++) {
+            nodes.put(newNode("node" + i));
+        }
+        ClusterState clusterState = ClusterState.builder().metaData(builtMetaData).routingTable(routingTable).nodes(nodes).build();
+        AllocationDeciders deciders = new AllocationDeciders(ImmutableSettings.EMPTY, new AllocationDecider[0]);
+        RoutingAllocation allocation = new RoutingAllocation(deciders, clusterState.routingNodes(), clusterState.nodes(), null);
+        return new Balancer(Loggers.getLogger(BalancedShardsAllocatorTests.class), allocation, newWeightFunction(), 1.0f);
+    }
+}
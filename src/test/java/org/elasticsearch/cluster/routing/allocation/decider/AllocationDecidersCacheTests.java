@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.cluster.routing.allocation.decider;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.MutableShardRouting;
+import org.elasticsearch.cluster.routing.RoutingNode;
+import org.elasticsearch.cluster.routing.RoutingNodes;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.test.ElasticsearchAllocationTestCase;
+import org.junit.Test;
+
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ */
+public class AllocationDecidersCacheTests extends ElasticsearchAllocationTestCase {
+
+    @Test
+    public void testDecisionsAreCachedPerScope() {
+        MetaData metaData = MetaData.builder()
+                .put(IndexMetaData.builder("test1").numberOfShards(3).numberOfReplicas(1))
+                .put(IndexMetaData.builder("test2").numberOfShards(2).numberOfReplicas(1))
+                .build();
+        RoutingTable routingTable = RoutingTable.builder()
+                .addAsNew(metaData.index("test1"))
+                .addAsNew(metaData.index("test2"))
+                .build();
+        ClusterState clusterState = ClusterState.builder().metaData(metaData).routingTable(routingTable)
+                .nodes(DiscoveryNodes.builder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3"))).build();
+
+        CountingDecider nodeDecider = new CountingDecider(AllocationDecider.DecisionScope.NODE);
+        CountingDecider indexDecider = new CountingDecider(AllocationDecider.DecisionScope.INDEX);
+        CountingDecider shardDecider = new CountingDecider(AllocationDecider.DecisionScope.SHARD);
+        CountingDecider routingDecider = new CountingDecider(AllocationDecider.DecisionScope.ROUTING);
+        AllocationDeciders deciders = new AllocationDeciders(ImmutableSettings.EMPTY,
+                new AllocationDecider[]{nodeDecider, indexDecider, shardDecider, routingDecider});
+
+        RoutingNodes routingNodes = clusterState.routingNodes();
+        RoutingAllocation allocation = new RoutingAllocation(deciders, routingNodes, clusterState.nodes(), null);
+        int rounds = randomIntBetween(2, 5);
+        int numShards = 0;
+        for (int round = 0; round < rounds; round++) {
+            numShards = 0;
+            for (MutableShardRouting shard : routingNodes.unassigned()) {
+                numShards++;
+                for (RoutingNode node : routingNodes) {
+                    assertThat(deciders.canAllocate(shard, node, allocation).type(), equalTo(Decision.Type.YES));
+                    assertThat(deciders.canRemain(shard, node, allocation).type(), equalTo(Decision.Type.YES));
+                }
+            }
+        }
+        assertThat(numShards, equalTo(10));
+        // each decision is computed once per key, for canAllocate and canRemain
+        assertThat(nodeDecider.calls, equalTo(2 * 3));
+        assertThat(indexDecider.calls, equalTo(2 * 2 * 3));
+        // shards are identified by index, id and whether they are primaries
+        assertThat(shardDecider.calls, equalTo(2 * 10 * 3));
+        assertThat(routingDecider.calls, equalTo(2 * 10 * 3 * rounds));
+        assertThat(allocation.cachedDecisionHits(), equalTo(3 * 2 * 10 * 3 * rounds - nodeDecider.calls - indexDecider.calls - shardDecider.calls));
+        assertThat(allocation.deciderTimeInNanos(), greaterThan(0l));
+
+        // a new allocation starts with an empty cache
+        allocation = new RoutingAllocation(deciders, routingNodes, clusterState.nodes(), null);
+        ShardRouting shard = routingNodes.unassigned().iterator().next();
+        deciders.canAllocate(shard, routingNodes.node("node1"), allocation);
+        assertThat(nodeDecider.calls, equalTo(2 * 3 + 1));
+        assertThat(allocation.cachedDecisionHits(), equalTo(0));
+    }
+
+    private static class CountingDecider extends AllocationDecider {
+
+        private final DecisionScope scope;
+        int calls;
+
+        CountingDecider(DecisionScope scope) {
+            super(ImmutableSettings.EMPTY);
+            this.scope = scope;
+        }
+
+        @Override
+        public DecisionScope decisionScope() {
+            return scope;
+        }
+
+        @Override
+        public Decision canAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+            calls++;
+            return Decision.YES;
+        }
+
+        @Override
+        public Decision canRemain(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+            calls++;
+            return Decision.YES;
+        }
+    }
+}
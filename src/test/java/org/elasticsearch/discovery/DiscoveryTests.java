@@ -19,15 +19,18 @@
 
 package org.elasticsearch.discovery;
 
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.discovery.zen.ZenDiscovery;
 import org.elasticsearch.test.ElasticsearchIntegrationTest;
 import org.elasticsearch.test.ElasticsearchIntegrationTest.ClusterScope;
 import org.elasticsearch.test.ElasticsearchIntegrationTest.Scope;
 import org.junit.Test;
 
-import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.*;
 
 @ClusterScope(scope=Scope.SUITE, numNodes=2)
 public class DiscoveryTests extends ElasticsearchIntegrationTest {
@@ -46,4 +49,21 @@ public class DiscoveryTests extends ElasticsearchIntegrationTest {
         state = client().admin().cluster().prepareState().execute().actionGet().getState();
         assertThat(state.nodes().size(), equalTo(2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDiscoveryStats() {
+        NodesStatsResponse response = client().admin().cluster().prepareNodesStats().clear().setDiscovery(true).get();
+        assertThat(response.getNodes().length, equalTo(2));
+        for (NodeStats nodeStats : response.getNodes()) {
+            DiscoveryStats stats = nodeStats.getDiscovery();
+            assertThat(stats, notNullValue());
+            assertThat(stats.getPingLatencyCounts().length, equalTo(DiscoveryStats.PING_LATENCY_BUCKETS_MILLIS.length + 1));
+            if (cluster().getInstance(Discovery.class, nodeStats.getNode().name()) instanceof ZenDiscovery) {
+                // the master monitors the other node, and the other node the master
+                assertThat(stats.getSuspicions().length, equalTo(1));
+                assertThat(stats.getSuspicions()[0].getNodeId(), not(equalTo(nodeStats.getNode().id())));
+                assertThat(stats.getSuspicions()[0].getPhi(), greaterThanOrEqualTo(0.0));
+            }
+        }
+    }
+}
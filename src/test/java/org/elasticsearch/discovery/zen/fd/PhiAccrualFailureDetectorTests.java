@@ -0,0 +1,88 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery.zen.fd;
+
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class PhiAccrualFailureDetectorTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testPhiGrowsWithoutHeartbeats() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(100, 1000, 100, 0, 0);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+        assertThat(detector.meanIntervalMillis(), closeTo(1000, 100));
+        assertThat(detector.phi(now), lessThan(0.1));
+        assertThat(detector.phi(now + 1000), lessThan(1.0));
+
+        double previous = detector.phi(now);
+        for (long elapsed = 100; elapsed <= 5000; elapsed += 100) {
+            double phi = detector.phi(now + elapsed);
+            assertThat(phi, greaterThanOrEqualTo(previous));
+            previous = phi;
+        }
+        assertThat(detector.phi(now + 5000), greaterThan(8.0));
+        assertThat(detector.millisSinceLastHeartbeat(now + 5000), equalTo(5000l));
+
+        detector.heartbeat(now + 5000);
+        assertThat(detector.phi(now + 5000), lessThan(0.1));
+    }
+
+    @Test
+    public void testJitteryHeartbeatsAreGivenMoreTime() {
+        PhiAccrualFailureDetector regular = new PhiAccrualFailureDetector(100, 1000, 10, 0, 0);
+        PhiAccrualFailureDetector jittery = new PhiAccrualFailureDetector(100, 1000, 10, 0, 0);
+        long regularNow = 0;
+        long jitteryNow = 0;
+        for (int i = 0; i < 100; i++) {
+            regularNow += 1000;
+            regular.heartbeat(regularNow);
+            jitteryNow += i % 2 == 0 ? 500 : 1500;
+            jittery.heartbeat(jitteryNow);
+        }
+        assertThat(jittery.phi(jitteryNow + 2000), lessThan(regular.phi(regularNow + 2000)));
+    }
+
+    @Test
+    public void testAcceptablePause() {
+        PhiAccrualFailureDetector strict = new PhiAccrualFailureDetector(100, 1000, 100, 0, 0);
+        PhiAccrualFailureDetector lenient = new PhiAccrualFailureDetector(100, 1000, 100, 3000, 0);
+        assertThat(strict.phi(3000), greaterThan(8.0));
+        assertThat(lenient.phi(3000), lessThan(1.0));
+    }
+
+    @Test
+    public void testWindowOnlyKeepsLatestIntervals() {
+        int windowSize = randomIntBetween(2, 50);
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(windowSize, 1000, 100, 0, 0);
+        long now = 0;
+        for (int i = 0; i < 10 * windowSize; i++) {
+            now += 100;
+            detector.heartbeat(now);
+        }
+        assertThat(detector.meanIntervalMillis(), closeTo(100, 0.0001));
+    }
+}
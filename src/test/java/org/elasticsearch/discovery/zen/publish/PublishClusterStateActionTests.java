@@ -0,0 +1,342 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery.zen.publish;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.CachedStreamInput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.transport.LocalTransportAddress;
+import org.elasticsearch.discovery.Discovery;
+import org.elasticsearch.discovery.DiscoverySettings;
+import org.elasticsearch.discovery.zen.DiscoveryNodesProvider;
+import org.elasticsearch.node.service.NodeService;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+import org.elasticsearch.transport.local.LocalTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+
+public class PublishClusterStateActionTests extends ElasticsearchTestCase {
+
+    private final DiscoveryNode master = newNode("master");
+    private final DiscoveryNode nodeA = newNode("node_a");
+    private final DiscoveryNode nodeB = newNode("node_b");
+
+    private ThreadPool threadPool;
+    private CapturingTransportService transportService;
+    private PublishClusterStateAction action;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new ThreadPool();
+        transportService = new CapturingTransportService(threadPool);
+        final DiscoveryNodes localNodes = DiscoveryNodes.builder().put(master).localNodeId(master.id()).masterNodeId(master.id()).build();
+        DiscoveryNodesProvider nodesProvider = new DiscoveryNodesProvider() {
+            @Override
+            public DiscoveryNodes nodes() {
+                return localNodes;
+            }
+
+            @Override
+            public NodeService nodeService() {
+                return null;
+            }
+        };
+        action = new PublishClusterStateAction(ImmutableSettings.EMPTY, transportService, nodesProvider, null,
+                new DiscoverySettings(ImmutableSettings.EMPTY, new NodeSettingsService(ImmutableSettings.EMPTY)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void testQueuedStateIsReplacedByNewerState() throws Exception {
+        RecordingAckListener[] listeners = new RecordingAckListener[4];
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = new RecordingAckListener();
+            action.publish(clusterState(i + 1, nodeA), listeners[i]);
+        }
+        // only the first state is sent, the others replaced each other in the queue
+        assertThat(transportService.sent(nodeA).size(), equalTo(1));
+        assertThat(transportService.inFlight(nodeA), equalTo(1));
+        assertThat(transportService.version(nodeA, 0), equalTo(1l));
+
+        transportService.respond(nodeA, 0);
+        assertThat(listeners[0].acked, contains(nodeA));
+        assertThat(listeners[1].acked, empty());
+        assertThat(transportService.sent(nodeA).size(), equalTo(2));
+        assertThat(transportService.version(nodeA, 1), equalTo(4l));
+
+        // the listeners of the replaced states are notified with the listener of the state that replaced them
+        transportService.respond(nodeA, 1);
+        for (RecordingAckListener listener : listeners) {
+            assertThat(listener.acked, contains(nodeA));
+            assertThat(listener.failures.size(), equalTo(0));
+        }
+        assertThat(transportService.sent(nodeA).size(), equalTo(2));
+        assertThat(transportService.inFlight(nodeA), equalTo(0));
+    }
+
+    @Test
+    public void testFailureIsReportedToReplacedStates() throws Exception {
+        RecordingAckListener first = new RecordingAckListener();
+        RecordingAckListener replaced = new RecordingAckListener();
+        RecordingAckListener latest = new RecordingAckListener();
+        action.publish(clusterState(1, nodeA), first);
+        action.publish(clusterState(2, nodeA), replaced);
+        action.publish(clusterState(3, nodeA), latest);
+
+        transportService.respond(nodeA, 0);
+        transportService.fail(nodeA, 1);
+        assertThat(first.acked, contains(nodeA));
+        assertThat(replaced.failures.get(nodeA), instanceOf(TransportException.class));
+        assertThat(latest.failures.get(nodeA), instanceOf(TransportException.class));
+        assertThat(transportService.inFlight(nodeA), equalTo(0));
+
+        // the queue keeps working after a failure
+        RecordingAckListener next = new RecordingAckListener();
+        action.publish(clusterState(4, nodeA), next);
+        assertThat(transportService.version(nodeA, 2), equalTo(4l));
+        transportService.respond(nodeA, 2);
+        assertThat(next.acked, contains(nodeA));
+    }
+
+    @Test
+    public void testAtMostOneInFlightSendPerNode() throws Exception {
+        int numStates = randomIntBetween(2, 50);
+        int maxInFlight = 0;
+        List<RecordingAckListener> listeners = Lists.newArrayList();
+        for (int i = 0; i < numStates; i++) {
+            RecordingAckListener listener = new RecordingAckListener();
+            listeners.add(listener);
+            action.publish(clusterState(i + 1, nodeA, nodeB), listener);
+            if (randomBoolean()) {
+                transportService.respondToAll(nodeA);
+            }
+            if (randomBoolean()) {
+                transportService.respondToAll(nodeB);
+            }
+            maxInFlight = Math.max(maxInFlight, Math.max(transportService.inFlight(nodeA), transportService.inFlight(nodeB)));
+        }
+        while (transportService.inFlight(nodeA) > 0 || transportService.inFlight(nodeB) > 0) {
+            transportService.respondToAll(nodeA);
+            transportService.respondToAll(nodeB);
+        }
+        assertThat(maxInFlight, equalTo(1));
+        // the latest state is always delivered, and each state is acknowledged exactly once by each node
+        assertThat(transportService.version(nodeA, transportService.sent(nodeA).size() - 1), equalTo((long) numStates));
+        assertThat(transportService.version(nodeB, transportService.sent(nodeB).size() - 1), equalTo((long) numStates));
+        for (RecordingAckListener listener : listeners) {
+            assertThat(listener.acked, containsInAnyOrder(nodeA, nodeB));
+        }
+    }
+
+    @Test
+    public void testQueuedStatesFailWhenNodeLeaves() throws Exception {
+        RecordingAckListener first = new RecordingAckListener();
+        RecordingAckListener queued = new RecordingAckListener();
+        action.publish(clusterState(1, nodeA, nodeB), first);
+        action.publish(clusterState(2, nodeA, nodeB), queued);
+
+        // node b left the cluster, the state queued for it is dropped
+        RecordingAckListener afterLeave = new RecordingAckListener();
+        action.publish(clusterState(3, nodeA), afterLeave);
+        assertThat(queued.failures.get(nodeB), instanceOf(NodeNotConnectedException.class));
+        assertThat(transportService.sent(nodeB).size(), equalTo(1));
+
+        transportService.respondToAll(nodeA);
+        transportService.respondToAll(nodeA);
+        assertThat(queued.acked, contains(nodeA));
+        assertThat(afterLeave.acked, contains(nodeA));
+        assertThat(afterLeave.failures.size(), equalTo(0));
+    }
+
+    @Test
+    public void testQueuedStatesFailOnClose() throws Exception {
+        RecordingAckListener first = new RecordingAckListener();
+        RecordingAckListener queued = new RecordingAckListener();
+        action.publish(clusterState(1, nodeA), first);
+        action.publish(clusterState(2, nodeA), queued);
+        action.close();
+        assertThat(queued.failures.get(nodeA), instanceOf(NodeNotConnectedException.class));
+
+        // the state that was already sent still completes
+        transportService.respondToAll(nodeA);
+        assertThat(first.acked, contains(nodeA));
+        assertThat(transportService.sent(nodeA).size(), equalTo(1));
+    }
+
+    @Test
+    public void testNoQueuedStateIsDeliveredAfterSteppingDown() throws Exception {
+        RecordingAckListener first = new RecordingAckListener();
+        RecordingAckListener queued = new RecordingAckListener();
+        action.publish(clusterState(1, nodeA, nodeB), first);
+        action.publish(clusterState(2, nodeA, nodeB), queued);
+        action.clearPublishQueues("no longer master");
+        assertThat(queued.failures.get(nodeA), instanceOf(NodeNotConnectedException.class));
+        assertThat(queued.failures.get(nodeB), instanceOf(NodeNotConnectedException.class));
+
+        // completing the sends that were in flight doesn't send the queued state anymore
+        transportService.respondToAll(nodeA);
+        transportService.respondToAll(nodeB);
+        assertThat(first.acked, containsInAnyOrder(nodeA, nodeB));
+        assertThat(transportService.sent(nodeA).size(), equalTo(1));
+        assertThat(transportService.sent(nodeB).size(), equalTo(1));
+        assertThat(queued.acked, empty());
+
+        // once master again, new states are sent as usual
+        action.publish(clusterState(3, nodeA, nodeB), new RecordingAckListener());
+        assertThat(transportService.sent(nodeA).size(), equalTo(2));
+        assertThat(transportService.version(nodeA, 1), equalTo(3l));
+    }
+
+    private static DiscoveryNode newNode(String id) {
+        return new DiscoveryNode(id, id, new LocalTransportAddress(id), ImmutableMap.<String, String>of(), Version.CURRENT);
+    }
+
+    private ClusterState clusterState(long version, DiscoveryNode... nodes) {
+        DiscoveryNodes.Builder builder = DiscoveryNodes.builder().put(master).localNodeId(master.id()).masterNodeId(master.id());
+        for (DiscoveryNode node : nodes) {
+            builder.put(node);
+        }
+        return ClusterState.builder().nodes(builder).version(version).build();
+    }
+
+    private static class RecordingAckListener implements Discovery.AckListener {
+
+        final List<DiscoveryNode> acked = Lists.newArrayList();
+        final Map<DiscoveryNode, Throwable> failures = Maps.newHashMap();
+
+        @Override
+        public synchronized void onNodeAck(DiscoveryNode node, Throwable t) {
+            if (t == null) {
+                acked.add(node);
+            } else {
+                failures.put(node, t);
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+        }
+    }
+
+    /**
+     * A transport service that doesn't send the requests but keeps them, along with their handlers, so that the
+     * tests decide when the nodes respond.
+     */
+    private static class CapturingTransportService extends TransportService {
+
+        private final Map<DiscoveryNode, List<SentRequest>> sent = Maps.newHashMap();
+
+        CapturingTransportService(ThreadPool threadPool) {
+            super(new LocalTransport(ImmutableSettings.EMPTY, threadPool, Version.CURRENT), threadPool);
+        }
+
+        @Override
+        public <T extends TransportResponse> void sendRequest(DiscoveryNode node, String action, TransportRequest request,
+                                                              TransportRequestOptions options, TransportResponseHandler<T> handler) {
+            sent(node).add(new SentRequest((BytesTransportRequest) request, handler));
+        }
+
+        synchronized List<SentRequest> sent(DiscoveryNode node) {
+            List<SentRequest> requests = sent.get(node);
+            if (requests == null) {
+                requests = Lists.newArrayList();
+                sent.put(node, requests);
+            }
+            return requests;
+        }
+
+        int inFlight(DiscoveryNode node) {
+            int inFlight = 0;
+            for (SentRequest request : sent(node)) {
+                if (!request.completed) {
+                    inFlight++;
+                }
+            }
+            return inFlight;
+        }
+
+        long version(DiscoveryNode node, int index) throws IOException {
+            BytesTransportRequest request = sent(node).get(index).request;
+            StreamInput in = CachedStreamInput.cachedHandlesCompressed(CompressorFactory.compressor(request.bytes()), request.bytes().streamInput());
+            in.setVersion(request.version());
+            return ClusterState.Builder.readFrom(in, node).version();
+        }
+
+        @SuppressWarnings("unchecked")
+        void respond(DiscoveryNode node, int index) {
+            SentRequest request = sent(node).get(index);
+            assertThat(request.completed, equalTo(false));
+            request.completed = true;
+            ((TransportResponseHandler<TransportResponse.Empty>) request.handler).handleResponse(TransportResponse.Empty.INSTANCE);
+        }
+
+        void fail(DiscoveryNode node, int index) {
+            SentRequest request = sent(node).get(index);
+            assertThat(request.completed, equalTo(false));
+            request.completed = true;
+            request.handler.handleException(new TransportException("simulated failure"));
+        }
+
+        void respondToAll(DiscoveryNode node) {
+            List<SentRequest> requests = sent(node);
+            for (int i = 0; i < requests.size(); i++) {
+                if (!requests.get(i).completed) {
+                    respond(node, i);
+                }
+            }
+        }
+    }
+
+    private static class SentRequest {
+
+        final BytesTransportRequest request;
+        final TransportResponseHandler handler;
+        boolean completed;
+
+        SentRequest(BytesTransportRequest request, TransportResponseHandler handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+}
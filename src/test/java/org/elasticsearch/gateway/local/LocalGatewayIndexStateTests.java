@@ -33,17 +33,21 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.gateway.Gateway;
+import org.elasticsearch.gateway.local.state.meta.MetaDataStateFormat;
+import org.elasticsearch.index.Index;
 import org.elasticsearch.test.*;
 import org.elasticsearch.test.ElasticsearchIntegrationTest.ClusterScope;
 import org.elasticsearch.test.ElasticsearchIntegrationTest.Scope;
 import org.elasticsearch.test.TestCluster.RestartCallback;
 import org.junit.Test;
 
+import java.io.File;
+
 import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.*;
 
 /**
  *
@@ -532,4 +536,57 @@ public class LocalGatewayIndexStateTests extends ElasticsearchIntegrationTest {
         assertThat(client().prepareGet("test", "type1", "1").execute().actionGet().isExists(), equalTo(false));
         assertThat(client().prepareGet("test", "type1", "2").execute().actionGet().isExists(), equalTo(true));
     }
+
+    @Test
+    public void testOnlyChangedIndicesAreWritten() throws Exception {
+        logger.info("--> starting 1 node");
+        String node = cluster().startNode(settingsBuilder().put("gateway.type", "local").put("index.number_of_shards", 1).put("index.number_of_replicas", 0).build());
+
+        logger.info("--> creating test1 and test2");
+        client().admin().indices().prepareCreate("test1").execute().actionGet();
+        client().admin().indices().prepareCreate("test2").execute().actionGet();
+        ensureGreen();
+
+        NodeEnvironment nodeEnv = cluster().getInstance(NodeEnvironment.class, node);
+        File[] test1States = stateLocations(nodeEnv.indexLocations(new Index("test1")));
+        File[] test2States = stateLocations(nodeEnv.indexLocations(new Index("test2")));
+        File[] test2Files = MetaDataStateFormat.listStateFiles("state-", test2States);
+        assertThat(test2Files.length, equalTo(nodeEnv.nodeDataLocations().length));
+        long test2LastModified = test2Files[0].lastModified();
+        long test1Version = client().admin().cluster().prepareState().get().getState().metaData().index("test1").version();
+
+        logger.info("--> updating the mapping of test1");
+        client().admin().indices().preparePutMapping("test1").setType("type1")
+                .setSource(XContentFactory.jsonBuilder().startObject().startObject("type1").startObject("properties")
+                        .startObject("field1").field("type", "string").endObject()
+                        .endObject().endObject().endObject()).get();
+        client().admin().cluster().prepareHealth().setWaitForEvents(Priority.LANGUID).get();
+
+        long newTest1Version = client().admin().cluster().prepareState().get().getState().metaData().index("test1").version();
+        assertThat(newTest1Version, greaterThan(test1Version));
+        File[] test1Files = MetaDataStateFormat.listStateFiles("state-", test1States);
+        // the previous version is gone once the manifest points to the new one
+        assertThat(test1Files.length, equalTo(nodeEnv.nodeDataLocations().length));
+        assertThat(test1Files[0].getName(), equalTo("state-" + newTest1Version));
+        test2Files = MetaDataStateFormat.listStateFiles("state-", test2States);
+        assertThat(test2Files.length, equalTo(nodeEnv.nodeDataLocations().length));
+        assertThat(test2Files[0].lastModified(), equalTo(test2LastModified));
+        assertThat(MetaDataStateFormat.listStateFiles("manifest-", stateLocations(nodeEnv.nodeDataLocations())).length, equalTo(nodeEnv.nodeDataLocations().length));
+
+        logger.info("--> restarting nodes...");
+        cluster().fullRestart();
+        ensureGreen();
+
+        IndexMetaData test1 = client().admin().cluster().prepareState().get().getState().metaData().index("test1");
+        assertThat(test1.mapping("type1"), notNullValue());
+        assertThat(client().admin().cluster().prepareState().get().getState().metaData().hasIndex("test2"), equalTo(true));
+    }
+
+    private static File[] stateLocations(File[] locations) {
+        File[] stateLocations = new File[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            stateLocations[i] = new File(locations[i], "_state");
+        }
+        return stateLocations;
+    }
 }
@@ -425,4 +425,27 @@ public class SimpleRecoveryLocalGatewayTests extends ElasticsearchIntegrationTes
         assertHitCount(client().prepareCount("test").setQuery(QueryBuilders.matchAllQuery()).execute().actionGet(), 1);
     }
 
+    @Test
+    @Slow
+    public void testFullRestartWithManyShards() throws Exception {
+        cluster().startNode(settingsBuilder().put("index.number_of_shards", 3).put("index.number_of_replicas", 1).build());
+        cluster().startNode(settingsBuilder().put("index.number_of_shards", 3).put("index.number_of_replicas", 1).build());
+
+        int numIndices = randomIntBetween(3, 8);
+        for (int i = 0; i < numIndices; i++) {
+            client().admin().indices().prepareCreate("test" + i).get();
+            client().prepareIndex("test" + i, "type1", "1").setSource("field", "value" + i).get();
+        }
+        ensureGreen();
+        client().admin().indices().prepareFlush().get();
+
+        // the state of all the primaries is fetched from both nodes with a single request each
+        cluster().fullRestart();
+        ensureGreen();
+
+        client().admin().indices().prepareRefresh().get();
+        for (int i = 0; i < numIndices; i++) {
+            assertHitCount(client().prepareCount("test" + i).setQuery(matchAllQuery()).get(), 1);
+        }
+    }
 }
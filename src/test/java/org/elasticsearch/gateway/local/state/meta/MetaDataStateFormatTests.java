@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.gateway.local.state.meta;
+
+import com.google.common.base.Charsets;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.*;
+
+public class MetaDataStateFormatTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        File[] locations = new File[]{new File(newTempDir(), "_state"), new File(newTempDir(), "_state")};
+        String content = randomUnicodeOfLengthBetween(1, 1000);
+        MetaDataStateFormat.write(new BytesArray(content), "state-", 5, locations);
+
+        for (File location : locations) {
+            File stateFile = new File(location, "state-5");
+            assertThat(stateFile.exists(), equalTo(true));
+            assertThat(new File(location, "state-5" + MetaDataStateFormat.TMP_SUFFIX).exists(), equalTo(false));
+            assertThat(new String(MetaDataStateFormat.read(stateFile), Charsets.UTF_8), equalTo(content));
+        }
+    }
+
+    @Test
+    public void testCorruptionIsDetected() throws IOException {
+        File location = new File(newTempDir(), "_state");
+        MetaDataStateFormat.write(new BytesArray(randomUnicodeOfLengthBetween(1, 1000)), "state-", 1, new File[]{location});
+        File stateFile = new File(location, "state-1");
+
+        RandomAccessFile raf = new RandomAccessFile(stateFile, "rw");
+        try {
+            long pos = 12 + randomInt((int) raf.length() - 21);
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+        try {
+            MetaDataStateFormat.read(stateFile);
+            fail("expected a checksum failure");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("checksum failed"));
+        }
+
+        // truncated
+        raf = new RandomAccessFile(stateFile, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        } finally {
+            raf.close();
+        }
+        try {
+            MetaDataStateFormat.read(stateFile);
+            fail("expected a truncated file to fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadWithoutHeader() throws IOException {
+        File location = newTempDir();
+        File stateFile = new File(location, "state-3");
+        FileOutputStream fos = new FileOutputStream(stateFile);
+        try {
+            fos.write("{\"test\":1}".getBytes(Charsets.UTF_8));
+        } finally {
+            fos.close();
+        }
+        assertThat(new String(MetaDataStateFormat.read(stateFile), Charsets.UTF_8), equalTo("{\"test\":1}"));
+
+        assertThat(new File(location, "empty-1").createNewFile(), equalTo(true));
+        assertThat(MetaDataStateFormat.read(new File(location, "empty-1")), nullValue());
+    }
+
+    @Test
+    public void testListAndDeleteGenerations() throws IOException {
+        File[] locations = new File[]{newTempDir(), newTempDir()};
+        MetaDataStateFormat.write(new BytesArray("a"), "state-", 2, locations);
+        MetaDataStateFormat.write(new BytesArray("b"), "state-", 10, new File[]{locations[1]});
+        MetaDataStateFormat.write(new BytesArray("c"), "global-", 11, locations);
+        // a write that never completed
+        assertThat(new File(locations[0], "state-12" + MetaDataStateFormat.TMP_SUFFIX).createNewFile(), equalTo(true));
+
+        File[] stateFiles = MetaDataStateFormat.listStateFiles("state-", locations);
+        assertThat(stateFiles.length, equalTo(3));
+        assertThat(stateFiles[0].getName(), equalTo("state-10"));
+        assertThat(stateFiles[1].getName(), equalTo("state-2"));
+        assertThat(stateFiles[2].getName(), equalTo("state-2"));
+
+        MetaDataStateFormat.deleteOtherGenerations("state-", 10, locations);
+        assertThat(MetaDataStateFormat.listStateFiles("state-", locations).length, equalTo(1));
+        assertThat(new File(locations[0], "state-12" + MetaDataStateFormat.TMP_SUFFIX).exists(), equalTo(false));
+        assertThat(MetaDataStateFormat.listStateFiles("global-", locations).length, equalTo(2));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import com.google.common.base.Charsets;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.elasticsearch.test.ElasticsearchIntegrationTest.ClusterScope;
+import org.elasticsearch.test.ElasticsearchIntegrationTest.Scope;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Sends pipelined requests over a single connection and checks the responses come back in request order.
+ */
+@ClusterScope(scope = Scope.SUITE, numNodes = 1)
+public class NettyHttpPipeliningTests extends ElasticsearchIntegrationTest {
+
+    private static final String[] PATHS = new String[]{"/", "/_nodes", "/_cluster/health", "/_cluster/state", "/test/_search", "/_stats"};
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return ImmutableSettings.settingsBuilder()
+                .put("force.http.enabled", true)
+                .put("http.pipelining", true)
+                .put("http.pipelining.max_in_flight", randomIntBetween(1, 10))
+                .put("http.streaming.enabled", randomBoolean())
+                .put(super.nodeSettings(nodeOrdinal))
+                .build();
+    }
+
+    @Test
+    public void testResponsesInRequestOrder() throws Exception {
+        createIndex("test");
+        ensureYellow();
+
+        HttpServerTransport httpServerTransport = cluster().getInstance(HttpServerTransport.class);
+        InetSocketAddress address = ((InetSocketTransportAddress) httpServerTransport.boundAddress().publishAddress()).address();
+        Socket socket = new Socket(address.getAddress(), address.getPort());
+        try {
+            int numberOfRequests = randomIntBetween(10, 50);
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < numberOfRequests; i++) {
+                requests.append("GET ").append(PATHS[randomInt(PATHS.length - 1)]).append(" HTTP/1.1\r\n")
+                        .append("Host: localhost\r\n")
+                        .append("X-Opaque-Id: ").append(i).append("\r\n")
+                        .append("\r\n");
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(requests.toString().getBytes(Charsets.UTF_8));
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            for (int i = 0; i < numberOfRequests; i++) {
+                Map<String, String> headers = readResponse(in);
+                assertThat(headers.get("x-opaque-id"), equalTo(Integer.toString(i)));
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Reads a response and returns its headers with lower cased names.
+     */
+    private static Map<String, String> readResponse(InputStream in) throws IOException {
+        String status = readLine(in);
+        assertThat(status, notNullValue());
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = readLine(in)).length() > 0) {
+            int index = line.indexOf(':');
+            headers.put(line.substring(0, index).trim().toLowerCase(Locale.ROOT), line.substring(index + 1).trim());
+        }
+        if (headers.containsKey("content-length")) {
+            skipFully(in, Integer.parseInt(headers.get("content-length")));
+        } else {
+            assertThat(headers.get("transfer-encoding"), equalTo("chunked"));
+            int size;
+            while ((size = Integer.parseInt(readLine(in), 16)) > 0) {
+                skipFully(in, size);
+                readLine(in);
+            }
+            readLine(in);
+        }
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void skipFully(InputStream in, int length) throws IOException {
+        while (length > 0) {
+            if (in.read() == -1) {
+                throw new EOFException();
+            }
+            length--;
+        }
+    }
+}
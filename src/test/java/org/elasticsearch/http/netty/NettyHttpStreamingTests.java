@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import com.google.common.base.Charsets;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.helper.HttpClient;
+import org.elasticsearch.rest.helper.HttpClientResponse;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.elasticsearch.test.ElasticsearchIntegrationTest.ClusterScope;
+import org.elasticsearch.test.ElasticsearchIntegrationTest.Scope;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests search and scroll responses written with chunked transfer encoding.
+ */
+@ClusterScope(scope = Scope.SUITE, numNodes = 1)
+public class NettyHttpStreamingTests extends ElasticsearchIntegrationTest {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return ImmutableSettings.settingsBuilder()
+                .put("force.http.enabled", true)
+                .put("http.streaming.enabled", true)
+                .put("http.streaming.chunk_size", randomIntBetween(1, 1024) + "b")
+                .put(super.nodeSettings(nodeOrdinal))
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamedSearchAndScroll() throws Exception {
+        createIndex("test");
+        int numDocs = randomIntBetween(20, 100);
+        IndexRequestBuilder[] builders = new IndexRequestBuilder[numDocs];
+        for (int i = 0; i < numDocs; i++) {
+            builders[i] = client().prepareIndex("test", "type", Integer.toString(i))
+                    .setSource(jsonBuilder().startObject().field("field", randomRealisticUnicodeOfLengthBetween(10, 500)).endObject());
+        }
+        indexRandom(true, builders);
+
+        HttpClientResponse response = httpClient().request("/test/_search?size=" + numDocs + "&scroll=1m" + (randomBoolean() ? "&pretty" : ""));
+        assertThat(response.errorCode(), equalTo(RestStatus.OK.getStatus()));
+        assertThat(response.getHeader("Transfer-Encoding"), equalTo("chunked"));
+        assertThat(response.getHeader("Content-Length"), nullValue());
+        Map<String, Object> body = XContentHelper.convertToMap(response.response().getBytes(Charsets.UTF_8), false).v2();
+        Map<String, Object> hits = (Map<String, Object>) body.get("hits");
+        assertThat(((Number) hits.get("total")).intValue(), equalTo(numDocs));
+        assertThat(((List) hits.get("hits")).size(), equalTo(numDocs));
+
+        String scrollId = (String) body.get("_scroll_id");
+        response = httpClient().request("/_search/scroll?scroll=1m&scroll_id=" + scrollId);
+        assertThat(response.errorCode(), equalTo(RestStatus.OK.getStatus()));
+        assertThat(response.getHeader("Transfer-Encoding"), equalTo("chunked"));
+        body = XContentHelper.convertToMap(response.response().getBytes(Charsets.UTF_8), false).v2();
+        hits = (Map<String, Object>) body.get("hits");
+        assertThat(((Number) hits.get("total")).intValue(), equalTo(numDocs));
+        assertThat(((List) hits.get("hits")).size(), equalTo(0));
+        client().prepareClearScroll().addScrollId(scrollId).get();
+
+        // jsonp responses carry the callback around the streamed content
+        response = httpClient().request("/test/_search?callback=cb");
+        assertThat(response.errorCode(), equalTo(RestStatus.OK.getStatus()));
+        assertThat(response.response(), startsWith("cb("));
+        assertThat(response.response(), endsWith(");"));
+
+        // search failures still get a regular error response
+        response = httpClient().request("/test/_search?sort=missing_field");
+        assertThat(response.errorCode(), equalTo(RestStatus.BAD_REQUEST.getStatus()));
+    }
+
+    private HttpClient httpClient() {
+        HttpServerTransport httpServerTransport = cluster().getInstance(HttpServerTransport.class);
+        return new HttpClient(httpServerTransport.boundAddress().publishAddress());
+    }
+}
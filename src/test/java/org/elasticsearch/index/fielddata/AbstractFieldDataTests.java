@@ -27,6 +27,7 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.mapper.*;
 import org.elasticsearch.index.mapper.Mapper.BuilderContext;
+import org.elasticsearch.indices.fielddata.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.fielddata.breaker.DummyCircuitBreakerService;
 import org.elasticsearch.test.ElasticsearchTestCase;
 import org.elasticsearch.test.index.service.StubIndexService;
@@ -37,6 +38,7 @@ import org.junit.Before;
 public abstract class AbstractFieldDataTests extends ElasticsearchTestCase {
 
     protected IndexFieldDataService ifdService;
+    protected CircuitBreakerService breakerService;
     protected IndexWriter writer;
     protected AtomicReaderContext readerContext;
 
@@ -79,7 +81,8 @@ public abstract class AbstractFieldDataTests extends ElasticsearchTestCase {
 
     @Before
     public void setup() throws Exception {
-        ifdService = new IndexFieldDataService(new Index("test"), new DummyCircuitBreakerService());
+        breakerService = new DummyCircuitBreakerService();
+        ifdService = new IndexFieldDataService(new Index("test"), breakerService);
         MapperService mapperService = MapperTestUtils.newMapperService(ifdService.index(), ImmutableSettings.Builder.EMPTY_SETTINGS);
         ifdService.setIndexService(new StubIndexService(mapperService));
         // LogByteSizeMP to preserve doc ID order
@@ -22,6 +22,7 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
@@ -29,12 +30,15 @@ import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
 import org.elasticsearch.common.compress.CompressedString;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.index.fielddata.fieldcomparator.SortMode;
+import org.elasticsearch.index.fielddata.plain.ParentChildGlobalOrdinals;
+import org.elasticsearch.index.fielddata.plain.ParentChildIndexFieldData;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.MapperTestUtils;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.mapper.internal.ParentFieldMapper;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.test.index.service.StubIndexService;
 import org.junit.Before;
 import org.junit.Test;
@@ -184,6 +188,65 @@ public class ParentChildFieldDataTests extends AbstractFieldDataTests {
         assertThat(((FieldDoc) topDocs.scoreDocs[7]).fields[0], nullValue());
     }
 
+    @Test
+    public void testGlobalOrdinals() throws Exception {
+        ParentChildIndexFieldData indexFieldData = getForField(childType);
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        ParentChildGlobalOrdinals globalOrdinals = indexFieldData.loadGlobalOrdinals(reader, parentType, null);
+        assertThat(indexFieldData.loadGlobalOrdinals(reader, parentType, null), sameInstance(globalOrdinals));
+        // parent ids "1" and "2" plus the missing ordinal
+        assertThat(globalOrdinals.getMaxOrd(), equalTo(3l));
+
+        long[] expected = new long[]{1, 1, 1, 2, 2, 1, 0, 0};
+        for (AtomicReaderContext context : reader.leaves()) {
+            ParentChildGlobalOrdinals.Segment segmentOrdinals = globalOrdinals.segment(context);
+            BytesValues.WithOrdinals values = indexFieldData.load(context).getBytesValues(parentType);
+            for (int docId = 0; docId < context.reader().maxDoc(); docId++) {
+                if (values == null) {
+                    // segments without parent ids only have the missing ordinal
+                    assertThat(expected[context.docBase + docId], equalTo(0l));
+                } else {
+                    assertThat(segmentOrdinals.getGlobalOrd(values.ordinals(), docId), equalTo(expected[context.docBase + docId]));
+                }
+            }
+        }
+
+        indexFieldData.clear();
+        assertThat(indexFieldData.loadGlobalOrdinals(reader, parentType, null), not(sameInstance(globalOrdinals)));
+        reader.close();
+    }
+
+    @Test
+    public void testGlobalOrdinalsAccounting() throws Exception {
+        ParentChildIndexFieldData indexFieldData = getForField(childType);
+        ShardFieldData shardFieldData = new ShardFieldData(new ShardId("test", 0), ImmutableSettings.EMPTY, breakerService);
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        for (AtomicReaderContext context : reader.leaves()) {
+            indexFieldData.load(context);
+        }
+
+        long usedBefore = breakerService.getBreaker().getUsed();
+        ParentChildGlobalOrdinals globalOrdinals = indexFieldData.loadGlobalOrdinals(reader, parentType, shardFieldData);
+        long sizeInBytes = globalOrdinals.getMemorySizeInBytes();
+        assertThat(sizeInBytes, greaterThan(0l));
+        assertThat(breakerService.getBreaker().getUsed(), equalTo(usedBefore + sizeInBytes));
+        assertThat(shardFieldData.stats(ParentFieldMapper.NAME).getFields().get(ParentFieldMapper.NAME), equalTo(sizeInBytes));
+
+        // loading the cached global ordinals again doesn't account them twice
+        assertThat(indexFieldData.loadGlobalOrdinals(reader, parentType, shardFieldData), sameInstance(globalOrdinals));
+        assertThat(breakerService.getBreaker().getUsed(), equalTo(usedBefore + sizeInBytes));
+
+        indexFieldData.clear(reader);
+        assertThat(breakerService.getBreaker().getUsed(), equalTo(usedBefore));
+        assertThat(shardFieldData.stats(ParentFieldMapper.NAME).getFields().get(ParentFieldMapper.NAME), equalTo(0l));
+
+        // closing the top level reader releases the global ordinals as well
+        indexFieldData.loadGlobalOrdinals(reader, parentType, shardFieldData);
+        assertThat(shardFieldData.stats(ParentFieldMapper.NAME).getFields().get(ParentFieldMapper.NAME), equalTo(sizeInBytes));
+        reader.close();
+        assertThat(shardFieldData.stats(ParentFieldMapper.NAME).getFields().get(ParentFieldMapper.NAME), equalTo(0l));
+    }
+
     @Override
     protected FieldDataType getFieldDataType() {
         return new FieldDataType("_parent");
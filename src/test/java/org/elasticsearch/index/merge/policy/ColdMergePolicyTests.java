@@ -0,0 +1,95 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.merge.policy;
+
+import com.google.common.base.Predicate;
+import org.elasticsearch.action.admin.indices.segments.IndexShardSegments;
+import org.elasticsearch.action.admin.indices.segments.ShardSegments;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.merge.policy.ColdMergePolicyProvider.ColdMergePolicy;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ColdMergePolicyTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testInactiveShardIsOptimized() throws Exception {
+        assertAcked(prepareCreate("test").setSettings(ImmutableSettings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(MergePolicyModule.MERGE_POLICY_TYPE_KEY, ColdMergePolicyProvider.class.getName())
+                .put("index.merge.policy.inactive_time", "1s")
+                .put("index.refresh_interval", -1)));
+        ensureGreen();
+
+        int numSegments = between(3, 5);
+        for (int i = 0; i < numSegments; i++) {
+            client().prepareIndex("test", "type", Integer.toString(i)).setSource("field", "value" + i).get();
+            refresh();
+        }
+        assertThat(segmentCount(), equalTo(numSegments));
+
+        assertThat(awaitBusy(new Predicate<Object>() {
+            @Override
+            public boolean apply(Object input) {
+                refresh();
+                return segmentCount() == 1;
+            }
+        }), equalTo(true));
+        assertThat(client().prepareCount("test").get().getCount(), equalTo((long) numSegments));
+    }
+
+    @Test
+    public void testMergingStopsOnceCold() throws Exception {
+        ColdMergePolicy mergePolicy = new ColdMergePolicy(new TieredMergePolicyProvider.CustomTieredMergePolicyProvider(null));
+        long start = System.currentTimeMillis();
+        assertThat(mergePolicy.startForceMergeIfInactive(start, 1000000), equalTo(false));
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 1000000, 1000000), equalTo(true));
+        assertThat(mergePolicy.state(), equalTo(ColdMergePolicy.State.FORCE_MERGING));
+        // only force merged once
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 2000000, 1000000), equalTo(false));
+
+        mergePolicy.onForceMergeDone(start + 2000000, true);
+        assertThat(mergePolicy.state(), equalTo(ColdMergePolicy.State.COLD));
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 3000000, 1000000), equalTo(false));
+
+        mergePolicy = new ColdMergePolicy(new TieredMergePolicyProvider.CustomTieredMergePolicyProvider(null));
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 1000000, 1000000), equalTo(true));
+        // a failed force merge is retried after another inactive period
+        mergePolicy.onForceMergeDone(start + 2000000, false);
+        assertThat(mergePolicy.state(), equalTo(ColdMergePolicy.State.HOT));
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 2500000, 1000000), equalTo(false));
+        assertThat(mergePolicy.startForceMergeIfInactive(start + 3000000, 1000000), equalTo(true));
+    }
+
+    private int segmentCount() {
+        int count = 0;
+        for (IndexShardSegments shardSegments : client().admin().indices().prepareSegments("test").get().getIndices().get("test")) {
+            for (ShardSegments segments : shardSegments.getShards()) {
+                count += segments.getSegments().size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.merge.scheduler;
+
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class MergeRateLimiterTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testRateFollowsBacklog() {
+        MergeRateLimiter rateLimiter = new MergeRateLimiter(20, 5, 100);
+        assertThat(rateLimiter.getMbPerSec(), equalTo(20.0));
+
+        assertThat(rateLimiter.onMergeStart(true), closeTo(20 * MergeRateLimiter.INCREASE_FACTOR, 0.0001));
+        assertThat(rateLimiter.getMbPerSec(), closeTo(20 * MergeRateLimiter.INCREASE_FACTOR, 0.0001));
+        assertThat(rateLimiter.onMergeStart(false), closeTo(20 * MergeRateLimiter.INCREASE_FACTOR * MergeRateLimiter.DECREASE_FACTOR, 0.0001));
+
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.onMergeStart(true);
+        }
+        assertThat(rateLimiter.getMbPerSec(), equalTo(100.0));
+
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.onMergeStart(false);
+        }
+        assertThat(rateLimiter.getMbPerSec(), equalTo(5.0));
+    }
+
+    @Test
+    public void testInitialRateIsBounded() {
+        assertThat(new MergeRateLimiter(1, 5, 100).getMbPerSec(), equalTo(5.0));
+        assertThat(new MergeRateLimiter(1000, 5, 100).getMbPerSec(), equalTo(100.0));
+    }
+
+    @Test
+    public void testThrottledTime() {
+        MergeRateLimiter rateLimiter = new MergeRateLimiter(5, 5, 5);
+        long throttled = 0;
+        for (int i = 0; i < 5; i++) {
+            // 100kb at 5mb/s makes the writes wait once the first ones went through
+            throttled += rateLimiter.pause(100 * 1024);
+        }
+        assertThat(throttled, greaterThan(0l));
+        assertThat(rateLimiter.throttledTimeInNanos(), equalTo(throttled));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.queries.TermFilter;
+import org.apache.lucene.search.*;
+import org.elasticsearch.common.lucene.HashedBytesRef;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+
+public class QueryTermsIndexTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testExtractQueryTerms() {
+        assertThat(QueryTermsExtractor.extractQueryTerms(new TermQuery(new Term("field", "value"))), contains(new Term("field", "value")));
+        assertThat(QueryTermsExtractor.extractQueryTerms(new MatchAllDocsQuery()), nullValue());
+        assertThat(QueryTermsExtractor.extractQueryTerms(NumericRangeQuery.newIntRange("field", 1, 10, true, true)), nullValue());
+
+        PhraseQuery phraseQuery = new PhraseQuery();
+        phraseQuery.add(new Term("field", "quick"));
+        phraseQuery.add(new Term("field", "brownish"));
+        assertThat(QueryTermsExtractor.extractQueryTerms(phraseQuery), contains(new Term("field", "brownish")));
+
+        // only should clauses, one of them has to match
+        BooleanQuery disjunction = new BooleanQuery();
+        disjunction.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.SHOULD);
+        disjunction.add(new TermQuery(new Term("field", "b")), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsExtractor.extractQueryTerms(disjunction), containsInAnyOrder(new Term("field", "a"), new Term("field", "b")));
+
+        // a should clause that can't be extracted makes the whole disjunction unusable
+        disjunction.add(new MatchAllDocsQuery(), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsExtractor.extractQueryTerms(disjunction), nullValue());
+
+        // the longest of the required terms is picked, the optional ones are ignored
+        BooleanQuery conjunction = new BooleanQuery();
+        conjunction.add(new TermQuery(new Term("field", "short")), BooleanClause.Occur.MUST);
+        conjunction.add(new TermQuery(new Term("field", "longer_term")), BooleanClause.Occur.MUST);
+        conjunction.add(new TermQuery(new Term("field", "optional")), BooleanClause.Occur.SHOULD);
+        conjunction.add(new TermQuery(new Term("field", "prohibited")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsExtractor.extractQueryTerms(conjunction), contains(new Term("field", "longer_term")));
+
+        BooleanQuery onlyProhibited = new BooleanQuery();
+        onlyProhibited.add(new TermQuery(new Term("field", "prohibited")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsExtractor.extractQueryTerms(onlyProhibited), nullValue());
+
+        ConstantScoreQuery constantScoreQuery = new ConstantScoreQuery(new TermFilter(new Term("field", "filtered")));
+        assertThat(QueryTermsExtractor.extractQueryTerms(constantScoreQuery), contains(new Term("field", "filtered")));
+
+        FilteredQuery filteredQuery = new FilteredQuery(new MatchAllDocsQuery(), new TermFilter(new Term("field", "filtered")));
+        assertThat(QueryTermsExtractor.extractQueryTerms(filteredQuery), contains(new Term("field", "filtered")));
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        QueryTermsIndex index = new QueryTermsIndex();
+        HashedBytesRef id1 = new HashedBytesRef("1");
+        HashedBytesRef id2 = new HashedBytesRef("2");
+        HashedBytesRef id3 = new HashedBytesRef("3");
+        HashedBytesRef id4 = new HashedBytesRef("4");
+        index.add(id1, new TermQuery(new Term("field1", "brown")));
+        index.add(id2, new TermQuery(new Term("field1", "red")));
+        index.add(id3, new TermQuery(new Term("field2", "brown")));
+        index.add(id4, new MatchAllDocsQuery());
+
+        Set<HashedBytesRef> candidates = index.candidates(reader("field1", "the quick brown fox"));
+        assertThat(candidates, containsInAnyOrder(id1, id4));
+
+        // re-registering a query replaces its terms
+        index.add(id1, new TermQuery(new Term("field1", "red")));
+        candidates = index.candidates(reader("field1", "the quick brown fox"));
+        assertThat(candidates, containsInAnyOrder(id4));
+        candidates = index.candidates(reader("field1", "a red fox"));
+        assertThat(candidates, containsInAnyOrder(id1, id2, id4));
+
+        index.remove(id1);
+        index.remove(id4);
+        candidates = index.candidates(reader("field1", "a red fox"));
+        assertThat(candidates, containsInAnyOrder(id2));
+
+        index.clear();
+        assertThat(index.candidates(reader("field1", "a red fox")), empty());
+    }
+
+    private static IndexReader reader(String field, String text) {
+        MemoryIndex memoryIndex = new MemoryIndex();
+        memoryIndex.addField(field, text, new WhitespaceAnalyzer(Lucene.VERSION));
+        return memoryIndex.createSearcher().getIndexReader();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.geo;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.geo.GeoDistance;
+import org.elasticsearch.common.geo.GeoHashUtils;
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.unit.DistanceUnit;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ */
+public class GeohashCellCoverTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testDistanceCover() throws Exception {
+        final GeoPoint[] points = randomPoints(between(100, 1000));
+        AtomicReader reader = index(points);
+        try {
+            for (int iter = 0; iter < 10; iter++) {
+                double lat = randomDouble() * 120 - 60;
+                double lon = randomDouble() * 300 - 150;
+                double distance = DistanceUnit.KILOMETERS.toMeters(between(10, 2000));
+                GeoDistance geoDistance = randomFrom(new GeoDistance[]{GeoDistance.ARC, GeoDistance.SLOPPY_ARC, GeoDistance.PLANE});
+                final GeoDistance.FixedSourceDistance fixedSourceDistance = geoDistance.fixedSourceDistance(lat, lon, DistanceUnit.DEFAULT);
+
+                FixedBitSet expected = new FixedBitSet(points.length);
+                for (int i = 0; i < points.length; i++) {
+                    if (fixedSourceDistance.calculate(points[i].lat(), points[i].lon()) < distance) {
+                        expected.set(i);
+                    }
+                }
+                GeohashCellCover cover = GeohashCellCover.build(new GeoDistanceFilter.DistanceShape(lat, lon, distance, fixedSourceDistance),
+                        GeoHashUtils.PRECISION, GeohashCellCover.DEFAULT_MAX_CELLS);
+                assertCover(reader, cover, expected, new DistanceCheck(points, fixedSourceDistance, distance));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testPolygonCover() throws Exception {
+        final GeoPoint[] points = randomPoints(between(100, 1000));
+        AtomicReader reader = index(points);
+        try {
+            // a concave polygon
+            GeoPoint[] polygon = new GeoPoint[]{
+                    new GeoPoint(40, -10), new GeoPoint(40, 30), new GeoPoint(0, 30), new GeoPoint(20, 10),
+                    new GeoPoint(-20, -10), new GeoPoint(40, -10)
+            };
+            FixedBitSet expected = new FixedBitSet(points.length);
+            for (int i = 0; i < points.length; i++) {
+                if (GeoPolygonFilter.GeoPolygonDocIdSet.pointInPolygon(polygon, points[i].lat(), points[i].lon())) {
+                    expected.set(i);
+                }
+            }
+            GeohashCellCover cover = GeohashCellCover.build(new GeoPolygonFilter.PolygonShape(polygon),
+                    GeoHashUtils.PRECISION, GeohashCellCover.DEFAULT_MAX_CELLS);
+            assertThat(cover.insideCells(), greaterThan(0));
+            assertThat(cover.boundaryCells(), greaterThan(0));
+            assertCover(reader, cover, expected, new PolygonCheck(points, polygon));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMaxLevel() {
+        GeoDistance.FixedSourceDistance fixedSourceDistance = GeoDistance.ARC.fixedSourceDistance(0, 0, DistanceUnit.DEFAULT);
+        GeohashCellCover cover = GeohashCellCover.build(new GeoDistanceFilter.DistanceShape(0, 0, 100, fixedSourceDistance), 2, GeohashCellCover.DEFAULT_MAX_CELLS);
+        // a 100m circle is much smaller than a level 2 cell, it is only made of boundary cells
+        assertThat(cover.insideCells(), equalTo(0));
+        assertThat(cover.boundaryCells(), greaterThan(0));
+    }
+
+    @Test
+    public void testDistanceCellFarFromCenter() {
+        GeoDistance.FixedSourceDistance fixedSourceDistance = GeoDistance.ARC.fixedSourceDistance(60, 0, DistanceUnit.DEFAULT);
+        // on the 150 meridian, the farthest point from the center is around the -63 parallel, between the corners of the cell
+        double cornersDistance = Math.max(
+                Math.max(fixedSourceDistance.calculate(-85, 148), fixedSourceDistance.calculate(-85, 152)),
+                Math.max(fixedSourceDistance.calculate(-40, 148), fixedSourceDistance.calculate(-40, 152)));
+        double middleDistance = fixedSourceDistance.calculate(-63, 150);
+        assertThat(middleDistance, greaterThan(cornersDistance));
+
+        GeoDistanceFilter.DistanceShape shape = new GeoDistanceFilter.DistanceShape(60, 0, (cornersDistance + middleDistance) / 2, fixedSourceDistance);
+        assertThat(shape.relate(-85, -40, 148, 152), equalTo(GeohashCellCover.Relation.CROSSES));
+    }
+
+    private void assertCover(AtomicReader reader, GeohashCellCover cover, FixedBitSet expected, Bits boundaryCheck) throws Exception {
+        FixedBitSet actual = cover.docs(reader, "geohash", null, boundaryCheck);
+        if (actual == null) {
+            actual = new FixedBitSet(reader.maxDoc());
+        }
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            assertThat("document [" + i + "]", actual.get(i), equalTo(expected.get(i)));
+        }
+    }
+
+    private GeoPoint[] randomPoints(int numPoints) {
+        GeoPoint[] points = new GeoPoint[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            points[i] = new GeoPoint(randomDouble() * 180 - 90, randomDouble() * 360 - 180);
+        }
+        return points;
+    }
+
+    private static AtomicReader index(GeoPoint[] points) throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Lucene.VERSION, new KeywordAnalyzer()));
+        for (GeoPoint point : points) {
+            Document document = new Document();
+            String geohash = GeoHashUtils.encode(point.lat(), point.lon());
+            for (int i = 1; i <= geohash.length(); i++) {
+                document.add(new StringField("geohash", geohash.substring(0, i), Field.Store.NO));
+            }
+            writer.addDocument(document);
+        }
+        writer.forceMerge(1);
+        writer.close();
+        return SlowCompositeReaderWrapper.wrap(DirectoryReader.open(directory));
+    }
+
+    private static class DistanceCheck implements Bits {
+
+        private final GeoPoint[] points;
+        private final GeoDistance.FixedSourceDistance fixedSourceDistance;
+        private final double distance;
+
+        DistanceCheck(GeoPoint[] points, GeoDistance.FixedSourceDistance fixedSourceDistance, double distance) {
+            this.points = points;
+            this.fixedSourceDistance = fixedSourceDistance;
+            this.distance = distance;
+        }
+
+        @Override
+        public boolean get(int index) {
+            return fixedSourceDistance.calculate(points[index].lat(), points[index].lon()) < distance;
+        }
+
+        @Override
+        public int length() {
+            return points.length;
+        }
+    }
+
+    private static class PolygonCheck implements Bits {
+
+        private final GeoPoint[] points;
+        private final GeoPoint[] polygon;
+
+        PolygonCheck(GeoPoint[] points, GeoPoint[] polygon) {
+            this.points = points;
+            this.polygon = polygon;
+        }
+
+        @Override
+        public boolean get(int index) {
+            return GeoPolygonFilter.GeoPolygonDocIdSet.pointInPolygon(polygon, points[index].lat(), points[index].lon());
+        }
+
+        @Override
+        public int length() {
+            return points.length;
+        }
+    }
+}
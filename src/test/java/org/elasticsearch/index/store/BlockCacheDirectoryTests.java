@@ -0,0 +1,162 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.store;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.store.*;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+
+public class BlockCacheDirectoryTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testCachedReads() throws IOException {
+        CounterMetric hits = new CounterMetric();
+        CounterMetric misses = new CounterMetric();
+        BlockCache cache = new BlockCache(1024 * 1024, 1024);
+        BlockCacheDirectory dir = new BlockCacheDirectory(new RAMDirectory(), cache, ImmutableSet.of("tim"), hits, misses);
+        byte[] bytes = write(dir, "_0.tim", 10 * 1024 + 17);
+
+        assertContent(dir, "_0.tim", bytes, IOContext.DEFAULT);
+        // each block is only read from the underlying directory once
+        assertThat(misses.count(), equalTo(11l));
+        assertThat(hits.count(), equalTo(0l));
+
+        // and is counted once per read
+        assertContent(dir, "_0.tim", bytes, IOContext.DEFAULT);
+        assertThat(misses.count(), equalTo(11l));
+        assertThat(hits.count(), equalTo(11l));
+
+        // merges and files with other extensions bypass the cache
+        long hitCount = hits.count();
+        assertContent(dir, "_0.tim", bytes, new IOContext(new MergeInfo(1, bytes.length, false, 1)));
+        write(dir, "_0.fdt", 2048);
+        IndexInput input = dir.openInput("_0.fdt", IOContext.DEFAULT);
+        input.readBytes(new byte[2048], 0, 2048);
+        input.close();
+        assertThat(hits.count(), equalTo(hitCount));
+        assertThat(misses.count(), equalTo(11l));
+
+        // a rewritten file doesn't read the blocks of the previous one
+        dir.deleteFile("_0.tim");
+        bytes = write(dir, "_0.tim", 10 * 1024 + 17);
+        assertContent(dir, "_0.tim", bytes, IOContext.DEFAULT);
+        assertThat(misses.count(), equalTo(22l));
+        dir.close();
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        int blockSize = randomIntBetween(16, 256);
+        CounterMetric hits = new CounterMetric();
+        CounterMetric misses = new CounterMetric();
+        // a few blocks for a lot of files
+        BlockCache cache = new BlockCache(blockSize * randomIntBetween(1, 8), blockSize);
+        BlockCacheDirectory dir = new BlockCacheDirectory(new RAMDirectory(), cache, ImmutableSet.of("doc"), hits, misses);
+        int numFiles = randomIntBetween(2, 10);
+        byte[][] files = new byte[numFiles][];
+        for (int i = 0; i < numFiles; i++) {
+            files[i] = write(dir, "_" + i + ".doc", randomIntBetween(0, blockSize * 20));
+        }
+        for (int iter = 0; iter < 3; iter++) {
+            for (int i = 0; i < numFiles; i++) {
+                assertContent(dir, "_" + i + ".doc", files[i], IOContext.DEFAULT);
+            }
+        }
+
+        IndexInput input = dir.openInput("_0.doc", IOContext.DEFAULT);
+        IndexInput clone = input.clone();
+        for (int i = 0; i < 100 && files[0].length > 0; i++) {
+            int pos = randomInt(files[0].length - 1);
+            clone.seek(pos);
+            assertThat(clone.readByte(), equalTo(files[0][pos]));
+        }
+        clone.close();
+        input.close();
+        dir.close();
+    }
+
+    @Test
+    public void testSeekHeavyReads() throws IOException {
+        CounterMetric hits = new CounterMetric();
+        CounterMetric misses = new CounterMetric();
+        int blockSize = 32 * 1024;
+        BlockCache cache = new BlockCache(blockSize * 16, blockSize);
+        BlockCacheDirectory dir = new BlockCacheDirectory(new RAMDirectory(), cache, ImmutableSet.of("tim"), hits, misses);
+        byte[] bytes = write(dir, "_0.tim", blockSize * 8);
+
+        IndexInput input = dir.openInput("_0.tim", IOContext.DEFAULT);
+        // clones keep the regular buffer size, a seek followed by a small read only fills that buffer
+        assertThat(((BufferedIndexInput) input).getBufferSize(), equalTo(BufferedIndexInput.BUFFER_SIZE));
+        byte[] actual = new byte[16];
+        for (int i = 0; i < 1000; i++) {
+            IndexInput clone = input.clone();
+            assertThat(((BufferedIndexInput) clone).getBufferSize(), equalTo(BufferedIndexInput.BUFFER_SIZE));
+            int pos = randomInt(bytes.length - actual.length);
+            long counted = hits.count() + misses.count();
+            clone.seek(pos);
+            clone.readBytes(actual, 0, actual.length);
+            for (int j = 0; j < actual.length; j++) {
+                assertThat(actual[j], equalTo(bytes[pos + j]));
+            }
+            // a buffer refill touches at most two blocks, each counted once
+            assertThat(hits.count() + misses.count() - counted, allOf(greaterThanOrEqualTo(1l), lessThanOrEqualTo(2l)));
+            clone.close();
+        }
+        input.close();
+        // the file fits in the cache, its blocks are only read once from the underlying directory
+        assertThat(misses.count(), lessThanOrEqualTo(8l));
+        dir.close();
+    }
+
+    private byte[] write(Directory dir, String name, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        getRandom().nextBytes(bytes);
+        IndexOutput output = dir.createOutput(name, IOContext.DEFAULT);
+        output.writeBytes(bytes, bytes.length);
+        output.close();
+        return bytes;
+    }
+
+    private void assertContent(Directory dir, String name, byte[] expected, IOContext context) throws IOException {
+        IndexInput input = dir.openInput(name, context);
+        assertThat(input.length(), equalTo((long) expected.length));
+        byte[] actual = new byte[expected.length];
+        int pos = 0;
+        while (pos < actual.length) {
+            int len = Math.min(actual.length - pos, randomIntBetween(1, 3000));
+            input.readBytes(actual, pos, len);
+            pos += len;
+        }
+        assertArrayEquals(expected, actual);
+        try {
+            input.readByte();
+            fail("expected to fail reading past EOF");
+        } catch (IOException e) {
+            // expected
+        }
+        input.close();
+    }
+}
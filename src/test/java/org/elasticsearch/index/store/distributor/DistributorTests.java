@@ -142,6 +142,16 @@ public class DistributorTests extends ElasticsearchTestCase {
             return 0;
         }
 
+        @Override
+        public long blockCacheHits() {
+            return 0;
+        }
+
+        @Override
+        public long blockCacheMisses() {
+            return 0;
+        }
+
         @Override
         public void renameFile(Directory dir, String from, String to) throws IOException {
         }
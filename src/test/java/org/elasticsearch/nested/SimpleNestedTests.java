@@ -21,6 +21,7 @@ package org.elasticsearch.nested;
 
 import org.apache.lucene.search.Explanation;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
 import org.elasticsearch.action.admin.indices.status.IndicesStatusResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
@@ -48,6 +49,7 @@ import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilde
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.FilterBuilders.*;
 import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
 import static org.hamcrest.Matchers.*;
@@ -1221,4 +1223,36 @@ public class SimpleNestedTests extends ElasticsearchIntegrationTest {
         assertThat(searchResponse.getHits().getHits()[2].sortValues()[0].toString(), equalTo("3"));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testFixedBitSetFiltersAreWarmed() throws Exception {
+        assertAcked(prepareCreate("test")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0))
+                .addMapping("type1", "nested1", "type=nested"));
+        ensureGreen();
+
+        IndicesStatsResponse statsResponse = client().admin().indices().prepareStats("test").setSegments(true).get();
+        assertThat(statsResponse.getTotal().getSegments().getFixedBitSetMemoryInBytes(), equalTo(0l));
+
+        client().prepareIndex("test", "type1", "1").setSource(jsonBuilder().startObject()
+                .field("field1", "value1")
+                .startArray("nested1")
+                .startObject().field("n_field1", "n_value1_1").endObject()
+                .startObject().field("n_field1", "n_value1_2").endObject()
+                .endArray()
+                .endObject()).get();
+        refresh();
+
+        // the nested parent filters are loaded when the new segment is warmed, before any search ran
+        statsResponse = client().admin().indices().prepareStats("test").setSegments(true).get();
+        assertThat(statsResponse.getTotal().getSegments().getFixedBitSetMemoryInBytes(), greaterThan(0l));
+
+        SearchResponse searchResponse = client().prepareSearch("test")
+                .setQuery(nestedQuery("nested1", termQuery("nested1.n_field1", "n_value1_1"))).get();
+        assertNoFailures(searchResponse);
+        assertHitCount(searchResponse, 1l);
+
+        // the memory is released when the index is closed
+        assertAcked(client().admin().indices().prepareDelete("test"));
+    }
+}
@@ -268,6 +268,66 @@ public class MultiPercolatorTests extends ElasticsearchIntegrationTest {
     }
 
 
+    @Test
+    public void testBatchedPercolation() throws Exception {
+        client().admin().indices().prepareCreate("test")
+                .setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 1).build())
+                .execute().actionGet();
+        ensureGreen();
+
+        int numValues = randomIntBetween(2, 10);
+        logger.info("--> register a queries");
+        for (int i = 0; i < numValues; i++) {
+            client().prepareIndex("test", PercolatorService.TYPE_NAME, Integer.toString(i))
+                    .setSource(jsonBuilder().startObject().field("query", termQuery("field1", "value" + i)).endObject())
+                    .execute().actionGet();
+        }
+        client().prepareIndex("test", PercolatorService.TYPE_NAME, "all")
+                .setSource(jsonBuilder().startObject().field("query", matchAllQuery()).endObject())
+                .execute().actionGet();
+        // the query based requests search the registered queries
+        refresh();
+
+        // count, match, limited match and query based requests are mixed, only the first three are batched
+        MultiPercolateRequestBuilder builder = client().prepareMultiPercolate();
+        int numPercolateRequests = randomIntBetween(10, 50);
+        for (int i = 0; i < numPercolateRequests; i++) {
+            PercolateRequestBuilder request = client().preparePercolate()
+                    .setIndices("test").setDocumentType("type")
+                    .setPercolateDoc(docBuilder().setDoc(jsonBuilder().startObject().field("field1", "value" + (i % numValues)).endObject()));
+            switch (i % 4) {
+                case 0:
+                    request.setOnlyCount(true);
+                    break;
+                case 1:
+                    request.setSize(1);
+                    break;
+                case 2:
+                    request.setPercolateQuery(matchAllQuery());
+                    break;
+            }
+            builder.add(request);
+        }
+
+        MultiPercolateResponse response = builder.execute().actionGet();
+        assertThat(response.items().length, equalTo(numPercolateRequests));
+        for (int i = 0; i < numPercolateRequests; i++) {
+            MultiPercolateResponse.Item item = response.getItems()[i];
+            assertThat(item.errorMessage(), nullValue());
+            assertMatchCount(item.response(), 2l);
+            switch (i % 4) {
+                case 0:
+                    assertThat(item.getResponse().getMatches(), nullValue());
+                    break;
+                case 1:
+                    assertThat(item.getResponse().getMatches(), arrayWithSize(1));
+                    break;
+                default:
+                    assertThat(convertFromTextArray(item.getResponse().getMatches(), "test"), arrayContainingInAnyOrder(Integer.toString(i % numValues), "all"));
+            }
+        }
+    }
+
     @Test
     public void testNestedMultiPercolation() throws IOException {
         initNestedIndexAndPercolation();
@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class ExpressionCompilerTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testArithmetic() {
+        assertThat(eval("1 + 2 * 3"), equalTo(7d));
+        assertThat(eval("(1 + 2) * 3"), equalTo(9d));
+        assertThat(eval("10 - 4 - 3"), equalTo(3d));
+        assertThat(eval("7 % 4 / 2"), equalTo(1.5d));
+        assertThat(eval("-2 * -3 + +1"), equalTo(7d));
+        assertThat(eval("1.5e2 + .5"), equalTo(150.5d));
+        assertThat(eval("0"), equalTo(0d));
+        assertThat(eval("1 / 0"), equalTo(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testComparisonsAndLogic() {
+        assertThat(eval("1 < 2"), equalTo(1d));
+        assertThat(eval("2 <= 2"), equalTo(1d));
+        assertThat(eval("1 > 2"), equalTo(0d));
+        assertThat(eval("2 >= 3"), equalTo(0d));
+        assertThat(eval("2 == 2"), equalTo(1d));
+        assertThat(eval("2 != 2"), equalTo(0d));
+        assertThat(eval("1 < 2 && 3 < 2"), equalTo(0d));
+        assertThat(eval("1 < 2 || 3 < 2"), equalTo(1d));
+        assertThat(eval("!0"), equalTo(1d));
+        assertThat(eval("!5"), equalTo(0d));
+        assertThat(eval("1 < 2 ? 10 : 20"), equalTo(10d));
+        assertThat(eval("1 > 2 ? 10 : 2 > 1 ? 30 : 40"), equalTo(30d));
+        // comparisons with NaN are false
+        double nan = Double.NaN;
+        assertThat(eval("x < 1", "x", nan), equalTo(0d));
+        assertThat(eval("x <= 1", "x", nan), equalTo(0d));
+        assertThat(eval("x > 1", "x", nan), equalTo(0d));
+        assertThat(eval("x >= 1", "x", nan), equalTo(0d));
+        assertThat(eval("x == x", "x", nan), equalTo(0d));
+        assertThat(eval("x != x", "x", nan), equalTo(1d));
+        // and NaN itself is false
+        assertThat(eval("x ? 1 : 2", "x", nan), equalTo(2d));
+        assertThat(eval("!x", "x", nan), equalTo(1d));
+        assertThat(eval("x && 1", "x", nan), equalTo(0d));
+        assertThat(eval("x || 0", "x", nan), equalTo(0d));
+        assertThat(eval("x ? 1 : 2", "x", -3), equalTo(1d));
+    }
+
+    @Test
+    public void testFunctions() {
+        assertThat(eval("sqrt(16) + abs(-2)"), equalTo(6d));
+        assertThat(eval("max(3, min(10, 5))"), equalTo(5d));
+        assertThat(eval("pow(2, 10)"), equalTo(1024d));
+        assertThat(eval("ln(exp(2))"), closeTo(2d, 1e-10));
+        assertThat(eval("log10(1000)"), closeTo(3d, 1e-10));
+        assertThat(eval("floor(2.7) + ceil(2.2)"), equalTo(5d));
+    }
+
+    @Test
+    public void testVariables() {
+        Expression expression = ExpressionCompiler.compile("doc['price'].value * factor + _score / doc[\"price\"].value + factor");
+        assertThat(expression.numVariables(), equalTo(3));
+        assertThat(expression.variableType(0), equalTo(Expression.VariableType.FIELD));
+        assertThat(expression.variableName(0), equalTo("price"));
+        assertThat(expression.variableType(1), equalTo(Expression.VariableType.PARAM));
+        assertThat(expression.variableName(1), equalTo("factor"));
+        assertThat(expression.variableType(2), equalTo(Expression.VariableType.SCORE));
+        assertThat(expression.evaluate(new double[]{4, 2, 8}), equalTo(12d));
+    }
+
+    @Test
+    public void testManyVariables() {
+        StringBuilder source = new StringBuilder("0");
+        double[] variables = new double[200];
+        for (int i = 0; i < variables.length; i++) {
+            source.append(" + v").append(i);
+            variables[i] = i;
+        }
+        Expression expression = ExpressionCompiler.compile(source.toString());
+        assertThat(expression.numVariables(), equalTo(200));
+        assertThat(expression.evaluate(variables), equalTo(199d * 200 / 2));
+    }
+
+    @Test
+    public void testParams() {
+        Map<String, Object> params = ImmutableMap.<String, Object>of("a", 2, "b", 3.5f, "c", true);
+        Expression expression = ExpressionCompiler.compile("a * b + c");
+        assertThat(ExpressionScriptEngineService.bindParams(expression, params)[0], equalTo(2d));
+        assertThat((Double) new ExpressionScriptEngineService.ExpressionExecutableScript(expression, params).run(), equalTo(8d));
+        try {
+            ExpressionScriptEngineService.bindParams(expression, ImmutableMap.<String, Object>of("a", 2));
+            fail("Expected a missing parameter");
+        } catch (ScriptException e) {
+            assertThat(e.getMessage(), containsString("missing parameter [b]"));
+        }
+        try {
+            new ExpressionScriptEngineService.ExpressionExecutableScript(ExpressionCompiler.compile("_score"), null);
+            fail("Expected the score to be unavailable");
+        } catch (ScriptException e) {
+            assertThat(e.getMessage(), containsString("in a search"));
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        for (String source : new String[]{"", "1 +", "(1", "1 2", "foo(1)", "sqrt(1, 2)", "doc['a']", "doc['a'].values", "doc[a].value", "1 $ 2", "1..2"}) {
+            try {
+                ExpressionCompiler.compile(source);
+                fail("Expected [" + source + "] to fail");
+            } catch (ScriptException e) {
+                assertThat(e.getMessage(), startsWith("failed to compile expression"));
+            }
+        }
+    }
+
+    @Test
+    public void testNestingLimit() {
+        StringBuilder parentheses = new StringBuilder();
+        StringBuilder negations = new StringBuilder();
+        for (int i = 0; i < ExpressionCompiler.MAX_DEPTH - 1; i++) {
+            parentheses.append('(');
+            negations.append('-');
+        }
+        assertThat(eval(parentheses + "1" + parentheses.toString().replace('(', ')')), equalTo(1d));
+        assertThat(eval(negations + "1"), anyOf(equalTo(1d), equalTo(-1d)));
+
+        for (String source : new String[]{parentheses + "((1" + parentheses.toString().replace('(', ')') + "))", "--" + negations + "1", deepConditional(10000)}) {
+            try {
+                ExpressionCompiler.compile(source);
+                fail("Expected a too deeply nested expression to fail");
+            } catch (ScriptException e) {
+                assertThat(e.getMessage(), containsString("levels deep"));
+            }
+        }
+    }
+
+    private static String deepConditional(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            source.append("1 ? ");
+        }
+        source.append("1");
+        for (int i = 0; i < depth; i++) {
+            source.append(" : 0");
+        }
+        return source.toString();
+    }
+
+    private static double eval(String source) {
+        return ExpressionCompiler.compile(source).evaluate(new double[0]);
+    }
+
+    private static double eval(String source, String variable, double value) {
+        Expression expression = ExpressionCompiler.compile(source);
+        assertThat(expression.variableName(0), equalTo(variable));
+        return expression.evaluate(new double[]{value});
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.query.functionscore.script.ScriptScoreFunctionBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.elasticsearch.index.query.QueryBuilders.functionScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class ExpressionScriptTests extends ElasticsearchIntegrationTest {
+
+    private void indexDocs() throws Exception {
+        assertAcked(prepareCreate("test").setSettings(ImmutableSettings.builder().put("index.number_of_replicas", 0)).addMapping("type", "price", "type=double", "quantity", "type=long", "name", "type=string"));
+        ensureGreen();
+        client().prepareIndex("test", "type", "1").setSource("price", 10.5, "quantity", 2, "name", "foo").get();
+        client().prepareIndex("test", "type", "2").setSource("price", 3, "quantity", 10, "name", "foo bar").get();
+        client().prepareIndex("test", "type", "3").setSource("name", "foo").get();
+        refresh();
+    }
+
+    @Test
+    public void testScriptScore() throws Exception {
+        indexDocs();
+        SearchResponse response = client().prepareSearch("test")
+                .setQuery(functionScoreQuery(matchAllQuery(), new ScriptScoreFunctionBuilder()
+                        .script("doc['price'].value * doc['quantity'].value * factor").lang("expression").param("factor", 2)))
+                .get();
+        assertNoFailures(response);
+        assertHitCount(response, 3);
+        assertThat(response.getHits().getAt(0).id(), equalTo("2"));
+        assertThat((double) response.getHits().getAt(0).score(), closeTo(60, 0.001));
+        assertThat(response.getHits().getAt(1).id(), equalTo("1"));
+        assertThat((double) response.getHits().getAt(1).score(), closeTo(42, 0.001));
+        // documents without a value read 0
+        assertThat(response.getHits().getAt(2).id(), equalTo("3"));
+        assertThat((double) response.getHits().getAt(2).score(), closeTo(0, 0.001));
+    }
+
+    @Test
+    public void testScoreVariable() throws Exception {
+        indexDocs();
+        // the random test client may pick a different search type, and so different term statistics, per search
+        SearchResponse plain = client().prepareSearch("test").setSearchType(SearchType.DFS_QUERY_THEN_FETCH)
+                .setQuery(functionScoreQuery(termQuery("name", "foo"), new ScriptScoreFunctionBuilder().script("_score").lang("expression"))
+                        .boostMode("replace"))
+                .get();
+        SearchResponse scripted = client().prepareSearch("test").setSearchType(SearchType.DFS_QUERY_THEN_FETCH)
+                .setQuery(functionScoreQuery(termQuery("name", "foo"), new ScriptScoreFunctionBuilder().script("_score * 2").lang("expression"))
+                        .boostMode("replace"))
+                .get();
+        assertNoFailures(scripted);
+        assertHitCount(scripted, 3);
+        Map<String, Float> scores = new HashMap<String, Float>();
+        for (SearchHit hit : plain.getHits()) {
+            scores.put(hit.id(), hit.score());
+        }
+        for (SearchHit hit : scripted.getHits()) {
+            assertThat((double) hit.score(), closeTo(scores.get(hit.id()) * 2, 0.0001));
+        }
+    }
+
+    @Test
+    public void testScriptFields() throws Exception {
+        indexDocs();
+        SearchResponse response = client().prepareSearch("test")
+                .addScriptField("total", "expression", "doc['price'].value * doc['quantity'].value", null)
+                .get();
+        assertNoFailures(response);
+        assertHitCount(response, 3);
+        Map<String, Double> expected = new HashMap<String, Double>();
+        expected.put("1", 21d);
+        expected.put("2", 30d);
+        expected.put("3", 0d);
+        for (SearchHit hit : response.getHits()) {
+            assertThat(((Number) hit.field("total").value()).doubleValue(), equalTo(expected.get(hit.id())));
+        }
+    }
+
+    @Test
+    public void testNonNumericField() throws Exception {
+        indexDocs();
+        try {
+            client().prepareSearch("test")
+                    .setQuery(functionScoreQuery(matchAllQuery(), new ScriptScoreFunctionBuilder().script("doc['name'].value").lang("expression")))
+                    .get();
+            fail("Expected the search to fail on a string field");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("must be numeric"));
+        }
+    }
+}
@@ -19,11 +19,14 @@
 
 package org.elasticsearch.search.geo;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.Priority;
 import org.elasticsearch.common.geo.GeoDistance;
 import org.elasticsearch.common.geo.GeoHashUtils;
+import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.unit.DistanceUnit;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -56,6 +59,8 @@ public class GeoDistanceTests extends ElasticsearchIntegrationTest {
     public void simpleDistanceTests() throws Exception {
         String mapping = XContentFactory.jsonBuilder().startObject().startObject("type1")
                 .startObject("properties").startObject("location").field("type", "geo_point").field("lat_lon", true)
+                // with geohash prefixes, the geo_distance and geo_polygon filters look up the points by geohash cell
+                .field("geohash_prefix", randomBoolean())
                 .startObject("fielddata").field("format", randomNumericFieldDataFormat()).endObject().endObject().endObject()
                 .endObject().endObject().string();
         client().admin().indices().prepareCreate("test").addMapping("type1", mapping).execute().actionGet();
@@ -158,6 +163,15 @@ public class GeoDistanceTests extends ElasticsearchIntegrationTest {
             assertThat(hit.id(), anyOf(equalTo("1"), equalTo("3"), equalTo("4"), equalTo("5")));
         }
 
+        searchResponse = client().prepareSearch() // around lower Manhattan
+                .setQuery(filteredQuery(matchAllQuery(), geoPolygonFilter("location")
+                        .addPoint(40.70, -74.01).addPoint(40.74, -74.01).addPoint(40.74, -73.99).addPoint(40.70, -73.99)))
+                .execute().actionGet();
+        assertHitCount(searchResponse, 5);
+        for (SearchHit hit : searchResponse.getHits()) {
+            assertThat(hit.id(), anyOf(equalTo("1"), equalTo("3"), equalTo("4"), equalTo("5"), equalTo("6")));
+        }
+
         searchResponse = client().prepareSearch() // from NY
                 .setQuery(filteredQuery(matchAllQuery(), geoDistanceRangeFilter("location").from("1.0km").to("2.0km").point(40.7143528, -74.0059731)))
                 .execute().actionGet();
@@ -654,6 +668,38 @@ public class GeoDistanceTests extends ElasticsearchIntegrationTest {
                 .execute().actionGet();
 
         assertHitCount(result, 1);
-    } 
+    }
+
+    @Test
+    public void testShortGeohashWithGeohashPrefixes() throws Exception {
+        XContentBuilder mapping = jsonBuilder().startObject().startObject("type1")
+                .startObject("properties").startObject("location").field("type", "geo_point").field("geohash_prefix", true)
+                .endObject().endObject()
+                .endObject().endObject();
+        // indices created before 2.0 only index the prefixes of the given geohash, the filters must not look up
+        // their points by cell
+        assertAcked(prepareCreate("old").addMapping("type1", mapping)
+                .setSettings(settingsBuilder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.V_1_1_0.id)));
+        assertAcked(prepareCreate("new").addMapping("type1", mapping));
+        ensureYellow();
+
+        String geohash = "dr5r";
+        GeoPoint point = GeoHashUtils.decode(geohash);
+        indexRandom(true, client().prepareIndex("old", "type1", "1").setSource("location", geohash),
+                client().prepareIndex("new", "type1", "1").setSource("location", geohash));
+
+        for (String index : new String[]{"old", "new"}) {
+            SearchResponse searchResponse = client().prepareSearch(index)
+                    .setQuery(filteredQuery(matchAllQuery(), geoDistanceFilter("location").point(point.lat(), point.lon()).distance("1km")))
+                    .execute().actionGet();
+            assertHitCount(searchResponse, 1);
 
-}
\ No newline at end of file
+            searchResponse = client().prepareSearch(index)
+                    .setQuery(filteredQuery(matchAllQuery(), geoPolygonFilter("location")
+                            .addPoint(point.lat() - 0.01, point.lon() - 0.01).addPoint(point.lat() + 0.01, point.lon() - 0.01)
+                            .addPoint(point.lat() + 0.01, point.lon() + 0.01).addPoint(point.lat() - 0.01, point.lon() + 0.01)))
+                    .execute().actionGet();
+            assertHitCount(searchResponse, 1);
+        }
+    }
+}
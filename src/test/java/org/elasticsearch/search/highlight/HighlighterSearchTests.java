@@ -33,6 +33,7 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.index.query.MatchQueryBuilder.Operator;
 import org.elasticsearch.index.query.MatchQueryBuilder.Type;
+import org.elasticsearch.index.search.stats.SearchStats;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -1901,6 +1902,54 @@ public class HighlighterSearchTests extends ElasticsearchIntegrationTest {
         assertHighlight(response, 0, "text", 1, 2, equalTo("This is the <em>fifth</em> sentence"));
     }
 
+    @Test
+    public void testPostingsHighlighterIsDefaultWithOffsets() throws Exception {
+        assertAcked(prepareCreate("test").addMapping("type1", "field1", "type=string,index_options=offsets,term_vector=with_positions_offsets"));
+        ensureGreen();
+
+        client().prepareIndex("test", "type1").setSource("field1", "The quick brown fox jumps over the lazy dog").get();
+        refresh();
+
+        // the fast vector highlighter would have cut the sentence in fragments of 20 chars
+        SearchResponse searchResponse = client().prepareSearch("test")
+                .setQuery(termQuery("field1", "quick"))
+                .addHighlightedField(new Field("field1").fragmentSize(20).numOfFragments(1).preTags("<xxx>").postTags("</xxx>"))
+                .get();
+        assertHighlight(searchResponse, 0, "field1", 0, 1, equalTo("The <xxx>quick</xxx> brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void testHighlightCache() throws Exception {
+        assertAcked(prepareCreate("test")
+                .setSettings(ImmutableSettings.builder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0))
+                .addMapping("type1", "field1", "type=string," + randomStoreField() + "index_options=" + randomFrom(new String[]{"positions", "offsets"})));
+        ensureGreen();
+
+        client().prepareIndex("test", "type1", "1").setSource("field1", "The quick brown fox jumps over the lazy dog").get();
+        refresh();
+
+        for (int i = 0; i < 2; i++) {
+            SearchResponse searchResponse = client().prepareSearch("test")
+                    .setQuery(termQuery("field1", "quick"))
+                    .addHighlightedField(new Field("field1").preTags("<xxx>").postTags("</xxx>"))
+                    .get();
+            assertHighlight(searchResponse, 0, "field1", 0, 1, equalTo("The <xxx>quick</xxx> brown fox jumps over the lazy dog"));
+        }
+        SearchStats.Stats stats = client().admin().indices().prepareStats("test").setSearch(true).get().getTotal().getSearch().getTotal();
+        assertThat(stats.getHighlightCacheMissCount(), equalTo(1l));
+        assertThat(stats.getHighlightCacheHitCount(), equalTo(1l));
+
+        // other highlight options are cached separately
+        SearchResponse searchResponse = client().prepareSearch("test")
+                .setQuery(termQuery("field1", "quick"))
+                .addHighlightedField(new Field("field1").preTags("<yyy>").postTags("</yyy>"))
+                .get();
+        assertHighlight(searchResponse, 0, "field1", 0, 1, equalTo("The <yyy>quick</yyy> brown fox jumps over the lazy dog"));
+        stats = client().admin().indices().prepareStats("test").setSearch(true).get().getTotal().getSearch().getTotal();
+        assertThat(stats.getHighlightCacheMissCount(), equalTo(2l));
+        assertThat(stats.getHighlightCacheHitCount(), equalTo(1l));
+    }
+
     @Test
     public void testPostingsHighlighter() throws Exception {
         assertAcked(client().admin().indices().prepareCreate("test").addMapping("type1", type1PostingsffsetsMapping()));
@@ -0,0 +1,168 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.searchafter;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class SearchAfterTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testPaginateThroughAllHits() throws Exception {
+        client().admin().indices().prepareCreate("test")
+                .setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", between(1, 5)))
+                .addMapping("type", "string", "type=string,index=not_analyzed")
+                .execute().actionGet();
+        ensureGreen();
+
+        int numDocs = between(20, 200);
+        List<IndexRequestBuilder> builders = new ArrayList<IndexRequestBuilder>();
+        for (int i = 0; i < numDocs; i++) {
+            XContentBuilder source = jsonBuilder().startObject().field("number", i % 7);
+            // some documents don't have a value for the string field
+            if (i % 3 != 0) {
+                source.field("string", "value" + (i % 5));
+            }
+            builders.add(client().prepareIndex("test", "type", Integer.toString(i)).setSource(source.endObject()));
+        }
+        indexRandom(true, builders);
+
+        boolean reverse = randomBoolean();
+        int size = between(1, 30);
+        Set<String> ids = new HashSet<String>();
+        Object[] searchAfter = null;
+        Object[] previousSortValues = null;
+        while (true) {
+            SearchRequestBuilder request = client().prepareSearch("test")
+                    .setQuery(matchAllQuery())
+                    .setSize(size)
+                    .addSort("number", reverse ? SortOrder.DESC : SortOrder.ASC)
+                    .addSort("string", SortOrder.ASC)
+                    .addSort("_uid", SortOrder.ASC);
+            if (searchAfter != null) {
+                request.setSearchAfter(searchAfter);
+            }
+            SearchResponse response = request.execute().actionGet();
+            assertNoFailures(response);
+            assertThat(response.getHits().getTotalHits(), equalTo((long) numDocs));
+            if (response.getHits().hits().length == 0) {
+                break;
+            }
+            for (SearchHit hit : response.getHits()) {
+                assertThat("hit [" + hit.getId() + "] was returned twice", ids.add(hit.getId()), equalTo(true));
+                if (previousSortValues != null) {
+                    int cmp = ((Number) hit.sortValues()[0]).intValue() - ((Number) previousSortValues[0]).intValue();
+                    assertThat(reverse ? cmp <= 0 : cmp >= 0, equalTo(true));
+                }
+                previousSortValues = hit.sortValues();
+            }
+            searchAfter = previousSortValues;
+        }
+        assertThat(ids.size(), equalTo(numDocs));
+    }
+
+    @Test
+    public void testInvalidSearchAfter() throws Exception {
+        createIndex("test");
+        ensureGreen();
+        client().prepareIndex("test", "type", "1").setSource("number", 1).setRefresh(true).execute().actionGet();
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery()).setSearchAfter(1).execute().actionGet();
+            fail("search_after requires a sort");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("requires a sort"));
+        }
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery())
+                    .addSort("number", SortOrder.ASC).addSort("_uid", SortOrder.ASC)
+                    .setSearchAfter(1).execute().actionGet();
+            fail("search_after must have a value per sort field");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("has 1 value(s) but the sort has 2 field(s)"));
+        }
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery())
+                    .addSort("number", SortOrder.ASC).setFrom(10)
+                    .setSearchAfter(1).execute().actionGet();
+            fail("search_after can't be used with from");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("[from] must be 0"));
+        }
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery()).setSearchType(SearchType.SCAN)
+                    .addSort("number", SortOrder.ASC)
+                    .setSearchAfter(1).execute().actionGet();
+            fail("search_after can't be used with scan");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("search type [scan]"));
+        }
+    }
+
+    @Test
+    public void testNestedSortIsRejected() throws Exception {
+        client().admin().indices().prepareCreate("test")
+                .addMapping("type", jsonBuilder().startObject().startObject("type").startObject("properties")
+                        .startObject("nested").field("type", "nested").startObject("properties")
+                        .startObject("value").field("type", "long").endObject()
+                        .endObject().endObject()
+                        .endObject().endObject().endObject())
+                .execute().actionGet();
+        ensureGreen();
+        client().prepareIndex("test", "type", "1").setSource(jsonBuilder().startObject()
+                .startArray("nested").startObject().field("value", 1).endObject().endArray()
+                .endObject()).setRefresh(true).execute().actionGet();
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery())
+                    .addSort(SortBuilders.fieldSort("nested.value").setNestedPath("nested").sortMode("min"))
+                    .addSort("_uid", SortOrder.ASC)
+                    .setSearchAfter(1, "type#1").execute().actionGet();
+            fail("search_after can't be used with a nested sort");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("nested field [nested.value]"));
+        }
+    }
+}
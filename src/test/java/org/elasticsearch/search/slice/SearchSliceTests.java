@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class SearchSliceTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testSlicedScanScrolls() throws Exception {
+        client().admin().indices().prepareCreate("test")
+                .setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", between(1, 5)))
+                .execute().actionGet();
+        ensureGreen();
+
+        int numDocs = between(50, 300);
+        List<IndexRequestBuilder> builders = new ArrayList<IndexRequestBuilder>();
+        for (int i = 0; i < numDocs; i++) {
+            builders.add(client().prepareIndex("test", "type", Integer.toString(i)).setSource("field", i));
+        }
+        indexRandom(true, builders);
+
+        int max = between(2, 10);
+        Set<String> ids = new HashSet<String>();
+        long totalHits = 0;
+        for (int id = 0; id < max; id++) {
+            SearchResponse response = client().prepareSearch("test")
+                    .setSearchType(SearchType.SCAN)
+                    .setQuery(matchAllQuery())
+                    .setSize(between(1, 20))
+                    .setScroll(TimeValue.timeValueMinutes(1))
+                    .setSlice(id, max)
+                    .execute().actionGet();
+            assertNoFailures(response);
+            totalHits += response.getHits().getTotalHits();
+            long sliceHits = 0;
+            try {
+                while (true) {
+                    response = client().prepareSearchScroll(response.getScrollId())
+                            .setScroll(TimeValue.timeValueMinutes(1))
+                            .execute().actionGet();
+                    assertNoFailures(response);
+                    if (response.getHits().hits().length == 0) {
+                        break;
+                    }
+                    for (SearchHit hit : response.getHits()) {
+                        assertThat("document [" + hit.getId() + "] is in several slices", ids.add(hit.getId()), equalTo(true));
+                        sliceHits++;
+                    }
+                }
+            } finally {
+                clearScroll(response.getScrollId());
+            }
+            assertThat(sliceHits, equalTo(response.getHits().getTotalHits()));
+        }
+        assertThat(totalHits, equalTo((long) numDocs));
+        assertThat(ids.size(), equalTo(numDocs));
+    }
+
+    @Test
+    public void testInvalidSlice() throws Exception {
+        createIndex("test");
+        ensureGreen();
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery()).setSlice(2, 2).execute().actionGet();
+            fail("the slice id must be lower than max");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("id must be between 0 and max - 1"));
+        }
+
+        try {
+            client().prepareSearch("test").setQuery(matchAllQuery()).setSlice(0, 1).execute().actionGet();
+            fail("there must be more than one slice");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("max must be greater than 1"));
+        }
+    }
+}
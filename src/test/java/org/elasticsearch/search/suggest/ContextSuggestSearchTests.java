@@ -0,0 +1,161 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.suggest;
+
+import com.google.common.collect.Lists;
+import org.elasticsearch.action.suggest.SuggestResponse;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestionBuilder;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestionFuzzyBuilder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ */
+public class ContextSuggestSearchTests extends ElasticsearchIntegrationTest {
+
+    private static final String INDEX = "test";
+    private static final String TYPE = "type";
+    private static final String FIELD = "suggest";
+
+    private void createIndexAndMapping() throws Exception {
+        XContentBuilder mapping = jsonBuilder().startObject().startObject(TYPE).startObject("properties")
+                .startObject(FIELD)
+                .field("type", "completion")
+                .startObject("context")
+                .startObject("color").field("type", "category").field("default", "red").endObject()
+                .startObject("location").field("type", "geo").field("precision", 4).endObject()
+                .endObject()
+                .endObject()
+                .endObject().endObject().endObject();
+        assertAcked(prepareCreate(INDEX).addMapping(TYPE, mapping));
+        ensureYellow();
+    }
+
+    private void index(String id, String input, String color, double lat, double lon) throws Exception {
+        XContentBuilder source = jsonBuilder().startObject().startObject(FIELD)
+                .field("input", input)
+                .startObject("context");
+        if (color != null) {
+            source.field("color", color);
+        }
+        source.startObject("location").field("lat", lat).field("lon", lon).endObject()
+                .endObject()
+                .endObject().endObject();
+        client().prepareIndex(INDEX, TYPE, id).setSource(source).get();
+    }
+
+    @Test
+    public void testCategoryAndGeoContexts() throws Exception {
+        createIndexAndMapping();
+        // Berlin
+        index("1", "Hotel Amsterdam", "blue", 52.52, 13.4);
+        index("2", "Hotel Berlin", "green", 52.52, 13.4);
+        // default color, New York
+        index("3", "Hotel Chicago", null, 40.71, -74.0);
+        index("4", "Hotel Dallas", "blue", 40.71, -74.0);
+        refresh();
+
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10),
+                "Hotel Amsterdam", "Hotel Berlin", "Hotel Chicago", "Hotel Dallas");
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10)
+                .addCategory("color", "blue"), "Hotel Amsterdam", "Hotel Dallas");
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10)
+                .addCategory("color", "red", "green"), "Hotel Berlin", "Hotel Chicago");
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10)
+                .addGeoLocation("location", 52.51, 13.41), "Hotel Amsterdam", "Hotel Berlin");
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10)
+                .addCategory("color", "blue").addGeoLocation("location", 40.72, -74.01), "Hotel Dallas");
+        assertSuggestions(new CompletionSuggestionBuilder("foo").field(FIELD).text("hotel").size(10)
+                .addCategory("color", "yellow"));
+    }
+
+    @Test
+    public void testFuzzyWithContexts() throws Exception {
+        createIndexAndMapping();
+        index("1", "Nirvana", "blue", 52.52, 13.4);
+        index("2", "Nirvana Tribute", "green", 52.52, 13.4);
+        refresh();
+
+        assertSuggestions(new CompletionSuggestionFuzzyBuilder("foo").field(FIELD).text("Nirw").size(10),
+                "Nirvana", "Nirvana Tribute");
+        assertSuggestions(new CompletionSuggestionFuzzyBuilder("foo").field(FIELD).text("Nirw").size(10)
+                .addCategory("color", "green"), "Nirvana Tribute");
+    }
+
+    @Test
+    public void testUnknownContext() throws Exception {
+        createIndexAndMapping();
+        index("1", "Nirvana", "blue", 52.52, 13.4);
+        refresh();
+
+        SuggestResponse response = client().prepareSuggest(INDEX).addSuggestion(new CompletionSuggestionBuilder("foo").field(FIELD).text("Nirv")
+                .addCategory("size", "xl")).get();
+        assertThat(response.getFailedShards(), greaterThan(0));
+        assertThat(response.getShardFailures()[0].reason(), containsString("unknown context [size]"));
+    }
+
+    @Test
+    public void testContextsRequireMapping() throws Exception {
+        assertAcked(prepareCreate(INDEX).addMapping(TYPE, jsonBuilder().startObject().startObject(TYPE).startObject("properties")
+                .startObject(FIELD).field("type", "completion").endObject()
+                .endObject().endObject().endObject()));
+        ensureYellow();
+
+        try {
+            index("1", "Nirvana", "blue", 52.52, 13.4);
+            fail("Expected an exception for contexts that are not defined in the mapping");
+        } catch (MapperParsingException e) {
+            // expected
+        }
+    }
+
+    private void assertSuggestions(CompletionSuggestionBuilder suggestion, String... expected) {
+        assertSuggestionResponse(client().prepareSuggest(INDEX).addSuggestion(suggestion).get(), expected);
+    }
+
+    private void assertSuggestions(CompletionSuggestionFuzzyBuilder suggestion, String... expected) {
+        assertSuggestionResponse(client().prepareSuggest(INDEX).addSuggestion(suggestion).get(), expected);
+    }
+
+    private void assertSuggestionResponse(SuggestResponse response, String... expected) {
+        assertNoFailures(response);
+        Suggest.Suggestion<Suggest.Suggestion.Entry<Suggest.Suggestion.Entry.Option>> suggestion = response.getSuggest().getSuggestion("foo");
+        List<String> names = Lists.newArrayList();
+        for (Suggest.Suggestion.Entry.Option option : suggestion.getEntries().get(0).getOptions()) {
+            names.add(option.getText().string());
+        }
+        if (expected.length == 0) {
+            assertThat(names.isEmpty(), is(true));
+        } else {
+            assertThat(names, containsInAnyOrder(expected));
+        }
+    }
+}
@@ -614,6 +614,72 @@ public class SharedClusterSnapshotRestoreTests extends AbstractSnapshotTests {
         assertThat(numberOfFiles(repo), equalTo(numberOfFiles[0]));
     }
 
+    @Test
+    public void contentAddressableDeduplicationTest() throws Exception {
+        Client client = client();
+
+        File repo = newTempDir(LifecycleScope.SUITE);
+        File blobs = new File(repo, "blobs");
+        File refs = new File(repo, "refs");
+        logger.info("-->  creating content addressable repository at " + repo.getAbsolutePath());
+        PutRepositoryResponse putRepositoryResponse = client.admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(ImmutableSettings.settingsBuilder()
+                        .put("location", repo)
+                        .put("compress", randomBoolean())
+                        .put("content_addressable", true)
+                ).get();
+        assertThat(putRepositoryResponse.isAcknowledged(), equalTo(true));
+
+        createIndex("test-idx");
+        ensureGreen();
+
+        logger.info("--> indexing some data");
+        for (int i = 0; i < 100; i++) {
+            index("test-idx", "doc", Integer.toString(i), "foo", "bar" + i);
+        }
+        refresh();
+
+        logger.info("--> snapshot original index");
+        CreateSnapshotResponse createSnapshotResponse = client.admin().cluster().prepareCreateSnapshot("test-repo", "test-snap-1").setWaitForCompletion(true).setIndices("test-idx").get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), greaterThan(0));
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), equalTo(createSnapshotResponse.getSnapshotInfo().totalShards()));
+        int numberOfBlobs = numberOfFiles(blobs);
+        assertThat(numberOfBlobs, greaterThan(0));
+        assertThat(numberOfFiles(new File(repo, "indices/test-idx/0")), equalTo(1));
+
+        logger.info("--> restore a copy of the index");
+        RestoreSnapshotResponse restoreSnapshotResponse = client.admin().cluster().prepareRestoreSnapshot("test-repo", "test-snap-1")
+                .setRenamePattern("(.+)").setRenameReplacement("$1-copy").setWaitForCompletion(true).execute().actionGet();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().totalShards(), greaterThan(0));
+        ensureGreen();
+        assertThat(client.prepareCount("test-idx-copy").get().getCount(), equalTo(100L));
+
+        logger.info("--> snapshot the copy");
+        createSnapshotResponse = client.admin().cluster().prepareCreateSnapshot("test-repo", "test-snap-2").setWaitForCompletion(true).setIndices("test-idx-copy").get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), greaterThan(0));
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), equalTo(createSnapshotResponse.getSnapshotInfo().totalShards()));
+        int numberOfNewBlobs = numberOfFiles(blobs) - numberOfBlobs;
+        logger.info("--> snapshot of the copy added [{}] blobs to existing [{}]", numberOfNewBlobs, numberOfBlobs);
+        // only commit points of the restored copy might differ from the original index
+        assertThat(numberOfNewBlobs, lessThan(numberOfBlobs));
+
+        logger.info("--> delete the first snapshot");
+        client.admin().cluster().prepareDeleteSnapshot("test-repo", "test-snap-1").get();
+        assertThat(numberOfFiles(blobs), greaterThan(numberOfNewBlobs));
+
+        logger.info("--> restore the copy after deletion of the first snapshot");
+        wipeIndices("test-idx-copy");
+        restoreSnapshotResponse = client.admin().cluster().prepareRestoreSnapshot("test-repo", "test-snap-2").setWaitForCompletion(true).execute().actionGet();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().totalShards(), greaterThan(0));
+        ensureGreen();
+        assertThat(client.prepareCount("test-idx-copy").get().getCount(), equalTo(100L));
+
+        logger.info("--> delete the last snapshot");
+        client.admin().cluster().prepareDeleteSnapshot("test-repo", "test-snap-2").get();
+        assertThat(numberOfFiles(blobs), equalTo(0));
+        assertThat(numberOfFiles(refs), equalTo(0));
+    }
+
     @Test
     @TestLogging("snapshots:TRACE")
     public void snapshotClosedIndexTest() throws Exception {
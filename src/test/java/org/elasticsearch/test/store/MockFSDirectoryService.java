@@ -49,6 +49,16 @@ public class MockFSDirectoryService extends FsDirectoryService {
         return helper.wrapAllInplace(delegateService.build());
     }
     
+    @Override
+    public long blockCacheHits() {
+        return delegateService.blockCacheHits();
+    }
+
+    @Override
+    public long blockCacheMisses() {
+        return delegateService.blockCacheMisses();
+    }
+
     @Override
     protected synchronized FSDirectory newFSDirectory(File location, LockFactory lockFactory) throws IOException {
         throw new UnsupportedOperationException();
@@ -50,6 +50,16 @@ public class MockRamDirectoryService extends AbstractIndexShardComponent impleme
         return delegateService.throttleTimeInNanos();
     }
 
+    @Override
+    public long blockCacheHits() {
+        return delegateService.blockCacheHits();
+    }
+
+    @Override
+    public long blockCacheMisses() {
+        return delegateService.blockCacheMisses();
+    }
+
     @Override
     public void renameFile(Directory dir, String from, String to) throws IOException {
         delegateService.renameFile(dir, from, to);
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class ChannelBufferStreamInputTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testReadsShareCompositeComponents() throws Exception {
+        byte[] first = randomBytes(randomIntBetween(10, 100));
+        byte[] second = randomBytes(randomIntBetween(10, 100));
+        ChannelBuffer composite = ChannelBuffers.wrappedBuffer(ChannelBuffers.wrappedBuffer(first), ChannelBuffers.wrappedBuffer(second));
+        ChannelBufferStreamInput in = new ChannelBufferStreamInput(composite);
+
+        // within the first component, shares the network array
+        int length = randomIntBetween(1, first.length - 2);
+        BytesRef ref = in.readBytesRef(length);
+        assertThat(ref.bytes, sameInstance(first));
+        assertThat(ref.offset, equalTo(0));
+        assertThat(ref.length, equalTo(length));
+
+        // spans both components, must be copied
+        int remaining = first.length - length;
+        ref = in.readBytesRef(remaining + 1);
+        assertThat(ref.bytes, not(sameInstance(first)));
+        assertThat(Arrays.copyOfRange(ref.bytes, ref.offset, ref.offset + ref.length), equalTo(concat(Arrays.copyOfRange(first, length, first.length), new byte[]{second[0]})));
+
+        // references are always slices
+        BytesReference reference = in.readBytesReference(second.length - 1);
+        assertThat(reference.hasArray(), equalTo(true));
+        assertThat(reference.array(), sameInstance(second));
+        assertThat(reference.arrayOffset(), equalTo(1));
+        assertThat(reference.toBytes(), equalTo(Arrays.copyOfRange(second, 1, second.length)));
+        assertThat(in.available(), equalTo(0));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        getRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
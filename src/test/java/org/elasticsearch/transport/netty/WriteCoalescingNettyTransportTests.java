@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Runs the simple transport tests with write coalescing enabled on all connections.
+ */
+public class WriteCoalescingNettyTransportTests extends AbstractSimpleTransportTests {
+
+    @Override
+    protected TransportService build(Settings settings, Version version) {
+        int startPort = 11000 + randomIntBetween(0, 255);
+        int endPort = startPort + 10;
+        settings = ImmutableSettings.builder().put(settings)
+                .put("transport.tcp.port", startPort + "-" + endPort)
+                .put("transport.netty.write_coalescing.enabled", true)
+                .put("transport.netty.write_coalescing.window", randomIntBetween(1, 100) + "ms")
+                .put("transport.netty.write_coalescing.max_bytes", randomIntBetween(1, 64 * 1024))
+                .build();
+        return new TransportService(settings, new NettyTransport(settings, threadPool, new NetworkService(settings), version), threadPool).start();
+    }
+
+    @Test
+    public void testCoalescedWrites() throws Exception {
+        serviceA.registerHandler("ping", new BaseTransportRequestHandler<TransportRequest.Empty>() {
+            @Override
+            public TransportRequest.Empty newInstance() {
+                return TransportRequest.Empty.INSTANCE;
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.GENERIC;
+            }
+
+            @Override
+            public void messageReceived(TransportRequest.Empty request, TransportChannel channel) throws Exception {
+                channel.sendResponse(TransportResponse.Empty.INSTANCE);
+            }
+        });
+
+        int numberOfRequests = randomIntBetween(50, 500);
+        final CountDownLatch latch = new CountDownLatch(numberOfRequests);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < numberOfRequests; i++) {
+            serviceB.sendRequest(nodeA, "ping", TransportRequest.Empty.INSTANCE, new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                @Override
+                public void handleResponse(TransportResponse.Empty response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void handleException(TransportException exp) {
+                    failures.incrementAndGet();
+                    latch.countDown();
+                }
+            });
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(failures.get(), equalTo(0));
+
+        TransportStats stats = serviceB.stats();
+        assertThat(stats.txCoalescedMessages(), greaterThanOrEqualTo((long) numberOfRequests));
+        assertThat(stats.txCoalescedBatches(), greaterThan(0l));
+        assertThat(stats.txCoalescedBatches(), lessThanOrEqualTo(stats.txCoalescedMessages()));
+
+        serviceA.removeHandler("ping");
+    }
+}